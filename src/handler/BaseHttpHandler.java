@@ -7,6 +7,7 @@ import server.GsonUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -24,6 +25,10 @@ public abstract class BaseHttpHandler implements HttpHandler {
     protected static final int NOT_ACCEPTABLE = 406; // Конфликт времени задач
     protected static final int INTERNAL_SERVER_ERROR = 500; // Ошибка сервера
 
+    // Заголовок с именем клиента: просмотры и история такого запроса относятся к этому клиенту
+    public static final String CLIENT_HEADER = "X-Client-Id";
+    private static final int MAX_CLIENT_LENGTH = 128;
+
     /**
      * Метод отправляет текстовый ответ клиенту.
      *
@@ -75,6 +80,40 @@ public abstract class BaseHttpHandler implements HttpHandler {
         sendText(exchange, "Internal Server Error", INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Метод возвращает имя клиента из заголовка X-Client-Id.
+     *
+     * @return имя клиента или null, если заголовка нет, он пустой или длиннее 128 символов
+     */
+    protected static String clientOf(HttpExchange exchange) {
+        String client = exchange.getRequestHeaders().getFirst(CLIENT_HEADER);
+        if (client == null) {
+            return null;
+        }
+        client = client.trim();
+        return client.isEmpty() || client.length() > MAX_CLIENT_LENGTH ? null : client;
+    }
+
+    /**
+     * Метод возвращает значение параметра из строки запроса.
+     *
+     * @return значение первого параметра с этим именем или null, если его нет
+     */
+    protected static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
     /**
      * Метод парсит JSON из тела запроса в объект Java.
      *
@@ -60,7 +60,7 @@ public class EpicsHandler extends BaseHttpHandler {
             sendSuccess(exchange, GSON.toJson(taskManager.getAllEpics()));
         } else if (pathParts.length == 3) { // GET /epics/{id}
             int id = Integer.parseInt(pathParts[2]);
-            Epic epic = taskManager.getEpicById(id);
+            Epic epic = taskManager.getEpicById(id, clientOf(exchange));
             if (epic != null) {
                 sendSuccess(exchange, GSON.toJson(epic));
             } else {
@@ -1,13 +1,16 @@
 package handler;
 
 import com.sun.net.httpserver.HttpExchange;
+import manager.HistoryDelta;
 import manager.TaskManager;
 
 import java.io.IOException;
 
 /**
  * Обработчик для получения истории просмотров задач.
- * Поддерживает только GET /history.
+ * Поддерживает только GET /history; с заголовком X-Client-Id возвращает историю этого клиента.
+ * GET /history?since=v возвращает не всю историю, а изменения после версии v (см. {@link HistoryDelta});
+ * первый запрос делается с since=0 и получает всю историю вместе с версией для следующего.
  */
 public class HistoryHandler extends BaseHttpHandler {
     private final TaskManager taskManager;
@@ -20,10 +23,18 @@ public class HistoryHandler extends BaseHttpHandler {
     public void handle(HttpExchange exchange) throws IOException {
         try {
             if ("GET".equals(exchange.getRequestMethod())) {
-                sendSuccess(exchange, GSON.toJson(taskManager.getHistory()));
+                String since = queryParam(exchange, "since");
+                if (since == null) {
+                    sendSuccess(exchange, GSON.toJson(taskManager.getHistory(clientOf(exchange))));
+                } else {
+                    HistoryDelta delta = taskManager.getHistorySince(Long.parseLong(since), clientOf(exchange));
+                    sendSuccess(exchange, GSON.toJson(delta));
+                }
             } else {
                 sendNotFound(exchange);
             }
+        } catch (NumberFormatException e) {
+            sendText(exchange, "Invalid since format", 400); // Bad Request
         } catch (Exception e) {
             sendInternalError(exchange);
         }
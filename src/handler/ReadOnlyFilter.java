@@ -0,0 +1,34 @@
+package handler;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Фильтр для ведомого узла репликации: пропускает только GET-запросы.
+ * Остальные методы получают 405 Method Not Allowed — изменения принимает ведущий узел.
+ */
+public class ReadOnlyFilter extends Filter {
+    private static final int METHOD_NOT_ALLOWED = 405;
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if ("GET".equals(exchange.getRequestMethod())) {
+            chain.doFilter(exchange);
+            return;
+        }
+        byte[] response = "Read-only replica".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Allow", "GET");
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+    }
+
+    @Override
+    public String description() {
+        return "Только чтение на ведомом узле репликации";
+    }
+}
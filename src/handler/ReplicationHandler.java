@@ -0,0 +1,32 @@
+package handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import manager.ReplicaTaskManager;
+
+import java.io.IOException;
+
+/**
+ * Обработчик состояния репликации ведомого узла: номер применённой пачки,
+ * отставание от ведущего и задержка применения.
+ * Поддерживает только GET /replication.
+ */
+public class ReplicationHandler extends BaseHttpHandler {
+    private final ReplicaTaskManager taskManager;
+
+    public ReplicationHandler(ReplicaTaskManager taskManager) {
+        this.taskManager = taskManager;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                sendSuccess(exchange, GSON.toJson(taskManager.getReplicationStatus()));
+            } else {
+                sendNotFound(exchange);
+            }
+        } catch (Exception e) {
+            sendInternalError(exchange);
+        }
+    }
+}
@@ -37,7 +37,7 @@ public class SubtasksHandler extends BaseHttpHandler {
                         sendSuccess(exchange, GSON.toJson(taskManager.getAllSubtasks()));
                     } else if (pathParts.length == 3) { // GET /subtasks/{id}
                         int id = Integer.parseInt(pathParts[2]);
-                        Subtask subtask = taskManager.getSubtaskById(id);
+                        Subtask subtask = taskManager.getSubtaskById(id, clientOf(exchange));
                         if (subtask != null) {
                             sendSuccess(exchange, GSON.toJson(subtask));
                         } else {
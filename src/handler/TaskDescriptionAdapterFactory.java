@@ -0,0 +1,42 @@
+package handler;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import model.Task;
+
+import java.io.IOException;
+
+// Gson читает поля напрямую, а ленивое описание в поле не хранится — берём его через getDescription()
+public class TaskDescriptionAdapterFactory implements TypeAdapterFactory {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!Task.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        TypeAdapter<JsonElement> elements = gson.getAdapter(JsonElement.class);
+        return (TypeAdapter<T>) new TypeAdapter<Task>() {
+            @Override
+            public void write(JsonWriter out, Task value) throws IOException {
+                if (value == null || value.isDescriptionLoaded()) {
+                    delegate.write(out, (T) value);
+                    return;
+                }
+                JsonElement tree = delegate.toJsonTree((T) value);
+                tree.getAsJsonObject().addProperty("description", value.getDescription());
+                elements.write(out, tree);
+            }
+
+            @Override
+            public Task read(JsonReader in) throws IOException {
+                return (Task) delegate.read(in);
+            }
+        };
+    }
+}
@@ -65,7 +65,7 @@ public class TasksHandler extends BaseHttpHandler {
         } else if (pathParts.length == 3) { // GET /tasks/{id}
             try {
                 int id = Integer.parseInt(pathParts[2]);
-                Task task = taskManager.getTaskById(id);
+                Task task = taskManager.getTaskById(id, clientOf(exchange));
                 if (task != null) {
                     sendSuccess(exchange, GSON.toJson(task));
                 } else {
@@ -0,0 +1,262 @@
+package manager;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    История просмотров на параллельных массивах: двусвязный список слотов (prev/next — индексы)
+    и индекс id → слот с открытой адресацией по массивам int. Добавление, удаление и перенос
+    в конец выполняются за O(1) и в установившемся режиме ничего не выделяют: освобождённые
+    слоты переиспользуются, а массивы растут вдвое, только когда заняты все слоты.
+    При ограниченной ёмкости слот самой давно просмотренной задачи занимает новая.
+    Слот помнит версию, на которой задача попала в конец, поэтому изменения после курсора
+    читаются с хвоста списка.
+ */
+public class ArrayHistoryManager implements HistoryManager {
+    private static final int NIL = -1;
+    private static final int INITIAL_SLOTS = 16;
+
+    // Слоты списка
+    private int[] prev;
+    private int[] next;
+    private int[] slotIds;
+    private Task[] slotTasks;
+    private long[] slotVersions;
+    private int head = NIL;
+    private int tail = NIL;
+    private int free = NIL; // Список свободных слотов через next
+    private int used; // Слоты, выданные хотя бы раз; следующие за ними ещё не использовались
+    private int size;
+    private int capacity = InMemoryHistoryManager.UNBOUNDED;
+    private final HistoryVersions versions = new HistoryVersions();
+
+    // Индекс id → слот; таблица заполнена не больше чем наполовину
+    private int[] mapIds;
+    private int[] mapSlots; // NIL — ячейка пуста
+    private int mask;
+
+    public ArrayHistoryManager() {
+        this(InMemoryHistoryManager.UNBOUNDED);
+    }
+
+    // capacity — наибольшее количество задач в истории, 0 — без ограничения
+    public ArrayHistoryManager(int capacity) {
+        allocate(INITIAL_SLOTS);
+        setCapacity(capacity);
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task == null) {
+            return;
+        }
+        int id = task.getId();
+        int slot = find(id);
+        if (slot != NIL) {
+            slotTasks[slot] = task;
+            slotVersions[slot] = versions.next();
+            if (slot != tail) {
+                unlink(slot);
+                linkLast(slot);
+            }
+            return;
+        }
+        if (capacity != InMemoryHistoryManager.UNBOUNDED && size == capacity) {
+            slot = head; // Вытесняемая задача уступает свой слот
+            mapRemove(slotIds[slot]);
+            unlink(slot);
+            versions.removed(slotIds[slot]);
+            size--;
+        } else {
+            slot = takeSlot();
+        }
+        slotIds[slot] = id;
+        slotTasks[slot] = task;
+        slotVersions[slot] = versions.next();
+        linkLast(slot);
+        mapPut(id, slot);
+        size++;
+    }
+
+    @Override
+    public void remove(int id) {
+        int slot = mapRemove(id);
+        if (slot != NIL) {
+            unlink(slot);
+            release(slot);
+            versions.removed(id);
+            size--;
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        List<Task> result = new ArrayList<>(size);
+        for (int slot = head; slot != NIL; slot = next[slot]) {
+            result.add(slotTasks[slot]);
+        }
+        return result;
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Ёмкость истории не может быть отрицательной: " + capacity);
+        }
+        this.capacity = capacity;
+        while (capacity != InMemoryHistoryManager.UNBOUNDED && size > capacity) {
+            remove(slotIds[head]);
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getVersion() {
+        return versions.current();
+    }
+
+    @Override
+    public HistoryDelta getChangesSince(long since) {
+        if (!versions.covers(since)) {
+            return HistoryDelta.full(versions.current(), getHistory());
+        }
+        List<Task> changed = new ArrayList<>();
+        for (int slot = tail; slot != NIL && slotVersions[slot] > since; slot = prev[slot]) {
+            changed.add(slotTasks[slot]);
+        }
+        return versions.delta(since, changed, id -> find(id) != NIL);
+    }
+
+    private int takeSlot() {
+        if (free != NIL) {
+            int slot = free;
+            free = next[slot];
+            return slot;
+        }
+        if (used == slotIds.length) {
+            grow();
+        }
+        return used++;
+    }
+
+    private void release(int slot) {
+        slotTasks[slot] = null; // Задача не должна удерживаться свободным слотом
+        prev[slot] = NIL;
+        next[slot] = free;
+        free = slot;
+    }
+
+    private void linkLast(int slot) {
+        prev[slot] = tail;
+        next[slot] = NIL;
+        if (tail == NIL) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NIL) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NIL) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+
+    private void allocate(int slots) {
+        prev = new int[slots];
+        next = new int[slots];
+        slotIds = new int[slots];
+        slotTasks = new Task[slots];
+        slotVersions = new long[slots];
+        int tableSize = Integer.highestOneBit(slots * 2 - 1) << 1;
+        mapIds = new int[tableSize];
+        mapSlots = new int[tableSize];
+        Arrays.fill(mapSlots, NIL);
+        mask = tableSize - 1;
+    }
+
+    // Все слоты заняты, поэтому свободного списка нет и слоты копируются как есть
+    private void grow() {
+        int[] oldPrev = prev;
+        int[] oldNext = next;
+        int[] oldIds = slotIds;
+        Task[] oldTasks = slotTasks;
+        long[] oldVersions = slotVersions;
+        allocate(oldIds.length * 2);
+        System.arraycopy(oldPrev, 0, prev, 0, oldPrev.length);
+        System.arraycopy(oldNext, 0, next, 0, oldNext.length);
+        System.arraycopy(oldIds, 0, slotIds, 0, oldIds.length);
+        System.arraycopy(oldTasks, 0, slotTasks, 0, oldTasks.length);
+        System.arraycopy(oldVersions, 0, slotVersions, 0, oldVersions.length);
+        for (int slot = head; slot != NIL; slot = next[slot]) {
+            mapPut(slotIds[slot], slot);
+        }
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9; // Перемешивает последовательные id
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int id) {
+        for (int i = hash(id) & mask; mapSlots[i] != NIL; i = (i + 1) & mask) {
+            if (mapIds[i] == id) {
+                return mapSlots[i];
+            }
+        }
+        return NIL;
+    }
+
+    private void mapPut(int id, int slot) {
+        int i = hash(id) & mask;
+        while (mapSlots[i] != NIL) {
+            i = (i + 1) & mask;
+        }
+        mapIds[i] = id;
+        mapSlots[i] = slot;
+    }
+
+    /*
+        Удаляет id из индекса и возвращает его слот. Следующие ячейки цепочки сдвигаются
+        на освободившееся место, поэтому поиск не встречает удалённых меток и не замедляется.
+     */
+    private int mapRemove(int id) {
+        int hole = hash(id) & mask;
+        while (mapSlots[hole] != NIL && mapIds[hole] != id) {
+            hole = (hole + 1) & mask;
+        }
+        int slot = mapSlots[hole];
+        if (slot == NIL) {
+            return NIL;
+        }
+        for (int i = (hole + 1) & mask; mapSlots[i] != NIL; i = (i + 1) & mask) {
+            int home = hash(mapIds[i]) & mask;
+            // Ячейку можно сдвинуть, если её исходная позиция не лежит между дырой и ею самой
+            boolean reachable = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+            if (!reachable) {
+                mapIds[hole] = mapIds[i];
+                mapSlots[hole] = mapSlots[i];
+                hole = i;
+            }
+        }
+        mapSlots[hole] = NIL;
+        return slot;
+    }
+}
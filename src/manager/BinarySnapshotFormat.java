@@ -0,0 +1,393 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный формат снимка FileBackedTaskManager.
+ * <pre>
+ * заголовок:  "KBSN" (4 байта), версия (1 байт),
+ *             версия 2: varint поколение журнала, чьи записи уже в снимке
+ * задачи:     varint количество, далее записи
+ * запись:     тег типа (1 байт: 0 — задача, 1 — эпик, 2 — подзадача),
+ *             varint id, строка name, строка description, статус (1 байт),
+ *             флаги (1 байт: бит 0 — есть duration, бит 1 — есть startTime),
+ *             [varint минуты duration], [zigzag varint минуты startTime от эпохи, UTC],
+ *             подзадача: varint epicId; эпик: varint количество, varint id подзадач
+ * история:    varint количество, varint id в порядке просмотра
+ * контроль:   CRC32 всех предыдущих байт (4 байта, big-endian)
+ * строка:     varint длина в байтах, UTF-8
+ * </pre>
+ * В отличие от CSV, строки хранятся с длиной, поэтому запятые и переводы строк в названиях допустимы.
+ */
+public final class BinarySnapshotFormat {
+    static final byte[] MAGIC = {'K', 'B', 'S', 'N'};
+    static final int VERSION = 1;
+    static final int VERSION_WITH_JOURNAL = 2; // Снимок режима журнала
+
+    private static final int TAG_TASK = 0;
+    private static final int TAG_EPIC = 1;
+    private static final int TAG_SUBTASK = 2;
+    private static final int HAS_DURATION = 1;
+    private static final int HAS_START_TIME = 2;
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshotFormat() {
+    }
+
+    /**
+     * Содержимое прочитанного снимка.
+     */
+    static final class Snapshot {
+        final List<Task> tasks;
+        final List<Integer> history;
+        final long journalGeneration; // -1 — снимок записан без журнала
+
+        Snapshot(List<Task> tasks, List<Integer> history, long journalGeneration) {
+            this.tasks = tasks;
+            this.history = history;
+            this.journalGeneration = journalGeneration;
+        }
+    }
+
+    /**
+     * Проверяет, начинается ли файл с заголовка двоичного снимка.
+     *
+     * @param file файл снимка
+     * @return true, если файл в двоичном формате
+     * @throws IOException при ошибке чтения
+     */
+    static boolean isBinary(File file) throws IOException {
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            return Arrays.equals(input.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Сериализует задачи и историю в двоичный снимок.
+     *
+     * @param tasks   задачи, эпики и подзадачи; эпики должны идти раньше своих подзадач
+     * @param history id просмотренных задач в порядке просмотра
+     * @return содержимое файла снимка
+     */
+    static byte[] encode(Collection<? extends Task> tasks, List<Integer> history) {
+        return encode(tasks, history, -1);
+    }
+
+    /**
+     * Сериализует задачи и историю вместе с поколением журнала, записи которого уже вошли в снимок.
+     *
+     * @param tasks             задачи, эпики и подзадачи; эпики должны идти раньше своих подзадач
+     * @param history           id просмотренных задач в порядке просмотра
+     * @param journalGeneration поколение журнала; -1 — без журнала (версия 1)
+     * @return содержимое файла снимка
+     */
+    static byte[] encode(Collection<? extends Task> tasks, List<Integer> history, long journalGeneration) {
+        Output out = new Output(64 + tasks.size() * 48);
+        out.writeBytes(MAGIC);
+        if (journalGeneration < 0) {
+            out.writeByte(VERSION);
+        } else {
+            out.writeByte(VERSION_WITH_JOURNAL);
+            out.writeVarLong(journalGeneration);
+        }
+        out.writeVarInt(tasks.size());
+        for (Task task : tasks) {
+            writeTask(out, task);
+        }
+        out.writeVarInt(history.size());
+        for (int id : history) {
+            out.writeVarInt(id);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.buffer, 0, out.size);
+        int checksum = (int) crc.getValue();
+        out.writeByte(checksum >>> 24);
+        out.writeByte(checksum >>> 16);
+        out.writeByte(checksum >>> 8);
+        out.writeByte(checksum);
+        return Arrays.copyOf(out.buffer, out.size);
+    }
+
+    /**
+     * Читает двоичный снимок.
+     *
+     * @param data содержимое файла снимка
+     * @return задачи и история
+     * @throws FileBackedTaskManager.ManagerLoadException если заголовок, версия или контрольная сумма неверны
+     */
+    static Snapshot decode(byte[] data) {
+        if (data.length < MAGIC.length + 1 + 4
+                || !Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC)) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл не является двоичным снимком");
+        }
+        int bodyLength = data.length - 4;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, bodyLength);
+        int expected = ((data[bodyLength] & 0xFF) << 24) | ((data[bodyLength + 1] & 0xFF) << 16)
+                | ((data[bodyLength + 2] & 0xFF) << 8) | (data[bodyLength + 3] & 0xFF);
+        if ((int) crc.getValue() != expected) {
+            throw new FileBackedTaskManager.ManagerLoadException("Контрольная сумма двоичного снимка не совпадает");
+        }
+
+        Input in = new Input(data, MAGIC.length, bodyLength);
+        int version = in.readByte();
+        if (version != VERSION && version != VERSION_WITH_JOURNAL) {
+            throw new FileBackedTaskManager.ManagerLoadException("Неподдерживаемая версия снимка: " + version);
+        }
+        try {
+            long journalGeneration = version == VERSION_WITH_JOURNAL ? in.readVarLong() : -1;
+            int count = in.readVarInt();
+            List<Task> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tasks.add(readTask(in));
+            }
+            int historySize = in.readVarInt();
+            List<Integer> history = new ArrayList<>(historySize);
+            for (int i = 0; i < historySize; i++) {
+                history.add(in.readVarInt());
+            }
+            if (in.position != bodyLength) {
+                throw new IllegalArgumentException("Лишние данные в конце снимка");
+            }
+            return new Snapshot(tasks, history, journalGeneration);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Повреждённый двоичный снимок", e);
+        }
+    }
+
+    /**
+     * Преобразует снимок из CSV в двоичный формат.
+     *
+     * @param csv    исходный файл CSV
+     * @param binary файл для двоичного снимка; перезаписывается
+     * @throws ManagerSaveException при ошибке записи
+     */
+    public static void convertFromCsv(File csv, File binary) {
+        FileBackedTaskManager source = FileBackedTaskManager.loadFromFile(csv);
+        List<Task> all = new ArrayList<>(source.getAllTasks());
+        all.addAll(source.getAllEpics());
+        all.addAll(source.getAllSubtasks());
+        List<Integer> history = source.getHistory().stream().map(Task::getId).toList();
+        try {
+            Files.write(binary.toPath(), encode(all, history));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи двоичного снимка " + binary.getPath(), e);
+        }
+    }
+
+    /**
+     * Сериализует одну задачу в формате записи снимка (без заголовка и контрольной суммы).
+     *
+     * @param task задача, эпик или подзадача
+     * @return байты записи
+     */
+    static byte[] encodeTask(Task task) {
+        Output out = new Output(64);
+        writeTask(out, task);
+        return Arrays.copyOf(out.buffer, out.size);
+    }
+
+    /**
+     * Читает одну задачу, записанную {@link #encodeTask(Task)}.
+     *
+     * @param data байты записи
+     * @return задача, эпик или подзадача
+     * @throws IllegalArgumentException если запись повреждена
+     */
+    static Task decodeTask(byte[] data) {
+        Input in = new Input(data, 0, data.length);
+        try {
+            Task task = readTask(in);
+            if (in.position != data.length) {
+                throw new IllegalArgumentException("Лишние данные в конце записи");
+            }
+            return task;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Повреждённая запись задачи", e);
+        }
+    }
+
+    private static void writeTask(Output out, Task task) {
+        int tag = task instanceof Epic ? TAG_EPIC : task instanceof Subtask ? TAG_SUBTASK : TAG_TASK;
+        out.writeByte(tag);
+        out.writeVarInt(task.getId());
+        out.writeString(task.getName());
+        out.writeString(task.getDescription());
+        out.writeByte(task.getStatus().ordinal());
+
+        Duration duration = task.getDuration();
+        LocalDateTime startTime = task.getStartTime();
+        // Время эпика вычисляется по подзадачам, хранить его не нужно
+        if (tag == TAG_EPIC) {
+            duration = null;
+            startTime = null;
+        }
+        out.writeByte((duration != null ? HAS_DURATION : 0) | (startTime != null ? HAS_START_TIME : 0));
+        if (duration != null) {
+            out.writeVarLong(duration.toMinutes());
+        }
+        if (startTime != null) {
+            long minutes = Math.floorDiv(startTime.toEpochSecond(ZoneOffset.UTC), 60);
+            out.writeVarLong((minutes << 1) ^ (minutes >> 63)); // zigzag
+        }
+
+        if (tag == TAG_SUBTASK) {
+            out.writeVarInt(((Subtask) task).getEpicId());
+        } else if (tag == TAG_EPIC) {
+            List<Integer> subtaskIds = ((Epic) task).getSubtaskIds();
+            out.writeVarInt(subtaskIds.size());
+            for (int subtaskId : subtaskIds) {
+                out.writeVarInt(subtaskId);
+            }
+        }
+    }
+
+    private static Task readTask(Input in) {
+        int tag = in.readByte();
+        int id = in.readVarInt();
+        String name = in.readString();
+        String description = in.readString();
+        int statusIndex = in.readByte();
+        if (statusIndex >= STATUSES.length) {
+            throw new IllegalArgumentException("Неизвестный статус: " + statusIndex);
+        }
+        Status status = STATUSES[statusIndex];
+        int flags = in.readByte();
+        Duration duration = (flags & HAS_DURATION) != 0 ? Duration.ofMinutes(in.readVarLong()) : null;
+        LocalDateTime startTime = null;
+        if ((flags & HAS_START_TIME) != 0) {
+            long zigzag = in.readVarLong();
+            long minutes = (zigzag >>> 1) ^ -(zigzag & 1);
+            startTime = LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+        }
+
+        switch (tag) {
+            case TAG_TASK:
+                return new Task(id, name, description, status, duration, startTime);
+            case TAG_SUBTASK:
+                return new Subtask(id, name, description, status, in.readVarInt(), duration, startTime);
+            case TAG_EPIC:
+                Epic epic = new Epic(id, name, description);
+                epic.setStatus(status);
+                int subtaskCount = in.readVarInt();
+                for (int i = 0; i < subtaskCount; i++) {
+                    epic.addSubtaskId(in.readVarInt());
+                }
+                return epic;
+            default:
+                throw new IllegalArgumentException("Неизвестный тип записи: " + tag);
+        }
+    }
+
+    // Буфер записи без синхронизации, в отличие от ByteArrayOutputStream
+    private static final class Output {
+        private byte[] buffer;
+        private int size;
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+
+        Input(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        int readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Неожиданный конец снимка");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        int readVarInt() {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Значение вне диапазона int: " + value);
+            }
+            return (int) value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Слишком длинный varint");
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length > limit - position) {
+                throw new IllegalArgumentException("Длина строки выходит за пределы снимка: " + length);
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
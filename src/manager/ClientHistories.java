@@ -0,0 +1,249 @@
+package manager;
+
+import model.Task;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/*
+    Истории просмотров отдельных клиентов. Клиенты распределены по сегментам по хешу имени,
+    у каждого сегмента свой монитор, поэтому просмотры разных клиентов почти не конкурируют.
+    Каждый клиент получает ограниченную историю; история клиента, к которой не обращались
+    дольше idleTimeout, удаляется при следующем обращении к его сегменту.
+    Число клиентов в сегменте тоже ограничено: новый клиент в заполненном сегменте вытесняет
+    самого давнего, поэтому поток запросов с новыми X-Client-Id не занимает память без предела.
+ */
+class ClientHistories {
+    static final int DEFAULT_SHARDS = 16;
+    static final int DEFAULT_CAPACITY = 10;
+    static final int DEFAULT_CLIENTS_PER_SHARD = 256;
+    static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    private final Shard[] shards;
+    private final int clientsPerShard;
+    private final LongSupplier clock;
+    private volatile int capacity;
+    private volatile long idleMillis;
+
+    ClientHistories() {
+        this(DEFAULT_SHARDS, DEFAULT_CLIENTS_PER_SHARD, DEFAULT_CAPACITY, DEFAULT_IDLE_TIMEOUT,
+                System::currentTimeMillis);
+    }
+
+    ClientHistories(int shardCount, int clientsPerShard, int capacity, Duration idleTimeout, LongSupplier clock) {
+        if (clientsPerShard < 1) {
+            throw new IllegalArgumentException("Число клиентов сегмента должно быть положительным: "
+                    + clientsPerShard);
+        }
+        this.clientsPerShard = clientsPerShard;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        this.clock = clock;
+        setLimits(capacity, idleTimeout);
+    }
+
+    /**
+     * Меняет ёмкость историй и время простоя. Новая ёмкость сразу применяется ко всем клиентам.
+     *
+     * @param capacity    наибольшее количество задач в истории клиента, больше 0
+     * @param idleTimeout через сколько без обращений история клиента удаляется
+     */
+    void setLimits(int capacity, Duration idleTimeout) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ёмкость истории клиента должна быть положительной: " + capacity);
+        }
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Время простоя должно быть положительным: " + idleTimeout);
+        }
+        this.capacity = capacity;
+        this.idleMillis = idleTimeout.toMillis();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Partition partition : shard.partitions.values()) {
+                    partition.history.setCapacity(capacity);
+                }
+            }
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    Duration getIdleTimeout() {
+        return Duration.ofMillis(idleMillis);
+    }
+
+    void record(String client, Task task) {
+        Shard shard = shardOf(client);
+        synchronized (shard) {
+            shard.partition(client, true).history.add(task);
+            shard.changes++;
+        }
+    }
+
+    // История клиента в порядке просмотра; пустая, если клиент ничего не смотрел или удалён за простой
+    List<Task> history(String client) {
+        Shard shard = shardOf(client);
+        synchronized (shard) {
+            Partition partition = shard.partition(client, false);
+            return partition == null ? List.of() : partition.history.getHistory();
+        }
+    }
+
+    // Изменения истории клиента после курсора; у нового или удалённого за простой клиента — пустая полная история
+    HistoryDelta changesSince(String client, long since) {
+        Shard shard = shardOf(client);
+        synchronized (shard) {
+            Partition partition = shard.partition(client, false);
+            return partition == null ? HistoryDelta.full(0, List.of()) : partition.history.getChangesSince(since);
+        }
+    }
+
+    // Убирает задачу из историй всех клиентов
+    void remove(int id) {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                if (!shard.partitions.isEmpty()) {
+                    for (Partition partition : shard.partitions.values()) {
+                        partition.history.remove(id);
+                    }
+                    shard.changes++;
+                }
+            }
+        }
+    }
+
+    // Убирает задачи из историй всех клиентов; истории ограничены, поэтому обходятся они, а не id
+    void removeAll(Set<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Partition partition : shard.partitions.values()) {
+                    for (Task task : partition.history.getHistory()) {
+                        if (ids.contains(task.getId())) {
+                            partition.history.remove(task.getId());
+                            shard.changes++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Истории клиентов, не удалённых за простой: клиент → id в порядке просмотра
+    Map<String, List<Integer>> snapshot() {
+        Map<String, List<Integer>> result = new LinkedHashMap<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.evictIdle();
+                for (Map.Entry<String, Partition> entry : shard.partitions.entrySet()) {
+                    List<Task> history = entry.getValue().history.getHistory();
+                    List<Integer> ids = new ArrayList<>(history.size());
+                    for (Task task : history) {
+                        ids.add(task.getId());
+                    }
+                    result.put(entry.getKey(), ids);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Восстанавливает историю клиента; время простоя отсчитывается с момента восстановления
+    void restore(String client, Collection<? extends Task> viewed) {
+        Shard shard = shardOf(client);
+        synchronized (shard) {
+            Partition partition = shard.partition(client, true);
+            for (Task task : viewed) {
+                partition.history.add(task);
+            }
+            shard.changes++;
+        }
+    }
+
+    // Счётчик изменений историй: по нему видно, нужно ли сохранять их заново
+    long version() {
+        long total = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                total += shard.changes;
+            }
+        }
+        return total;
+    }
+
+    int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                total += shard.partitions.size();
+            }
+        }
+        return total;
+    }
+
+    private Shard shardOf(String client) {
+        int h = client.hashCode();
+        return shards[((h ^ (h >>> 16)) & Integer.MAX_VALUE) % shards.length];
+    }
+
+    // История клиента и время последнего обращения к ней
+    private static final class Partition {
+        final HistoryManager history;
+        long lastAccess;
+
+        Partition(int capacity) {
+            this.history = new InMemoryHistoryManager(capacity);
+        }
+    }
+
+    /*
+        Клиенты сегмента в порядке обращения: первым идёт самый давний,
+        поэтому удаление простаивающих историй проверяет только начало списка.
+     */
+    private final class Shard {
+        private final LinkedHashMap<String, Partition> partitions = new LinkedHashMap<>(16, 0.75f, true);
+        private long changes;
+
+        Partition partition(String client, boolean create) {
+            evictIdle();
+            Partition partition = partitions.get(client);
+            if (partition == null && create) {
+                if (partitions.size() >= clientsPerShard) {
+                    // Порядок обращений: первым идёт самый давний клиент
+                    Iterator<Partition> eldest = partitions.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    changes++;
+                }
+                partition = new Partition(capacity);
+                partitions.put(client, partition);
+            }
+            if (partition != null) {
+                partition.lastAccess = clock.getAsLong();
+            }
+            return partition;
+        }
+
+        void evictIdle() {
+            long deadline = clock.getAsLong() - idleMillis;
+            Iterator<Partition> eldest = partitions.values().iterator();
+            while (eldest.hasNext() && eldest.next().lastAccess < deadline) {
+                eldest.remove();
+                changes++;
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатый снимок: данные снимка (CSV или двоичные) делятся на блоки, каждый блок сжимается отдельно.
+ * <pre>
+ * "KSNZ" (4 байта), версия (1 байт), кодек (1 байт: 1 — Deflate, 2 — GZIP), размер блока (int)
+ * блок: длина сжатых данных (int), длина исходных данных (int), сжатые данные
+ * конец: блок с длиной сжатых данных 0
+ * </pre>
+ * Блоки независимы, поэтому при чтении в памяти держится один распакованный блок
+ * и потоковая загрузка CSV работает как с обычным файлом. Длины блоков сверяются с размером
+ * блока из заголовка до выделения буферов, поэтому повреждённый файл не заставит выделить лишнюю память.
+ */
+class CompressedSnapshot {
+    static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+    static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] MAGIC = {'K', 'S', 'N', 'Z'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 2 + 4;
+
+    private CompressedSnapshot() {
+    }
+
+    static boolean isCompressed(File file) throws IOException {
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            return Arrays.equals(input.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Сжимает данные снимка.
+     *
+     * @param data      данные снимка
+     * @param codec     кодек; NONE не допускается
+     * @param blockSize размер исходного блока в байтах, от 1 до {@link #MAX_BLOCK_SIZE}
+     */
+    static byte[] compress(byte[] data, FileBackedTaskManager.SnapshotCodec codec, int blockSize) {
+        if (codec == FileBackedTaskManager.SnapshotCodec.NONE) {
+            throw new IllegalArgumentException("Кодек не выбран");
+        }
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Недопустимый размер блока: " + blockSize);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + HEADER_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        byte[] buffer = new byte[maxCompressedLength(blockSize)];
+        try {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(codec.ordinal());
+            out.writeInt(blockSize);
+            for (int offset = 0; offset < data.length; offset += blockSize) {
+                int length = Math.min(blockSize, data.length - offset);
+                if (codec == FileBackedTaskManager.SnapshotCodec.GZIP) {
+                    ByteArrayOutputStream block = new ByteArrayOutputStream(length / 4 + 32);
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(block)) {
+                        gzip.write(data, offset, length);
+                    }
+                    out.writeInt(block.size());
+                    out.writeInt(length);
+                    block.writeTo(out);
+                } else {
+                    deflater.reset();
+                    deflater.setInput(data, offset, length);
+                    deflater.finish();
+                    int compressed = 0;
+                    while (!deflater.finished()) {
+                        if (compressed == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        }
+                        compressed += deflater.deflate(buffer, compressed, buffer.length - compressed);
+                    }
+                    out.writeInt(compressed);
+                    out.writeInt(length);
+                    out.write(buffer, 0, compressed);
+                }
+            }
+            out.writeInt(0);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сжатия снимка", e); // В памяти не возникает
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Читает кодек из заголовка сжатого снимка.
+     */
+    static FileBackedTaskManager.SnapshotCodec codecOf(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            return readHeader(in).codec;
+        }
+    }
+
+    /**
+     * Открывает поток распакованных данных снимка; блоки распаковываются по мере чтения.
+     *
+     * @throws FileBackedTaskManager.ManagerLoadException если файл не является сжатым снимком
+     */
+    static InputStream open(Path path) throws IOException {
+        DataInputStream in = new DataInputStream(Files.newInputStream(path));
+        try {
+            return new BlockInputStream(in, readHeader(in));
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    // Несжимаемый блок немного вырастает; запас покрывает и заголовок GZIP
+    private static int maxCompressedLength(int blockSize) {
+        return blockSize + blockSize / 8 + 64;
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл не является сжатым снимком");
+        }
+        int version = in.readUnsignedByte();
+        int codec = in.readUnsignedByte();
+        int blockSize = in.readInt();
+        FileBackedTaskManager.SnapshotCodec[] codecs = FileBackedTaskManager.SnapshotCodec.values();
+        if (version != VERSION || codec == 0 || codec >= codecs.length) {
+            throw new FileBackedTaskManager.ManagerLoadException("Неподдерживаемый сжатый снимок: версия "
+                    + version + ", кодек " + codec);
+        }
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new FileBackedTaskManager.ManagerLoadException("Недопустимый размер блока сжатого снимка: "
+                    + blockSize);
+        }
+        return new Header(codecs[codec], blockSize);
+    }
+
+    // Заголовок сжатого снимка
+    private static final class Header {
+        private final FileBackedTaskManager.SnapshotCodec codec;
+        private final int blockSize;
+
+        Header(FileBackedTaskManager.SnapshotCodec codec, int blockSize) {
+            this.codec = codec;
+            this.blockSize = blockSize;
+        }
+    }
+
+    // Поток распакованных блоков
+    private static final class BlockInputStream extends InputStream {
+        private final DataInputStream in;
+        private final FileBackedTaskManager.SnapshotCodec codec;
+        private final int blockSize;
+        private final Inflater inflater = new Inflater();
+        private byte[] compressed = new byte[0];
+        private byte[] block = new byte[0];
+        private int position;
+        private int limit;
+        private boolean finished;
+
+        BlockInputStream(DataInputStream in, Header header) {
+            this.in = in;
+            this.codec = header.codec;
+            this.blockSize = header.blockSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(block, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+
+        // Распаковывает следующий блок, если текущий прочитан
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (finished) {
+                    return false;
+                }
+                int compressedLength;
+                int rawLength;
+                try {
+                    compressedLength = in.readInt();
+                    if (compressedLength == 0) {
+                        finished = true;
+                        return false;
+                    }
+                    rawLength = in.readInt();
+                } catch (EOFException e) {
+                    throw new FileBackedTaskManager.ManagerLoadException("Сжатый снимок обрезан", e);
+                }
+                if (compressedLength < 0 || compressedLength > maxCompressedLength(blockSize)
+                        || rawLength < 0 || rawLength > blockSize) {
+                    throw new FileBackedTaskManager.ManagerLoadException("Повреждён заголовок блока сжатого снимка");
+                }
+                if (compressed.length < compressedLength) {
+                    compressed = new byte[compressedLength];
+                }
+                if (block.length < rawLength) {
+                    block = new byte[rawLength];
+                }
+                in.readFully(compressed, 0, compressedLength);
+                inflate(compressedLength, rawLength);
+                position = 0;
+                limit = rawLength;
+            }
+            return true;
+        }
+
+        private void inflate(int compressedLength, int rawLength) throws IOException {
+            if (codec == FileBackedTaskManager.SnapshotCodec.GZIP) {
+                try (GZIPInputStream gzip = new GZIPInputStream(
+                        new ByteArrayInputStream(compressed, 0, compressedLength))) {
+                    if (gzip.readNBytes(block, 0, rawLength) != rawLength || gzip.read() != -1) {
+                        throw new FileBackedTaskManager.ManagerLoadException("Длина блока не совпадает с заголовком");
+                    }
+                }
+                return;
+            }
+            inflater.reset();
+            inflater.setInput(compressed, 0, compressedLength);
+            try {
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    int count = inflater.inflate(block, inflated, rawLength - inflated);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated == rawLength && !inflater.finished()) {
+                    inflated += inflater.inflate(new byte[1]); // Дочитываем конец потока и контрольную сумму
+                }
+                if (inflated != rawLength || !inflater.finished()) {
+                    throw new FileBackedTaskManager.ManagerLoadException("Длина блока не совпадает с заголовком");
+                }
+            } catch (DataFormatException e) {
+                throw new FileBackedTaskManager.ManagerLoadException("Повреждён блок сжатого снимка", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Потокобезопасный менеджер задач для многопоточного HTTP-сервера.
+ * <p>
+ * Все изменения выполняются под блокировкой записи: проверка пересечений по времени
+ * охватывает задачи всех эпиков, поэтому создание и изменение задач должны быть
+ * согласованы со всем списком приоритетов, а не только с одним эпиком.
+ * Так же гарантируется согласованность подзадач и накопительных показателей эпика.
+ * <p>
+ * Чтение (включая получение задачи по id) выполняется под блокировкой чтения и не мешает
+ * другим читателям. Задачи возвращаются копиями, снятыми под блокировкой, — и по id, и в списках,
+ * истории и списке приоритетов: хранимые объекты меняются писателями на месте, и после снятия
+ * блокировки читать их уже нельзя. Просмотры, которые при чтении попадают в историю, записываются
+ * под отдельным монитором менеджера истории.
+ * <p>
+ * С {@link #enableAsyncViews(int)} чтение не берёт и монитор истории: просмотр кладётся
+ * в кольцевой буфер без блокировок, а к истории пачками применяет их один фоновый поток.
+ * История и изменения сначала применяют все просмотры, сделанные до вызова, поэтому
+ * поток видит в истории свои просмотры, а удалённая задача не возвращается в историю.
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Асинхронная запись просмотров; null — просмотры пишутся в историю при чтении
+    private volatile ViewRingBuffer views;
+    private volatile Thread viewApplier;
+    private final LongAdder recordedViews = new LongAdder();
+    private final LongAdder droppedViews = new LongAdder();
+    // Под монитором истории
+    private final List<Task> viewBatch = new ArrayList<>();
+    private final Set<Integer> batchIds = new HashSet<>();
+    private long coalescedViews;
+    private long appliedViews;
+    private long viewBatches;
+
+    public ConcurrentTaskManager() {
+        super();
+    }
+
+    /**
+     * Создаёт потокобезопасный менеджер поверх хранилища. Пачки передаются хранилищу
+     * под блокировкой записи, поэтому хранилище вызывается из одного потока за раз.
+     *
+     * @param store хранилище задач
+     */
+    public ConcurrentTaskManager(TaskStore store) {
+        super(store);
+    }
+
+    @Override
+    public Collection<Task> getAllTasks() {
+        return withReadLock(() -> copiesOf(super.getAllTasks()));
+    }
+
+    @Override
+    public Collection<Task> getAllSubtasks() {
+        return withReadLock(() -> copiesOf(super.getAllSubtasks()));
+    }
+
+    @Override
+    public Collection<Task> getAllEpics() {
+        return withReadLock(() -> copiesOf(super.getAllEpics()));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return withReadLock(() -> {
+            synchronized (historyManager) {
+                applyViews(true);
+                return copiesOf(super.getHistory());
+            }
+        });
+    }
+
+    @Override
+    public HistoryDelta getHistorySince(long since) {
+        return withReadLock(() -> {
+            synchronized (historyManager) {
+                applyViews(true);
+                return copiesOf(super.getHistorySince(since));
+            }
+        });
+    }
+
+    /**
+     * Переводит запись просмотров в асинхронный режим: чтение кладёт просмотр в кольцевой буфер,
+     * а фоновый поток применяет накопленные просмотры к истории пачками, сливая повторные
+     * просмотры одной задачи. Если буфер заполнен, просмотр отбрасывается и учитывается
+     * в {@link #getViewRecordingStats()}.
+     *
+     * @param bufferCapacity ёмкость буфера, округляется вверх до степени двойки
+     * @throws IllegalStateException если асинхронный режим уже включён
+     */
+    public void enableAsyncViews(int bufferCapacity) {
+        ViewRingBuffer buffer = new ViewRingBuffer(bufferCapacity);
+        withWriteLock(() -> {
+            if (views != null) {
+                throw new IllegalStateException("Асинхронная запись просмотров уже включена");
+            }
+            views = buffer;
+            viewApplier = new Thread(this::applyViewsInBackground, "view-applier");
+            viewApplier.setDaemon(true);
+            viewApplier.start();
+        });
+    }
+
+    // Показатели асинхронной записи просмотров; нули, если режим не включён
+    public ViewRecordingStats getViewRecordingStats() {
+        ViewRingBuffer buffer = views;
+        synchronized (historyManager) {
+            return new ViewRecordingStats(recordedViews.sum(), droppedViews.sum(), coalescedViews, appliedViews,
+                    viewBatches, buffer == null ? 0 : buffer.size());
+        }
+    }
+
+    @Override
+    public void setHistoryCapacity(int capacity) {
+        withWriteLock(() -> super.setHistoryCapacity(capacity));
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        withWriteLock(super::deleteAllTasks);
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        withWriteLock(super::deleteAllSubtasks);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        withWriteLock(super::deleteAllEpics);
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        return withReadLock(() -> copyOrNull(super.getTaskById(id)));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        return withReadLock(() -> copyOrNull(super.getSubtaskById(id)));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        return withReadLock(() -> copyOrNull(super.getEpicById(id)));
+    }
+
+    // Истории клиентов разбиты на сегменты со своими мониторами, поэтому хватает блокировки чтения
+    @Override
+    public Task getTaskById(int id, String client) {
+        return client == null ? getTaskById(id)
+                : withReadLock(() -> copyOrNull(super.getTaskById(id, client)));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id, String client) {
+        return client == null ? getSubtaskById(id)
+                : withReadLock(() -> copyOrNull(super.getSubtaskById(id, client)));
+    }
+
+    @Override
+    public Epic getEpicById(int id, String client) {
+        return client == null ? getEpicById(id)
+                : withReadLock(() -> copyOrNull(super.getEpicById(id, client)));
+    }
+
+    @Override
+    public List<Task> getHistory(String client) {
+        return client == null ? getHistory() : withReadLock(() -> copiesOf(super.getHistory(client)));
+    }
+
+    @Override
+    public HistoryDelta getHistorySince(long since, String client) {
+        return client == null ? getHistorySince(since)
+                : withReadLock(() -> copiesOf(super.getHistorySince(since, client)));
+    }
+
+    @Override
+    public int createTask(Task task) {
+        return withWriteLock(() -> super.createTask(task));
+    }
+
+    @Override
+    public int createSubtask(Subtask subtask) {
+        return withWriteLock(() -> super.createSubtask(subtask));
+    }
+
+    @Override
+    public int createEpic(Epic epic) {
+        return withWriteLock(() -> super.createEpic(epic));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        withWriteLock(() -> super.updateTask(task));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        withWriteLock(() -> super.updateSubtask(subtask));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        withWriteLock(() -> super.updateEpic(epic));
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        withWriteLock(() -> super.deleteTaskById(id));
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        withWriteLock(() -> super.deleteSubtaskById(id));
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        withWriteLock(() -> super.deleteEpicById(id));
+    }
+
+    @Override
+    public void flush() {
+        withWriteLock(super::flush);
+    }
+
+    @Override
+    public void close() {
+        Thread applier = viewApplier;
+        viewApplier = null;
+        if (applier != null) {
+            applier.interrupt();
+            try {
+                applier.join(TimeUnit.NANOSECONDS.toMillis(DRAIN_INTERVAL_NANOS) * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        withWriteLock(super::close); // Оставшиеся просмотры применяются до закрытия хранилища
+    }
+
+    @Override
+    public List<Subtask> getSubtasksByEpicId(int epicId) {
+        return withReadLock(() -> copiesOf(super.getSubtasksByEpicId(epicId)));
+    }
+
+    /**
+     * Возвращает снимок списка приоритетов из копий задач: живое представление индекса
+     * нельзя безопасно обходить параллельно с изменениями.
+     */
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        return withReadLock(() -> Collections.unmodifiableSet(
+                new LinkedHashSet<>(copiesOf(super.getPrioritizedTasks()))));
+    }
+
+    @Override
+    public boolean hasTaskOverlaps(Task newTask) {
+        return withReadLock(() -> super.hasTaskOverlaps(newTask));
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        return withReadLock(() -> copiesOf(super.getOverlappingTasks(task)));
+    }
+
+    /*
+        Просмотры записываются параллельными читателями, поэтому доступ к истории
+        сериализуется монитором менеджера истории. Писатели держат эксклюзивную
+        блокировку и с читателями не пересекаются.
+     */
+    @Override
+    protected void recordView(Task task) {
+        ViewRingBuffer buffer = views;
+        if (buffer == null) {
+            synchronized (historyManager) {
+                super.recordView(task);
+            }
+            return;
+        }
+        if (!buffer.offer(task)) {
+            droppedViews.increment();
+            return;
+        }
+        recordedViews.increment();
+        if (buffer.size() >= buffer.capacity() / 2) {
+            Thread applier = viewApplier;
+            if (applier != null) {
+                LockSupport.unpark(applier); // Не ждать интервала, пока буфер не заполнился
+            }
+        }
+    }
+
+    /*
+        Применяет накопленные просмотры к истории; вызывается под монитором истории
+        и под блокировкой чтения или записи, как и синхронная запись просмотров.
+        Из повторных просмотров задачи внутри пачки применяется последний: порядок истории
+        от этого не меняется.
+     */
+    private void applyViews(boolean complete) {
+        ViewRingBuffer buffer = views;
+        if (buffer == null || buffer.drain(viewBatch, complete) == 0) {
+            return;
+        }
+        try {
+            for (int i = viewBatch.size() - 1; i >= 0; i--) {
+                if (!batchIds.add(viewBatch.get(i).getId())) {
+                    viewBatch.set(i, null);
+                    coalescedViews++;
+                }
+            }
+            for (Task task : viewBatch) {
+                if (task != null) {
+                    super.recordView(task);
+                    appliedViews++;
+                }
+            }
+            viewBatches++;
+        } finally {
+            viewBatch.clear();
+            batchIds.clear();
+        }
+    }
+
+    private void applyViewsInBackground() {
+        while (!Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            lock.readLock().lock();
+            try {
+                synchronized (historyManager) {
+                    applyViews(false);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка применения просмотров к истории: " + e.getMessage());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // Изменение не должно обогнать просмотры, сделанные до него
+    private void applyPendingViews() {
+        if (views != null) {
+            synchronized (historyManager) {
+                applyViews(true);
+            }
+        }
+    }
+
+    // Копия задачи для возврата читателю; вызывается под блокировкой чтения
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> T copyOrNull(T task) {
+        return task == null ? null : (T) copyOf(task);
+    }
+
+    // Копии задач коллекции в её порядке; вызывается под блокировкой чтения
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> List<T> copiesOf(Collection<T> tasks) {
+        List<T> copies = new ArrayList<>(tasks.size());
+        for (T task : tasks) {
+            copies.add((T) copyOf(task));
+        }
+        return copies;
+    }
+
+    private static HistoryDelta copiesOf(HistoryDelta delta) {
+        return new HistoryDelta(delta.getVersion(), delta.isFull(), delta.getRemoved(), copiesOf(delta.getChanged()));
+    }
+
+    private <T> T withReadLock(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T withWriteLock(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            applyPendingViews();
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировкой записи; наследники применяют так составные изменения,
+     * которые читатели не должны видеть частично. Блокировка повторно входимая.
+     */
+    protected void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            applyPendingViews();
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package manager;
+
+/**
+ * Экранирование текстовых полей строки задачи (название и описание).
+ * Строка задачи — одна строка CSV, поэтому запятая и переводы строк внутри поля
+ * заменяются последовательностями: {@code \c} — запятая, {@code \n} и {@code \r} — переводы строк,
+ * {@code \\} — обратная косая черта. После экранирования поле не может разбить строку
+ * на лишние поля или записи журнала.
+ * <p>
+ * Неизвестная последовательность при разборе остаётся как есть, поэтому строки
+ * прежних версий без экранирования читаются так же, как раньше.
+ */
+final class CsvField {
+    private CsvField() {
+    }
+
+    /**
+     * Экранирует поле для записи в строку задачи.
+     *
+     * @param value текст поля
+     * @return текст без запятых и переводов строк
+     */
+    static String escape(String value) {
+        int i = 0;
+        while (i < value.length() && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case ',':
+                    escaped.append("\\c");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Восстанавливает поле, записанное {@link #escape(String)}.
+     *
+     * @param value экранированный текст
+     * @return исходный текст поля
+     */
+    static String unescape(String value) {
+        int i = value.indexOf('\\');
+        if (i < 0) {
+            return value;
+        }
+        return unescape(value.toCharArray(), 0, value.length());
+    }
+
+    // Разбор фрагмента буфера без промежуточной строки
+    static String unescape(char[] chars, int start, int end) {
+        StringBuilder text = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c != '\\' || i + 1 == end) {
+                text.append(c);
+                continue;
+            }
+            char next = chars[i + 1];
+            switch (next) {
+                case '\\':
+                    text.append('\\');
+                    break;
+                case 'c':
+                    text.append(',');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                default:
+                    text.append(c).append(next); // Строка прежней версии
+            }
+            i++;
+        }
+        return text.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '\\' || c == ',' || c == '\n' || c == '\r';
+    }
+}
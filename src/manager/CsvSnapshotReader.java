@@ -0,0 +1,362 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Потоковое чтение снимка CSV.
+ * Файл читается блоками в переиспользуемый буфер, поля строки разбираются прямо в нём:
+ * числа, даты, тип и статус не создают промежуточных строк, новые объекты — только
+ * название и описание, которые становятся частью задачи. Пиковая память не зависит от размера файла.
+ * <p>
+ * Если включён учёт смещений ({@link #trackByteOffsets()}), для каждой строки известно её положение
+ * в файле в байтах UTF-8, а для задачи — положение описания: так описание можно не держать в памяти
+ * и прочитать из файла позже.
+ */
+class CsvSnapshotReader implements Closeable {
+    private static final int FIELD_COUNT = 8;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final Status[] STATUSES = Status.values();
+
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+
+    private char[] line = new char[256];
+    private int lineLength;
+    private final int[] fieldStart = new int[FIELD_COUNT];
+    private final int[] fieldEnd = new int[FIELD_COUNT];
+    private long lineNumber;
+    private boolean trackOffsets;
+    private long bytesRead; // Байт UTF-8 в прочитанных строках, включая переводы строк
+    private long lineOffset; // Смещение текущей строки в файле
+
+    CsvSnapshotReader(Path path) throws IOException {
+        this(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+    }
+
+    CsvSnapshotReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Читает следующую строку в буфер строки (без перевода строки).
+     *
+     * @return false, если файл закончился
+     */
+    boolean nextLine() throws IOException {
+        lineLength = 0;
+        boolean any = false;
+        boolean newline = false;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (any) {
+                        break;
+                    }
+                    return false;
+                }
+            }
+            any = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            append(start, position);
+            if (position < limit) {
+                position++; // Пропускаем '\n'
+                newline = true;
+                break;
+            }
+        }
+        if (trackOffsets) {
+            lineOffset = bytesRead;
+            bytesRead += utf8Length(0, lineLength) + (newline ? 1 : 0);
+        }
+        if (lineLength > 0 && line[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * Включает учёт смещений строк в байтах. Вызывается до чтения первой строки.
+     */
+    void trackByteOffsets() {
+        this.trackOffsets = true;
+    }
+
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    // Строка пустая совсем — разделитель задач и истории
+    boolean isEmptyLine() {
+        return lineLength == 0;
+    }
+
+    // Строка из одних пробелов пропускается, как и раньше
+    boolean isBlankLine() {
+        return trimStart(0, lineLength) == lineLength;
+    }
+
+    String lineAsString() {
+        return new String(line, 0, lineLength);
+    }
+
+    /**
+     * Разбирает текущую строку в задачу.
+     *
+     * @throws IllegalArgumentException если строка некорректна
+     */
+    Task parseTask() {
+        return parseTask(true);
+    }
+
+    /**
+     * Разбирает текущую строку в задачу.
+     *
+     * @param withDescription false — описание не читается, в задаче остаётся пустая строка;
+     *                        его положение в файле возвращают {@link #descriptionOffset()} и {@link #descriptionLength()}
+     * @throws IllegalArgumentException если строка некорректна
+     */
+    Task parseTask(boolean withDescription) {
+        try {
+            splitFields();
+            int id = parseInt(0);
+            Status status = parseStatus(3);
+            String name = text(2);
+            String description = withDescription ? text(4) : "";
+            Duration duration = isEmpty(6) ? null : Duration.ofMinutes(parseLong(6));
+            LocalDateTime startTime = isEmpty(7) ? null : parseDateTime(7);
+
+            if (fieldEquals(1, "TASK")) {
+                return new Task(id, name, description, status, duration, startTime);
+            }
+            if (fieldEquals(1, "SUBTASK")) {
+                if (isEmpty(5)) {
+                    throw new IllegalArgumentException("Для подзадачи отсутствует epicId");
+                }
+                return new Subtask(id, name, description, status, parseInt(5), duration, startTime);
+            }
+            if (fieldEquals(1, "EPIC")) {
+                Epic epic = new Epic(id, name, description);
+                epic.setStatus(status);
+                addSubtaskIds(epic);
+                epic.setStartTime(startTime);
+                epic.setDuration(duration);
+                return epic;
+            }
+            throw new IllegalArgumentException("Неизвестный тип задачи: " + field(1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Ошибка парсинга задачи из строки " + lineNumber + ": "
+                    + lineAsString(), e);
+        }
+    }
+
+    /**
+     * Разбирает в текущей строке только id; положение описания доступно так же, как после {@link #parseTask(boolean)}.
+     */
+    int parseId() {
+        splitFields();
+        return parseInt(0);
+    }
+
+    // Смещение описания последней разобранной задачи в файле; нужен учёт смещений
+    long descriptionOffset() {
+        return lineOffset + utf8Length(0, fieldStart[4]);
+    }
+
+    // Длина описания последней разобранной задачи в байтах UTF-8
+    int descriptionLength() {
+        return utf8Length(fieldStart[4], fieldEnd[4]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void append(int from, int to) {
+        int length = to - from;
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(buffer, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    // Находит границы первых восьми полей; лишние запятые попадают в последнее поле, как при split
+    private void splitFields() {
+        int field = 0;
+        int start = 0;
+        for (int i = 0; i < lineLength && field < FIELD_COUNT - 1; i++) {
+            if (line[i] == ',') {
+                setField(field++, start, i);
+                start = i + 1;
+            }
+        }
+        if (field < FIELD_COUNT - 1) {
+            throw new IllegalArgumentException("Некорректная строка задачи: ожидалось " + FIELD_COUNT + " полей");
+        }
+        int end = start;
+        while (end < lineLength && line[end] != ',') {
+            end++;
+        }
+        setField(field, start, end);
+    }
+
+    private void setField(int index, int start, int end) {
+        start = trimStart(start, end);
+        while (end > start && Character.isWhitespace(line[end - 1])) {
+            end--;
+        }
+        fieldStart[index] = start;
+        fieldEnd[index] = end;
+    }
+
+    private int trimStart(int start, int end) {
+        while (start < end && Character.isWhitespace(line[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private boolean isEmpty(int index) {
+        return fieldStart[index] == fieldEnd[index];
+    }
+
+    private String field(int index) {
+        return new String(line, fieldStart[index], fieldEnd[index] - fieldStart[index]);
+    }
+
+    // Текстовое поле с разбором экранирования, см. CsvField
+    private String text(int index) {
+        int start = fieldStart[index];
+        int end = fieldEnd[index];
+        for (int i = start; i < end; i++) {
+            if (line[i] == '\\') {
+                return CsvField.unescape(line, start, end);
+            }
+        }
+        return new String(line, start, end - start);
+    }
+
+    private boolean fieldEquals(int index, String value) {
+        int start = fieldStart[index];
+        int length = fieldEnd[index] - start;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (line[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Status parseStatus(int index) {
+        for (Status status : STATUSES) {
+            if (fieldEquals(index, status.name())) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный статус: " + field(index));
+    }
+
+    private int parseInt(int index) {
+        return Math.toIntExact(parseLong(fieldStart[index], fieldEnd[index]));
+    }
+
+    private long parseLong(int index) {
+        return parseLong(fieldStart[index], fieldEnd[index]);
+    }
+
+    private long parseLong(int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException("Пустое число");
+        }
+        boolean negative = line[start] == '-';
+        int i = negative || line[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            throw new NumberFormatException("Некорректное число: " + new String(line, start, end - start));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Некорректное число: " + new String(line, start, end - start));
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10), digit);
+        }
+        return negative ? -value : value;
+    }
+
+    // Формат "dd.MM.yyyy HH:mm" разбирается по позициям; иначе — через DateTimeFormatter
+    private LocalDateTime parseDateTime(int index) {
+        int s = fieldStart[index];
+        if (fieldEnd[index] - s == 16 && line[s + 2] == '.' && line[s + 5] == '.'
+                && line[s + 10] == ' ' && line[s + 13] == ':') {
+            return LocalDateTime.of(
+                    (int) parseLong(s + 6, s + 10),
+                    (int) parseLong(s + 3, s + 5),
+                    (int) parseLong(s, s + 2),
+                    (int) parseLong(s + 11, s + 13),
+                    (int) parseLong(s + 14, s + 16));
+        }
+        return LocalDateTime.parse(field(index), DATE_TIME_FORMATTER);
+    }
+
+    // Длина фрагмента строки в кодировке UTF-8
+    private int utf8Length(int from, int to) {
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = line[i];
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(line[i + 1])) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void addSubtaskIds(Epic epic) {
+        int start = fieldStart[5];
+        int end = fieldEnd[5];
+        int idStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || line[i] == ';') {
+                if (i > idStart) {
+                    epic.addSubtaskId(Math.toIntExact(parseLong(idStart, i)));
+                }
+                idStart = i + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package manager;
+
+import model.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Потоковая запись снимка CSV в канал. Строки пишутся через переиспользуемый буфер,
+ * поэтому снимок целиком в памяти не собирается. Ленивое описание задачи
+ * ({@link LazyDescriptionFile}) переносится из прежнего снимка диапазоном байт,
+ * без чтения в кучу и без повторного экранирования.
+ * <p>
+ * Для каждой записанной задачи известно положение её описания в выходных данных:
+ * по нему задачи переводятся на ленивые описания из нового снимка.
+ */
+class CsvSnapshotWriter {
+    static final String HEADER = "id,type,name,status,description,epic,duration,startTime";
+    static final String JOURNAL_GENERATION_FIELD = "journal="; // Поле заголовка в режиме журнала
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long written; // Байт, переданных в канал или лежащих в буфере
+    private long descriptionOffset;
+    private int descriptionLength;
+
+    CsvSnapshotWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * Пишет заголовок снимка.
+     *
+     * @param journalGeneration поколение журнала, вошедшее в снимок; -1 — снимок не в режиме журнала
+     */
+    void writeHeader(long journalGeneration) throws IOException {
+        write(journalGeneration < 0 ? HEADER : HEADER + ',' + JOURNAL_GENERATION_FIELD + journalGeneration);
+        write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Пишет строку задачи. Ленивое описание копируется из своего снимка без чтения в память.
+     */
+    void writeTask(Task task) throws IOException {
+        write(FileBackedTaskManager.fieldsBeforeDescription(task));
+        descriptionOffset = written;
+        if (LazyDescriptionFile.isDeferred(task)) {
+            drain();
+            descriptionLength = LazyDescriptionFile.transferEscapedDescription(task, out);
+            written += descriptionLength;
+        } else {
+            byte[] description = CsvField.escape(task.getDescription()).getBytes(StandardCharsets.UTF_8);
+            write(description);
+            descriptionLength = description.length;
+        }
+        write(FileBackedTaskManager.fieldsAfterDescription(task));
+        write(LINE_SEPARATOR);
+    }
+
+    // Смещение описания последней записанной задачи в байтах от начала снимка
+    long descriptionOffset() {
+        return descriptionOffset;
+    }
+
+    // Длина описания последней записанной задачи в байтах UTF-8, как оно записано
+    int descriptionLength() {
+        return descriptionLength;
+    }
+
+    /**
+     * Пишет пустую строку и строку истории, затем сбрасывает буфер в канал.
+     */
+    void finish(List<Integer> history) throws IOException {
+        write(LINE_SEPARATOR);
+        StringBuilder line = new StringBuilder(history.size() * 6);
+        for (int i = 0; i < history.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(history.get(i));
+        }
+        write(line.toString());
+        write(LINE_SEPARATOR);
+        drain();
+    }
+
+    private void write(String text) throws IOException {
+        write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+        written += bytes.length;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,105 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище в формате снимка CSV, совместимом с FileBackedTaskManager:
+ * после каждой пачки файл перезаписывается целиком и атомарно заменяет прежний.
+ * Стоимость записи — O(всех задач), зато файл читается прежними версиями.
+ */
+class CsvTaskStore implements TaskStore {
+    private final File file;
+    // Текущее состояние в порядке записи снимка: задачи, эпики, подзадачи
+    private final Map<Integer, Task> tasks = new LinkedHashMap<>();
+    private final Map<Integer, Task> epics = new LinkedHashMap<>();
+    private final Map<Integer, Task> subtasks = new LinkedHashMap<>();
+
+    CsvTaskStore(File file) {
+        if (file == null) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл не может быть null");
+        }
+        this.file = file;
+    }
+
+    @Override
+    public List<Integer> scan(Consumer<Task> sink) {
+        List<Integer> history = new ArrayList<>();
+        if (!file.exists() || file.length() == 0) {
+            return history;
+        }
+        try (CsvSnapshotReader reader = new CsvSnapshotReader(file.toPath())) {
+            reader.nextLine(); // Заголовок
+            while (reader.nextLine()) {
+                if (reader.isEmptyLine()) {
+                    if (reader.nextLine()) {
+                        for (String id : reader.lineAsString().split(",")) {
+                            if (!id.isBlank()) {
+                                history.add(Integer.parseInt(id.trim()));
+                            }
+                        }
+                    }
+                    break;
+                }
+                if (!reader.isBlankLine()) {
+                    Task task = reader.parseTask();
+                    mapOf(task).put(task.getId(), task);
+                    sink.accept(task);
+                }
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения из файла " + file.getPath(), e);
+        }
+        return history;
+    }
+
+    @Override
+    public void write(Batch batch) {
+        for (int id : batch.getRemoves()) {
+            if (tasks.remove(id) == null && subtasks.remove(id) == null) {
+                epics.remove(id);
+            }
+        }
+        for (Task task : batch.getPuts()) {
+            mapOf(task).put(task.getId(), task);
+        }
+
+        List<Task> all = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        all.addAll(tasks.values());
+        all.addAll(epics.values());
+        all.addAll(subtasks.values());
+        List<Integer> history = batch.getHistory();
+        try {
+            // Тот же кодировщик, что у снимков FileBackedTaskManager
+            FileBackedTaskManager.writeAtomically(file.toPath(), channel -> FileBackedTaskManager.writeCsvSnapshot(
+                    channel, all, history, -1, null, null), false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи снимка " + file.getPath(), e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Каждая пачка записывается до возврата из write
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Map<Integer, Task> mapOf(Task task) {
+        if (task instanceof Epic) {
+            return epics;
+        }
+        return task instanceof Subtask ? subtasks : tasks;
+    }
+}
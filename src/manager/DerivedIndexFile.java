@@ -0,0 +1,104 @@
+package manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Файл производного индекса рядом со снимком (суффикс .idx): порядок списка приоритетов
+ * на момент записи снимка. С ним загрузка строит дерево приоритетов без сортировки.
+ * <pre>
+ * "KIDX" (4 байта), версия (int), длина снимка (long), время изменения снимка (long),
+ * количество (int), id задач в порядке приоритета (int), CRC32 предыдущих байт (int)
+ * </pre>
+ * Индекс считается устаревшим, если снимок изменился после его записи; тогда он игнорируется.
+ * Перед записью нового снимка индекс удаляется, поэтому сбой между записью снимка
+ * и индекса не оставляет устаревший индекс.
+ */
+class DerivedIndexFile {
+    private static final byte[] MAGIC = {'K', 'I', 'D', 'X'};
+    private static final int VERSION = 1;
+
+    private DerivedIndexFile() {
+    }
+
+    static File of(File snapshot) {
+        return new File(snapshot.getPath() + ".idx");
+    }
+
+    /**
+     * Записывает индекс для только что записанного снимка.
+     *
+     * @param snapshot         файл снимка
+     * @param prioritizedOrder id задач в порядке приоритета
+     * @throws IOException при ошибке записи
+     */
+    static void write(File snapshot, List<Integer> prioritizedOrder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + prioritizedOrder.size() * 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshot.length());
+        out.writeLong(snapshot.lastModified());
+        out.writeInt(prioritizedOrder.size());
+        for (int id : prioritizedOrder) {
+            out.writeInt(id);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        Files.write(of(snapshot).toPath(), bytes.toByteArray());
+    }
+
+    /**
+     * Читает индекс, если он есть и соответствует снимку.
+     *
+     * @param snapshot файл снимка
+     * @return порядок приоритетов или null, если индекса нет, он повреждён или устарел
+     */
+    static List<Integer> read(File snapshot) {
+        File file = of(snapshot);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            if (data.length < MAGIC.length + 4 + 8 + 8 + 4 + 4) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length - 4);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC) || in.readInt() != VERSION
+                    || in.readLong() != snapshot.length() || in.readLong() != snapshot.lastModified()) {
+                return null;
+            }
+            int count = in.readInt();
+            if (count < 0 || data.length != MAGIC.length + 4 + 8 + 8 + 4 + count * 4L + 4) {
+                return null;
+            }
+            List<Integer> order = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                order.add(in.readInt());
+            }
+            return in.readInt() == (int) crc.getValue() ? order : null;
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать индекс " + file.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static void delete(File snapshot) throws IOException {
+        Files.deleteIfExists(of(snapshot).toPath());
+    }
+}
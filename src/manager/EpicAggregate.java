@@ -0,0 +1,132 @@
+package manager;
+
+import model.Status;
+import model.Subtask;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Накопительные показатели эпика по его подзадачам: количество подзадач в каждом статусе,
+ * суммарная продолжительность, самое раннее начало и самое позднее окончание.
+ * Добавление, изменение и удаление подзадачи обновляют показатели за O(log k),
+ * без повторного обхода всех подзадач эпика.
+ * <p>
+ * Для каждой подзадачи запоминается её вклад на момент добавления, поэтому
+ * корректно удаляется даже подзадача, объект которой уже был изменён снаружи.
+ */
+class EpicAggregate {
+    private final Map<Integer, Contribution> contributions = new HashMap<>();
+    private final int[] statusCounts = new int[Status.values().length];
+    private Duration totalDuration = Duration.ZERO;
+    // Мультимножества времён начала и окончания: значение — число подзадач с таким временем
+    private final TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+
+    // Вклад одной подзадачи в показатели эпика
+    private static class Contribution {
+        final Status status;
+        final Duration duration;
+        final LocalDateTime startTime;
+        final LocalDateTime endTime;
+
+        Contribution(Subtask subtask) {
+            this.status = subtask.getStatus();
+            this.duration = subtask.getDuration();
+            this.startTime = subtask.getStartTime();
+            this.endTime = subtask.getEndTime();
+        }
+    }
+
+    /**
+     * Учитывает подзадачу в показателях. Если подзадача уже учтена, её прежний вклад заменяется.
+     *
+     * @param subtask подзадача эпика
+     */
+    void put(Subtask subtask) {
+        remove(subtask.getId());
+        Contribution contribution = new Contribution(subtask);
+        contributions.put(subtask.getId(), contribution);
+
+        statusCounts[contribution.status.ordinal()]++;
+        if (contribution.duration != null) {
+            totalDuration = totalDuration.plus(contribution.duration);
+        }
+        if (contribution.startTime != null) {
+            startTimes.merge(contribution.startTime, 1, Integer::sum);
+        }
+        if (contribution.endTime != null) {
+            endTimes.merge(contribution.endTime, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Исключает подзадачу из показателей.
+     *
+     * @param subtaskId идентификатор подзадачи
+     */
+    void remove(int subtaskId) {
+        Contribution contribution = contributions.remove(subtaskId);
+        if (contribution == null) {
+            return;
+        }
+
+        statusCounts[contribution.status.ordinal()]--;
+        if (contribution.duration != null) {
+            totalDuration = totalDuration.minus(contribution.duration);
+        }
+        if (contribution.startTime != null) {
+            decrement(startTimes, contribution.startTime);
+        }
+        if (contribution.endTime != null) {
+            decrement(endTimes, contribution.endTime);
+        }
+    }
+
+    void clear() {
+        contributions.clear();
+        Arrays.fill(statusCounts, 0);
+        totalDuration = Duration.ZERO;
+        startTimes.clear();
+        endTimes.clear();
+    }
+
+    int size() {
+        return contributions.size();
+    }
+
+    /**
+     * Рассчитывает статус эпика:
+     * NEW — подзадач нет или все новые, DONE — все завершены, иначе IN_PROGRESS.
+     */
+    Status getStatus() {
+        int total = contributions.size();
+        if (total == 0 || statusCounts[Status.NEW.ordinal()] == total) {
+            return Status.NEW;
+        }
+        if (statusCounts[Status.DONE.ordinal()] == total) {
+            return Status.DONE;
+        }
+        return Status.IN_PROGRESS;
+    }
+
+    Duration getDuration() {
+        return totalDuration;
+    }
+
+    LocalDateTime getStartTime() {
+        return startTimes.isEmpty() ? null : startTimes.firstKey();
+    }
+
+    LocalDateTime getEndTime() {
+        return endTimes.isEmpty() ? null : endTimes.lastKey();
+    }
+
+    private static void decrement(TreeMap<LocalDateTime, Integer> counts, LocalDateTime key) {
+        counts.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+}
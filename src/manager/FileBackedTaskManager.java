@@ -5,29 +5,131 @@ import model.Status;
 import model.Subtask;
 import model.Task;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * FileBackedTaskManager расширяет InMemoryTaskManager, добавляя функциональность сохранения в файл.
  * Автоматически сохраняет состояние задач в указанный файл после каждого изменения.
+ * Изменения приходят от InMemoryTaskManager пачками хранилища ({@link TaskStore.Batch}),
+ * как и у других хранилищ; менеджер сохраняет пачку выбранным способом.
+ * <p>
+ * В режиме {@link PersistenceMode#JOURNAL} после изменения в журнал (файл с суффиксом .log)
+ * дописывается одна запись, а полный снимок пишется только при вызове {@link #save()}.
+ * Снимок хранит поколение журнала, записи которого в него уже вошли (см. {@link TaskJournal}),
+ * поэтому при сбое между заменой снимка и очисткой журнала старые записи не применяются повторно.
+ * <p>
+ * Момент записи на диск задаётся {@link PersistencePolicy}: по умолчанию каждое изменение
+ * записывается до возврата из метода, в режиме журнала можно включить групповую запись
+ * в фоновом потоке. Накопленные изменения гарантированно сбрасываются {@link #flush()} и {@link #close()}.
+ * <p>
+ * В режиме журнала снимок можно записать в фоне ({@link #snapshotAsync()}): изменяющий поток
+ * только копирует состояние и переносит журнал в файл .log.prev, а сериализация и запись
+ * снимка идут в отдельном потоке. После атомарной замены снимка файл .log.prev удаляется.
+ * При сбое до замены загрузка применяет к старому снимку оба журнала, .log.prev и .log.
+ * <p>
+ * В режиме {@link PersistenceMode#RECORDS} файл хранит задачи в слотах фиксированного размера
+ * ({@link TaskRecordFile}): изменение переписывает только слоты изменённой задачи,
+ * просмотр — восемь байт в слоте просмотренной задачи. {@link #save()} в этом режиме
+ * переписывает файл целиком без свободных слотов.
+ * <p>
+ * Для больших досок описания задач можно не держать в памяти ({@link #enableLazyDescriptions(int)}):
+ * задача хранит смещение описания в снимке CSV, а описание читается при обращении через небольшой кэш.
+ * После каждого снимка, записанного в вызывающем потоке, смещения переносятся на новый файл.
+ * <p>
+ * Архив изменений ({@link #enableMutationArchive(int)}) хранит все изменения с номерами и временем
+ * и периодические контрольные снимки. По нему доска восстанавливается на любой момент в прошлом
+ * ({@link #restoreAsOf(long, File)}) или открывается только для чтения ({@link #openAsOf(long)}),
+ * не затрагивая текущее состояние.
+ * <p>
+ * Истории клиентов ({@link #getTaskById(int, String)}) сохраняются рядом со снимком вместе с ним,
+ * а также при {@link #flush()} и {@link #close()}.
  */
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
     private final File file;
+    private final PersistenceMode mode;
+    private final TaskJournal journal;
+    private final PersistencePolicy policy;
+    private final GroupCommitWriter writer;
+    private final File previousJournalFile; // Журнал, записи которого переносятся в фоновый снимок
+    private ExecutorService snapshotExecutor; // Создаётся при первом фоновом снимке
+    private CompletableFuture<SnapshotStats> pendingSnapshot;
+    private volatile SnapshotStats snapshotStats = SnapshotStats.empty();
+    private long compactionThreshold; // 0 — автоматическое сжатие журнала выключено
+    private long recordsSinceSnapshot;
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private SnapshotCodec snapshotCodec = SnapshotCodec.NONE;
+    private int loadParallelism = 1; // Потоков разбора снимка CSV при загрузке
+    private boolean persistDerivedIndexes; // Записывать порядок приоритетов рядом со снимком
+    private TaskRecordFile records; // Режим RECORDS: открывается при загрузке или первой записи
+    private int descriptionCacheSize; // 0 — описания хранятся в задачах
+    private LazyDescriptionFile descriptions; // Снимок, из которого читаются описания задач
+    private MutationArchive archive; // null — архив изменений выключен
+    private long savedClientVersion; // Версия историй клиентов в файле .clients
+    private long snapshotJournalGeneration = -1; // Поколение журнала, вошедшее в загруженный снимок
+    private boolean replaying; // Применяется запись журнала или архива: она уже сохранена
     private static final DateTimeFormatter DATE_TIME_FORMATTER =
             DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
     private static final DateTimeFormatter TEST_FORMATTER = // Добавлен для тестов
             DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
+    /**
+     * Способ сохранения изменений.
+     */
+    public enum PersistenceMode {
+        SNAPSHOT, // Полная перезапись файла после каждого изменения
+        JOURNAL, // Запись изменения в журнал, снимок — по вызову save()
+        RECORDS // Перезапись только слотов изменённых задач в файле записей
+    }
+
+    /**
+     * Формат файла снимка. При загрузке формат определяется по содержимому файла.
+     */
+    public enum SnapshotFormat {
+        CSV, // Текстовый формат, совместимый с прежними версиями
+        BINARY // Двоичный формат, см. BinarySnapshotFormat
+    }
+
+    /**
+     * Сжатие файла снимка. При загрузке сжатие определяется по содержимому файла.
+     * Порядок констант — коды кодеков в заголовке сжатого снимка, его нельзя менять.
+     */
+    public enum SnapshotCodec {
+        NONE, // Без сжатия
+        DEFLATE, // Deflate (zlib) по блокам, см. CompressedSnapshot
+        GZIP // GZIP по блокам: каждый блок — отдельный член GZIP
+    }
+
     /**
      * Конструктор создает новый FileBackedTaskManager, использующий указанный файл для хранения.
      *
@@ -35,10 +137,60 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @throws ManagerLoadException если файл равен null
      */
     public FileBackedTaskManager(File file) {
+        this(file, PersistenceMode.SNAPSHOT);
+    }
+
+    /**
+     * Конструктор создает новый FileBackedTaskManager с указанным способом сохранения.
+     *
+     * @param file файл для сохранения снимка данных задач
+     * @param mode способ сохранения изменений
+     * @throws ManagerLoadException если файл или режим равен null
+     */
+    public FileBackedTaskManager(File file, PersistenceMode mode) {
+        this(file, mode, PersistencePolicy.everyOperation());
+    }
+
+    /**
+     * Конструктор создает новый FileBackedTaskManager с указанным способом и политикой сохранения.
+     * Отложенная запись поддерживается только в режиме журнала.
+     * В режиме записей файл создаётся заново при первом изменении.
+     *
+     * @param file   файл для сохранения снимка данных задач
+     * @param mode   способ сохранения изменений
+     * @param policy политика записи изменений на диск
+     * @throws ManagerLoadException     если файл, режим или политика равны null
+     * @throws IllegalArgumentException если отложенная запись запрошена не в режиме журнала
+     */
+    public FileBackedTaskManager(File file, PersistenceMode mode, PersistencePolicy policy) {
+        this(new FileStore(), file, mode, policy);
+    }
+
+    // Хранилище создаётся до менеджера и получает ссылку на него сразу после вызова конструктора родителя
+    private FileBackedTaskManager(FileStore store, File file, PersistenceMode mode, PersistencePolicy policy) {
+        super(store);
+        store.manager = this;
         if (file == null) {
             throw new ManagerLoadException("Файл не может быть null");
         }
+        if (mode == null) {
+            throw new ManagerLoadException("Режим сохранения не может быть null");
+        }
+        if (policy == null) {
+            throw new ManagerLoadException("Политика сохранения не может быть null");
+        }
+        if (mode != PersistenceMode.JOURNAL && policy.isWriteBehind()) {
+            throw new IllegalArgumentException("Отложенная запись поддерживается только в режиме журнала: " + policy);
+        }
         this.file = file;
+        this.mode = mode;
+        this.policy = policy;
+        this.journal = new TaskJournal(new File(file.getPath() + ".log"));
+        if (mode == PersistenceMode.JOURNAL) {
+            journal.setGeneration(0);
+        }
+        this.writer = mode == PersistenceMode.JOURNAL ? new GroupCommitWriter(journal, policy) : null;
+        this.previousJournalFile = new File(file.getPath() + ".log.prev");
     }
 
     /**
@@ -62,45 +214,724 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @return новый FileBackedTaskManager с восстановленным состоянием
      */
     public static FileBackedTaskManager loadFromFile(File file) {
-        if (!file.exists()) {
+        return loadFromFile(file, PersistenceMode.SNAPSHOT);
+    }
+
+    /**
+     * Восстанавливает менеджер из снимка и, в режиме журнала, применяет к нему записи журнала.
+     *
+     * @param file файл со снимком данных задач
+     * @param mode способ сохранения изменений
+     * @return новый FileBackedTaskManager с восстановленным состоянием
+     */
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode) {
+        return loadFromFile(file, mode, PersistencePolicy.everyOperation());
+    }
+
+    /**
+     * Восстанавливает менеджер с указанной политикой записи изменений.
+     *
+     * @param file   файл со снимком данных задач
+     * @param mode   способ сохранения изменений
+     * @param policy политика записи изменений на диск
+     * @return новый FileBackedTaskManager с восстановленным состоянием
+     */
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, PersistencePolicy policy) {
+        return loadFromFile(file, mode, policy, 1);
+    }
+
+    /**
+     * Восстанавливает менеджер, разбирая снимок CSV в несколько потоков.
+     * Задачи применяются в порядке файла, поэтому результат совпадает с последовательной загрузкой.
+     * Двоичный снимок и журнал читаются последовательно.
+     *
+     * @param file        файл со снимком данных задач
+     * @param mode        способ сохранения изменений
+     * @param policy      политика записи изменений на диск
+     * @param parallelism количество потоков разбора; 1 — последовательная загрузка
+     * @return новый FileBackedTaskManager с восстановленным состоянием
+     * @throws IllegalArgumentException если parallelism меньше 1
+     */
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, PersistencePolicy policy,
+                                                     int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Количество потоков загрузки должно быть положительным: " + parallelism);
+        }
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, mode, policy);
+        manager.loadParallelism = parallelism;
+        manager.restore();
+        return manager;
+    }
+
+    /**
+     * Восстанавливает менеджер из снимка CSV, не загружая описания задач в память.
+     * Двоичный снимок и записи журнала загружаются с описаниями.
+     *
+     * @param file      файл со снимком данных задач
+     * @param mode      способ сохранения изменений; режим записей не поддерживается
+     * @param cacheSize сколько прочитанных описаний держать в памяти
+     * @return новый FileBackedTaskManager с восстановленным состоянием
+     * @see #enableLazyDescriptions(int)
+     */
+    public static FileBackedTaskManager loadWithLazyDescriptions(File file, PersistenceMode mode, int cacheSize) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, mode);
+        manager.enableLazyDescriptions(cacheSize);
+        manager.restore();
+        return manager;
+    }
+
+    // Проверяет файлы и загружает состояние менеджера
+    private void restore() {
+        boolean hasJournal = mode == PersistenceMode.JOURNAL
+                && (journal.getFile().exists() || previousJournalFile.exists());
+        if (!file.exists() && !hasJournal) {
             throw new ManagerSaveException("Файл не существует: " + file.getPath());
         }
-        if (!file.canRead()) {
+        if (file.exists() && !file.canRead()) {
             throw new ManagerSaveException("Невозможно прочитать файл: " + file.getPath());
         }
 
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
-        manager.load();
-        return manager;
+        loadHistoryCapacity();
+        load();
+        loadClientHistories();
+        if (previousJournalFile.exists()) {
+            save(); // Фоновый снимок не был дописан — объединяем журналы в новый снимок
+        }
     }
 
     /**
-     * Сохраняет текущее состояние всех задач в файл в формате CSV.
+     * Сохраняет текущее состояние всех задач в файл в выбранном формате (по умолчанию CSV).
+     * Снимок пишется во временный файл и атомарно заменяет прежний.
+     * В режиме журнала после записи снимка журнал очищается.
+     * В режиме записей файл записей переписывается без свободных слотов.
      *
      * @throws ManagerSaveException при ошибках записи в файл
      */
     protected void save() {
+        saveClientHistories();
+        if (mode == PersistenceMode.RECORDS) {
+            compactRecords();
+            return;
+        }
+        awaitPendingSnapshot(); // Иначе фоновый снимок может заменить более новый
+        try {
+            writeSnapshotFile(snapshotTasks(), historyIds(historyManager), prioritizedIds(), true,
+                    journal.getGeneration());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Save failed", e);
+        }
+
+        if (mode == PersistenceMode.JOURNAL) {
+            writer.flush(); // Фоновый поток не должен дописать старые записи после очистки
+            journal.truncate();
+            deletePreviousJournal();
+            recordsSinceSnapshot = 0;
+        }
+    }
+
+    // Эпики пишутся раньше подзадач, чтобы порядок в файле совпадал с порядком восстановления
+    private void compactRecords() {
+        List<Task> all = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        all.addAll(epics.values());
+        all.addAll(tasks.values());
+        all.addAll(subtasks.values());
+        if (records == null) {
+            records = TaskRecordFile.create(file, policy.isFsync());
+        }
+        records.compact(all, historyIds(historyManager));
+    }
+
+    // Задачи менеджера в порядке снимка: эпики раньше подзадач
+    private List<Task> snapshotTasks() {
+        List<Task> all = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        all.addAll(tasks.values());
+        all.addAll(epics.values());
+        all.addAll(subtasks.values());
+        return all;
+    }
+
+    /*
+        Сериализует задачи в выбранном формате; эпики должны идти раньше своих подзадач.
+        Старый индекс удаляется до замены снимка, новый пишется после неё.
+        Снимок CSV без сжатия пишется в файл потоком: ленивые описания переносятся из прежнего снимка
+        диапазонами байт, поэтому пиковая память не зависит от объёма описаний.
+        live — в списке сами задачи менеджера, а не копии: их описания переносятся на новый снимок.
+        journalGeneration — последнее поколение журнала, вошедшее в снимок; -1 вне режима журнала.
+     */
+    private void writeSnapshotFile(List<Task> all, List<Integer> history, List<Integer> prioritizedOrder,
+                                   boolean live, long journalGeneration) throws IOException {
+        SnapshotCodec codec = snapshotCodec;
+        DerivedIndexFile.delete(file);
+        if (snapshotFormat == SnapshotFormat.CSV && codec == SnapshotCodec.NONE) {
+            long[] offsets = new long[all.size()];
+            int[] lengths = new int[all.size()];
+            writeAtomically(file.toPath(), channel -> writeCsvSnapshot(channel, all, history, journalGeneration,
+                    offsets, lengths), policy.isFsync());
+            if (live && descriptionCacheSize > 0) {
+                rebindDescriptions(all, offsets, lengths);
+            }
+        } else {
+            byte[] data = encodeSnapshot(all, history, journalGeneration);
+            byte[] stored = codec == SnapshotCodec.NONE ? data
+                    : CompressedSnapshot.compress(data, codec, CompressedSnapshot.DEFAULT_BLOCK_SIZE);
+            writeAtomically(file.toPath(), stored, policy.isFsync());
+        }
+        if (persistDerivedIndexes) {
+            DerivedIndexFile.write(file, prioritizedOrder);
+        }
+    }
+
+    // Данные снимка в выбранном формате, без сжатия
+    private byte[] encodeSnapshot(List<Task> all, List<Integer> history, long journalGeneration) {
+        if (snapshotFormat == SnapshotFormat.BINARY) {
+            return BinarySnapshotFormat.encode(all, history, journalGeneration);
+        }
+        ByteArrayOutputStream csv = new ByteArrayOutputStream(64 + all.size() * 64);
         try {
-            List<String> lines = new ArrayList<>();
-            lines.add("id,type,name,status,description,epic,duration,startTime");
+            writeCsvSnapshot(Channels.newChannel(csv), all, history, journalGeneration, null, null);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи снимка", e); // В памяти не возникает
+        }
+        return csv.toByteArray();
+    }
 
-            // Сериализация задач
-            for (Task task : tasks.values()) {
-                lines.add(taskToString(task));
+    /*
+        Пишет снимок CSV в канал. Если offsets не null, в offsets и lengths попадает положение
+        описания каждой задачи в записанных данных — по нему задачи переходят на новый снимок.
+     */
+    static void writeCsvSnapshot(WritableByteChannel channel, List<Task> all, List<Integer> history,
+                                 long journalGeneration, long[] offsets, int[] lengths) throws IOException {
+        CsvSnapshotWriter csv = new CsvSnapshotWriter(channel);
+        csv.writeHeader(journalGeneration);
+        for (int i = 0; i < all.size(); i++) {
+            csv.writeTask(all.get(i));
+            if (offsets != null) {
+                offsets[i] = csv.descriptionOffset();
+                lengths[i] = csv.descriptionLength();
+            }
+        }
+        csv.finish(history);
+    }
+
+    // Снимок в выбранном формате и со сжатием, как его записал бы save()
+    private byte[] storedSnapshot() {
+        byte[] data = encodeSnapshot(snapshotTasks(), historyIds(historyManager), -1);
+        return snapshotCodec == SnapshotCodec.NONE ? data
+                : CompressedSnapshot.compress(data, snapshotCodec, CompressedSnapshot.DEFAULT_BLOCK_SIZE);
+    }
+
+    /*
+        Направляет описания задач в только что записанный снимок по смещениям, известным после записи.
+        Прежний снимок закрывается: описания удалённых задач после этого недоступны.
+     */
+    private void rebindDescriptions(List<Task> all, long[] offsets, int[] lengths) throws IOException {
+        LazyDescriptionFile next = new LazyDescriptionFile(file, descriptionCacheSize);
+        for (int i = 0; i < all.size(); i++) {
+            next.defer(all.get(i), offsets[i], lengths[i]);
+        }
+        LazyDescriptionFile previous = descriptions;
+        descriptions = next;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    // Id задач из списка приоритетов в его порядке
+    private List<Integer> prioritizedIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (Task task : getPrioritizedTasks()) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
+    // Пишет данные во временный файл рядом с целевым и атомарно переименовывает его
+    static void writeAtomically(Path target, byte[] data, boolean fsync) throws IOException {
+        writeAtomically(target, channel -> {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
             }
-            for (Epic epic : epics.values()) {
-                lines.add(taskToString(epic));
+        }, fsync);
+    }
+
+    // Содержимое файла, которое пишется в канал временного файла
+    @FunctionalInterface
+    interface FileContent {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    // То же, но содержимое пишется в канал временного файла по частям
+    static void writeAtomically(Path target, FileContent content, boolean fsync) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            content.writeTo(channel);
+            if (fsync) {
+                channel.force(true);
             }
-            for (Subtask subtask : subtasks.values()) {
-                lines.add(taskToString(subtask));
+        }
+        try {
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Записывает снимок текущего состояния в фоновом потоке.
+     * Изменяющий поток блокируется только на копирование задач и перенос журнала;
+     * изменения, сделанные после вызова, пишутся в новый журнал и в снимок не попадают.
+     * Если предыдущий фоновый снимок ещё пишется, метод сначала дожидается его.
+     *
+     * @return результат записи снимка с обновлёнными показателями
+     * @throws IllegalStateException в режиме снимка, где файл и так перезаписывается при каждом изменении
+     */
+    public CompletableFuture<SnapshotStats> snapshotAsync() {
+        if (mode != PersistenceMode.JOURNAL) {
+            throw new IllegalStateException("Фоновый снимок доступен только в режиме журнала");
+        }
+        awaitPendingSnapshot();
+
+        long captureStart = System.nanoTime();
+        writer.flush();
+        long journalGeneration = journal.getGeneration(); // Перенесённые записи войдут в снимок
+        journal.rotate(previousJournalFile);
+        recordsSinceSnapshot = 0;
+        List<Task> capturedTasks = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        for (Task task : tasks.values()) {
+            capturedTasks.add(copyOf(task));
+        }
+        for (Epic epic : epics.values()) {
+            capturedTasks.add(copyOf(epic));
+        }
+        for (Subtask subtask : subtasks.values()) {
+            capturedTasks.add(copyOf(subtask));
+        }
+        List<Integer> history = historyIds(historyManager);
+        List<Integer> prioritizedOrder = persistDerivedIndexes ? prioritizedIds() : List.of();
+        Duration capture = Duration.ofNanos(System.nanoTime() - captureStart);
+
+        if (snapshotExecutor == null) {
+            snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer-" + file.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        pendingSnapshot = CompletableFuture.supplyAsync(
+                () -> writeSnapshot(capturedTasks, history, prioritizedOrder, capture, journalGeneration),
+                snapshotExecutor);
+        return pendingSnapshot;
+    }
+
+    // Выполняется в фоновом потоке и работает только с копиями задач
+    private SnapshotStats writeSnapshot(List<Task> capturedTasks, List<Integer> history,
+                                        List<Integer> prioritizedOrder, Duration capture, long journalGeneration) {
+        long start = System.nanoTime();
+        try {
+            writeSnapshotFile(capturedTasks, history, prioritizedOrder, false, journalGeneration);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи фонового снимка", e);
+        }
+        deletePreviousJournal();
+        Duration write = Duration.ofNanos(System.nanoTime() - start);
+        snapshotStats = snapshotStats.withSnapshot(file.length(), capture, write);
+        return snapshotStats;
+    }
+
+    // Дожидается фонового снимка; ошибка его записи пробрасывается вызывающему
+    private void awaitPendingSnapshot() {
+        if (pendingSnapshot == null) {
+            return;
+        }
+        CompletableFuture<SnapshotStats> snapshot = pendingSnapshot;
+        pendingSnapshot = null;
+        try {
+            snapshot.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ManagerSaveException cause) {
+                throw cause;
             }
+            throw new ManagerSaveException("Ошибка записи фонового снимка", e.getCause());
+        }
+    }
 
-            lines.add("");
-            lines.add(historyToString(historyManager));
+    private void deletePreviousJournal() {
+        try {
+            Files.deleteIfExists(previousJournalFile.toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка удаления журнала " + previousJournalFile.getPath(), e);
+        }
+    }
+
+    /**
+     * Включает автоматическое сжатие журнала: когда после последнего снимка накопится
+     * указанное количество записей, запускается фоновый снимок.
+     *
+     * @param records порог в записях журнала; 0 выключает сжатие
+     */
+    public void setCompactionThreshold(long records) {
+        if (records < 0) {
+            throw new IllegalArgumentException("Порог сжатия не может быть отрицательным: " + records);
+        }
+        this.compactionThreshold = records;
+    }
 
-            Files.write(file.toPath(), lines);
+    /**
+     * Включает ленивые описания: задачи хранят не описание, а его положение в снимке CSV,
+     * и описание читается из файла при вызове getDescription(). Прочитанные описания
+     * держатся в кэше LRU указанного размера. Уже загруженные задачи переходят
+     * на ленивые описания при следующем снимке.
+     * <p>
+     * Описание задачи, удалённой из менеджера, доступно только до следующего снимка,
+     * описания всех задач — до закрытия менеджера.
+     *
+     * @param cacheSize сколько прочитанных описаний держать в памяти, больше 0
+     * @throws IllegalStateException в режиме записей, где задачи читаются из файла записей целиком
+     */
+    public void enableLazyDescriptions(int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Размер кэша описаний должен быть положительным: " + cacheSize);
+        }
+        if (mode == PersistenceMode.RECORDS) {
+            throw new IllegalStateException("Ленивые описания недоступны в режиме записей");
+        }
+        this.descriptionCacheSize = cacheSize;
+    }
+
+    // Снимок, из которого читаются описания; null, пока ленивые описания не использовались
+    LazyDescriptionFile getDescriptionFile() {
+        return descriptions;
+    }
+
+    /**
+     * Включает архив изменений (файлы с суффиксом .archive): каждое изменение и просмотр
+     * дописываются в архив с номером и временем, а через каждые checkpointInterval записей
+     * пишется контрольный снимок. Архив не очищается снимками и журналом.
+     * <p>
+     * Архив нужно включать при каждом открытии файла: изменения, сделанные без него,
+     * в архив не попадут. При включении пустого архива записывается снимок текущего состояния —
+     * с него начинается восстановление.
+     *
+     * @param checkpointInterval через сколько записей писать контрольный снимок, больше 0;
+     *                           восстановление применяет к снимку не больше этого числа записей
+     */
+    public void enableMutationArchive(int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Интервал контрольных снимков должен быть положительным: "
+                    + checkpointInterval);
+        }
+        if (archive != null) {
+            throw new IllegalStateException("Архив изменений уже включён");
+        }
+        archive = new MutationArchive(file, checkpointInterval, policy.isFsync());
+        if (archive.isEmpty()) {
+            archive.checkpoint(storedSnapshot());
+        }
+    }
+
+    // Номер последней записи архива изменений; накопленные просмотры сначала дописываются в архив
+    public long getArchiveSequence() {
+        requireArchive();
+        storeViews();
+        return archive.getSequence();
+    }
+
+    /**
+     * Открывает доску в состоянии после записи архива с указанным номером.
+     * Состояние строится из ближайшего контрольного снимка и следующих за ним записей;
+     * текущий менеджер не меняется. Возвращённый менеджер только читает: изменения
+     * отклоняются, а просмотры не попадают в его историю.
+     *
+     * @param sequence номер записи архива, от начала архива до {@link #getArchiveSequence()}
+     * @throws IllegalArgumentException если номер вне архива
+     */
+    public TaskManager openAsOf(long sequence) {
+        requireArchive();
+        storeViews();
+        if (sequence > archive.getSequence()) {
+            throw new IllegalArgumentException("Запись " + sequence + " ещё не сделана, последняя — "
+                    + archive.getSequence());
+        }
+        return viewAt(sequence, Long.MAX_VALUE);
+    }
+
+    /**
+     * Открывает доску в состоянии на указанный момент: применены все записи архива,
+     * сделанные не позже него.
+     *
+     * @param moment момент времени не раньше включения архива
+     * @throws IllegalArgumentException если архив начинается позже
+     * @see #openAsOf(long)
+     */
+    public TaskManager openAsOf(Instant moment) {
+        requireArchive();
+        storeViews();
+        return viewAt(Long.MAX_VALUE, moment.toEpochMilli());
+    }
+
+    /**
+     * Записывает снимок доски в состоянии после записи архива с указанным номером.
+     * Файл загружается обычным {@link #loadFromFile(File)}.
+     *
+     * @param sequence номер записи архива
+     * @param target   файл для снимка; не должен совпадать с файлом менеджера
+     */
+    public void restoreAsOf(long sequence, File target) {
+        writeRestored((FileBackedTaskManager) openAsOf(sequence), target);
+    }
+
+    /**
+     * Записывает снимок доски в состоянии на указанный момент.
+     *
+     * @param moment момент времени не раньше включения архива
+     * @param target файл для снимка; не должен совпадать с файлом менеджера
+     */
+    public void restoreAsOf(Instant moment, File target) {
+        writeRestored((FileBackedTaskManager) openAsOf(moment), target);
+    }
+
+    private MutationArchive requireArchive() {
+        if (archive == null) {
+            throw new IllegalStateException("Архив изменений не включён");
+        }
+        return archive;
+    }
+
+    private FileBackedTaskManager viewAt(long sequence, long time) {
+        MutationArchive.Checkpoint checkpoint = requireArchive().checkpointBefore(sequence, time);
+        FileBackedTaskManager view = new PointInTimeView(archive.checkpointFile(checkpoint));
+        view.restore();
+        archive.replay(checkpoint, sequence, time, view::applyJournalRecord);
+        return view;
+    }
+
+    private void writeRestored(FileBackedTaskManager view, File target) {
+        if (target.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+            throw new IllegalArgumentException("Восстановленный снимок нельзя записать в файл менеджера");
+        }
+        try {
+            writeAtomically(target.toPath(), view.storedSnapshot(), false);
         } catch (IOException e) {
-            throw new ManagerSaveException("Save failed", e);
+            throw new ManagerSaveException("Ошибка записи восстановленного снимка", e);
+        }
+    }
+
+    // Дописывает записи пачки в архив; контрольный снимок пишется только на границе пачки
+    private void archive(List<String> records) {
+        archive.append(records);
+        if (archive.needsCheckpoint()) {
+            archive.checkpoint(storedSnapshot());
+        }
+    }
+
+    /**
+     * Выбирает формат, в котором будут записываться следующие снимки.
+     * Менеджер, загруженный из файла, сохраняет формат этого файла.
+     *
+     * @param format формат снимка
+     */
+    public void setSnapshotFormat(SnapshotFormat format) {
+        this.snapshotFormat = Objects.requireNonNull(format, "Формат снимка не может быть null");
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    /**
+     * Выбирает сжатие следующих снимков. Снимок сжимается блоками, поэтому загрузка
+     * остаётся потоковой; параллельная загрузка и ленивые описания для сжатого снимка
+     * не используются. Менеджер, загруженный из сжатого файла, сохраняет его сжатие.
+     *
+     * @param codec кодек; NONE — без сжатия
+     */
+    public void setSnapshotCodec(SnapshotCodec codec) {
+        this.snapshotCodec = Objects.requireNonNull(codec, "Кодек снимка не может быть null");
+    }
+
+    public SnapshotCodec getSnapshotCodec() {
+        return snapshotCodec;
+    }
+
+    /**
+     * Включает запись производного индекса (порядка списка приоритетов) рядом со снимком,
+     * чтобы при загрузке не сортировать задачи заново.
+     *
+     * @param persist true — записывать индекс при каждом снимке
+     */
+    public void setPersistDerivedIndexes(boolean persist) {
+        this.persistDerivedIndexes = persist;
+    }
+
+    /**
+     * Ограничивает историю просмотров и сохраняет ёмкость рядом со снимком (суффикс .history),
+     * чтобы загрузка применяла её при восстановлении истории. Ёмкость записывается сразу,
+     * а не вместе со следующим снимком, и одинаково действует во всех режимах сохранения.
+     *
+     * @param capacity наибольшее количество задач в истории, 0 — без ограничения
+     * @throws ManagerSaveException при ошибке записи
+     */
+    @Override
+    public void setHistoryCapacity(int capacity) {
+        super.setHistoryCapacity(capacity);
+        Path settings = historyCapacityFile().toPath();
+        try {
+            if (capacity == InMemoryHistoryManager.UNBOUNDED) {
+                Files.deleteIfExists(settings);
+            } else {
+                writeAtomically(settings, (capacity + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                        policy.isFsync());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи ёмкости истории", e);
+        }
+    }
+
+    private File historyCapacityFile() {
+        return new File(file.getPath() + ".history");
+    }
+
+    private File clientHistoryFile() {
+        return new File(file.getPath() + ".clients");
+    }
+
+    /*
+        Истории клиентов пишутся рядом со снимком (суффикс .clients) строками "клиент,id,id,…",
+        имя клиента в URL-кодировке. Файл переписывается, только если истории изменились.
+     */
+    private void saveClientHistories() {
+        long version = clientHistories.version();
+        if (version == savedClientVersion) {
+            return;
+        }
+        Map<String, List<Integer>> histories = clientHistories.snapshot();
+        Path target = clientHistoryFile().toPath();
+        try {
+            if (histories.isEmpty()) {
+                Files.deleteIfExists(target);
+            } else {
+                StringBuilder text = new StringBuilder(histories.size() * 64);
+                for (Map.Entry<String, List<Integer>> entry : histories.entrySet()) {
+                    text.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8));
+                    for (int id : entry.getValue()) {
+                        text.append(',').append(id);
+                    }
+                    text.append(System.lineSeparator());
+                }
+                writeAtomically(target, text.toString().getBytes(StandardCharsets.UTF_8), policy.isFsync());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи историй клиентов", e);
+        }
+        savedClientVersion = version;
+    }
+
+    private void loadClientHistories() {
+        File source = clientHistoryFile();
+        if (source.exists()) {
+            try {
+                for (String line : Files.readAllLines(source.toPath(), StandardCharsets.UTF_8)) {
+                    String[] parts = line.split(",");
+                    if (parts[0].isEmpty()) {
+                        continue;
+                    }
+                    List<Task> viewed = new ArrayList<>(parts.length - 1);
+                    for (int i = 1; i < parts.length; i++) {
+                        Task task = findAnyTask(Integer.parseInt(parts[i]));
+                        if (task != null) {
+                            viewed.add(task);
+                        }
+                    }
+                    clientHistories.restore(URLDecoder.decode(parts[0], StandardCharsets.UTF_8), viewed);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                throw new ManagerLoadException("Ошибка чтения историй клиентов " + source.getPath(), e);
+            }
+        }
+        savedClientVersion = clientHistories.version();
+    }
+
+    // Сохранённая ёмкость истории применяется до загрузки, чтобы лишние просмотры вытеснялись сразу
+    private void loadHistoryCapacity() {
+        File settings = historyCapacityFile();
+        if (!settings.exists()) {
+            return;
+        }
+        try {
+            super.setHistoryCapacity(Integer.parseInt(Files.readString(settings.toPath()).trim()));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ManagerLoadException("Некорректная ёмкость истории в " + settings.getPath(), e);
+        }
+    }
+
+    /**
+     * Возвращает показатели снимков и последней загрузки.
+     */
+    public SnapshotStats getSnapshotStats() {
+        return snapshotStats;
+    }
+
+    /*
+        Дожидается записи на диск всех пачек, принятых к моменту вызова; вызывается из flush()
+        после передачи накопленных просмотров. При синхронной политике изменения уже записаны.
+        Ошибка фоновой записи журнала пробрасывается как ManagerSaveException.
+     */
+    private void flushFiles() {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (records != null) {
+            records.sync();
+        }
+        saveClientHistories();
+    }
+
+    /**
+     * Возвращает показатели записи журнала или, в режиме записей, файла записей.
+     * В режиме снимка все показатели нулевые.
+     */
+    public PersistenceStats getPersistenceStats() {
+        if (records != null) {
+            return records.getStats();
+        }
+        if (writer == null) {
+            return new PersistenceStats(0, 0, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+        }
+        return writer.getStats();
+    }
+
+    /*
+        Закрывает журнал и файлы; вызывается из close() после flush().
+        Менеджер в режиме снимка ресурсов не держит.
+     */
+    private void closeFiles() {
+        try {
+            awaitPendingSnapshot();
+        } finally {
+            if (snapshotExecutor != null) {
+                snapshotExecutor.shutdown();
+            }
+        }
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            if (records != null) {
+                records.close();
+            }
+            if (descriptions != null) {
+                descriptions.close();
+            }
+            if (archive != null) {
+                archive.close();
+            }
+            saveClientHistories();
+            journal.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия журнала", e);
         }
     }
 
@@ -123,41 +954,202 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @throws ManagerLoadException при ошибках чтения файла
      */
     private void load() {
+        if (mode == PersistenceMode.RECORDS) {
+            loadRecords();
+            return;
+        }
+        loadSnapshot();
+        if (mode == PersistenceMode.JOURNAL) {
+            long start = System.nanoTime();
+            long covered = snapshotJournalGeneration;
+            TaskJournal previous = new TaskJournal(previousJournalFile);
+            long records = previous.replay(this::applyJournalRecord, covered);
+            records += journal.replay(this::applyJournalRecord, covered);
+            journal.setGeneration(Math.max(Math.max(covered, previous.getFileGeneration()) + 1,
+                    journal.getFileGeneration()));
+            recordsSinceSnapshot = records;
+            snapshotStats = snapshotStats.withReplay(records, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /*
+        Файл записей читается целиком одним проходом. Снимок CSV или двоичный
+        загружается как обычно и сразу переписывается в файл записей.
+     */
+    private void loadRecords() {
         try {
-            List<String> lines = Files.readAllLines(file.toPath());
-            if (lines.isEmpty()) return;
-
-            // Разделяем задачи и историю
-            int separatorIndex = lines.indexOf("");
-            List<String> taskLines = separatorIndex == -1
-                    ? lines
-                    : lines.subList(0, separatorIndex);
-
-            // Пропускаем заголовок и обрабатываем задачи
-            for (int i = 1; i < taskLines.size(); i++) {
-                String line = taskLines.get(i).trim();
-                if (!line.isEmpty()) {
-                    Task task = fromString(line);
-                    if (task != null) {
-                        addRestoredTask(task);
-                    }
-                }
+            if (file.length() == 0 || !TaskRecordFile.isRecordFile(file)) {
+                loadSnapshot();
+                compactRecords();
+                return;
             }
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения из файла", e);
+        }
+        long start = System.nanoTime();
+        long[] loaded = {0};
+        records = TaskRecordFile.open(file, policy.isFsync(), contents -> {
+            for (Task task : contents.tasks) {
+                addRestoredTask(task);
+            }
+            for (int id : contents.history) {
+                historyManager.add(findAnyTask(id));
+            }
+            loaded[0] = contents.tasks.size();
+        });
+        rebuildIndexes(null);
+        snapshotStats = snapshotStats.withLoad(loaded[0], file.length(), Duration.ofNanos(System.nanoTime() - start),
+                false);
+    }
 
-            // Восстанавливаем историю просмотров
-            if (separatorIndex != -1 && separatorIndex + 1 < lines.size()) {
-                String historyLine = lines.get(separatorIndex + 1).trim();
-                if (!historyLine.isEmpty()) {
-                    restoreHistory(historyLine);
-                }
+    private void loadSnapshot() {
+        if (!file.exists()) {
+            return; // В режиме журнала снимка может ещё не быть
+        }
+        long start = System.nanoTime();
+        long loaded;
+        try {
+            if (CompressedSnapshot.isCompressed(file)) {
+                snapshotCodec = CompressedSnapshot.codecOf(file);
+                loaded = loadCompressedSnapshot();
+            } else if (BinarySnapshotFormat.isBinary(file)) {
+                snapshotFormat = SnapshotFormat.BINARY;
+                loaded = loadBinarySnapshot();
+            } else {
+                loaded = loadCsvSnapshot();
             }
         } catch (IOException e) {
             throw new ManagerLoadException("Ошибка чтения из файла", e);
         }
+        // Индексы строятся один раз после чтения всех задач, а не при каждой вставке
+        boolean usedSavedIndex = rebuildIndexes(DerivedIndexFile.read(file));
+        snapshotStats = snapshotStats.withLoad(loaded, file.length(), Duration.ofNanos(System.nanoTime() - start),
+                usedSavedIndex);
+    }
+
+    /*
+        Снимок читается потоково: задачи создаются по мере чтения строк,
+        файл целиком в память не загружается. Первая строка — заголовок,
+        первая пустая строка отделяет задачи от строки истории.
+     */
+    private long loadCsvSnapshot() throws IOException {
+        boolean lazy = descriptionCacheSize > 0;
+        if (loadParallelism > 1 && !lazy) {
+            return loadCsvSnapshotInParallel();
+        }
+        if (lazy) {
+            descriptions = new LazyDescriptionFile(file, descriptionCacheSize);
+        }
+        try (CsvSnapshotReader reader = new CsvSnapshotReader(file.toPath())) {
+            return readCsvSnapshot(reader, lazy);
+        }
+    }
+
+    // lazy — описания не читаются, задачи получают их смещения в файле снимка
+    private long readCsvSnapshot(CsvSnapshotReader reader, boolean lazy) throws IOException {
+        if (lazy) {
+            reader.trackByteOffsets();
+        }
+        if (!reader.nextLine()) {
+            return 0;
+        }
+        snapshotJournalGeneration = journalGenerationOf(reader.lineAsString());
+        long loaded = 0;
+        while (reader.nextLine()) {
+            if (reader.isEmptyLine()) {
+                // Восстанавливаем историю просмотров
+                if (reader.nextLine()) {
+                    String historyLine = reader.lineAsString().trim();
+                    if (!historyLine.isEmpty()) {
+                        restoreHistory(historyLine);
+                    }
+                }
+                break;
+            }
+            if (!reader.isBlankLine()) {
+                Task task = reader.parseTask(!lazy);
+                if (lazy) {
+                    descriptions.defer(task, reader.descriptionOffset(), reader.descriptionLength());
+                }
+                addRestoredTask(task);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /*
+        Сжатый снимок распаковывается потоком по блокам. Формат содержимого определяется
+        по первым байтам распакованных данных; описания всегда загружаются в память,
+        потому что смещения в сжатом файле не соответствуют данным.
+     */
+    private long loadCompressedSnapshot() throws IOException {
+        try (BufferedInputStream in = new BufferedInputStream(CompressedSnapshot.open(file.toPath()))) {
+            in.mark(BinarySnapshotFormat.MAGIC.length);
+            boolean binary = Arrays.equals(in.readNBytes(BinarySnapshotFormat.MAGIC.length),
+                    BinarySnapshotFormat.MAGIC);
+            in.reset();
+            if (binary) {
+                snapshotFormat = SnapshotFormat.BINARY;
+                return restoreBinarySnapshot(in.readAllBytes());
+            }
+            return readCsvSnapshot(new CsvSnapshotReader(new InputStreamReader(in, StandardCharsets.UTF_8)), false);
+        }
+    }
+
+    private long loadCsvSnapshotInParallel() throws IOException {
+        try (CsvSnapshotReader header = new CsvSnapshotReader(file.toPath())) {
+            if (header.nextLine()) {
+                snapshotJournalGeneration = journalGenerationOf(header.lineAsString());
+            }
+        }
+        long[] loaded = {0};
+        String historyLine = ParallelCsvLoader.load(file.toPath(), loadParallelism, task -> {
+            addRestoredTask(task);
+            loaded[0]++;
+        });
+        if (historyLine != null && !historyLine.trim().isEmpty()) {
+            restoreHistory(historyLine.trim());
+        }
+        return loaded[0];
+    }
+
+    // Поколение журнала из заголовка снимка CSV; -1, если снимок записан не в режиме журнала
+    private static long journalGenerationOf(String header) {
+        int field = header.lastIndexOf(',' + CsvSnapshotWriter.JOURNAL_GENERATION_FIELD);
+        if (field < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.substring(field + 1 + CsvSnapshotWriter.JOURNAL_GENERATION_FIELD.length())
+                    .trim());
+        } catch (NumberFormatException e) {
+            throw new ManagerLoadException("Некорректный заголовок снимка: " + header, e);
+        }
+    }
+
+    private long loadBinarySnapshot() throws IOException {
+        return restoreBinarySnapshot(Files.readAllBytes(file.toPath()));
+    }
+
+    private long restoreBinarySnapshot(byte[] data) {
+        BinarySnapshotFormat.Snapshot snapshot = BinarySnapshotFormat.decode(data);
+        snapshotJournalGeneration = snapshot.journalGeneration;
+        for (Task task : snapshot.tasks) {
+            addRestoredTask(task);
+        }
+        for (int id : snapshot.history) {
+            Task task = findAnyTask(id);
+            if (task != null) {
+                historyManager.add(task);
+            }
+        }
+        return snapshot.tasks.size();
     }
 
     /**
-     * Добавляет восстановленную задачу в соответствующую коллекцию.
+     * Добавляет восстановленную задачу из снимка в соответствующую коллекцию.
+     * Индексы строятся после загрузки всего снимка.
      *
      * @param task задача для восстановления
      * @throws IllegalArgumentException если данные задачи некорректны
@@ -166,24 +1158,171 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         if (tasks.containsKey(task.getId()) || epics.containsKey(task.getId()) || subtasks.containsKey(task.getId())) {
             throw new ManagerLoadException("Задача с ID " + task.getId() + " уже существует");
         }
-        if (task instanceof Epic) {
-            Epic epic = (Epic) task;
-            epics.put(epic.getId(), epic);
-        } else if (task instanceof Subtask) {
-            Subtask subtask = (Subtask) task;
-            validateSubtask(subtask);
-            subtasks.put(subtask.getId(), subtask);
-            epics.get(subtask.getEpicId()).addSubtaskId(subtask.getId());
-        } else {
-            tasks.put(task.getId(), task);
+        if (task instanceof Subtask) {
+            validateSubtask((Subtask) task);
         }
+        stageRestoredTask(task);
+    }
 
-        // Обновляем счетчик ID
-        if (nextId <= task.getId()) {
-            nextId = task.getId() + 1;
+    /*
+        Записи журнала — по одной строке на изменение:
+        U,<строка задачи в формате CSV> — задача, эпик или подзадача создана или изменена
+        D,<id> — удалена задача, подзадача или эпик (вместе с подзадачами)
+        C,<TASK|SUBTASK|EPIC> — удалены все задачи указанного типа; пишется прежними версиями,
+        теперь удаление всех задач записывается записью D на каждый id
+        V,<id> — задача просмотрена (перемещается в конец истории)
+     */
+    private static final String UPSERT = "U";
+    private static final String DELETE = "D";
+    private static final String CLEAR = "C";
+    private static final String VIEW = "V";
+
+    /**
+     * Применяет запись журнала к состоянию менеджера при загрузке.
+     * Запись уже сохранена, поэтому пачки, которые порождает её применение, не записываются.
+     *
+     * @param record строка журнала
+     */
+    private void applyJournalRecord(String record) {
+        replaying = true;
+        try {
+            applyRecord(record);
+        } finally {
+            replaying = false;
         }
     }
 
+    private void applyRecord(String record) {
+        int comma = record.indexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Некорректная запись журнала: " + record);
+        }
+        String kind = record.substring(0, comma);
+        String payload = record.substring(comma + 1);
+        switch (kind) {
+            case UPSERT:
+                Task task = fromString(payload);
+                if (task instanceof Subtask) {
+                    validateSubtask((Subtask) task);
+                }
+                putRestoredTask(task);
+                break;
+            case DELETE:
+                int id = Integer.parseInt(payload);
+                if (tasks.containsKey(id)) {
+                    super.deleteTaskById(id);
+                } else if (subtasks.containsKey(id)) {
+                    super.deleteSubtaskById(id);
+                } else if (epics.containsKey(id)) {
+                    super.deleteEpicById(id);
+                }
+                break;
+            case CLEAR:
+                switch (payload) {
+                    case "TASK":
+                        super.deleteAllTasks();
+                        break;
+                    case "SUBTASK":
+                        super.deleteAllSubtasks();
+                        break;
+                    case "EPIC":
+                        super.deleteAllEpics();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Неизвестный тип задачи: " + payload);
+                }
+                break;
+            case VIEW:
+                Task viewed = findAnyTask(Integer.parseInt(payload));
+                if (viewed != null) {
+                    historyManager.add(viewed);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестный тип записи журнала: " + kind);
+        }
+    }
+
+    // Ищет запись с указанным id среди задач, эпиков и подзадач
+    private Task findAnyTask(int id) {
+        Task task = tasks.get(id);
+        if (task == null) task = epics.get(id);
+        if (task == null) task = subtasks.get(id);
+        return task;
+    }
+
+    /*
+        Сохраняет пачку изменений: в режиме снимка перезаписывает файл целиком, в режиме журнала
+        дописывает записи вместе с просмотрами, в режиме записей переписывает слоты изменённых задач.
+        Пачка из одних просмотров в режиме снимка файл не перезаписывает: история попадёт в следующий снимок.
+     */
+    private void writeBatch(TaskStore.Batch batch) {
+        if (replaying) {
+            return;
+        }
+        boolean changed = !batch.getPuts().isEmpty() || !batch.getRemoves().isEmpty();
+        if (!changed && batch.getViews().isEmpty()) {
+            return;
+        }
+        List<String> journalRecords = mode == PersistenceMode.JOURNAL || archive != null
+                ? journalRecords(batch) : List.of();
+        switch (mode) {
+            case SNAPSHOT:
+                if (changed) {
+                    save();
+                }
+                break;
+            case JOURNAL:
+                appendToJournal(journalRecords);
+                break;
+            case RECORDS:
+                TaskRecordFile target = recordFile();
+                batch.getViews().forEach(target::markViewed);
+                batch.getPuts().forEach(target::put);
+                batch.getRemoves().forEach(target::delete);
+                break;
+            default:
+                throw new IllegalStateException("Неизвестный режим сохранения: " + mode);
+        }
+        if (archive != null) {
+            archive(journalRecords);
+        }
+    }
+
+    // Записи журнала для пачки: просмотры раньше изменений, как они и произошли
+    private static List<String> journalRecords(TaskStore.Batch batch) {
+        List<String> records = new ArrayList<>(batch.getViews().size() + batch.getPuts().size()
+                + batch.getRemoves().size());
+        for (int id : batch.getViews()) {
+            records.add(VIEW + "," + id);
+        }
+        for (Task task : batch.getPuts()) {
+            records.add(UPSERT + "," + taskToString(task));
+        }
+        for (int id : batch.getRemoves()) {
+            records.add(DELETE + "," + id);
+        }
+        return records;
+    }
+
+    // Режим журнала: записи уходят в журнал одной пачкой, по порогу запускается фоновый снимок
+    private void appendToJournal(List<String> records) {
+        writer.submit(records);
+        recordsSinceSnapshot += records.size();
+        if (compactionThreshold > 0 && recordsSinceSnapshot >= compactionThreshold
+                && (pendingSnapshot == null || pendingSnapshot.isDone())) {
+            snapshotAsync();
+        }
+    }
+
+    // Файл записей создаётся при первом изменении; прежнее содержимое файла заменяется
+    private TaskRecordFile recordFile() {
+        if (records == null) {
+            records = TaskRecordFile.create(file, policy.isFsync());
+        }
+        return records;
+    }
+
     /**
      * Исключение для ошибок валидации подзадач
      */
@@ -221,19 +1360,26 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     /**
-     * Преобразует задачу в строку CSV.
+     * Преобразует задачу в строку CSV. Название и описание экранируются ({@link CsvField}),
+     * поэтому строка остаётся одной строкой из восьми полей при любом тексте задачи.
      *
      * @param task задача для преобразования
      * @return строка в формате CSV
      */
-    private String taskToString(Task task) {
-        List<String> fields = new ArrayList<>();
-        fields.add(String.valueOf(task.getId()));
-        fields.add(getTaskType(task));
-        fields.add(task.getName());
-        fields.add(task.getStatus().name());
-        fields.add(task.getDescription());
+    static String taskToString(Task task) {
+        return fieldsBeforeDescription(task) + CsvField.escape(task.getDescription()) + fieldsAfterDescription(task);
+    }
+
+    // Поля строки задачи до описания (id, тип, название, статус) с запятой после них
+    static String fieldsBeforeDescription(Task task) {
+        return task.getId() + "," + getTaskType(task) + "," + CsvField.escape(task.getName()) + ","
+                + task.getStatus().name() + ",";
+    }
 
+    // Поля строки задачи после описания (эпик, продолжительность, начало) с запятой перед ними
+    static String fieldsAfterDescription(Task task) {
+        List<String> fields = new ArrayList<>();
+        fields.add("");
         if (task instanceof Epic) {
             fields.add(((Epic) task).getSubtaskIds().stream()
                     .map(String::valueOf)
@@ -258,7 +1404,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @param task задача для определения типа
      * @return строковое представление типа задачи
      */
-    private String getTaskType(Task task) {
+    private static String getTaskType(Task task) {
         if (task instanceof Epic) {
             return "EPIC";
         } else if (task instanceof Subtask) {
@@ -269,23 +1415,18 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     /**
-     * Преобразует историю просмотров в строку.
+     * Возвращает id просмотренных задач в порядке просмотра.
      *
      * @param manager менеджер истории
-     * @return строка с ID задач через запятую
+     * @return список ID задач
      */
-    private static String historyToString(HistoryManager manager) {
-        StringBuilder result = new StringBuilder();
+    private static List<Integer> historyIds(HistoryManager manager) {
         List<Task> history = manager.getHistory();
-
-        for (int i = 0; i < history.size(); i++) {
-            result.append(history.get(i).getId());
-            if (i < history.size() - 1) {
-                result.append(",");
-            }
+        List<Integer> ids = new ArrayList<>(history.size());
+        for (Task task : history) {
+            ids.add(task.getId());
         }
-
-        return result.toString();
+        return ids;
     }
 
     /**
@@ -295,7 +1436,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @return восстановленная задача
      * @throws IllegalArgumentException если строка некорректна
      */
-    private static Task fromString(String value) {
+    static Task fromString(String value) {
         if (value == null || value.trim().isEmpty()) {
             return null;
         }
@@ -308,9 +1449,9 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         try {
             int id = Integer.parseInt(parts[0].trim());
             String type = parts[1].trim();
-            String name = parts[2].trim();
+            String name = CsvField.unescape(parts[2].trim());
             Status status = Status.valueOf(parts[3].trim());
-            String description = parts[4].trim();
+            String description = CsvField.unescape(parts[4].trim());
             String subtasksIdsStr = parts[5].trim();
 
             // Парсим временные параметры
@@ -379,17 +1520,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         }
     }
 
-    // Переопределенные методы с сохранением состояния
-
-    @Override
-    public int createTask(Task task) {
-        if (task == null) {
-            throw new IllegalArgumentException("Task cannot be null");
-        }
-        int id = super.createTask(task);
-        save();
-        return id;
-    }
+    // Подзадачи проверяются так же, как при загрузке; сохраняет изменения InMemoryTaskManager через хранилище
 
     @Override
     public int createSubtask(Subtask subtask) {
@@ -397,32 +1528,13 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
             throw new IllegalArgumentException("Subtask cannot be null");
         }
         validateSubtask(subtask);
-        int id = super.createSubtask(subtask);
-        save();
-        return id;
-    }
-
-    @Override
-    public int createEpic(Epic epic) {
-        if (epic == null) {
-            throw new IllegalArgumentException("Epic cannot be null");
-        }
-        int id = super.createEpic(epic);
-        save();
-        return id;
-    }
-
-    @Override
-    public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+        return super.createSubtask(subtask);
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
         validateSubtask(subtask);
         super.updateSubtask(subtask);
-        save();
     }
 
     @Override
@@ -442,68 +1554,137 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         // Копируем все данные из старого эпика
         updatedEpic.setStatus(existingEpic.getStatus());
         updatedEpic.getSubtaskIds().addAll(existingEpic.getSubtaskIds());
-        updatedEpic.setStartTime(existingEpic.getStartTime());
-        updatedEpic.setDuration(existingEpic.getDuration());
+        updatedEpic.updateEpicFields(existingEpic.getStartTime(), existingEpic.getDuration(),
+                existingEpic.getEndTime());
 
-        // Полная замена в хранилище
+        // Полная замена в хранилище; сохраняет замену InMemoryTaskManager
         epics.remove(existingEpic.getId());
         epics.put(updatedEpic.getId(), updatedEpic);
-
-        // Принудительное обновление файла
-        try {
-            save();
-            System.out.println("DEBUG: Saved content:\n" + Files.readString(file.toPath()));
-        } catch (IOException e) {
-            throw new ManagerSaveException("Save failed", e);
-        }
+        super.updateEpic(updatedEpic);
     }
 
-
-    @Override
-    public void deleteTaskById(int id) {
-        super.deleteTaskById(id);
-        save();
+    public Task getTask(int id) {
+        return tasks.get(id);
     }
 
-    @Override
-    public void deleteSubtaskById(int id) {
-        super.deleteSubtaskById(id);
-        save();
+    public Epic getEpic(int id) {
+        return epics.get(id);
     }
 
-    @Override
-    public void deleteEpicById(int id) {
-        super.deleteEpicById(id);
-        save();
+    public Subtask getSubtask(int id) {
+        return subtasks.get(id);
     }
 
-    @Override
-    public void deleteAllTasks() {
-        super.deleteAllTasks();
-        save();
-    }
+    /*
+        Хранилище, через которое InMemoryTaskManager передаёт менеджеру пачки изменений.
+        Состояние читает сам менеджер в loadFromFile (снимок, журнал, ленивые описания, индексы),
+        поэтому scan ничего не возвращает: конструктор начинает с пустой доски.
+     */
+    private static final class FileStore implements TaskStore {
+        private FileBackedTaskManager manager;
 
-    @Override
-    public void deleteAllSubtasks() {
-        super.deleteAllSubtasks();
-        save();
-    }
+        @Override
+        public List<Integer> scan(Consumer<Task> sink) {
+            return List.of();
+        }
 
-    @Override
-    public void deleteAllEpics() {
-        super.deleteAllEpics();
-        save();
-    }
+        @Override
+        public void write(Batch batch) {
+            manager.writeBatch(batch);
+        }
 
-    public Task getTask(int id) {
-        return tasks.get(id);
-    }
+        @Override
+        public void flush() {
+            manager.flushFiles();
+        }
 
-    public Epic getEpic(int id) {
-        return epics.get(id);
+        @Override
+        public void close() {
+            manager.closeFiles();
+        }
     }
 
-    public Subtask getSubtask(int id) {
-        return subtasks.get(id);
+    /*
+        Состояние доски из архива изменений. Загружается из контрольного снимка, после чего
+        к нему применяются записи архива; менеджер только читает, файлов не пишет.
+     */
+    private static final class PointInTimeView extends FileBackedTaskManager {
+        PointInTimeView(File checkpoint) {
+            super(checkpoint, PersistenceMode.SNAPSHOT);
+        }
+
+        @Override
+        public int createTask(Task task) {
+            throw readOnly();
+        }
+
+        @Override
+        public int createSubtask(Subtask subtask) {
+            throw readOnly();
+        }
+
+        @Override
+        public int createEpic(Epic epic) {
+            throw readOnly();
+        }
+
+        @Override
+        public void updateTask(Task task) {
+            throw readOnly();
+        }
+
+        @Override
+        public void updateSubtask(Subtask subtask) {
+            throw readOnly();
+        }
+
+        @Override
+        public void updateEpic(Epic epic) {
+            throw readOnly();
+        }
+
+        @Override
+        public void deleteTaskById(int id) {
+            throw readOnly();
+        }
+
+        @Override
+        public void deleteSubtaskById(int id) {
+            throw readOnly();
+        }
+
+        @Override
+        public void deleteEpicById(int id) {
+            throw readOnly();
+        }
+
+        @Override
+        public void deleteAllTasks() {
+            throw readOnly();
+        }
+
+        @Override
+        public void deleteAllSubtasks() {
+            throw readOnly();
+        }
+
+        @Override
+        public void deleteAllEpics() {
+            throw readOnly();
+        }
+
+        // Чтение не меняет восстановленную историю
+        @Override
+        protected void recordView(Task task) {
+        }
+
+        // Истории клиентов тоже не пополняются, иначе close() записал бы их рядом с контрольным снимком
+        @Override
+        protected void recordClientView(String client, Task task) {
+        }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Состояние из архива изменений доступно только для чтения");
+        }
     }
 }
\ No newline at end of file
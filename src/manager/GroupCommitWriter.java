@@ -0,0 +1,214 @@
+package manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Групповая запись журнала изменений.
+ * При синхронной политике каждая пачка записывается сразу в вызывающем потоке.
+ * При отложенной — записи копятся в очереди и сбрасываются фоновым потоком одной
+ * операцией записи (и одним fsync) по таймеру или по накоплению заданного количества.
+ * <p>
+ * Ошибка фоновой записи запоминается и пробрасывается при следующем обращении к журналу.
+ */
+class GroupCommitWriter implements Closeable {
+    private final TaskJournal journal;
+    private final PersistencePolicy policy;
+    private final Thread worker; // null для синхронной политики
+
+    // Состояние ниже защищено монитором this
+    private List<String> pending = new ArrayList<>();
+    private long submitted; // Записей принято
+    private long flushed; // Записей сброшено на диск
+    private boolean flushRequested;
+    private boolean closed;
+    private RuntimeException failure;
+
+    private long flushCount;
+    private Duration lastFlushLatency = Duration.ZERO;
+    private Duration maxFlushLatency = Duration.ZERO;
+    private Duration totalFlushLatency = Duration.ZERO;
+
+    GroupCommitWriter(TaskJournal journal, PersistencePolicy policy) {
+        this.journal = journal;
+        this.policy = policy;
+        if (policy.isWriteBehind()) {
+            worker = new Thread(this::runWorker, "journal-writer-" + journal.getFile().getName());
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            worker = null;
+        }
+    }
+
+    /**
+     * Принимает записи одного изменения.
+     * При синхронной политике возвращается после записи на диск.
+     *
+     * @param records записи журнала
+     */
+    synchronized void submit(List<String> records) {
+        checkState();
+        if (worker == null) {
+            write(records);
+            submitted += records.size();
+            flushed = submitted;
+            return;
+        }
+        pending.addAll(records);
+        submitted += records.size();
+        if (policy.getTrigger() == PersistencePolicy.Trigger.OPERATION_COUNT
+                && pending.size() >= policy.getValue()) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Ждёт, пока все принятые к этому моменту записи окажутся на диске.
+     */
+    synchronized void flush() {
+        checkFailure();
+        long target = submitted;
+        if (flushed >= target) {
+            return;
+        }
+        flushRequested = true;
+        notifyAll();
+        boolean interrupted = false;
+        while (flushed < target && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    synchronized PersistenceStats getStats() {
+        return new PersistenceStats(pending.size(), flushCount, flushed,
+                lastFlushLatency, maxFlushLatency, totalFlushLatency);
+    }
+
+    /**
+     * Сбрасывает накопленные записи и останавливает фоновый поток.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            if (worker != null) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            List<String> batch;
+            synchronized (this) {
+                try {
+                    waitForBatch();
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                if (pending.isEmpty()) {
+                    flushRequested = false;
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                flushRequested = false;
+            }
+
+            RuntimeException error = null;
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    flushed += batch.size();
+                }
+                notifyAll();
+                if (failure != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Ждёт условия сброса по политике; вызывается под монитором
+    private void waitForBatch() throws InterruptedException {
+        if (policy.getTrigger() == PersistencePolicy.Trigger.INTERVAL) {
+            long deadline = System.currentTimeMillis() + policy.getValue();
+            long remaining = policy.getValue();
+            while (!flushRequested && !closed && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } else {
+            while (!flushRequested && !closed && pending.size() < policy.getValue()) {
+                wait();
+            }
+        }
+    }
+
+    // Записывает пачку в журнал и учитывает задержку сброса
+    private void write(List<String> batch) {
+        long start = System.nanoTime();
+        journal.append(batch);
+        if (policy.isFsync()) {
+            journal.sync();
+        }
+        Duration latency = Duration.ofNanos(System.nanoTime() - start);
+        synchronized (this) {
+            flushCount++;
+            lastFlushLatency = latency;
+            totalFlushLatency = totalFlushLatency.plus(latency);
+            if (latency.compareTo(maxFlushLatency) > 0) {
+                maxFlushLatency = latency;
+            }
+        }
+    }
+
+    private void checkState() {
+        checkFailure();
+        if (closed) {
+            throw new ManagerSaveException("Журнал закрыт: " + journal.getFile().getPath());
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new ManagerSaveException("Ошибка фоновой записи журнала", failure);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package manager;
+
+import model.Task;
+
+import java.util.List;
+
+/**
+ * Изменения истории просмотров после версии-курсора.
+ * Клиент убирает из своей копии истории задачи из {@code removed} и из {@code changed},
+ * затем добавляет {@code changed} в конец по порядку и запоминает {@code version}
+ * как курсор для следующего запроса. Если {@code full} равно true, курсор не подошёл
+ * (история пересоздана или удаления до курсора уже забыты) и {@code changed} содержит
+ * всю историю: копию клиента нужно заменить целиком.
+ */
+public class HistoryDelta {
+    private final long version; // Версия истории, на которую рассчитаны изменения
+    private final boolean full; // true — вместо изменений вся история
+    private final List<Integer> removed; // id задач, удалённых из истории после курсора
+    private final List<Task> changed; // Задачи, добавленные или перенесённые в конец после курсора
+
+    public HistoryDelta(long version, boolean full, List<Integer> removed, List<Task> changed) {
+        this.version = version;
+        this.full = full;
+        this.removed = List.copyOf(removed);
+        this.changed = List.copyOf(changed);
+    }
+
+    // Вся история как ответ на неподходящий курсор
+    public static HistoryDelta full(long version, List<Task> history) {
+        return new HistoryDelta(version, true, List.of(), history);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public List<Integer> getRemoved() {
+        return removed;
+    }
+
+    public List<Task> getChanged() {
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryDelta{" +
+                "version=" + version +
+                ", full=" + full +
+                ", removed=" + removed +
+                ", changed=" + changed +
+                '}';
+    }
+}
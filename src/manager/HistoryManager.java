@@ -21,5 +21,22 @@ public interface HistoryManager {
      */
 
     List<Task> getHistory();
-}
 
+    /* Метод ограничивает историю указанным количеством задач.
+       Лишние давно просмотренные задачи сразу удаляются; 0 — без ограничения.
+     */
+    void setCapacity(int capacity);
+
+    /* Метод возвращает наибольшее количество задач в истории, 0 — без ограничения.
+     */
+    int getCapacity();
+
+    /* Метод возвращает версию истории: она растёт с каждым добавлением, переносом и удалением задачи.
+     */
+    long getVersion();
+
+    /* Метод возвращает изменения истории после версии since, полученной из getVersion или прошлого ответа.
+       Если курсор не подходит, возвращается вся история с признаком full.
+     */
+    HistoryDelta getChangesSince(long since);
+}
@@ -0,0 +1,131 @@
+package manager;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+
+/*
+    Версии истории просмотров и журнал удалений для инкрементального чтения.
+    Каждое изменение истории получает следующую версию. Начальная версия новой истории
+    берётся из текущего времени (миллисекунды << 10) и всегда больше начальной версии
+    предыдущей, поэтому курсор от пересозданной истории или от прошлого запуска сервера
+    оказывается меньше начала и получает полную историю, пока та история делала не больше
+    1024 изменений на каждую миллисекунду между их созданием. Версии остаются меньше 2^53
+    до 2248 года, поэтому клиенты на JavaScript получают их в JSON без округления.
+    Журнал удалений — кольцо на массивах. Массивы выделяются при первом удалении и растут
+    вдвое до предельного размера, поэтому история без удалений почти не занимает памяти,
+    а заполненное кольцо при записи ничего не выделяет. Когда кольцо предельного размера
+    переполнено, забывается самое старое удаление, и курсоры не новее него тоже получают
+    полную историю.
+ */
+final class HistoryVersions {
+    static final int DEFAULT_REMOVALS = 1024;
+    private static final int INITIAL_REMOVALS = 16;
+    private static final long[] NO_VERSIONS = new long[0];
+    private static final int[] NO_IDS = new int[0];
+    private static final int START_SHIFT = 10;
+    private static final AtomicLong LAST_START = new AtomicLong();
+
+    private final long start;
+    private long version;
+    private final int limit; // Предельный размер кольца
+    private long[] removedAt = NO_VERSIONS;
+    private int[] removedIds = NO_IDS;
+    private int first; // Самое старое удаление в кольце
+    private int count;
+    private long forgotten; // Версия последнего забытого удаления
+
+    HistoryVersions() {
+        this(DEFAULT_REMOVALS);
+    }
+
+    HistoryVersions(int removals) {
+        this.start = nextStart();
+        this.version = start;
+        this.forgotten = start;
+        this.limit = removals;
+    }
+
+    private static long nextStart() {
+        long now = System.currentTimeMillis() << START_SHIFT;
+        return LAST_START.accumulateAndGet(now, (last, candidate) -> Math.max(last + (1 << START_SHIFT), candidate));
+    }
+
+    long current() {
+        return version;
+    }
+
+    // Версия для добавленной или перенесённой в конец задачи
+    long next() {
+        return ++version;
+    }
+
+    void removed(int id) {
+        long at = ++version;
+        if (count == removedIds.length && count < limit) {
+            grow();
+        }
+        if (count == removedIds.length) {
+            forgotten = removedAt[first];
+            first = (first + 1) % removedIds.length;
+            count--;
+        }
+        int index = (first + count) % removedIds.length;
+        removedAt[index] = at;
+        removedIds[index] = id;
+        count++;
+    }
+
+    // Переносит удаления в массивы вдвое больше, самое старое — в начало
+    private void grow() {
+        int size = Math.min(limit, Math.max(INITIAL_REMOVALS, removedIds.length * 2));
+        long[] at = new long[size];
+        int[] ids = new int[size];
+        for (int i = 0; i < count; i++) {
+            int index = (first + i) % removedIds.length;
+            at[i] = removedAt[index];
+            ids[i] = removedIds[index];
+        }
+        removedAt = at;
+        removedIds = ids;
+        first = 0;
+    }
+
+    // Курсор подходит, если он выдан этой историей и все удаления после него ещё в журнале
+    boolean covers(long since) {
+        return since >= forgotten && since <= version;
+    }
+
+    /*
+        id, удалённые после курсора и не вернувшиеся в историю: вернувшиеся задачи
+        всё равно придут в изменениях. Журнал упорядочен по версии, поэтому обход идёт
+        с конца и останавливается на первом удалении не новее курсора.
+     */
+    List<Integer> removedSince(long since, IntPredicate present) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (int i = count - 1; i >= 0; i--) {
+            int index = (first + i) % removedIds.length;
+            if (removedAt[index] <= since) {
+                break;
+            }
+            if (!present.test(removedIds[index])) {
+                ids.add(removedIds[index]);
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // Собирает ответ; changed — задачи с версией новее курсора в обратном порядке истории
+    HistoryDelta delta(long since, List<Task> changedNewestFirst, IntPredicate present) {
+        List<Task> changed = new ArrayList<>(changedNewestFirst.size());
+        for (int i = changedNewestFirst.size() - 1; i >= 0; i--) {
+            changed.add(changedNewestFirst.get(i));
+        }
+        return new HistoryDelta(version, false, removedSince(since, present), changed);
+    }
+}
@@ -7,19 +7,40 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/*
+    История просмотров: связный список в порядке просмотра и индекс узлов по id.
+    При ограниченной ёмкости добавление сверх неё удаляет самую давно просмотренную
+    задачу из начала списка, поэтому и добавление, и вытеснение выполняются за O(1).
+    Узел помнит версию, на которой задача попала в конец; версии растут от начала списка
+    к концу, поэтому изменения после курсора — это хвост списка, и читаются они с конца.
+ */
 public class InMemoryHistoryManager implements HistoryManager {
+    public static final int UNBOUNDED = 0;
 
     private final Map<Integer, Node> historyMap = new HashMap<>();
     private Node head;
     private Node tail;
+    private int capacity;
+    private final HistoryVersions versions = new HistoryVersions();
+
+    public InMemoryHistoryManager() {
+        this(UNBOUNDED);
+    }
+
+    // capacity — наибольшее количество задач в истории, 0 — без ограничения
+    public InMemoryHistoryManager(int capacity) {
+        setCapacity(capacity);
+    }
 
     private static class Node {
         Task task;
+        long version;
         Node prev;
         Node next;
 
-        Node(Task task) {
+        Node(Task task, long version) {
             this.task = task;
+            this.version = version;
         }
     }
 
@@ -29,13 +50,17 @@ public class InMemoryHistoryManager implements HistoryManager {
             return;
         }
 
-        // Удаляем задачу из истории, если она уже есть
-        remove(task.getId());
+        // Удаляем задачу из списка, если она уже есть: это перенос, а не удаление из истории
+        Node existing = historyMap.remove(task.getId());
+        if (existing != null) {
+            removeNode(existing);
+        }
 
         // Добавляем задачу в конец списка
-        Node newNode = new Node(task);
+        Node newNode = new Node(task, versions.next());
         linkLast(newNode);
         historyMap.put(task.getId(), newNode);
+        evictOverflow();
     }
 
     @Override
@@ -43,7 +68,22 @@ public class InMemoryHistoryManager implements HistoryManager {
         Node node = historyMap.remove(id);
         if (node != null) {
             removeNode(node);
+            versions.removed(id);
+        }
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Ёмкость истории не может быть отрицательной: " + capacity);
         }
+        this.capacity = capacity;
+        evictOverflow();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
     }
 
     @Override
@@ -57,6 +97,30 @@ public class InMemoryHistoryManager implements HistoryManager {
         return result;
     }
 
+    @Override
+    public long getVersion() {
+        return versions.current();
+    }
+
+    @Override
+    public HistoryDelta getChangesSince(long since) {
+        if (!versions.covers(since)) {
+            return HistoryDelta.full(versions.current(), getHistory());
+        }
+        List<Task> changed = new ArrayList<>();
+        for (Node current = tail; current != null && current.version > since; current = current.prev) {
+            changed.add(current.task);
+        }
+        return versions.delta(since, changed, historyMap::containsKey);
+    }
+
+    // Удаляет самые давно просмотренные задачи сверх ёмкости
+    private void evictOverflow() {
+        while (capacity != UNBOUNDED && historyMap.size() > capacity) {
+            remove(head.task.getId());
+        }
+    }
+
     private void linkLast(Node newNode) {
         if (head == null) {
             head = newNode;
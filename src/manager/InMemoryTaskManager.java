@@ -1,27 +1,61 @@
 package manager;
 
 import model.Epic;
-import model.Status;
 import model.Subtask;
 import model.Task;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-// Класс для управления задачами
-public class InMemoryTaskManager implements TaskManager {
+/*
+    Класс для управления задачами.
+    Задачи и индексы хранятся в памяти; результат каждого изменения передаётся
+    хранилищу (TaskStore) одной пачкой. По умолчанию хранилище ничего не сохраняет.
+ */
+public class InMemoryTaskManager implements TaskManager, AutoCloseable {
     protected int nextId = 1; // Счетчик для генерации идентификаторов
     protected final Map<Integer, Task> tasks = new HashMap<>(); // Для хранения задач
     protected final Map<Integer, Subtask> subtasks = new HashMap<>(); // Для хранения подзадач
     protected final Map<Integer, Epic> epics = new HashMap<>(); // Для хранения эпиков
     protected final HistoryManager historyManager = Managers.getDefaultHistory(); // Менеджер истории, получаем через Manager
+    protected final ClientHistories clientHistories = new ClientHistories(); // Истории отдельных клиентов
 
-    // Отсортированный набор задач по приоритету
-    private final Set<Task> prioritizedTasks = new TreeSet<>(
-            Comparator.comparing(Task::getStartTime,
-                    Comparator.nullsLast(Comparator.naturalOrder()))
-    );
+    /*
+        Задачи и подзадачи со временем выполнения, упорядоченные по (время начала, id).
+        Тот же индекс хранит интервалы выполнения и используется для проверки пересечений.
+     */
+    private final TaskIntervalTree prioritizedTasks = new TaskIntervalTree();
+
+    // Накопительные показатели эпиков (статусы, время) по id эпика
+    private final Map<Integer, EpicAggregate> epicAggregates = new HashMap<>();
+
+    private final TaskStore store;
+    private final boolean durable; // Пачки собираются только для сохраняющего хранилища
+    private final boolean immediateViews; // Каждый просмотр передаётся хранилищу отдельной пачкой
+    private final List<Integer> unsavedViews = new ArrayList<>(); // Просмотры с прошлой пачки
+    static final int UNSAVED_VIEWS_LIMIT = 1024; // Столько просмотров без изменений передаётся отдельной пачкой
+
+    public InMemoryTaskManager() {
+        this(MemoryTaskStore.INSTANCE);
+    }
+
+    /**
+     * Создаёт менеджер поверх хранилища и восстанавливает из него сохранённое состояние.
+     *
+     * @param store хранилище задач
+     * @throws FileBackedTaskManager.ManagerLoadException если сохранённое состояние не читается
+     */
+    public InMemoryTaskManager(TaskStore store) {
+        this.store = Objects.requireNonNull(store, "Хранилище не может быть null");
+        this.durable = store.isDurable();
+        this.immediateViews = durable && store.wantsImmediateViews();
+        if (durable) {
+            loadFromStore();
+        }
+    }
 
     // Метод для генерации нового уникального идентификатора
     private int generateIds() {
@@ -55,39 +89,90 @@ public class InMemoryTaskManager implements TaskManager {
         return historyManager.getHistory();
     }
 
+    /*
+        Ограничивает историю просмотров указанным количеством задач (0 — без ограничения).
+        Сверх ёмкости вытесняются самые давно просмотренные задачи.
+     */
+    public void setHistoryCapacity(int capacity) {
+        historyManager.setCapacity(capacity);
+        if (immediateViews) {
+            // Хранилище, которому просмотры нужны сразу, ведёт свою копию истории и вытесняет так же
+            storeChanges(List.of(), List.of());
+        }
+    }
+
+    public int getHistoryCapacity() {
+        return historyManager.getCapacity();
+    }
+
+    @Override
+    public List<Task> getHistory(String client) {
+        return client == null ? getHistory() : clientHistories.history(client);
+    }
+
+    @Override
+    public HistoryDelta getHistorySince(long since) {
+        return historyManager.getChangesSince(since);
+    }
+
+    @Override
+    public HistoryDelta getHistorySince(long since, String client) {
+        return client == null ? getHistorySince(since) : clientHistories.changesSince(client, since);
+    }
+
+    /*
+        Ограничивает истории клиентов: ёмкость каждой и время без обращений,
+        после которого история клиента удаляется.
+     */
+    public void setClientHistoryLimits(int capacity, Duration idleTimeout) {
+        clientHistories.setLimits(capacity, idleTimeout);
+    }
+
 
     // Метод для удаления всех задач
     @Override
     public void deleteAllTasks() {
-        tasks.keySet().forEach(historyManager::remove);
+        List<Integer> removed = durable ? new ArrayList<>(tasks.keySet()) : List.of();
+        forgetViews(tasks.keySet());
         tasks.keySet().forEach(prioritizedTasks::remove);
         tasks.clear();
+        storeChanges(List.of(), removed);
     }
 
     //Метод для удаления всех подзадач
     @Override
     public void deleteAllSubtasks() {
-        subtasks.keySet().forEach(historyManager::remove);
+        List<Integer> removed = durable ? new ArrayList<>(subtasks.keySet()) : List.of();
+        forgetViews(subtasks.keySet());
         subtasks.keySet().forEach(prioritizedTasks::remove);
         subtasks.clear();
 
         // Обновляем эпики после удаления подзадач
         epics.values().forEach(epic -> {
             epic.getSubtaskIds().clear();
+            aggregateOf(epic.getId()).clear();
             updateEpicStatus(epic);
             updateEpicTimeFields(epic);
         });
+        storeChanges(List.of(), removed);
     }
 
     //Метод для очистки списка эпиков
     @Override
     public void deleteAllEpics() {
-        subtasks.keySet().forEach(historyManager::remove);
+        List<Integer> removed = new ArrayList<>();
+        if (durable) {
+            removed.addAll(subtasks.keySet());
+            removed.addAll(epics.keySet());
+        }
+        forgetViews(subtasks.keySet());
         subtasks.keySet().forEach(prioritizedTasks::remove);
         subtasks.clear();
 
-        epics.keySet().forEach(historyManager::remove);
+        forgetViews(epics.keySet());
         epics.clear();
+        epicAggregates.clear();
+        storeChanges(List.of(), removed);
     }
 
     /* Обновляем методы получения задач, чтобы они добавлялись в историю
@@ -97,7 +182,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Task getTaskById(int id) {
         Task task = tasks.get(id);
         if (task != null) {
-            historyManager.add(task);
+            recordView(task);
         }
         return task;
     }
@@ -107,7 +192,7 @@ public class InMemoryTaskManager implements TaskManager {
     public Subtask getSubtaskById(int id) {
         Subtask subtask = subtasks.get(id);
         if (subtask != null) {
-            historyManager.add(subtask);
+            recordView(subtask);
         }
         return subtask;
     }
@@ -117,7 +202,43 @@ public class InMemoryTaskManager implements TaskManager {
     public Epic getEpicById(int id) {
         Epic epic = epics.get(id);
         if (epic != null) {
-            historyManager.add(epic);
+            recordView(epic);
+        }
+        return epic;
+    }
+
+    @Override
+    public Task getTaskById(int id, String client) {
+        if (client == null) {
+            return getTaskById(id);
+        }
+        Task task = tasks.get(id);
+        if (task != null) {
+            recordClientView(client, task);
+        }
+        return task;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id, String client) {
+        if (client == null) {
+            return getSubtaskById(id);
+        }
+        Subtask subtask = subtasks.get(id);
+        if (subtask != null) {
+            recordClientView(client, subtask);
+        }
+        return subtask;
+    }
+
+    @Override
+    public Epic getEpicById(int id, String client) {
+        if (client == null) {
+            return getEpicById(id);
+        }
+        Epic epic = epics.get(id);
+        if (epic != null) {
+            recordClientView(client, epic);
         }
         return epic;
     }
@@ -129,15 +250,12 @@ public class InMemoryTaskManager implements TaskManager {
             throw new IllegalArgumentException("Задача не может быть 'null'");
         }
         // Проверка на пересечение по времени
-        if (task.getStartTime() != null && hasTaskOverlaps(task)) {
-            throw new ManagerSaveException("Задача пересекается по времени с существующей");
-        }
+        checkOverlaps(task, 0, "Задача пересекается по времени с существующей");
         task.setId(nextId++);
         tasks.put(task.getId(), task);
 
-        if (task.getStartTime() != null) {
-            prioritizedTasks.add(task);
-        }
+        prioritizedTasks.add(task);
+        storeChanges(List.of(task), List.of());
 
         return task.getId();
     }
@@ -156,21 +274,19 @@ public class InMemoryTaskManager implements TaskManager {
         }
 
         // Проверка на пересечение по времени
-        if (subtask.getStartTime() != null && hasTaskOverlaps(subtask)) {
-            throw new ManagerSaveException("Подзадача пересекается по времени с существующей задачей");
-        }
+        checkOverlaps(subtask, 0, "Подзадача пересекается по времени с существующей задачей");
 
         subtask.setId(nextId++);
         subtasks.put(subtask.getId(), subtask); // Добавляем подзадачу в хранилище
         Epic epic = epics.get(subtask.getEpicId()); // Получаем эпик к которому относится подзадача
         epic.getSubtaskIds().add(subtask.getId());
+        aggregateOf(epic.getId()).put(subtask);
 
         updateEpicStatus(epic);
         updateEpicTimeFields(epic);
 
-        if (subtask.getStartTime() != null) {
-            prioritizedTasks.add(subtask);
-        }
+        prioritizedTasks.add(subtask);
+        storeChanges(List.of(subtask), List.of());
 
         return subtask.getId();
     }
@@ -183,6 +299,8 @@ public class InMemoryTaskManager implements TaskManager {
         }
         epic.setId(nextId++);
         epics.put(epic.getId(), epic);
+        epicAggregates.put(epic.getId(), new EpicAggregate());
+        storeChanges(List.of(epic), List.of());
         return epic.getId();
     }
 
@@ -194,23 +312,13 @@ public class InMemoryTaskManager implements TaskManager {
         }
 
         // Проверка на пересечение по времени (исключая саму задачу)
-        if (task.getStartTime() != null) {
-            boolean hasOverlap = prioritizedTasks.stream()
-                    .filter(t -> t.getId() != task.getId())
-                    .anyMatch(existingTask -> isTasksOverlap(task, existingTask));
-
-            if (hasOverlap) {
-                throw new ManagerSaveException("Задача пересекается по времени с существующей");
-            }
-        }
+        checkOverlaps(task, task.getId(), "Задача пересекается по времени с существующей");
 
         tasks.put(task.getId(), task); // Замена старой задачи на новую
 
-        // Обновляем в prioritizedTasks
-        prioritizedTasks.removeIf(t -> t.getId() == task.getId());
-        if (task.getStartTime() != null) {
-            prioritizedTasks.add(task);
-        }
+        // Обновляем в prioritizedTasks (прежняя запись с тем же id заменяется)
+        prioritizedTasks.add(task);
+        storeChanges(List.of(task), List.of());
     }
 
     // Обновление подзадачи
@@ -221,15 +329,7 @@ public class InMemoryTaskManager implements TaskManager {
         }
 
         // Проверка на пересечение по времени (исключая саму подзадачу)
-        if (subtask.getStartTime() != null) {
-            boolean hasOverlap = prioritizedTasks.stream()
-                    .filter(t -> t.getId() != subtask.getId())
-                    .anyMatch(existingTask -> isTasksOverlap(subtask, existingTask));
-
-            if (hasOverlap) {
-                throw new ManagerSaveException("Подзадача пересекается по времени с существующей задачей");
-            }
-        }
+        checkOverlaps(subtask, subtask.getId(), "Подзадача пересекается по времени с существующей задачей");
         Subtask savedSubtask = subtasks.get(subtask.getId());
         int oldEpicId = savedSubtask.getEpicId();
         int newEpicId = subtask.getEpicId();
@@ -242,29 +342,31 @@ public class InMemoryTaskManager implements TaskManager {
 
             Epic oldEpic = epics.get(oldEpicId);
             oldEpic.getSubtaskIds().remove((Integer) subtask.getId());
+            aggregateOf(oldEpicId).remove(subtask.getId());
             updateEpicStatus(oldEpic);
             updateEpicTimeFields(oldEpic);
 
             Epic newEpic = epics.get(newEpicId);
             newEpic.getSubtaskIds().add(subtask.getId());
-            updateEpicStatus(newEpic);
-            updateEpicTimeFields(newEpic);
+
+            // epicId подзадачи неизменяем, поэтому храним новый объект с актуальным эпиком
+            subtasks.put(subtask.getId(), subtask);
+            savedSubtask = subtask;
         }
 
         savedSubtask.setStatus(subtask.getStatus());
         savedSubtask.setStartTime(subtask.getStartTime());
         savedSubtask.setDuration(subtask.getDuration());
+        aggregateOf(newEpicId).put(savedSubtask);
 
-        // Обновляем в prioritizedTasks
-        prioritizedTasks.removeIf(t -> t.getId() == subtask.getId());
-        if (subtask.getStartTime() != null) {
-            prioritizedTasks.add(subtask);
-        }
+        // Обновляем в prioritizedTasks (прежняя запись с тем же id заменяется)
+        prioritizedTasks.add(savedSubtask);
 
         // Обновляем родительский эпик
         Epic epic = epics.get(subtask.getEpicId());
         updateEpicStatus(epic);
         updateEpicTimeFields(epic);
+        storeChanges(List.of(savedSubtask), List.of());
     }
 
 
@@ -280,6 +382,7 @@ public class InMemoryTaskManager implements TaskManager {
 
         // Обновляем статус эпика
         updateEpicStatus(savedEpic);
+        storeChanges(List.of(savedEpic), List.of());
     }
 
     // Удаление задачи по идентификатору
@@ -287,8 +390,9 @@ public class InMemoryTaskManager implements TaskManager {
     public void deleteTaskById(int id) {
         Task task = tasks.remove(id);
         if (task != null) {
-            historyManager.remove(id);
-            prioritizedTasks.remove(task);
+            forgetView(id);
+            prioritizedTasks.remove(id);
+            storeChanges(List.of(), List.of(id));
         }
     }
 
@@ -297,15 +401,17 @@ public class InMemoryTaskManager implements TaskManager {
     public void deleteSubtaskById(int id) {
         Subtask subtask = subtasks.remove(id);
         if (subtask != null) {
-            historyManager.remove(id);
-            prioritizedTasks.remove(subtask);
+            forgetView(id);
+            prioritizedTasks.remove(id);
 
             Epic epic = epics.get(subtask.getEpicId());
             if (epic != null) {
                 epic.getSubtaskIds().remove((Integer) id);
+                aggregateOf(epic.getId()).remove(id);
                 updateEpicStatus(epic);
                 updateEpicTimeFields(epic);
             }
+            storeChanges(List.of(), List.of(id));
         }
     }
 
@@ -317,10 +423,16 @@ public class InMemoryTaskManager implements TaskManager {
             // Удаляем все подзадачи этого эпика
             epic.getSubtaskIds().forEach(subtaskId -> {
                 subtasks.remove(subtaskId);
-                historyManager.remove(subtaskId);
-                prioritizedTasks.removeIf(t -> t.getId() == subtaskId);
+                forgetView(subtaskId);
+                prioritizedTasks.remove(subtaskId);
             });
-            historyManager.remove(id);
+            epicAggregates.remove(id);
+            forgetView(id);
+            if (durable) {
+                List<Integer> removed = new ArrayList<>(epic.getSubtaskIds());
+                removed.add(id);
+                storeChanges(List.of(), removed);
+            }
         }
     }
 
@@ -340,7 +452,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public Set<Task> getPrioritizedTasks() {
-        return Collections.unmodifiableSet(prioritizedTasks);
+        return prioritizedTasks.asSet();
     }
 
     @Override
@@ -359,51 +471,312 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public boolean hasTaskOverlaps(Task newTask) {
-        if (newTask.getStartTime() == null) {
-            return false;
+        return prioritizedTasks.hasOverlap(newTask, 0);
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        return prioritizedTasks.findOverlaps(task, 0);
+    }
+
+    /**
+     * Помещает восстановленную задачу, эпик или подзадачу прямо в хранилище —
+     * без проверки пересечений и генерации id (используется при загрузке из файла).
+     * Если запись с таким id уже есть, она заменяется. Список приоритетов,
+     * связи подзадач с эпиками и показатели эпиков обновляются.
+     * Эпик подзадачи должен быть уже восстановлен.
+     *
+     * @param task восстановленная запись
+     */
+    protected void putRestoredTask(Task task) {
+        int id = task.getId();
+        if (task instanceof Epic) {
+            Epic epic = (Epic) task;
+            Epic existing = epics.get(id);
+            // Состав эпика определяется подзадачами, а не сохранённым списком id
+            epic.getSubtaskIds().clear();
+            if (existing != null) {
+                epic.getSubtaskIds().addAll(existing.getSubtaskIds());
+                epic.setStatus(existing.getStatus());
+                epic.updateEpicFields(existing.getStartTime(), existing.getDuration(), existing.getEndTime());
+            }
+            epics.put(id, epic);
+        } else if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            Subtask existing = subtasks.put(id, subtask);
+            if (existing != null && existing.getEpicId() != subtask.getEpicId()) {
+                Epic oldEpic = epics.get(existing.getEpicId());
+                aggregateOf(existing.getEpicId()).remove(id);
+                if (oldEpic != null) {
+                    oldEpic.removeSubtaskId(id);
+                    updateEpicStatus(oldEpic);
+                    updateEpicTimeFields(oldEpic);
+                }
+            }
+            Epic epic = epics.get(subtask.getEpicId());
+            if (existing == null || existing.getEpicId() != subtask.getEpicId()) {
+                epic.addSubtaskId(id);
+            }
+            aggregateOf(epic.getId()).put(subtask);
+            updateEpicStatus(epic);
+            updateEpicTimeFields(epic);
+            prioritizedTasks.add(subtask);
+        } else {
+            tasks.put(id, task);
+            prioritizedTasks.add(task);
         }
 
-        return prioritizedTasks.stream()
-                .anyMatch(existingTask -> isTasksOverlap(newTask, existingTask));
+        // Обновляем счетчик ID
+        if (nextId <= id) {
+            nextId = id + 1;
+        }
     }
 
+    /**
+     * Помещает восстановленную запись в хранилище без обновления индексов:
+     * эпику добавляется id подзадачи, но список приоритетов и показатели эпиков не трогаются.
+     * Используется при массовой загрузке; после неё обязателен вызов {@link #rebuildIndexes(List)}.
+     * Эпик подзадачи должен быть уже помещён в хранилище.
+     *
+     * @param task восстановленная запись
+     */
+    protected void stageRestoredTask(Task task) {
+        int id = task.getId();
+        if (task instanceof Epic) {
+            Epic epic = (Epic) task;
+            epic.getSubtaskIds().clear(); // Состав эпика определяется подзадачами
+            epics.put(id, epic);
+        } else if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            subtasks.put(id, subtask);
+            epics.get(subtask.getEpicId()).addSubtaskId(id);
+        } else {
+            tasks.put(id, task);
+        }
+        if (nextId <= id) {
+            nextId = id + 1;
+        }
+    }
 
-    // Обновление статуса эпика на основе статусов его подзадач
-    void updateEpicStatus(Epic epic) {
-        List<Subtask> subtasks = getSubtasksByEpicId(epic.getId());
+    /**
+     * Строит список приоритетов и показатели эпиков заново за один проход по хранилищу.
+     * Если передан сохранённый порядок приоритетов и он совпадает с хранилищем,
+     * сортировка не выполняется и дерево строится за O(n).
+     *
+     * @param prioritizedOrder сохранённые id задач в порядке приоритета или null
+     * @return true, если сохранённый порядок был использован
+     */
+    protected boolean rebuildIndexes(List<Integer> prioritizedOrder) {
+        epicAggregates.clear();
+        for (Epic epic : epics.values()) {
+            epicAggregates.put(epic.getId(), new EpicAggregate());
+        }
+        for (Subtask subtask : subtasks.values()) {
+            epicAggregates.get(subtask.getEpicId()).put(subtask);
+        }
+        for (Epic epic : epics.values()) {
+            updateEpicStatus(epic);
+            updateEpicTimeFields(epic);
+        }
+
+        List<Task> ordered = orderedByIds(prioritizedOrder);
+        if (ordered != null && prioritizedTasks.rebuild(ordered)) {
+            return true;
+        }
+        List<Task> all = new ArrayList<>(tasks.size() + subtasks.size());
+        all.addAll(tasks.values());
+        all.addAll(subtasks.values());
+        prioritizedTasks.rebuild(all);
+        return false;
+    }
+
+    // Задачи в сохранённом порядке; null, если порядок не соответствует хранилищу
+    private List<Task> orderedByIds(List<Integer> ids) {
+        if (ids == null) {
+            return null;
+        }
+        List<Task> ordered = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task == null || task.getStartTime() == null) {
+                return null;
+            }
+            ordered.add(task);
+        }
+        long scheduled = tasks.values().stream().filter(t -> t.getStartTime() != null).count()
+                + subtasks.values().stream().filter(t -> t.getStartTime() != null).count();
+        return scheduled == ordered.size() ? ordered : null;
+    }
+
+    /*
+        Проверяет задачу на пересечение с уже запланированными.
+        Если пересечения есть, в сообщение исключения попадают их идентификаторы.
+     */
+    private void checkOverlaps(Task task, int excludeId, String message) {
+        if (task.getStartTime() == null) {
+            return;
+        }
+        List<Task> conflicts = prioritizedTasks.findOverlaps(task, excludeId);
+        if (!conflicts.isEmpty()) {
+            String ids = conflicts.stream()
+                    .map(t -> String.valueOf(t.getId()))
+                    .collect(Collectors.joining(", "));
+            throw new ManagerSaveException(message + " (id: " + ids + ")");
+        }
+    }
+
+
+    /**
+     * Отмечает задачу как просмотренную в истории. Просмотры передаются хранилищу вместе
+     * со следующим изменением, а без изменений — пачкой по {@link #UNSAVED_VIEWS_LIMIT}.
+     * Наследники могут переопределить метод, чтобы изменить способ записи просмотров.
+     *
+     * @param task просмотренная задача
+     */
+    protected void recordView(Task task) {
+        historyManager.add(task);
+        if (durable) {
+            unsavedViews.add(task.getId());
+            if (immediateViews || unsavedViews.size() >= UNSAVED_VIEWS_LIMIT) {
+                storeChanges(List.of(), List.of());
+            }
+        }
+    }
+
+    /**
+     * Отмечает задачу как просмотренную в истории клиента. Истории клиентов хранилищу
+     * не передаются.
+     *
+     * @param client имя клиента
+     * @param task   просмотренная задача
+     */
+    protected void recordClientView(String client, Task task) {
+        clientHistories.record(client, task);
+    }
+
+    // Убирает удалённую задачу из общей истории и из историй клиентов
+    private void forgetView(int id) {
+        historyManager.remove(id);
+        clientHistories.remove(id);
+    }
+
+    private void forgetViews(Set<Integer> ids) {
+        ids.forEach(historyManager::remove);
+        clientHistories.removeAll(ids);
+    }
+
+    /**
+     * Передаёт хранилищу накопленные просмотры и дожидается записи всех пачек на диск.
+     */
+    public void flush() {
+        storeViews();
+        store.flush();
+    }
+
+    /**
+     * Передаёт хранилищу накопленные просмотры отдельной пачкой, не дожидаясь записи на диск.
+     */
+    protected void storeViews() {
+        if (durable && !unsavedViews.isEmpty()) {
+            storeChanges(List.of(), List.of());
+        }
+    }
 
-        if (subtasks.isEmpty()) {
-            epic.setStatus(Status.NEW);
+    /**
+     * Сбрасывает накопленное и закрывает хранилище.
+     */
+    @Override
+    public void close() {
+        flush();
+        store.close();
+    }
+
+    // Передаёт хранилищу результат изменения вместе с просмотрами, накопленными до него
+    private void storeChanges(List<? extends Task> puts, List<Integer> removes) {
+        if (!durable) {
             return;
         }
+        List<Integer> views = unsavedViews.isEmpty() ? List.of() : new ArrayList<>(unsavedViews);
+        unsavedViews.clear();
+        store.write(new TaskStore.Batch(views, puts, removes, this::historyIds, historyManager.getCapacity()));
+    }
 
-        boolean allNew = true;
-        boolean allDone = true;
+    private List<Integer> historyIds() {
+        List<Task> history = historyManager.getHistory();
+        List<Integer> ids = new ArrayList<>(history.size());
+        for (Task task : history) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
 
-        for (Subtask subtask : subtasks) {
-            if (subtask.getStatus() != Status.NEW) {
-                allNew = false;
+    // Читает хранилище: записи помещаются без индексов, индексы строятся одним проходом
+    private void loadFromStore() {
+        List<Integer> history = store.scan(task -> {
+            if (task instanceof Subtask && !epics.containsKey(((Subtask) task).getEpicId())) {
+                throw new FileBackedTaskManager.ManagerLoadException("Эпик " + ((Subtask) task).getEpicId()
+                        + " не найден для подзадачи " + task.getId());
             }
-            if (subtask.getStatus() != Status.DONE) {
-                allDone = false;
+            stageRestoredTask(task);
+        });
+        rebuildIndexes(null);
+        for (int id : history) {
+            Task task = tasks.get(id);
+            if (task == null) task = epics.get(id);
+            if (task == null) task = subtasks.get(id);
+            if (task != null) {
+                historyManager.add(task);
             }
         }
+    }
 
-        if (allNew) {
-            epic.setStatus(Status.NEW);
-        } else if (allDone) {
-            epic.setStatus(Status.DONE);
+    /*
+        Копия задачи для тех, кто читает её без блокировки менеджера (фоновый снимок, параллельные
+        читатели): исходный объект может измениться. Ленивое описание не читается: копия получает тот же загрузчик.
+     */
+    static Task copyOf(Task task) {
+        Supplier<String> loader = task.getDescriptionLoader();
+        String description = loader == null ? task.getDescription() : "";
+        Task copy;
+        if (task instanceof Epic epic) {
+            Epic epicCopy = new Epic(epic.getId(), epic.getName(), description);
+            epicCopy.setStatus(epic.getStatus());
+            for (int subtaskId : epic.getSubtaskIds()) {
+                epicCopy.addSubtaskId(subtaskId);
+            }
+            epicCopy.updateEpicFields(epic.getStartTime(), epic.getDuration(), epic.getEndTime());
+            copy = epicCopy;
+        } else if (task instanceof Subtask subtask) {
+            copy = new Subtask(subtask.getId(), subtask.getName(), description, subtask.getStatus(),
+                    subtask.getEpicId(), subtask.getDuration(), subtask.getStartTime());
         } else {
-            epic.setStatus(Status.IN_PROGRESS);
+            copy = new Task(task.getId(), task.getName(), description, task.getStatus(),
+                    task.getDuration(), task.getStartTime());
+        }
+        if (loader != null) {
+            copy.setDescriptionLoader(loader);
         }
+        return copy;
+    }
+
+    // Показатели эпика; для эпиков, восстановленных напрямую в хранилище, создаются при первом обращении
+    private EpicAggregate aggregateOf(int epicId) {
+        return epicAggregates.computeIfAbsent(epicId, id -> new EpicAggregate());
+    }
+
+    // Обновление статуса эпика на основе накопленных статусов его подзадач
+    void updateEpicStatus(Epic epic) {
+        epic.setStatus(aggregateOf(epic.getId()).getStatus());
     }
 
     /**
      * Обновляет временные параметры эпика (начало, продолжительность, окончание)
      */
     private void updateEpicTimeFields(Epic epic) {
-        epic.updateEpicFields(this);
+        EpicAggregate aggregate = aggregateOf(epic.getId());
+        epic.updateEpicFields(aggregate.getStartTime(), aggregate.getDuration(), aggregate.getEndTime());
     }
 }
-
-
@@ -0,0 +1,173 @@
+package manager;
+
+import model.Task;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Описания задач, которые читаются из снимка по смещениям, а не хранятся в памяти.
+ * Задача получает загрузчик ({@link Task#setDescriptionLoader}) с id, смещением и длиной описания;
+ * последние прочитанные описания держатся в небольшом кэше LRU.
+ * <p>
+ * Файл открыт, пока объект не закрыт: после атомарной замены снимка чтение идёт из прежней версии файла,
+ * поэтому смещения остаются верными. После {@link #close()} загрузчики этого файла недоступны.
+ * <p>
+ * При записи следующего снимка описания не читаются: {@link #transferEscapedDescription} переносит
+ * диапазон байт описания из прежнего снимка в новый в том виде, в каком он записан,
+ * поэтому ни прежний снимок, ни описания в кучу не загружаются.
+ */
+class LazyDescriptionFile implements Closeable {
+    private final File file;
+    private final FileChannel channel;
+    private final Map<Integer, String> cache;
+    private long reads;
+    private long hits;
+    private long copiedBytes;
+
+    /**
+     * @param file      файл снимка CSV
+     * @param cacheSize сколько описаний держать в кэше
+     * @throws ManagerLoadException если файл не открывается
+     */
+    LazyDescriptionFile(File file, int cacheSize) {
+        this.file = file;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        try {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка открытия снимка " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Заменяет описание задачи в памяти чтением из файла.
+     *
+     * @param task   задача из этого снимка
+     * @param offset смещение описания в байтах
+     * @param length длина описания в байтах UTF-8
+     */
+    void defer(Task task, long offset, int length) {
+        task.setDescriptionLoader(new Deferred(this, task.getId(), offset, length));
+    }
+
+    // Прочитано описаний с диска
+    synchronized long getReads() {
+        return reads;
+    }
+
+    // Описаний найдено в кэше
+    synchronized long getHits() {
+        return hits;
+    }
+
+    // Байт описаний, перенесённых из этого снимка в следующие
+    synchronized long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        cache.clear();
+        channel.close();
+    }
+
+    // Переносит диапазон байт снимка в канал, не читая его в кучу
+    private synchronized void transferTo(int id, long offset, int length, WritableByteChannel target) {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("Описание задачи " + id + " недоступно: снимок " + file.getPath()
+                    + " закрыт");
+        }
+        try {
+            long done = 0;
+            while (done < length) {
+                long count = channel.transferTo(offset + done, length - done, target);
+                if (count <= 0) {
+                    throw new FileBackedTaskManager.ManagerLoadException("Описание задачи " + id + " обрезано");
+                }
+                done += count;
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка копирования описания задачи " + id, e);
+        }
+        copiedBytes += length;
+    }
+
+    private synchronized String read(int id, long offset, int length) {
+        String cached = cache.get(id);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("Описание задачи " + id + " недоступно: снимок " + file.getPath()
+                    + " закрыт");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new FileBackedTaskManager.ManagerLoadException("Описание задачи " + id + " обрезано");
+                }
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения описания задачи " + id, e);
+        }
+        reads++;
+        String description = CsvField.unescape(new String(buffer.array(), StandardCharsets.UTF_8));
+        cache.put(id, description);
+        return description;
+    }
+
+    // Загрузчик описания задачи; по нему описание находится в снимке при переносе
+    private static final class Deferred implements Supplier<String> {
+        private final LazyDescriptionFile source;
+        private final int id;
+        private final long offset;
+        private final int length;
+
+        Deferred(LazyDescriptionFile source, int id, long offset, int length) {
+            this.source = source;
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String get() {
+            return source.read(id, offset, length);
+        }
+    }
+
+    // Читается ли описание задачи из снимка
+    static boolean isDeferred(Task task) {
+        return task.getDescriptionLoader() instanceof Deferred;
+    }
+
+    /**
+     * Переносит описание задачи из её снимка в канал в том виде, в каком оно записано в снимке.
+     *
+     * @param task   задача с ленивым описанием ({@link #isDeferred(Task)})
+     * @param target канал нового снимка
+     * @return количество перенесённых байт
+     */
+    static int transferEscapedDescription(Task task, WritableByteChannel target) {
+        Deferred deferred = (Deferred) task.getDescriptionLoader();
+        deferred.source.transferTo(deferred.id, deferred.offset, deferred.length, target);
+        return deferred.length;
+    }
+}
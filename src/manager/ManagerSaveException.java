@@ -8,5 +8,6 @@ public class ManagerSaveException extends RuntimeException {
     }
 
     public ManagerSaveException(String message) {
+        super(message);
     }
 }
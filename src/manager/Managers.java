@@ -1,5 +1,7 @@
 package manager;
 
+import java.io.File;
+
 public final class Managers {
     // Создадим приватным конструктор для избежания создания экземпляра класса и наследования
     private Managers() {
@@ -10,8 +12,35 @@ public final class Managers {
         return new InMemoryTaskManager();
     }
 
-    // Метод возвращает реализацию HistoryManager по умолчанию
+    // Метод возвращает потокобезопасную реализацию TaskManager для многопоточного сервера
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    /*
+        Метод возвращает менеджер поверх выбранного хранилища, восстановив сохранённое состояние.
+        Менеджер нужно закрыть, чтобы сбросить накопленные просмотры и освободить файл.
+     */
+    public static InMemoryTaskManager getStored(TaskStore.Engine engine, File file) {
+        return new InMemoryTaskManager(TaskStore.open(engine, file));
+    }
+
+    /*
+        Метод возвращает менеджер для досок, которые не помещаются в память: задачи хранятся на диске
+        в B+-деревьях, в памяти — только кэш из cachePages страниц по 4 КБ.
+     */
+    public static PagedTaskManager getPaged(File file, int cachePages) {
+        return new PagedTaskManager(file, cachePages);
+    }
+
+    /*
+        Метод возвращает реализацию HistoryManager по умолчанию. Системное свойство
+        kanban.history=array выбирает историю на массивах, которая не выделяет память при просмотрах.
+     */
     public static HistoryManager getDefaultHistory() {
+        if ("array".equalsIgnoreCase(System.getProperty("kanban.history", "").trim())) {
+            return new ArrayHistoryManager();
+        }
         return new InMemoryHistoryManager();
     }
 }
@@ -0,0 +1,38 @@
+package manager;
+
+import model.Task;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище без сохранения: состояние живёт только в памяти менеджера.
+ */
+final class MemoryTaskStore implements TaskStore {
+    static final MemoryTaskStore INSTANCE = new MemoryTaskStore();
+
+    private MemoryTaskStore() {
+    }
+
+    @Override
+    public List<Integer> scan(Consumer<Task> sink) {
+        return List.of();
+    }
+
+    @Override
+    public void write(Batch batch) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
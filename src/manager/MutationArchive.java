@@ -0,0 +1,188 @@
+package manager;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Архив изменений FileBackedTaskManager для восстановления доски на момент в прошлом.
+ * <pre>
+ * файл.archive       — записи журнала с номером и временем: "номер,время в мс,запись"; не очищается
+ * файл.archive.N     — контрольный снимок состояния после записи N в формате снимков менеджера
+ * файл.archive.index — строки "N,время в мс,смещение": снимок N и позиция следующей за ним записи
+ * </pre>
+ * Контрольный снимок пишется при включении пустого архива и затем через каждые interval записей,
+ * поэтому восстановление читает ближайший снимок и применяет не больше interval записей.
+ */
+class MutationArchive implements Closeable {
+    private final File file;
+    private final TaskJournal log;
+    private final TaskJournal index;
+    private final int interval;
+    private final boolean fsync;
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private long sequence; // Номер последней записи
+    private long sinceCheckpoint;
+
+    /**
+     * Открывает архив рядом с файлом менеджера; номер последней записи читается
+     * с позиции последнего контрольного снимка.
+     *
+     * @param base     файл снимка менеджера
+     * @param interval через сколько записей писать контрольный снимок
+     * @param fsync    записывать ли архив на устройство после каждого изменения
+     */
+    MutationArchive(File base, int interval, boolean fsync) {
+        this.file = new File(base.getPath() + ".archive");
+        this.log = new TaskJournal(file);
+        this.index = new TaskJournal(new File(file.getPath() + ".index"));
+        this.interval = interval;
+        this.fsync = fsync;
+        index.replay(line -> {
+            String[] parts = line.split(",");
+            checkpoints.add(new Checkpoint(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2])));
+        });
+        if (!checkpoints.isEmpty()) {
+            Checkpoint last = checkpoints.get(checkpoints.size() - 1);
+            sequence = replay(last, Long.MAX_VALUE, Long.MAX_VALUE, record -> sinceCheckpoint++);
+        }
+    }
+
+    boolean isEmpty() {
+        return checkpoints.isEmpty();
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    boolean needsCheckpoint() {
+        return sinceCheckpoint >= interval;
+    }
+
+    /**
+     * Дописывает записи журнала, присваивая им следующие номера и текущее время.
+     *
+     * @param records записи в формате журнала менеджера
+     */
+    void append(List<String> records) {
+        long now = System.currentTimeMillis();
+        List<String> lines = new ArrayList<>(records.size());
+        for (String record : records) {
+            lines.add(++sequence + "," + now + "," + record);
+        }
+        log.append(lines);
+        if (fsync) {
+            log.sync();
+        }
+        sinceCheckpoint += records.size();
+    }
+
+    /**
+     * Записывает контрольный снимок состояния после последней записи.
+     *
+     * @param snapshot данные снимка в формате менеджера
+     */
+    void checkpoint(byte[] snapshot) {
+        long offset = file.length(); // Записи дописаны и сброшены в append
+        Checkpoint checkpoint = new Checkpoint(sequence, System.currentTimeMillis(), offset);
+        try {
+            FileBackedTaskManager.writeAtomically(checkpointFile(checkpoint).toPath(), snapshot, fsync);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи контрольного снимка архива", e);
+        }
+        index.append(List.of(checkpoint.sequence + "," + checkpoint.time + "," + checkpoint.offset));
+        if (fsync) {
+            index.sync();
+        }
+        checkpoints.add(checkpoint);
+        sinceCheckpoint = 0;
+    }
+
+    /**
+     * Ближайший контрольный снимок не позже указанного номера и времени.
+     *
+     * @throws IllegalArgumentException если архив начинается позже
+     */
+    Checkpoint checkpointBefore(long targetSequence, long targetTime) {
+        Checkpoint found = null;
+        for (Checkpoint checkpoint : checkpoints) {
+            if (checkpoint.sequence > targetSequence || checkpoint.time > targetTime) {
+                break;
+            }
+            found = checkpoint;
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("Архив изменений начинается позже запрошенного момента");
+        }
+        return found;
+    }
+
+    File checkpointFile(Checkpoint checkpoint) {
+        return new File(file.getPath() + "." + checkpoint.sequence);
+    }
+
+    /**
+     * Передаёт обработчику записи после контрольного снимка, пока номер и время
+     * не превышают указанных.
+     *
+     * @return номер последней переданной записи
+     */
+    long replay(Checkpoint from, long targetSequence, long targetTime, Consumer<String> handler) {
+        long reached = from.sequence;
+        if (!file.exists()) {
+            return reached;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(channel.position(from.offset)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int first = line.indexOf(',');
+                int second = line.indexOf(',', first + 1);
+                if (first < 0 || second < 0) {
+                    break; // Незавершённая последняя запись
+                }
+                long recordSequence = Long.parseLong(line.substring(0, first));
+                long recordTime = Long.parseLong(line.substring(first + 1, second));
+                if (recordSequence > targetSequence || recordTime > targetTime) {
+                    break;
+                }
+                handler.accept(line.substring(second + 1));
+                reached = recordSequence;
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения архива " + file.getPath(), e);
+        }
+        return reached;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+        index.close();
+    }
+
+    // Контрольный снимок: номер последней вошедшей в него записи, время и позиция следующей записи
+    static final class Checkpoint {
+        final long sequence;
+        final long time;
+        final long offset;
+
+        Checkpoint(long sequence, long time, long offset) {
+            this.sequence = sequence;
+            this.time = time;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package manager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Страничный файл с ограниченным кэшем страниц.
+ * Файл делится на страницы фиксированного размера; в памяти держится не больше заданного
+ * числа страниц, вытесняемая страница выбирается алгоритмом «часы» (clock): стрелка обходит
+ * кадры и вытесняет первый, к которому не обращались с прошлого прохода.
+ * Изменённая страница записывается на диск при вытеснении или в {@link #flush()}.
+ * <p>
+ * Буфер, полученный из {@link #page(int)}, действителен только до следующего обращения
+ * к кэшу: следующий вызов может вытеснить эту страницу. Не потокобезопасен.
+ */
+class PageCache implements Closeable {
+    static final int PAGE_SIZE = 4096;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int capacity;
+    private final ByteBuffer[] frames;
+    private final int[] framePages; // Номер страницы в кадре, -1 — кадр свободен
+    private final boolean[] referenced;
+    private final boolean[] dirty;
+    private final Map<Integer, Integer> frameOfPage; // Не больше capacity элементов
+    private int hand;
+    private int pageCount;
+
+    private long hits;
+    private long pageReads;
+    private long pageWrites;
+    private long evictions;
+
+    /**
+     * Открывает страничный файл, создавая его при необходимости.
+     *
+     * @param file     файл страниц
+     * @param capacity сколько страниц держать в памяти, не меньше 4
+     * @throws ManagerSaveException при ошибке открытия файла
+     */
+    PageCache(File file, int capacity) {
+        if (capacity < 4) {
+            throw new IllegalArgumentException("Кэш должен вмещать хотя бы 4 страницы: " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        this.frames = new ByteBuffer[capacity];
+        this.framePages = new int[capacity];
+        this.referenced = new boolean[capacity];
+        this.dirty = new boolean[capacity];
+        this.frameOfPage = new HashMap<>(capacity * 2);
+        Arrays.fill(framePages, -1);
+        try {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.pageCount = (int) (channel.size() / PAGE_SIZE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка открытия страничного файла " + file.getPath(), e);
+        }
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Возвращает буфер страницы (позиция 0, предел — размер страницы).
+     * Если страница будет изменена, нужно вызвать {@link #markDirty(int)}.
+     *
+     * @param pageNo номер существующей страницы
+     */
+    ByteBuffer page(int pageNo) {
+        if (pageNo < 0 || pageNo >= pageCount) {
+            throw new IllegalArgumentException("Страницы " + pageNo + " нет в файле " + file.getPath());
+        }
+        Integer frame = frameOfPage.get(pageNo);
+        if (frame != null) {
+            hits++;
+            referenced[frame] = true;
+            return frames[frame].clear();
+        }
+        int victim = evict();
+        ByteBuffer buffer = frames[victim].clear();
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, (long) pageNo * PAGE_SIZE + buffer.position()) < 0) {
+                    Arrays.fill(buffer.array(), buffer.position(), PAGE_SIZE, (byte) 0); // Страница ещё не записана
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения страницы " + pageNo, e);
+        }
+        pageReads++;
+        install(victim, pageNo);
+        return buffer.clear();
+    }
+
+    void markDirty(int pageNo) {
+        Integer frame = frameOfPage.get(pageNo);
+        if (frame == null) {
+            throw new IllegalStateException("Страница " + pageNo + " не загружена в кэш");
+        }
+        dirty[frame] = true;
+    }
+
+    /**
+     * Добавляет в конец файла новую страницу, заполненную нулями, и возвращает её номер.
+     * Страница сразу помечена изменённой.
+     */
+    int allocate() {
+        int pageNo = pageCount++;
+        int victim = evict();
+        Arrays.fill(frames[victim].array(), (byte) 0);
+        install(victim, pageNo);
+        dirty[victim] = true;
+        return pageNo;
+    }
+
+    /**
+     * Записывает все изменённые страницы и принудительно сбрасывает файл на устройство.
+     */
+    void flush() {
+        try {
+            for (int frame = 0; frame < capacity; frame++) {
+                if (dirty[frame]) {
+                    writeFrame(frame);
+                }
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи страничного файла " + file.getPath(), e);
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    // Сколько страниц сейчас в памяти; никогда не больше ёмкости
+    int getCachedPages() {
+        return frameOfPage.size();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getPageReads() {
+        return pageReads;
+    }
+
+    long getPageWrites() {
+        return pageWrites;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            flush();
+            channel.close();
+        }
+    }
+
+    private void install(int frame, int pageNo) {
+        framePages[frame] = pageNo;
+        frameOfPage.put(pageNo, frame);
+        referenced[frame] = true;
+        dirty[frame] = false;
+    }
+
+    // Находит кадр для новой страницы: свободный или вытесненный по алгоритму «часы»
+    private int evict() {
+        while (true) {
+            int frame = hand;
+            hand = (hand + 1) % capacity;
+            if (framePages[frame] < 0) {
+                if (frames[frame] == null) {
+                    frames[frame] = ByteBuffer.allocate(PAGE_SIZE);
+                }
+                return frame;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false; // Второй шанс
+                continue;
+            }
+            if (dirty[frame]) {
+                try {
+                    writeFrame(frame);
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка записи страницы " + framePages[frame], e);
+                }
+            }
+            frameOfPage.remove(framePages[frame]);
+            framePages[frame] = -1;
+            evictions++;
+            return frame;
+        }
+    }
+
+    private void writeFrame(int frame) throws IOException {
+        ByteBuffer buffer = frames[frame].duplicate().clear();
+        long position = (long) framePages[frame] * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        dirty[frame] = false;
+        pageWrites++;
+    }
+}
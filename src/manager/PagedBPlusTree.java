@@ -0,0 +1,336 @@
+package manager;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * B+-дерево с ключами и значениями типа long на страницах {@link PageCache}.
+ * <pre>
+ * страница: вид (1 байт: 1 — лист, 2 — внутренний узел), резерв (3), количество ключей (int),
+ *           следующий лист (int), предыдущий лист (int), данные с 16-го байта
+ * лист:     пары (ключ long, значение long) по возрастанию ключа, до 255 пар
+ * узел:     ключи long[339], затем номера дочерних страниц int[340];
+ *           в дочерней странице i лежат ключи из [ключ i-1, ключ i)
+ * </pre>
+ * Листья связаны в двусвязный список для обхода в обе стороны.
+ * Удаление убирает пару из листа без слияния узлов: при нагрузке «в основном вставки»
+ * это дешевле, а пустые листья пропускаются при обходе. Место таких листьев
+ * возвращается при переписывании файла.
+ * <p>
+ * Дерево не хранит состояние в памяти, кроме номера корня: каждый спуск читает страницы через кэш.
+ */
+class PagedBPlusTree {
+    static final long NONE = Long.MIN_VALUE; // Нет значения
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int COUNT = 4;
+    private static final int NEXT = 8;
+    private static final int PREV = 12;
+    private static final int DATA = 16;
+    static final int LEAF_CAPACITY = (PageCache.PAGE_SIZE - DATA) / 16;
+    static final int INTERNAL_CAPACITY = (PageCache.PAGE_SIZE - DATA - 4) / 12;
+    private static final int CHILDREN = DATA + INTERNAL_CAPACITY * 8;
+
+    private final PageCache cache;
+    private int root;
+
+    /**
+     * @param cache кэш страничного файла
+     * @param root  номер корневой страницы или -1, чтобы создать пустое дерево
+     */
+    PagedBPlusTree(PageCache cache, int root) {
+        this.cache = cache;
+        if (root < 0) {
+            root = cache.allocate();
+            ByteBuffer page = cache.page(root);
+            page.put(0, LEAF).putInt(COUNT, 0).putInt(NEXT, -1).putInt(PREV, -1);
+            cache.markDirty(root);
+        }
+        this.root = root;
+    }
+
+    int getRoot() {
+        return root;
+    }
+
+    /**
+     * Ищет значение по ключу: одна страница на уровень дерева.
+     *
+     * @return значение или {@link #NONE}
+     */
+    long get(long key) {
+        int leaf = findLeaf(key, null);
+        ByteBuffer page = cache.page(leaf);
+        int index = lowerBound(page, key);
+        if (index < page.getInt(COUNT) && leafKey(page, index) == key) {
+            return leafValue(page, index);
+        }
+        return NONE;
+    }
+
+    /**
+     * Вставляет пару или заменяет значение существующего ключа.
+     *
+     * @return true, если ключ добавлен, false — если значение заменено
+     */
+    boolean put(long key, long value) {
+        Deque<Integer> path = new ArrayDeque<>();
+        int leaf = findLeaf(key, path);
+        ByteBuffer page = cache.page(leaf);
+        int count = page.getInt(COUNT);
+        int index = lowerBound(page, key);
+        if (index < count && leafKey(page, index) == key) {
+            page.putLong(DATA + index * 16 + 8, value);
+            cache.markDirty(leaf);
+            return false;
+        }
+
+        long[] keys = new long[count + 1];
+        long[] values = new long[count + 1];
+        for (int i = 0, j = 0; i <= count; i++) {
+            if (i == index) {
+                keys[i] = key;
+                values[i] = value;
+            } else {
+                keys[i] = leafKey(page, j);
+                values[i] = leafValue(page, j);
+                j++;
+            }
+        }
+        if (count + 1 <= LEAF_CAPACITY) {
+            writeLeaf(leaf, keys, values, 0, count + 1);
+            return true;
+        }
+
+        // Разделение листа: правая половина уходит на новую страницу
+        int next = page.getInt(NEXT);
+        int half = (count + 1) / 2;
+        int right = cache.allocate();
+        writeLeaf(leaf, keys, values, 0, half);
+        writeLeaf(right, keys, values, half, count + 1);
+        setLinks(right, next, leaf);
+        setLinks(leaf, right, cache.page(leaf).getInt(PREV));
+        if (next >= 0) {
+            cache.page(next).putInt(PREV, right);
+            cache.markDirty(next);
+        }
+        insertIntoParent(path, leaf, keys[half], right);
+        return true;
+    }
+
+    /**
+     * Удаляет ключ из листа.
+     *
+     * @return true, если ключ был
+     */
+    boolean remove(long key) {
+        int leaf = findLeaf(key, null);
+        ByteBuffer page = cache.page(leaf);
+        int count = page.getInt(COUNT);
+        int index = lowerBound(page, key);
+        if (index >= count || leafKey(page, index) != key) {
+            return false;
+        }
+        byte[] data = page.array();
+        System.arraycopy(data, DATA + (index + 1) * 16, data, DATA + index * 16, (count - index - 1) * 16);
+        page.putInt(COUNT, count - 1);
+        cache.markDirty(leaf);
+        return true;
+    }
+
+    /**
+     * Курсор по возрастанию, начиная с первого ключа, не меньшего fromKey.
+     */
+    Cursor ascending(long fromKey) {
+        int leaf = findLeaf(fromKey, null);
+        return new Cursor(leaf, lowerBound(cache.page(leaf), fromKey) - 1, true);
+    }
+
+    /**
+     * Курсор по убыванию, начиная с последнего ключа, не большего fromKey.
+     */
+    Cursor descending(long fromKey) {
+        int leaf = findLeaf(fromKey, null);
+        return new Cursor(leaf, upperBound(cache.page(leaf), fromKey), false);
+    }
+
+    /**
+     * Курсор по листьям. Становится недействительным после изменения дерева.
+     */
+    final class Cursor {
+        private int leaf;
+        private int index;
+        private final boolean forward;
+        private long key;
+        private long value;
+
+        private Cursor(int leaf, int index, boolean forward) {
+            this.leaf = leaf;
+            this.index = index;
+            this.forward = forward;
+        }
+
+        /**
+         * Переходит к следующей паре.
+         *
+         * @return false, если пары закончились
+         */
+        boolean next() {
+            while (leaf >= 0) {
+                ByteBuffer page = cache.page(leaf);
+                index += forward ? 1 : -1;
+                if (index >= 0 && index < page.getInt(COUNT)) {
+                    key = leafKey(page, index);
+                    value = leafValue(page, index);
+                    return true;
+                }
+                leaf = page.getInt(forward ? NEXT : PREV);
+                if (leaf >= 0) {
+                    index = forward ? -1 : cache.page(leaf).getInt(COUNT);
+                }
+            }
+            return false;
+        }
+
+        long key() {
+            return key;
+        }
+
+        long value() {
+            return value;
+        }
+    }
+
+    // Спускается к листу, который должен содержать ключ; path получает пройденные внутренние узлы
+    private int findLeaf(long key, Deque<Integer> path) {
+        int pageNo = root;
+        while (true) {
+            ByteBuffer page = cache.page(pageNo);
+            if (page.get(0) == LEAF) {
+                return pageNo;
+            }
+            if (path != null) {
+                path.push(pageNo);
+            }
+            pageNo = page.getInt(CHILDREN + upperBoundInternal(page, key) * 4);
+        }
+    }
+
+    // Вставляет разделитель и новую правую страницу в родителя, разделяя узлы вверх по пути
+    private void insertIntoParent(Deque<Integer> path, int left, long separator, int right) {
+        while (true) {
+            if (path.isEmpty()) {
+                int newRoot = cache.allocate();
+                writeInternal(newRoot, new long[]{separator}, new int[]{left, right}, 0, 1);
+                root = newRoot;
+                return;
+            }
+            int parent = path.pop();
+            ByteBuffer page = cache.page(parent);
+            int count = page.getInt(COUNT);
+            int position = upperBoundInternal(page, separator);
+            long[] keys = new long[count + 1];
+            int[] children = new int[count + 2];
+            for (int i = 0, j = 0; i <= count; i++) {
+                keys[i] = i == position ? separator : page.getLong(DATA + (j++) * 8);
+            }
+            for (int i = 0, j = 0; i <= count + 1; i++) {
+                children[i] = i == position + 1 ? right : page.getInt(CHILDREN + (j++) * 4);
+            }
+            if (count + 1 <= INTERNAL_CAPACITY) {
+                writeInternal(parent, keys, children, 0, count + 1);
+                return;
+            }
+            // Средний ключ поднимается выше и не остаётся ни в одной половине
+            int middle = (count + 1) / 2;
+            int sibling = cache.allocate();
+            writeInternal(parent, keys, children, 0, middle);
+            writeInternal(sibling, keys, children, middle + 1, count + 1);
+            left = parent;
+            separator = keys[middle];
+            right = sibling;
+        }
+    }
+
+    private void writeLeaf(int pageNo, long[] keys, long[] values, int from, int to) {
+        ByteBuffer page = cache.page(pageNo);
+        page.put(0, LEAF).putInt(COUNT, to - from);
+        for (int i = from; i < to; i++) {
+            page.putLong(DATA + (i - from) * 16, keys[i]).putLong(DATA + (i - from) * 16 + 8, values[i]);
+        }
+        cache.markDirty(pageNo);
+    }
+
+    // Ключи [from, to) и дочерние страницы [from, to]
+    private void writeInternal(int pageNo, long[] keys, int[] children, int from, int to) {
+        ByteBuffer page = cache.page(pageNo);
+        page.put(0, INTERNAL).putInt(COUNT, to - from).putInt(NEXT, -1).putInt(PREV, -1);
+        for (int i = from; i < to; i++) {
+            page.putLong(DATA + (i - from) * 8, keys[i]);
+        }
+        for (int i = from; i <= to; i++) {
+            page.putInt(CHILDREN + (i - from) * 4, children[i]);
+        }
+        cache.markDirty(pageNo);
+    }
+
+    private void setLinks(int pageNo, int next, int prev) {
+        cache.page(pageNo).putInt(NEXT, next).putInt(PREV, prev);
+        cache.markDirty(pageNo);
+    }
+
+    private static long leafKey(ByteBuffer page, int index) {
+        return page.getLong(DATA + index * 16);
+    }
+
+    private static long leafValue(ByteBuffer page, int index) {
+        return page.getLong(DATA + index * 16 + 8);
+    }
+
+    // Первый индекс листа с ключом >= key
+    private static int lowerBound(ByteBuffer page, long key) {
+        int low = 0;
+        int high = page.getInt(COUNT);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (leafKey(page, mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Первый индекс листа с ключом > key
+    private static int upperBound(ByteBuffer page, long key) {
+        int low = 0;
+        int high = page.getInt(COUNT);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (leafKey(page, mid) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Количество ключей внутреннего узла, не больших key, — номер дочерней страницы
+    private static int upperBoundInternal(ByteBuffer page, long key) {
+        int low = 0;
+        int high = page.getInt(COUNT);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (page.getLong(DATA + mid * 8) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
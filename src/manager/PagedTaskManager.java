@@ -0,0 +1,1044 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Менеджер задач для досок, которые не помещаются в память.
+ * Задачи лежат на диске, в памяти — только ограниченный кэш страниц ({@link PageCache}),
+ * поэтому расход памяти не зависит от размера доски.
+ * <ul>
+ *     <li>файл страниц: заголовок и B+-деревья ({@link PagedBPlusTree}) — по (вид, id),
+ *     по (время начала в минутах, id) для списка приоритетов и проверки пересечений,
+ *     связи (id эпика, id подзадачи) и по (id эпика, минута) — количество подзадач эпика,
+ *     которые начинаются и заканчиваются в эту минуту;</li>
+ *     <li>файл данных (суффикс .data): записи задач в двоичном формате снимка, дописываются в конец;
+ *     значение в дереве по id — смещение и длина записи.</li>
+ * </ul>
+ * Поиск по id читает по одной странице на уровень дерева (верхние уровни обычно в кэше)
+ * и одну запись из файла данных. Запись эпика хранит количество его подзадач в каждом статусе
+ * и суммарную продолжительность, а начало и окончание берутся из деревьев времён эпиков,
+ * поэтому изменение подзадачи обновляет эпик за O(log n), не читая остальные подзадачи.
+ * <p>
+ * Когда мёртвых записей в файле данных становится больше, чем живых, живые переписываются
+ * во второй файл данных (суффикс .data.1, затем снова .data), и доска сбрасывается на диск:
+ * заголовок переключается на новый файл, после чего прежний удаляется.
+ * <p>
+ * Коллекции, которые возвращают getAllTasks, getAllSubtasks, getAllEpics и getPrioritizedTasks, —
+ * представления: задачи читаются с диска при обходе. Изменять менеджер во время обхода нельзя.
+ * Состояние на диске согласовано после {@link #flush()} и {@link #close()}. История просмотров
+ * хранится только в памяти, поэтому она ограничена ({@link #DEFAULT_HISTORY_CAPACITY} задач
+ * по умолчанию); ёмкость хранится в заголовке. Не потокобезопасен.
+ */
+public class PagedTaskManager implements TaskManager, AutoCloseable {
+    public static final int DEFAULT_CACHE_PAGES = 1024; // 4 МБ
+    public static final int DEFAULT_HISTORY_CAPACITY = 10;
+
+    private static final byte[] MAGIC = {'K', 'B', 'P', 'T'};
+    private static final int VERSION = 2;
+    private static final int HEADER_PAGE = 0;
+    private static final int TASK = 1;
+    private static final int EPIC = 2;
+    private static final int SUBTASK = 3;
+    private static final int MAX_RECORD = (1 << 24) - 1; // Длина записи хранится в 24 битах значения
+    private static final long COMPACT_MIN_BYTES = 1 << 20; // Файл данных меньше этого не сжимается
+    private static final Status[] STATUSES = Status.values();
+
+    private final File file;
+    private final PageCache cache;
+    private FileChannel data;
+    private int dataSlot; // 0 — файл .data, 1 — файл .data.1
+    private boolean compacted; // Файл данных сжат, прежний нужен заголовку на диске до сброса
+    private final PagedBPlusTree byId;
+    private final PagedBPlusTree byStart;
+    private final PagedBPlusTree epicSubtasks;
+    private final PagedBPlusTree epicStarts;
+    private final PagedBPlusTree epicEnds;
+    private final HistoryManager historyManager = Managers.getDefaultHistory();
+    private int nextId = 1;
+    private long dataLength;
+    private long liveBytes; // Суммарная длина записей, на которые указывает дерево по id
+    private final int[] counts = new int[SUBTASK + 1]; // Количество записей по видам
+    private int scheduledCount; // Задачи и подзадачи со временем начала
+    private long recordReads;
+
+    /**
+     * Открывает или создаёт доску с кэшем по умолчанию.
+     *
+     * @param file файл страниц; рядом создаётся файл данных с суффиксом .data
+     */
+    public PagedTaskManager(File file) {
+        this(file, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Открывает или создаёт доску.
+     *
+     * @param file       файл страниц; рядом создаётся файл данных с суффиксом .data
+     * @param cachePages сколько страниц по 4 КБ держать в памяти
+     * @throws FileBackedTaskManager.ManagerLoadException если файл не является файлом доски
+     */
+    public PagedTaskManager(File file, int cachePages) {
+        if (file == null) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл не может быть null");
+        }
+        this.file = file;
+        this.cache = new PageCache(file, cachePages);
+        if (cache.getPageCount() == 0) {
+            historyManager.setCapacity(DEFAULT_HISTORY_CAPACITY);
+            cache.allocate(); // Заголовок
+            byId = new PagedBPlusTree(cache, -1);
+            byStart = new PagedBPlusTree(cache, -1);
+            epicSubtasks = new PagedBPlusTree(cache, -1);
+            epicStarts = new PagedBPlusTree(cache, -1);
+            epicEnds = new PagedBPlusTree(cache, -1);
+            writeHeader();
+        } else {
+            ByteBuffer header = cache.page(HEADER_PAGE);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt(4) != VERSION) {
+                closeQuietly(cache);
+                throw new FileBackedTaskManager.ManagerLoadException("Файл не является файлом доски: " + file.getPath());
+            }
+            int idRoot = header.getInt(8);
+            int startRoot = header.getInt(12);
+            nextId = header.getInt(16);
+            dataLength = header.getLong(20);
+            for (int kind = TASK; kind <= SUBTASK; kind++) {
+                counts[kind] = header.getInt(24 + kind * 4);
+            }
+            scheduledCount = header.getInt(40);
+            int subtasksRoot = header.getInt(44);
+            int startsRoot = header.getInt(48);
+            int endsRoot = header.getInt(52);
+            liveBytes = header.getLong(56);
+            dataSlot = header.getInt(64);
+            historyManager.setCapacity(header.getInt(68));
+            byId = new PagedBPlusTree(cache, idRoot);
+            byStart = new PagedBPlusTree(cache, startRoot);
+            epicSubtasks = new PagedBPlusTree(cache, subtasksRoot);
+            epicStarts = new PagedBPlusTree(cache, startsRoot);
+            epicEnds = new PagedBPlusTree(cache, endsRoot);
+        }
+        File dataFile = dataFile(dataSlot);
+        try {
+            // Второй файл данных остался от сжатия, которое не дошло до сброса или до удаления
+            Files.deleteIfExists(dataFile(1 - dataSlot).toPath());
+            this.data = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            closeQuietly(cache);
+            throw new ManagerSaveException("Ошибка открытия файла данных " + dataFile.getPath(), e);
+        }
+    }
+
+    @Override
+    public Collection<Task> getAllTasks() {
+        return new KindView<>(TASK);
+    }
+
+    @Override
+    public Collection<Task> getAllSubtasks() {
+        return new KindView<>(SUBTASK);
+    }
+
+    @Override
+    public Collection<Task> getAllEpics() {
+        return new KindView<>(EPIC);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public HistoryDelta getHistorySince(long since) {
+        return historyManager.getChangesSince(since);
+    }
+
+    /**
+     * Ограничивает историю просмотров; сверх ёмкости вытесняются самые давно просмотренные задачи.
+     *
+     * @param capacity наибольшее количество задач в истории, 0 — без ограничения
+     */
+    public void setHistoryCapacity(int capacity) {
+        historyManager.setCapacity(capacity);
+    }
+
+    public int getHistoryCapacity() {
+        return historyManager.getCapacity();
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        Task task;
+        while ((task = first(TASK)) != null) {
+            removeRecord(task);
+        }
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        Task subtask;
+        while ((subtask = first(SUBTASK)) != null) {
+            removeRecord(subtask);
+        }
+        clear(epicStarts);
+        clear(epicEnds);
+        // Записи эпиков переписываются, поэтому сначала собираются их id
+        List<Integer> epicIds = ids(EPIC);
+        for (int epicId : epicIds) {
+            EpicRecord epic = readEpic(epicId);
+            if (epic.subtaskCount() > 0) {
+                Arrays.fill(epic.statusCounts, 0);
+                epic.minutes = 0;
+                finish(epic);
+                write(epic);
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        Task task;
+        while ((task = first(SUBTASK)) != null) {
+            removeRecord(task);
+        }
+        while ((task = first(EPIC)) != null) {
+            removeRecord(task);
+        }
+        clear(epicStarts);
+        clear(epicEnds);
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        return viewed(read(TASK, id));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        return (Subtask) viewed(read(SUBTASK, id));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        return (Epic) viewed(withSubtaskIds((Epic) read(EPIC, id)));
+    }
+
+    @Override
+    public int createTask(Task task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Задача не может быть 'null'");
+        }
+        checkOverlaps(task, 0, "Задача пересекается по времени с существующей");
+        task.setId(nextId++);
+        insert(task);
+        return task.getId();
+    }
+
+    @Override
+    public int createSubtask(Subtask subtask) {
+        if (subtask == null) {
+            throw new IllegalArgumentException("Подзадача не может быть null");
+        }
+        if (subtask.getId() == subtask.getEpicId()) {
+            throw new IllegalArgumentException("Подзадача не может ссылаться на саму себя как на эпик");
+        }
+        EpicRecord epic = readEpic(subtask.getEpicId());
+        if (epic == null) {
+            throw new IllegalArgumentException("Эпик с id=" + subtask.getEpicId() + " не существует");
+        }
+        checkOverlaps(subtask, 0, "Подзадача пересекается по времени с существующей задачей");
+
+        subtask.setId(nextId++);
+        insert(subtask);
+        contribute(epic, subtask, 1);
+        finish(epic);
+        write(epic);
+        return subtask.getId();
+    }
+
+    @Override
+    public int createEpic(Epic epic) {
+        if (epic == null) {
+            throw new IllegalArgumentException("Epic не может быть 'null'");
+        }
+        epic.setId(nextId++);
+        insert(epic);
+        return epic.getId();
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        if (task == null || byId.get(key(TASK, task.getId())) == PagedBPlusTree.NONE) {
+            throw new IllegalArgumentException("Задача не найдена или 'null'");
+        }
+        checkOverlaps(task, task.getId(), "Задача пересекается по времени с существующей");
+        replace(read(TASK, task.getId()), task);
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        Subtask saved = subtask == null ? null : (Subtask) read(SUBTASK, subtask.getId());
+        if (saved == null) {
+            throw new IllegalArgumentException("Подзадача не найдена или 'null'");
+        }
+        checkOverlaps(subtask, subtask.getId(), "Подзадача пересекается по времени с существующей задачей");
+        int oldEpicId = saved.getEpicId();
+        int newEpicId = subtask.getEpicId();
+        boolean moved = oldEpicId != newEpicId;
+        EpicRecord newEpic = moved ? readEpic(newEpicId) : null;
+        if (moved && newEpic == null) {
+            throw new IllegalArgumentException("New epic not found");
+        }
+        EpicRecord oldEpic = readEpic(oldEpicId);
+        // Вклад снимается до изменения: при том же эпике меняется сам объект saved
+        contribute(oldEpic, saved, -1);
+        if (moved) {
+            finish(oldEpic);
+            write(oldEpic);
+        } else {
+            newEpic = oldEpic;
+        }
+        // epicId подзадачи неизменяем, поэтому при переносе хранится новый объект
+        Subtask updated = moved ? subtask : saved;
+        // Как и в InMemoryTaskManager, у прежней подзадачи меняются только статус и время
+        updated.setStatus(subtask.getStatus());
+        updated.setStartTime(subtask.getStartTime());
+        updated.setDuration(subtask.getDuration());
+        replace(saved, updated);
+        contribute(newEpic, updated, 1);
+        finish(newEpic);
+        write(newEpic);
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        if (epic == null || byId.get(key(EPIC, epic.getId())) == PagedBPlusTree.NONE) {
+            throw new IllegalArgumentException("Epic не найден или 'null'");
+        }
+        // Статус и время эпика обновляются при каждом изменении подзадач, пересчитывать нечего
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        Task task = read(TASK, id);
+        if (task != null) {
+            removeRecord(task);
+        }
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        Subtask subtask = (Subtask) read(SUBTASK, id);
+        if (subtask == null) {
+            return;
+        }
+        removeRecord(subtask);
+        EpicRecord epic = readEpic(subtask.getEpicId());
+        if (epic != null) {
+            contribute(epic, subtask, -1);
+            finish(epic);
+            write(epic);
+        }
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        Task epic = read(EPIC, id);
+        if (epic == null) {
+            return;
+        }
+        for (int subtaskId : subtaskIds(id)) {
+            Task subtask = read(SUBTASK, subtaskId);
+            if (subtask != null) {
+                removeRecord(subtask);
+            }
+        }
+        clearEpic(epicStarts, id);
+        clearEpic(epicEnds, id);
+        removeRecord(epic);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksByEpicId(int epicId) {
+        if (byId.get(key(EPIC, epicId)) == PagedBPlusTree.NONE) {
+            return List.of();
+        }
+        List<Integer> subtaskIds = subtaskIds(epicId);
+        List<Subtask> result = new ArrayList<>(subtaskIds.size());
+        for (int subtaskId : subtaskIds) {
+            Subtask subtask = (Subtask) read(SUBTASK, subtaskId);
+            if (subtask != null) {
+                result.add(subtask);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает представление списка приоритетов: задачи читаются по дереву времени начала при обходе.
+     */
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Task> iterator() {
+                return new TreeIterator<>(byStart.ascending(Long.MIN_VALUE), Long.MAX_VALUE,
+                        (key, kind) -> read((int) kind, (int) key));
+            }
+
+            @Override
+            public int size() {
+                return scheduledCount;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Task) || o instanceof Epic) {
+                    return false;
+                }
+                Task task = (Task) o;
+                Task saved = read(task instanceof Subtask ? SUBTASK : TASK, task.getId());
+                return saved != null && saved.getStartTime() != null;
+            }
+        };
+    }
+
+    @Override
+    public boolean isTasksOverlap(Task task1, Task task2) {
+        if (task1.getStartTime() == null || task2.getStartTime() == null) {
+            return false;
+        }
+        return !(endOf(task1).isBefore(task2.getStartTime()) || endOf(task2).isBefore(task1.getStartTime()));
+    }
+
+    @Override
+    public boolean hasTaskOverlaps(Task newTask) {
+        return !findOverlaps(newTask, 0).isEmpty();
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        return findOverlaps(task, 0);
+    }
+
+    /**
+     * Записывает изменённые страницы и заголовок на диск.
+     */
+    public void flush() {
+        try {
+            data.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи файла данных " + dataFile(dataSlot).getPath(), e);
+        }
+        writeHeader();
+        cache.flush();
+        if (compacted) {
+            // Заголовок на диске указывает на новый файл данных, прежний больше не нужен
+            try {
+                Files.deleteIfExists(dataFile(1 - dataSlot).toPath());
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка удаления прежнего файла данных", e);
+            }
+            compacted = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!data.isOpen()) {
+            return;
+        }
+        flush();
+        try {
+            cache.close();
+            data.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия доски " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Возвращает кэш страниц, чтобы проверить объём памяти и число чтений.
+     */
+    PageCache getPageCache() {
+        return cache;
+    }
+
+    // Прочитано записей из файла данных
+    long getRecordReads() {
+        return recordReads;
+    }
+
+    // Текущая длина файла данных
+    long getDataLength() {
+        return dataLength;
+    }
+
+    private Task viewed(Task task) {
+        if (task != null) {
+            historyManager.add(task);
+        }
+        return task;
+    }
+
+    // Новая запись: данные, ключ по id, ключ по времени
+    private void insert(Task task) {
+        write(task);
+        counts[kindOf(task)]++;
+        index(task);
+    }
+
+    // Замена записи: прежний ключ по времени удаляется, новый добавляется
+    private void replace(Task old, Task task) {
+        unindex(old);
+        write(task);
+        index(task);
+    }
+
+    private void removeRecord(Task task) {
+        int kind = kindOf(task);
+        long pointer = byId.get(key(kind, task.getId()));
+        if (pointer != PagedBPlusTree.NONE && byId.remove(key(kind, task.getId()))) {
+            liveBytes -= pointer & MAX_RECORD;
+        }
+        unindex(task);
+        counts[kind]--;
+        historyManager.remove(task.getId());
+    }
+
+    private void index(Task task) {
+        if (task instanceof Subtask) {
+            epicSubtasks.put(link(((Subtask) task).getEpicId(), task.getId()), 0);
+        }
+        if (!(task instanceof Epic) && task.getStartTime() != null) {
+            byStart.put(startKey(task.getStartTime(), task.getId()), kindOf(task));
+            scheduledCount++;
+        }
+    }
+
+    private void unindex(Task task) {
+        if (task instanceof Subtask) {
+            epicSubtasks.remove(link(((Subtask) task).getEpicId(), task.getId()));
+        }
+        if (!(task instanceof Epic) && task.getStartTime() != null
+                && byStart.remove(startKey(task.getStartTime(), task.getId()))) {
+            scheduledCount--;
+        }
+    }
+
+    /*
+        Пересечения по дереву времени начала. Запланированные задачи между собой не пересекаются,
+        поэтому среди начавшихся раньше достаточно проверять задачи до первой непересекающейся,
+        а среди начавшихся позже — до первой, начавшейся после окончания проверяемой.
+     */
+    private List<Task> findOverlaps(Task task, int excludeId) {
+        List<Task> result = new ArrayList<>();
+        if (task.getStartTime() == null) {
+            return result;
+        }
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = endOf(task);
+        long pivot = startKey(start, Integer.MAX_VALUE);
+
+        List<Task> before = new ArrayList<>();
+        PagedBPlusTree.Cursor back = byStart.descending(pivot);
+        while (back.next()) {
+            if ((int) back.key() == excludeId) {
+                continue;
+            }
+            Task candidate = read((int) back.value(), (int) back.key());
+            if (isTasksOverlap(candidate, task)) {
+                before.add(candidate);
+            } else if (candidate.getStartTime().isBefore(start.withSecond(0).withNano(0))) {
+                break;
+            }
+        }
+        for (int i = before.size() - 1; i >= 0; i--) {
+            result.add(before.get(i));
+        }
+
+        PagedBPlusTree.Cursor forward = byStart.ascending(pivot + 1);
+        long last = startKey(end, Integer.MAX_VALUE);
+        while (forward.next() && forward.key() <= last) {
+            if ((int) forward.key() == excludeId) {
+                continue;
+            }
+            Task candidate = read((int) forward.value(), (int) forward.key());
+            if (isTasksOverlap(candidate, task)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    private void checkOverlaps(Task task, int excludeId, String message) {
+        if (task.getStartTime() == null) {
+            return;
+        }
+        List<Task> conflicts = findOverlaps(task, excludeId);
+        if (!conflicts.isEmpty()) {
+            String ids = conflicts.stream()
+                    .map(t -> String.valueOf(t.getId()))
+                    .collect(Collectors.joining(", "));
+            throw new ManagerSaveException(message + " (id: " + ids + ")");
+        }
+    }
+
+    /*
+        Добавляет (sign = 1) или снимает (sign = -1) вклад подзадачи в показатели эпика.
+        Время считается в минутах, как оно хранится в записи подзадачи, поэтому снимается
+        ровно тот вклад, который был добавлен, даже если подзадача пришла с секундами.
+     */
+    private void contribute(EpicRecord epic, Subtask subtask, int sign) {
+        int epicId = epic.epic.getId();
+        epic.statusCounts[subtask.getStatus().ordinal()] += sign;
+        long minutes = subtask.getDuration() == null ? 0 : subtask.getDuration().toMinutes();
+        epic.minutes += sign * minutes;
+        if (subtask.getStartTime() != null) {
+            long start = Math.floorDiv(subtask.getStartTime().toEpochSecond(ZoneOffset.UTC), 60);
+            adjust(epicStarts, timeKey(epicId, start), sign);
+            if (subtask.getDuration() != null) {
+                adjust(epicEnds, timeKey(epicId, start + minutes), sign);
+            }
+        }
+    }
+
+    // Статус эпика по счётчикам, начало и окончание — по деревьям времён эпиков
+    private void finish(EpicRecord epic) {
+        int total = epic.subtaskCount();
+        if (total == 0 || epic.statusCounts[Status.NEW.ordinal()] == total) {
+            epic.epic.setStatus(Status.NEW);
+        } else if (epic.statusCounts[Status.DONE.ordinal()] == total) {
+            epic.epic.setStatus(Status.DONE);
+        } else {
+            epic.epic.setStatus(Status.IN_PROGRESS);
+        }
+        int epicId = epic.epic.getId();
+        LocalDateTime start = null;
+        PagedBPlusTree.Cursor first = epicStarts.ascending(timeKey(epicId, Integer.MIN_VALUE));
+        if (first.next() && first.key() >>> 32 == epicId) {
+            start = minuteOf(first.key());
+        }
+        LocalDateTime end = null;
+        PagedBPlusTree.Cursor last = epicEnds.descending(timeKey(epicId, Integer.MAX_VALUE));
+        if (last.next() && last.key() >>> 32 == epicId) {
+            end = minuteOf(last.key());
+        }
+        epic.epic.updateEpicFields(start, Duration.ofMinutes(epic.minutes), end);
+    }
+
+    // Меняет количество подзадач с этим временем; нулевое количество удаляет ключ
+    private static void adjust(PagedBPlusTree tree, long key, int delta) {
+        long count = tree.get(key);
+        count = (count == PagedBPlusTree.NONE ? 0 : count) + delta;
+        if (count > 0) {
+            tree.put(key, count);
+        } else {
+            tree.remove(key);
+        }
+    }
+
+    // id подзадач эпика по дереву связей в порядке id
+    private List<Integer> subtaskIds(int epicId) {
+        List<Integer> ids = new ArrayList<>();
+        PagedBPlusTree.Cursor cursor = epicSubtasks.ascending(link(epicId, 0));
+        while (cursor.next() && cursor.key() >>> 32 == epicId) {
+            ids.add((int) cursor.key());
+        }
+        return ids;
+    }
+
+    // Эпик для выдачи наружу: список подзадач заполняется по дереву связей
+    private Epic withSubtaskIds(Epic epic) {
+        if (epic != null) {
+            epic.getSubtaskIds().addAll(subtaskIds(epic.getId()));
+        }
+        return epic;
+    }
+
+    // Удаляет ключи одного эпика
+    private static void clearEpic(PagedBPlusTree tree, int epicId) {
+        clear(tree, (long) epicId << 32, (long) epicId << 32 | 0xFFFFFFFFL);
+    }
+
+    private static void clear(PagedBPlusTree tree) {
+        clear(tree, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /*
+        Удаляет ключи из [from, to] порциями по листу: курсор недействителен после изменения дерева,
+        а новый поиск продолжается с места остановки и не обходит уже опустевшие листья.
+     */
+    private static void clear(PagedBPlusTree tree, long from, long to) {
+        long[] batch = new long[PagedBPlusTree.LEAF_CAPACITY];
+        while (true) {
+            int size = 0;
+            PagedBPlusTree.Cursor cursor = tree.ascending(from);
+            while (size < batch.length && cursor.next() && cursor.key() <= to) {
+                batch[size++] = cursor.key();
+            }
+            for (int i = 0; i < size; i++) {
+                tree.remove(batch[i]);
+            }
+            if (size < batch.length || batch[size - 1] == to) {
+                return;
+            }
+            from = batch[size - 1] + 1;
+        }
+    }
+
+    private Task first(int kind) {
+        PagedBPlusTree.Cursor cursor = byId.ascending(key(kind, 0));
+        if (cursor.next() && cursor.key() < key(kind + 1, 0)) {
+            return read(kind, (int) cursor.key());
+        }
+        return null;
+    }
+
+    private List<Integer> ids(int kind) {
+        List<Integer> ids = new ArrayList<>(counts[kind]);
+        PagedBPlusTree.Cursor cursor = byId.ascending(key(kind, 0));
+        while (cursor.next() && cursor.key() < key(kind + 1, 0)) {
+            ids.add((int) cursor.key());
+        }
+        return ids;
+    }
+
+    /*
+        Запись в файле данных: признак эпика (1 байт); для эпика — начало, продолжительность
+        и окончание (по 8 байт, Long.MIN_VALUE — нет значения) и количество подзадач в каждом статусе
+        (по 4 байта); затем задача в двоичном формате снимка. Список подзадач эпика в запись
+        не попадает: он хранится в дереве связей.
+     */
+    private void write(Task task) {
+        write(task, task instanceof Epic ? new int[STATUSES.length] : null);
+    }
+
+    private void write(EpicRecord epic) {
+        write(epic.epic, epic.statusCounts);
+    }
+
+    private void write(Task task, int[] statusCounts) {
+        boolean epic = statusCounts != null;
+        Task stored = task;
+        if (epic && !((Epic) task).getSubtaskIds().isEmpty()) {
+            stored = new Epic(task.getId(), task.getName(), task.getDescription());
+            stored.setStatus(task.getStatus());
+        }
+        byte[] encoded = BinarySnapshotFormat.encodeTask(stored);
+        ByteBuffer record = ByteBuffer.allocate(1 + (epic ? 24 + statusCounts.length * 4 : 0) + encoded.length);
+        record.put((byte) (epic ? 1 : 0));
+        if (epic) {
+            record.putLong(task.getStartTime() == null ? Long.MIN_VALUE
+                    : task.getStartTime().toEpochSecond(ZoneOffset.UTC));
+            record.putLong(task.getDuration() == null ? Long.MIN_VALUE : task.getDuration().getSeconds());
+            record.putLong(task.getEndTime() == null ? Long.MIN_VALUE
+                    : task.getEndTime().toEpochSecond(ZoneOffset.UTC));
+            for (int count : statusCounts) {
+                record.putInt(count);
+            }
+        }
+        record.put(encoded).flip();
+        if (record.remaining() > MAX_RECORD) {
+            throw new ManagerSaveException("Запись задачи " + task.getId() + " слишком велика: "
+                    + record.remaining() + " байт");
+        }
+        long offset = dataLength;
+        int length = record.remaining();
+        try {
+            long position = offset;
+            while (record.hasRemaining()) {
+                position += data.write(record, position);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи задачи " + task.getId(), e);
+        }
+        dataLength += length;
+        long key = key(kindOf(task), task.getId());
+        long previous = byId.get(key);
+        if (previous != PagedBPlusTree.NONE) {
+            liveBytes -= previous & MAX_RECORD;
+        }
+        liveBytes += length;
+        byId.put(key, offset << 24 | length);
+        compactIfWasteful();
+    }
+
+    private Task read(int kind, int id) {
+        long pointer = byId.get(key(kind, id));
+        if (pointer == PagedBPlusTree.NONE) {
+            return null;
+        }
+        return decode(readRecord(pointer, id), null);
+    }
+
+    // Запись эпика вместе со счётчиками статусов; список подзадач не заполняется
+    private EpicRecord readEpic(int id) {
+        long pointer = byId.get(key(EPIC, id));
+        if (pointer == PagedBPlusTree.NONE) {
+            return null;
+        }
+        int[] statusCounts = new int[STATUSES.length];
+        Epic epic = (Epic) decode(readRecord(pointer, id), statusCounts);
+        return new EpicRecord(epic, statusCounts);
+    }
+
+    private ByteBuffer readRecord(long pointer, int id) {
+        ByteBuffer record = ByteBuffer.allocate((int) (pointer & MAX_RECORD));
+        try {
+            long position = pointer >>> 24;
+            while (record.hasRemaining()) {
+                if (data.read(record, position + record.position()) < 0) {
+                    throw new FileBackedTaskManager.ManagerLoadException("Запись задачи " + id + " обрезана");
+                }
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения задачи " + id, e);
+        }
+        recordReads++;
+        return record.flip();
+    }
+
+    private static Task decode(ByteBuffer record, int[] statusCounts) {
+        boolean epic = record.get() == 1;
+        long start = epic ? record.getLong() : 0;
+        long duration = epic ? record.getLong() : 0;
+        long end = epic ? record.getLong() : 0;
+        for (int i = 0; epic && i < STATUSES.length; i++) {
+            int count = record.getInt();
+            if (statusCounts != null) {
+                statusCounts[i] = count;
+            }
+        }
+        byte[] encoded = new byte[record.remaining()];
+        record.get(encoded);
+        Task task = BinarySnapshotFormat.decodeTask(encoded);
+        if (epic) {
+            ((Epic) task).updateEpicFields(
+                    start == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC),
+                    duration == Long.MIN_VALUE ? null : Duration.ofSeconds(duration),
+                    end == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(end, 0, ZoneOffset.UTC));
+        }
+        return task;
+    }
+
+    /*
+        Переписывает живые записи во второй файл данных, когда мёртвых больше, чем живых.
+        Заменить значение существующего ключа можно во время обхода: страницы дерева не делятся.
+        Прежний файл удаляется только после сброса, который переключает на новый заголовок на диске.
+     */
+    private void compactIfWasteful() {
+        if (dataLength < COMPACT_MIN_BYTES || dataLength - liveBytes <= liveBytes) {
+            return;
+        }
+        int slot = 1 - dataSlot;
+        File target = dataFile(slot);
+        FileChannel copy;
+        try {
+            copy = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка открытия файла данных " + target.getPath(), e);
+        }
+        long position = 0;
+        try {
+            PagedBPlusTree.Cursor cursor = byId.ascending(key(TASK, 0));
+            while (cursor.next()) {
+                ByteBuffer record = readRecord(cursor.value(), (int) cursor.key());
+                int length = record.remaining();
+                long offset = position;
+                while (record.hasRemaining()) {
+                    position += copy.write(record, position);
+                }
+                byId.put(cursor.key(), offset << 24 | length);
+            }
+            data.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сжатия файла данных " + target.getPath(), e);
+        }
+        data = copy;
+        dataSlot = slot;
+        dataLength = position;
+        liveBytes = position;
+        compacted = true;
+        flush();
+    }
+
+    private void writeHeader() {
+        ByteBuffer header = cache.page(HEADER_PAGE);
+        header.put(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, byId.getRoot())
+                .putInt(12, byStart.getRoot())
+                .putInt(16, nextId)
+                .putLong(20, dataLength);
+        for (int kind = TASK; kind <= SUBTASK; kind++) {
+            header.putInt(24 + kind * 4, counts[kind]);
+        }
+        header.putInt(40, scheduledCount)
+                .putInt(44, epicSubtasks.getRoot())
+                .putInt(48, epicStarts.getRoot())
+                .putInt(52, epicEnds.getRoot())
+                .putLong(56, liveBytes)
+                .putInt(64, dataSlot)
+                .putInt(68, historyManager.getCapacity());
+        cache.markDirty(HEADER_PAGE);
+    }
+
+    private static void closeQuietly(PageCache cache) {
+        try {
+            cache.close();
+        } catch (IOException | RuntimeException ignored) {
+            // Исходная ошибка важнее ошибки закрытия
+        }
+    }
+
+    private File dataFile(int slot) {
+        return new File(file.getPath() + (slot == 0 ? ".data" : ".data.1"));
+    }
+
+    private static int kindOf(Task task) {
+        if (task instanceof Epic) {
+            return EPIC;
+        }
+        return task instanceof Subtask ? SUBTASK : TASK;
+    }
+
+    // Ключ дерева по id: вид в старших 32 битах, id — в младших
+    private static long key(int kind, int id) {
+        return (long) kind << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    // Ключ дерева по времени: минуты от 1970 года в старших 32 битах, id — в младших
+    private static long startKey(LocalDateTime start, int id) {
+        long minutes = Math.floorDiv(start.toEpochSecond(ZoneOffset.UTC), 60);
+        return minutes << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    // Ключ связи эпика с подзадачей: id эпика в старших 32 битах, id подзадачи — в младших
+    private static long link(int epicId, int subtaskId) {
+        return (long) epicId << 32 | (subtaskId & 0xFFFFFFFFL);
+    }
+
+    // Ключ дерева времён эпиков: id эпика в старших 32 битах, минута со сдвигом на 2^31 — в младших
+    private static long timeKey(int epicId, long minute) {
+        return (long) epicId << 32 | ((minute - Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static LocalDateTime minuteOf(long timeKey) {
+        long minute = (timeKey & 0xFFFFFFFFL) + Integer.MIN_VALUE;
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime endOf(Task task) {
+        LocalDateTime end = task.getEndTime();
+        return end != null ? end : task.getStartTime();
+    }
+
+    // Эпик и его накопительные показатели: количество подзадач по статусам и суммарная продолжительность
+    private static final class EpicRecord {
+        final Epic epic;
+        final int[] statusCounts;
+        long minutes;
+
+        EpicRecord(Epic epic, int[] statusCounts) {
+            this.epic = epic;
+            this.statusCounts = statusCounts;
+            this.minutes = epic.getDuration() == null ? 0 : epic.getDuration().toMinutes();
+        }
+
+        int subtaskCount() {
+            int total = 0;
+            for (int count : statusCounts) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    private interface Loader {
+        Task load(long key, long value);
+    }
+
+    // Обход дерева до ключа, не большего last, с чтением задач
+    private static final class TreeIterator<T extends Task> implements Iterator<T> {
+        private final PagedBPlusTree.Cursor cursor;
+        private final long last;
+        private final Loader loader;
+        private boolean ready;
+        private boolean hasNext;
+
+        TreeIterator(PagedBPlusTree.Cursor cursor, long last, Loader loader) {
+            this.cursor = cursor;
+            this.last = last;
+            this.loader = loader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) {
+                hasNext = cursor.next() && cursor.key() <= last;
+                ready = true;
+            }
+            return hasNext;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            return (T) loader.load(cursor.key(), cursor.value());
+        }
+    }
+
+    // Все записи одного вида в порядке id
+    private final class KindView<T extends Task> extends AbstractCollection<T> {
+        private final int kind;
+
+        KindView(int kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new TreeIterator<>(byId.ascending(key(kind, 0)), key(kind + 1, 0) - 1,
+                    (key, pointer) -> kind == EPIC ? withSubtaskIds((Epic) read(kind, (int) key))
+                            : read(kind, (int) key));
+        }
+
+        @Override
+        public int size() {
+            return counts[kind];
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package manager;
+
+import model.Task;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Параллельная загрузка снимка CSV.
+ * Файл делится на фрагменты по границам строк, фрагменты разбираются в задачи
+ * параллельно в ForkJoinPool. Связывание подзадач с эпиками и построение индексов
+ * выполняются в вызывающем потоке: фрагменты передаются обработчику строго в порядке файла,
+ * по мере готовности, поэтому результат не отличается от последовательной загрузки.
+ */
+class ParallelCsvLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4; // Мелкие фрагменты выравнивают нагрузку потоков
+
+    private ParallelCsvLoader() {
+    }
+
+    // Результат разбора одного фрагмента
+    private static final class Chunk {
+        final List<Task> tasks = new ArrayList<>();
+        String firstLine; // Нужна, если строка истории оказалась в начале следующего фрагмента
+        boolean separatorFound;
+        boolean historyFound;
+        String historyLine;
+        RuntimeException error;
+    }
+
+    /**
+     * Разбирает снимок и передаёт задачи обработчику в порядке файла.
+     *
+     * @param path        файл снимка
+     * @param parallelism количество потоков разбора
+     * @param handler     обработчик задач, вызывается в текущем потоке
+     * @return строка истории (без обрезки) или null, если её нет
+     * @throws IOException              при ошибке чтения
+     * @throws IllegalArgumentException если строка задачи некорректна
+     */
+    static String load(Path path, int parallelism, Consumer<Task> handler) throws IOException {
+        long size = path.toFile().length();
+        return load(path, parallelism, Math.max(MIN_CHUNK_SIZE, size / ((long) parallelism * CHUNKS_PER_THREAD) + 1),
+                handler);
+    }
+
+    // Размер фрагмента задаётся явно в тестах, чтобы проверить разбиение на маленьких файлах
+    static String load(Path path, int parallelism, long chunkSize, Consumer<Task> handler) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = chunkBounds(channel, size, chunkSize);
+
+            List<ForkJoinTask<Chunk>> parts = new ArrayList<>(bounds.size() - 1);
+            for (int i = 0; i + 1 < bounds.size(); i++) {
+                long start = bounds.get(i);
+                long end = bounds.get(i + 1);
+                boolean first = i == 0;
+                parts.add(pool.submit(() -> parse(channel, start, end, first)));
+            }
+
+            // Фаза слияния: фрагменты применяются по порядку, до разделителя истории
+            for (int i = 0; i < parts.size(); i++) {
+                Chunk chunk = join(parts.get(i));
+                if (chunk.error != null) {
+                    throw chunk.error;
+                }
+                for (Task task : chunk.tasks) {
+                    handler.accept(task);
+                }
+                if (chunk.separatorFound) {
+                    if (chunk.historyFound) {
+                        return chunk.historyLine;
+                    }
+                    return i + 1 < parts.size() ? join(parts.get(i + 1)).firstLine : null;
+                }
+            }
+            return null;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Границы фрагментов: каждая, кроме первой, стоит сразу после перевода строки
+    private static List<Long> chunkBounds(FileChannel channel, long size, long chunkSize) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            long boundary = -1;
+            long scan = position;
+            while (boundary < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = scan + i + 1;
+                        break;
+                    }
+                }
+                scan += read;
+            }
+            if (boundary < 0 || boundary >= size) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary + chunkSize;
+        }
+        bounds.add(size);
+        return bounds;
+    }
+
+    private static Chunk parse(FileChannel channel, long start, long end, boolean first) {
+        Chunk chunk = new Chunk();
+        try {
+            ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(end - start));
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    break;
+                }
+            }
+            CsvSnapshotReader reader = new CsvSnapshotReader(new InputStreamReader(
+                    new ByteArrayInputStream(bytes.array(), 0, bytes.position()), StandardCharsets.UTF_8));
+            if (first && !reader.nextLine()) {
+                return chunk; // Пустой файл; заголовок пропускается
+            }
+            boolean firstLine = !first;
+            while (reader.nextLine()) {
+                if (firstLine) {
+                    chunk.firstLine = reader.lineAsString();
+                    firstLine = false;
+                }
+                if (reader.isEmptyLine()) {
+                    chunk.separatorFound = true;
+                    if (reader.nextLine()) {
+                        chunk.historyFound = true;
+                        chunk.historyLine = reader.lineAsString();
+                    }
+                    return chunk;
+                }
+                if (!reader.isBlankLine()) {
+                    chunk.tasks.add(reader.parseTask());
+                }
+            }
+        } catch (IOException e) {
+            chunk.error = new FileBackedTaskManager.ManagerLoadException("Ошибка чтения фрагмента снимка", e);
+        } catch (RuntimeException e) {
+            // Ошибка фрагмента после разделителя (например, строка истории) не важна — решает фаза слияния
+            chunk.error = e;
+        }
+        return chunk;
+    }
+
+    private static Chunk join(ForkJoinTask<Chunk> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка разбора фрагмента снимка", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package manager;
+
+/**
+ * Политика подтверждения изменений для FileBackedTaskManager в режиме журнала.
+ * <ul>
+ *     <li>EVERY_OPERATION — каждое изменение записывается до возврата из метода;</li>
+ *     <li>INTERVAL — изменения копятся и сбрасываются фоновым потоком раз в N миллисекунд;</li>
+ *     <li>OPERATION_COUNT — фоновый поток сбрасывает изменения пачками по N записей.</li>
+ * </ul>
+ * При отложенной записи изменение подтверждается сразу, а на диск попадает вместе с пачкой;
+ * гарантированно сбросить всё накопленное можно через flush() или close() менеджера.
+ * Флаг fsync требует принудительной записи на устройство после каждого сброса.
+ */
+public class PersistencePolicy {
+    /**
+     * Условие, по которому накопленные записи сбрасываются на диск.
+     */
+    public enum Trigger {
+        EVERY_OPERATION,
+        INTERVAL,
+        OPERATION_COUNT
+    }
+
+    private final Trigger trigger;
+    private final long value; // Миллисекунды для INTERVAL, число записей для OPERATION_COUNT
+    private final boolean fsync;
+
+    private PersistencePolicy(Trigger trigger, long value, boolean fsync) {
+        if (trigger != Trigger.EVERY_OPERATION && value <= 0) {
+            throw new IllegalArgumentException("Параметр политики должен быть положительным: " + value);
+        }
+        this.trigger = trigger;
+        this.value = value;
+        this.fsync = fsync;
+    }
+
+    // Синхронная запись каждого изменения без fsync (поведение по умолчанию)
+    public static PersistencePolicy everyOperation() {
+        return new PersistencePolicy(Trigger.EVERY_OPERATION, 0, false);
+    }
+
+    // Синхронная запись каждого изменения с fsync
+    public static PersistencePolicy everyOperationDurable() {
+        return new PersistencePolicy(Trigger.EVERY_OPERATION, 0, true);
+    }
+
+    // Фоновый сброс накопленных изменений раз в указанное количество миллисекунд
+    public static PersistencePolicy everyMillis(long millis, boolean fsync) {
+        return new PersistencePolicy(Trigger.INTERVAL, millis, fsync);
+    }
+
+    // Фоновый сброс накопленных изменений пачками по указанному количеству записей
+    public static PersistencePolicy everyOperations(int operations, boolean fsync) {
+        return new PersistencePolicy(Trigger.OPERATION_COUNT, operations, fsync);
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public boolean isWriteBehind() {
+        return trigger != Trigger.EVERY_OPERATION;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistencePolicy{" +
+                "trigger=" + trigger +
+                ", value=" + value +
+                ", fsync=" + fsync +
+                '}';
+    }
+}
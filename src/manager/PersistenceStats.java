@@ -0,0 +1,61 @@
+package manager;
+
+import java.time.Duration;
+
+/**
+ * Снимок показателей записи журнала: глубина очереди и задержки сброса на диск.
+ */
+public class PersistenceStats {
+    private final int queueDepth; // Записей, ожидающих сброса
+    private final long flushCount; // Выполненных сбросов
+    private final long recordsWritten; // Записей, сброшенных на диск
+    private final Duration lastFlushLatency;
+    private final Duration maxFlushLatency;
+    private final Duration totalFlushLatency;
+
+    public PersistenceStats(int queueDepth, long flushCount, long recordsWritten,
+                            Duration lastFlushLatency, Duration maxFlushLatency, Duration totalFlushLatency) {
+        this.queueDepth = queueDepth;
+        this.flushCount = flushCount;
+        this.recordsWritten = recordsWritten;
+        this.lastFlushLatency = lastFlushLatency;
+        this.maxFlushLatency = maxFlushLatency;
+        this.totalFlushLatency = totalFlushLatency;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public Duration getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    public Duration getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
+    public Duration getAverageFlushLatency() {
+        return flushCount == 0 ? Duration.ZERO : totalFlushLatency.dividedBy(flushCount);
+    }
+
+    @Override
+    public String toString() {
+        return "PersistenceStats{" +
+                "queueDepth=" + queueDepth +
+                ", flushCount=" + flushCount +
+                ", recordsWritten=" + recordsWritten +
+                ", lastFlushLatency=" + lastFlushLatency +
+                ", maxFlushLatency=" + maxFlushLatency +
+                ", averageFlushLatency=" + getAverageFlushLatency() +
+                '}';
+    }
+}
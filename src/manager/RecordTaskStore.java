@@ -0,0 +1,92 @@
+package manager;
+
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище на файле записей ({@link TaskRecordFile}): пачка переписывает только слоты
+ * изменённых задач, просмотр — номер просмотра в слоте задачи. Стоимость записи — O(изменённых задач).
+ */
+class RecordTaskStore implements TaskStore {
+    private final File file;
+    private final boolean pruneOrphans;
+    private TaskRecordFile records; // Открывается при чтении или первой записи
+
+    RecordTaskStore(File file) {
+        this(file, true);
+    }
+
+    /**
+     * @param file         файл записей
+     * @param pruneOrphans false — подзадачи без эпика в этом файле читаются как есть:
+     *                     эпик может лежать в другом шарде, и решает вызывающий
+     */
+    RecordTaskStore(File file, boolean pruneOrphans) {
+        if (file == null) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл не может быть null");
+        }
+        this.file = file;
+        this.pruneOrphans = pruneOrphans;
+    }
+
+    @Override
+    public List<Integer> scan(Consumer<Task> sink) {
+        List<Integer> history = new ArrayList<>();
+        if (!file.exists() || file.length() == 0) {
+            return history;
+        }
+        try {
+            if (!TaskRecordFile.isRecordFile(file)) {
+                throw new FileBackedTaskManager.ManagerLoadException("Файл не является файлом записей: "
+                        + file.getPath());
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения из файла " + file.getPath(), e);
+        }
+        records = TaskRecordFile.open(file, false, pruneOrphans, contents -> {
+            contents.tasks.forEach(sink);
+            history.addAll(contents.history);
+        });
+        return history;
+    }
+
+    @Override
+    public void write(Batch batch) {
+        if (records == null) {
+            records = TaskRecordFile.create(file, false);
+        }
+        for (int id : batch.getViews()) {
+            records.markViewed(id);
+        }
+        for (Task task : batch.getPuts()) {
+            records.put(task);
+        }
+        for (int id : batch.getRemoves()) {
+            records.delete(id);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (records != null) {
+            records.sync();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (records == null) {
+            return;
+        }
+        try {
+            records.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия файла записей " + file.getPath(), e);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ведомый узел репликации: копия менеджера ведущего узла ({@link ReplicationLeader}) только для чтения.
+ * Фоновый поток подключается к ведущему, получает снимок и затем пачки изменений и применяет
+ * каждую целиком под блокировкой записи, поэтому читатели видят состояние ведущего на границе пачки.
+ * <p>
+ * Прямые изменения запрещены. Просмотры на ведомом в историю не попадают: история повторяет
+ * историю ведущего вместе с её ёмкостью. При обрыве связи поток переподключается и получает снимок заново.
+ */
+public class ReplicaTaskManager extends ConcurrentTaskManager {
+    static final int RECONNECT_MILLIS = 200;
+    // Без пульса ведущего дольше этого времени соединение считается потерянным
+    static final int READ_TIMEOUT_MILLIS = ReplicationLeader.HEARTBEAT_MILLIS * 4;
+
+    private final String host;
+    private final int port;
+    private final Thread receiver;
+    private final Object progress = new Object(); // Уведомляет ожидающих применения пачки
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile boolean connected;
+    private volatile long leaderSequence; // Последний известный номер пачки ведущего
+    private volatile long appliedSequence; // Номер последней применённой пачки
+    private volatile long applyDelayMillis; // От записи пачки на ведущем до её применения здесь
+    private volatile long lastContactMillis; // Время последнего сообщения ведущего
+
+    /**
+     * Создаёт ведомый менеджер и начинает репликацию в фоновом потоке.
+     *
+     * @param host адрес ведущего узла
+     * @param port порт репликации ведущего ({@link ReplicationLeader#getPort()})
+     */
+    public ReplicaTaskManager(String host, int port) {
+        super();
+        this.host = host;
+        this.port = port;
+        this.receiver = new Thread(this::receive, "replica-" + host + ":" + port);
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Ждёт, пока будет применена пачка с указанным номером или более поздняя.
+     *
+     * @param sequence      номер пачки ведущего
+     * @param timeoutMillis наибольшее время ожидания
+     * @return true, если пачка применена
+     */
+    public boolean awaitSequence(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (progress) {
+            while (appliedSequence < sequence) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                progress.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    // Текущее состояние репликации и отставание от ведущего
+    public Status getReplicationStatus() {
+        long contact = lastContactMillis;
+        return new Status(connected, leaderSequence, appliedSequence, applyDelayMillis,
+                contact == 0 ? -1 : System.currentTimeMillis() - contact);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Поток репликации завершится и так
+            }
+        }
+        receiver.interrupt();
+        super.close();
+    }
+
+    @Override
+    public int createTask(Task task) {
+        throw readOnly();
+    }
+
+    @Override
+    public int createSubtask(Subtask subtask) {
+        throw readOnly();
+    }
+
+    @Override
+    public int createEpic(Epic epic) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        throw readOnly();
+    }
+
+    // Чтение на ведомом не меняет историю, реплицированную с ведущего
+    @Override
+    protected void recordView(Task task) {
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Ведомый узел репликации доступен только для чтения");
+    }
+
+    private void receive() {
+        while (!closed) {
+            try (Socket current = new Socket()) {
+                socket = current;
+                current.connect(new InetSocketAddress(host, port), READ_TIMEOUT_MILLIS);
+                if (current.getLocalSocketAddress().equals(current.getRemoteSocketAddress())) {
+                    // Пока ведущий не слушает порт из диапазона временных, соединение может замкнуться
+                    // само на себя и занять порт ведущего
+                    throw new IOException("Соединение с самим собой");
+                }
+                current.setSoTimeout(READ_TIMEOUT_MILLIS);
+                connected = true;
+                replicate(current);
+            } catch (IOException e) {
+                // Ведущий недоступен или соединение разорвано — переподключаемся
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка применения журнала ведущего, состояние будет загружено заново: "
+                        + e.getMessage());
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return; // Менеджер закрыт
+            }
+        }
+    }
+
+    // Читает сообщения ведущего; пачка копится до строки E и применяется целиком
+    private void replicate(Socket current) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(current.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(current.getOutputStream(), StandardCharsets.UTF_8));
+        List<String> group = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            lastContactMillis = System.currentTimeMillis();
+            if (line.startsWith("P,")) {
+                String[] parts = line.split(",");
+                leaderSequence = Math.max(leaderSequence, Long.parseLong(parts[1]));
+            } else if (line.equals("E")) {
+                long sequence = apply(group);
+                group.clear();
+                out.write("A," + sequence + "\n");
+                out.flush();
+            } else {
+                group.add(line);
+            }
+        }
+    }
+
+    /*
+        Применяет снимок (S) или пачку (B). Строки задач разбираются до блокировки,
+        чтобы не задерживать читателей.
+     */
+    private long apply(List<String> group) {
+        String[] header = group.get(0).split(",");
+        boolean snapshot = header[0].equals("S");
+        if (!snapshot && !header[0].equals("B")) {
+            throw new IllegalArgumentException("Неизвестное сообщение ведущего: " + group.get(0));
+        }
+        long sequence = Long.parseLong(header[1]);
+        long committedAt = Long.parseLong(header[2]);
+        // После перезапуска ведущего нумерация начинается заново со снимка
+        leaderSequence = snapshot ? sequence : Math.max(leaderSequence, sequence);
+
+        List<Object> records = new ArrayList<>(group.size() - 1);
+        for (String record : group.subList(1, group.size())) {
+            records.add(record.startsWith("U,") ? FileBackedTaskManager.fromString(record.substring(2)) : record);
+        }
+        withWriteLock(() -> {
+            if (snapshot) {
+                super.deleteAllEpics();
+                super.deleteAllTasks();
+            }
+            for (Object record : records) {
+                if (record instanceof Task) {
+                    Task task = (Task) record;
+                    if (task instanceof Subtask && !epics.containsKey(((Subtask) task).getEpicId())) {
+                        throw new FileBackedTaskManager.ManagerLoadException("Эпик " + ((Subtask) task).getEpicId()
+                                + " не найден для подзадачи " + task.getId());
+                    }
+                    putRestoredTask(task);
+                } else {
+                    applyRecord((String) record);
+                }
+            }
+        });
+
+        appliedSequence = sequence;
+        applyDelayMillis = Math.max(0, System.currentTimeMillis() - committedAt);
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+        return sequence;
+    }
+
+    private void applyRecord(String record) {
+        String payload = record.substring(2);
+        switch (record.charAt(0)) {
+            case 'V':
+                addToHistory(Integer.parseInt(payload));
+                break;
+            case 'D':
+                int id = Integer.parseInt(payload);
+                if (tasks.containsKey(id)) {
+                    super.deleteTaskById(id);
+                } else if (subtasks.containsKey(id)) {
+                    super.deleteSubtaskById(id);
+                } else if (epics.containsKey(id)) {
+                    super.deleteEpicById(id);
+                }
+                break;
+            case 'C':
+                historyManager.setCapacity(Integer.parseInt(payload));
+                break;
+            case 'H':
+                for (String viewed : payload.split(",")) {
+                    if (!viewed.isEmpty()) {
+                        addToHistory(Integer.parseInt(viewed));
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестная запись журнала ведущего: " + record);
+        }
+    }
+
+    private void addToHistory(int id) {
+        Task task = tasks.get(id);
+        if (task == null) task = epics.get(id);
+        if (task == null) task = subtasks.get(id);
+        if (task != null) {
+            historyManager.add(task);
+        }
+    }
+
+    /**
+     * Состояние репликации ведомого узла.
+     */
+    public static final class Status {
+        private final boolean connected;
+        private final long leaderSequence;
+        private final long appliedSequence;
+        private final long behind;
+        private final long applyDelayMillis;
+        private final long sinceLeaderMillis;
+
+        Status(boolean connected, long leaderSequence, long appliedSequence, long applyDelayMillis,
+               long sinceLeaderMillis) {
+            this.connected = connected;
+            this.leaderSequence = leaderSequence;
+            this.appliedSequence = appliedSequence;
+            this.behind = Math.max(0, leaderSequence - appliedSequence);
+            this.applyDelayMillis = applyDelayMillis;
+            this.sinceLeaderMillis = sinceLeaderMillis;
+        }
+
+        // Есть ли соединение с ведущим
+        public boolean isConnected() {
+            return connected;
+        }
+
+        // Последний известный номер пачки ведущего
+        public long getLeaderSequence() {
+            return leaderSequence;
+        }
+
+        // Номер последней применённой пачки
+        public long getAppliedSequence() {
+            return appliedSequence;
+        }
+
+        // На сколько пачек ведомый отстаёт от ведущего
+        public long getBehind() {
+            return behind;
+        }
+
+        // Задержка последней применённой пачки от записи на ведущем; часы узлов должны быть согласованы
+        public long getApplyDelayMillis() {
+            return applyDelayMillis;
+        }
+
+        // Сколько прошло с последнего сообщения ведущего; -1, если сообщений не было
+        public long getSinceLeaderMillis() {
+            return sinceLeaderMillis;
+        }
+    }
+}
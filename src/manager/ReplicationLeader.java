@@ -0,0 +1,391 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище ведущего узла репликации: передаёт пачки вложенному хранилищу и рассылает их
+ * ведомым узлам ({@link ReplicaTaskManager}) по TCP. Каждая пачка получает номер; ведомый
+ * при подключении получает снимок текущего состояния, затем пачки по порядку,
+ * и подтверждает номер каждой применённой пачки.
+ * <pre>
+ * снимок:      S,номер,время / U,строка CSV … / C,ёмкость истории / H,id истории через запятую / E
+ * пачка:       B,номер,время / V,id … / C,ёмкость истории, если изменилась / D,id … / U,строка CSV … / E
+ * пульс:       P,номер,время — если пачек не было HEARTBEAT_MILLIS
+ * от ведомого: A,номер
+ * </pre>
+ * Состояние для снимков хранится строками CSV, а история — копией id, которая меняется по тем же
+ * записям V, C и D, что получают ведомые, поэтому подключение ведомого не обращается к менеджеру,
+ * а пачка просмотра не копирует историю целиком. Просмотры рассылаются сразу, чтобы история ведомых не отставала, а вложенному
+ * хранилищу передаются вместе со следующим изменением или при {@link #flush()}, как и раньше.
+ * Ёмкость истории рассылается вместе с просмотрами: ведомый вытесняет из истории те же задачи,
+ * что и ведущий. Ведомый, отставший больше чем на QUEUE_CAPACITY пачек, отключается
+ * и при переподключении получает снимок заново.
+ * <p>
+ * Протокол не проверяет, кто подключился, а подключившийся получает всю доску и поток изменений.
+ * Поэтому по умолчанию порт слушается только на локальном интерфейсе; другой адрес задаётся явно.
+ */
+public class ReplicationLeader implements TaskStore {
+    static final int HEARTBEAT_MILLIS = 500;
+    static final int QUEUE_CAPACITY = 10_000;
+
+    private final TaskStore delegate;
+    private final ServerSocket serverSocket;
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    // Строки CSV текущего состояния в порядке снимка: эпики раньше подзадач
+    private final Map<Integer, String> epics = new LinkedHashMap<>();
+    private final Map<Integer, String> tasks = new LinkedHashMap<>();
+    private final Map<Integer, String> subtasks = new LinkedHashMap<>();
+    private final Set<Integer> history = new LinkedHashSet<>(); // id истории в порядке просмотра
+    private int historyCapacity; // Ёмкость истории менеджера, 0 — без ограничения
+    private final List<Integer> pendingViews = new ArrayList<>(); // Ещё не переданы вложенному хранилищу
+    private long sequence; // Номер последней пачки
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    /**
+     * Принимает ведомых только на локальном интерфейсе.
+     *
+     * @param delegate хранилище, которому передаются пачки до рассылки
+     * @param port     порт для подключения ведомых; 0 — любой свободный
+     * @throws FileBackedTaskManager.ManagerLoadException если порт занят
+     */
+    public ReplicationLeader(TaskStore delegate, int port) {
+        this(delegate, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * @param delegate    хранилище, которому передаются пачки до рассылки
+     * @param bindAddress адрес, на котором принимаются ведомые; подключиться может любой, кому он доступен
+     * @param port        порт для подключения ведомых; 0 — любой свободный
+     * @throws FileBackedTaskManager.ManagerLoadException если порт занят
+     */
+    public ReplicationLeader(TaskStore delegate, InetAddress bindAddress, int port) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Хранилище не может быть null");
+        }
+        if (bindAddress == null) {
+            throw new IllegalArgumentException("Адрес репликации не может быть null");
+        }
+        this.delegate = delegate;
+        try {
+            this.serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true); // Перезапущенный ведущий снова слушает тот же порт
+            serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Не удалось открыть порт репликации "
+                    + bindAddress.getHostAddress() + ":" + port, e);
+        }
+    }
+
+    /**
+     * Читает вложенное хранилище и начинает принимать ведомых:
+     * до этого снимок был бы неполным.
+     */
+    @Override
+    public List<Integer> scan(Consumer<Task> sink) {
+        List<Integer> loaded;
+        synchronized (this) {
+            loaded = delegate.scan(task -> {
+                mapOf(task).put(task.getId(), FileBackedTaskManager.taskToString(task));
+                sink.accept(task);
+            });
+            history.clear();
+            history.addAll(loaded);
+        }
+        startAccepting();
+        return loaded;
+    }
+
+    @Override
+    public void write(Batch batch) {
+        startAccepting();
+        synchronized (this) {
+            if (batch.getPuts().isEmpty() && batch.getRemoves().isEmpty()) {
+                pendingViews.addAll(batch.getViews());
+            } else if (pendingViews.isEmpty()) {
+                delegate.write(batch);
+            } else {
+                pendingViews.addAll(batch.getViews());
+                delegate.write(new Batch(List.copyOf(pendingViews), batch.getPuts(), batch.getRemoves(),
+                        batch::getHistory, batch.getHistoryCapacity()));
+                pendingViews.clear();
+            }
+            sequence++;
+            StringBuilder message = new StringBuilder(64 + batch.getPuts().size() * 64);
+            message.append("B,").append(sequence).append(',').append(System.currentTimeMillis()).append('\n');
+            for (int id : batch.getViews()) {
+                history.remove(id);
+                history.add(id);
+                trimHistory();
+                message.append("V,").append(id).append('\n');
+            }
+            // После просмотров: уменьшенная ёмкость вытесняет и только что просмотренные задачи
+            if (batch.getHistoryCapacity() != historyCapacity) {
+                historyCapacity = batch.getHistoryCapacity();
+                trimHistory();
+                message.append("C,").append(historyCapacity).append('\n');
+            }
+            for (int id : batch.getRemoves()) {
+                history.remove(id);
+                if (tasks.remove(id) == null && subtasks.remove(id) == null) {
+                    epics.remove(id);
+                }
+                message.append("D,").append(id).append('\n');
+            }
+            for (Task task : batch.getPuts()) {
+                String line = FileBackedTaskManager.taskToString(task);
+                mapOf(task).put(task.getId(), line);
+                message.append("U,").append(line).append('\n');
+            }
+            message.append("E\n");
+            String text = message.toString();
+            for (Follower follower : followers) {
+                follower.send(text);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (this) {
+            if (!pendingViews.isEmpty()) {
+                List<Integer> current = List.copyOf(history);
+                delegate.write(new Batch(List.copyOf(pendingViews), List.of(), List.of(), () -> current,
+                        historyCapacity));
+                pendingViews.clear();
+            }
+        }
+        delegate.flush();
+    }
+
+    @Override
+    public boolean wantsImmediateViews() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Порт освобождается и при ошибке закрытия
+        }
+        for (Follower follower : followers) {
+            follower.disconnect();
+        }
+        Thread accepting;
+        synchronized (this) {
+            accepting = acceptor;
+        }
+        if (accepting != null) {
+            // Сокет освобождает порт, только когда поток приёма выйдет из accept
+            try {
+                accepting.join(HEARTBEAT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        delegate.close();
+    }
+
+    // Порт, к которому подключаются ведомые
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Адрес, на котором принимаются ведомые
+    public InetAddress getAddress() {
+        return serverSocket.getInetAddress();
+    }
+
+    // Номер последней разосланной пачки
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Отставание подключённых ведомых: на сколько пачек номер последней пачки
+     * опережает последнее подтверждение ведомого.
+     *
+     * @return адрес ведомого → количество неподтверждённых пачек
+     */
+    public Map<String, Long> getFollowerLag() {
+        long current = getSequence();
+        Map<String, Long> lag = new LinkedHashMap<>();
+        for (Follower follower : followers) {
+            lag.put(follower.name, current - follower.acknowledged);
+        }
+        return lag;
+    }
+
+    private synchronized void startAccepting() {
+        if (acceptor != null || closed) {
+            return;
+        }
+        acceptor = new Thread(this::accept, "replication-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                register(new Follower(serverSocket.accept()));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Ошибка подключения ведомого: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Снимок и регистрация под одним монитором: ни одна пачка не теряется и не приходит дважды
+    private synchronized void register(Follower follower) {
+        StringBuilder snapshot = new StringBuilder(64 + (epics.size() + tasks.size() + subtasks.size()) * 64);
+        snapshot.append("S,").append(sequence).append(',').append(System.currentTimeMillis()).append('\n');
+        for (Map<Integer, String> map : List.of(epics, tasks, subtasks)) {
+            for (String line : map.values()) {
+                snapshot.append("U,").append(line).append('\n');
+            }
+        }
+        snapshot.append("C,").append(historyCapacity).append('\n');
+        snapshot.append("H,");
+        boolean first = true;
+        for (int id : history) {
+            if (!first) {
+                snapshot.append(',');
+            }
+            snapshot.append(id);
+            first = false;
+        }
+        snapshot.append("\nE\n");
+        follower.acknowledged = sequence; // Отставание считается с момента подключения
+        follower.send(snapshot.toString());
+        followers.add(follower);
+        follower.start();
+    }
+
+    // Вытесняет самые давние просмотры сверх ёмкости, как история менеджера
+    private void trimHistory() {
+        if (historyCapacity == InMemoryHistoryManager.UNBOUNDED) {
+            return;
+        }
+        Iterator<Integer> eldest = history.iterator();
+        for (int excess = history.size() - historyCapacity; excess > 0; excess--) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private Map<Integer, String> mapOf(Task task) {
+        if (task instanceof Epic) {
+            return epics;
+        }
+        return task instanceof Subtask ? subtasks : tasks;
+    }
+
+    // Подключённый ведомый: поток отправки пачек и поток чтения подтверждений
+    private final class Follower {
+        private final Socket socket;
+        private final String name;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile long acknowledged;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+            this.name = socket.getRemoteSocketAddress().toString();
+        }
+
+        void start() {
+            Thread sender = new Thread(this::sendLoop, "replication-sender-" + name);
+            sender.setDaemon(true);
+            sender.start();
+            Thread reader = new Thread(this::readAcknowledgements, "replication-ack-" + name);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void send(String message) {
+            if (!queue.offer(message)) {
+                System.err.println("Ведомый " + name + " отстал больше чем на " + QUEUE_CAPACITY + " пачек");
+                disconnect();
+            }
+        }
+
+        void disconnect() {
+            followers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Соединение уже разорвано
+            }
+        }
+
+        private void sendLoop() {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.UTF_8))) {
+                while (!socket.isClosed()) {
+                    String message = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (message == null) {
+                        out.write("P," + getSequence() + "," + System.currentTimeMillis() + "\n");
+                    }
+                    // Накопившиеся пачки отправляются одной записью в сокет
+                    while (message != null) {
+                        out.write(message);
+                        message = queue.poll();
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Ведомый отключился
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+            }
+        }
+
+        private void readAcknowledgements() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("A,")) {
+                        acknowledged = Long.parseLong(line.substring(2));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Ведомый отключился или прислал некорректное подтверждение
+            } finally {
+                disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище, разделённое на несколько файлов-шардов одного вида (CSV или файл записей).
+ * Задача попадает в шард по диапазону id или по эпику ({@link TaskStore.Sharding}); пачка делится
+ * по шардам, и переписываются только затронутые шарды — параллельно, если их несколько.
+ * Шарды читаются при загрузке тоже параллельно.
+ * <pre>
+ * файл          — манифест: строка "shards=N;by=SHARDING;engine=ENGINE", затем строка истории
+ * файл.0 … N-1  — шарды
+ * </pre>
+ * История общая для всех шардов и хранится в манифесте: он пишется при первой пачке и затем,
+ * только когда в пачке есть просмотры или удаления. Манифест с другими параметрами не открывается.
+ * <p>
+ * При шардировании по диапазону id эпик и его подзадачи могут лежать в разных шардах, поэтому
+ * шарды сами подзадачи без эпика не отбрасывают: это делает {@link #scan}, прочитав все шарды.
+ */
+class ShardedTaskStore implements TaskStore {
+    static final int ID_RANGE = 1024; // Id одного диапазона лежат в одном шарде
+
+    private final File file;
+    private final Engine engine;
+    private final Sharding sharding;
+    private final TaskStore[] shards;
+    private final Map<Integer, Integer> shardOfId = new HashMap<>(); // Где лежит каждая сохранённая запись
+    private final ForkJoinPool pool;
+    private final long[] shardWrites;
+
+    /**
+     * @param engine   вид хранилища каждого шарда: CSV или RECORDS
+     * @param file     файл манифеста; шарды лежат рядом с суффиксами .0, .1, …
+     * @param count    количество шардов
+     * @param sharding правило выбора шарда
+     */
+    ShardedTaskStore(Engine engine, File file, int count, Sharding sharding) {
+        if (file == null) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл не может быть null");
+        }
+        if (engine == null || sharding == null) {
+            throw new IllegalArgumentException("Вид хранилища и правило шардирования не могут быть null");
+        }
+        if (engine == Engine.MEMORY) {
+            throw new IllegalArgumentException("Шарды без сохранения не имеют смысла");
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("Количество шардов должно быть положительным: " + count);
+        }
+        this.file = file;
+        this.engine = engine;
+        this.sharding = sharding;
+        this.shards = new TaskStore[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = engine == Engine.RECORDS ? new RecordTaskStore(shardFile(i), false)
+                    : TaskStore.open(engine, shardFile(i));
+        }
+        this.shardWrites = new long[count];
+        this.pool = new ForkJoinPool(Math.min(count, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    public List<Integer> scan(Consumer<Task> sink) {
+        List<Integer> history = readManifest();
+        List<ForkJoinTask<List<Task>>> parts = new ArrayList<>(shards.length);
+        for (TaskStore shard : shards) {
+            parts.add(pool.submit(() -> {
+                List<Task> loaded = new ArrayList<>();
+                shard.scan(loaded::add);
+                return loaded;
+            }));
+        }
+        List<List<Task>> loaded = new ArrayList<>(shards.length);
+        for (ForkJoinTask<List<Task>> part : parts) {
+            loaded.add(join(part));
+        }
+        // Эпик и его подзадачи могут лежать в разных шардах, поэтому эпики передаются первыми
+        Set<Integer> epicIds = new HashSet<>();
+        for (int i = 0; i < loaded.size(); i++) {
+            for (Task task : loaded.get(i)) {
+                if (task instanceof Epic) {
+                    shardOfId.put(task.getId(), i);
+                    epicIds.add(task.getId());
+                    sink.accept(task);
+                }
+            }
+        }
+        // Подзадача без эпика ни в одном шарде (сбой посреди удаления эпика) удаляется из своего шарда
+        List<List<Integer>> orphans = new ArrayList<>(shards.length);
+        List<Integer> dirty = new ArrayList<>();
+        for (int i = 0; i < loaded.size(); i++) {
+            List<Integer> shardOrphans = new ArrayList<>();
+            for (Task task : loaded.get(i)) {
+                if (task instanceof Epic) {
+                    continue;
+                }
+                if (task instanceof Subtask && !epicIds.contains(((Subtask) task).getEpicId())) {
+                    shardOrphans.add(task.getId());
+                    continue;
+                }
+                shardOfId.put(task.getId(), i);
+                sink.accept(task);
+            }
+            orphans.add(shardOrphans);
+            if (!shardOrphans.isEmpty()) {
+                dirty.add(i);
+            }
+        }
+        runOnShards(dirty, i -> shards[i].write(new Batch(List.of(), List.of(), orphans.get(i), List::of)));
+        return history;
+    }
+
+    @Override
+    public void write(Batch batch) {
+        List<List<Task>> puts = new ArrayList<>(shards.length);
+        List<List<Integer>> removes = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            puts.add(new ArrayList<>());
+            removes.add(new ArrayList<>());
+        }
+        for (int id : batch.getRemoves()) {
+            Integer shard = shardOfId.remove(id);
+            if (shard != null) {
+                removes.get(shard).add(id);
+            }
+        }
+        for (Task task : batch.getPuts()) {
+            int shard = shardOf(task);
+            Integer previous = shardOfId.put(task.getId(), shard);
+            if (previous != null && previous != shard) {
+                removes.get(previous).add(task.getId()); // Подзадача перешла к эпику из другого шарда
+            }
+            puts.get(shard).add(task);
+        }
+
+        List<Integer> dirty = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (!puts.get(i).isEmpty() || !removes.get(i).isEmpty()) {
+                dirty.add(i);
+            }
+        }
+        runOnShards(dirty, i -> {
+            shards[i].write(new Batch(List.of(), puts.get(i), removes.get(i), List::of));
+            synchronized (shardWrites) {
+                shardWrites[i]++;
+            }
+        });
+        if (!file.exists() || !batch.getViews().isEmpty() || !batch.getRemoves().isEmpty()) {
+            writeManifest(batch.getHistory());
+        }
+    }
+
+    @Override
+    public void flush() {
+        List<Integer> all = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            all.add(i);
+        }
+        runOnShards(all, i -> shards[i].flush());
+    }
+
+    @Override
+    public void close() {
+        try {
+            for (TaskStore shard : shards) {
+                shard.close();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Сколько пачек получил каждый шард; показывает, что чужие шарды не затрагиваются
+    long[] getShardWrites() {
+        synchronized (shardWrites) {
+            return shardWrites.clone();
+        }
+    }
+
+    File shardFile(int index) {
+        return new File(file.getPath() + "." + index);
+    }
+
+    int shardOf(Task task) {
+        int key = task.getId();
+        if (sharding == Sharding.EPIC && task instanceof Subtask) {
+            key = ((Subtask) task).getEpicId(); // Эпик и его подзадачи — в одном шарде
+        }
+        return Math.floorMod(Math.floorDiv(key, sharding == Sharding.EPIC ? 1 : ID_RANGE), shards.length);
+    }
+
+    // Один затронутый шард пишется в текущем потоке, несколько — параллельно
+    private void runOnShards(List<Integer> indexes, Consumer<Integer> action) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        if (indexes.size() == 1) {
+            action.accept(indexes.get(0));
+            return;
+        }
+        List<ForkJoinTask<?>> running = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            running.add(pool.submit(() -> action.accept(i)));
+        }
+        for (ForkJoinTask<?> task : running) {
+            join(task);
+        }
+    }
+
+    private String manifestLine() {
+        return "shards=" + shards.length + ";by=" + sharding + ";engine=" + engine;
+    }
+
+    private List<Integer> readManifest() {
+        List<Integer> history = new ArrayList<>();
+        if (!file.exists() || file.length() == 0) {
+            return history;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения манифеста " + file.getPath(), e);
+        }
+        if (lines.isEmpty() || !lines.get(0).equals(manifestLine())) {
+            throw new FileBackedTaskManager.ManagerLoadException("Манифест " + file.getPath() + " ("
+                    + (lines.isEmpty() ? "пустой" : lines.get(0)) + ") не совпадает с параметрами " + manifestLine());
+        }
+        if (lines.size() > 1) {
+            for (String id : lines.get(1).split(",")) {
+                if (!id.isBlank()) {
+                    history.add(Integer.parseInt(id.trim()));
+                }
+            }
+        }
+        return history;
+    }
+
+    private void writeManifest(List<Integer> history) {
+        String content = manifestLine() + System.lineSeparator()
+                + history.stream().map(String::valueOf).collect(Collectors.joining(",")) + System.lineSeparator();
+        try {
+            FileBackedTaskManager.writeAtomically(file.toPath(), content.getBytes(StandardCharsets.UTF_8), false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи манифеста " + file.getPath(), e);
+        }
+    }
+
+    // Ошибка шарда пробрасывается в вызывающий поток без обёртки
+    private static <T> T join(ForkJoinTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Ожидание шарда прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ManagerSaveException("Ошибка шарда", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package manager;
+
+import java.time.Duration;
+
+/**
+ * Показатели снимков и восстановления FileBackedTaskManager.
+ * Время захвата — сколько изменяющий поток ждал копирования состояния;
+ * время записи — сколько фоновый поток сериализовал и записывал снимок.
+ */
+public class SnapshotStats {
+    private final long snapshotCount; // Записанных снимков
+    private final long lastSnapshotBytes;
+    private final Duration lastCaptureDuration;
+    private final Duration lastSnapshotDuration;
+    private final long lastReplayRecords; // Записей журнала, применённых при загрузке
+    private final Duration lastReplayDuration;
+    private final long lastLoadTasks; // Задач, прочитанных из снимка при загрузке
+    private final long lastLoadBytes;
+    private final Duration lastLoadDuration;
+    private final boolean lastLoadUsedSavedIndex; // Список приоритетов построен по сохранённому порядку
+
+    public SnapshotStats(long snapshotCount, long lastSnapshotBytes, Duration lastCaptureDuration,
+                         Duration lastSnapshotDuration, long lastReplayRecords, Duration lastReplayDuration,
+                         long lastLoadTasks, long lastLoadBytes, Duration lastLoadDuration,
+                         boolean lastLoadUsedSavedIndex) {
+        this.snapshotCount = snapshotCount;
+        this.lastSnapshotBytes = lastSnapshotBytes;
+        this.lastCaptureDuration = lastCaptureDuration;
+        this.lastSnapshotDuration = lastSnapshotDuration;
+        this.lastReplayRecords = lastReplayRecords;
+        this.lastReplayDuration = lastReplayDuration;
+        this.lastLoadTasks = lastLoadTasks;
+        this.lastLoadBytes = lastLoadBytes;
+        this.lastLoadDuration = lastLoadDuration;
+        this.lastLoadUsedSavedIndex = lastLoadUsedSavedIndex;
+    }
+
+    static SnapshotStats empty() {
+        return new SnapshotStats(0, 0, Duration.ZERO, Duration.ZERO, 0, Duration.ZERO, 0, 0, Duration.ZERO, false);
+    }
+
+    // Новый снимок записан
+    SnapshotStats withSnapshot(long bytes, Duration capture, Duration write) {
+        return new SnapshotStats(snapshotCount + 1, bytes, capture, write, lastReplayRecords, lastReplayDuration,
+                lastLoadTasks, lastLoadBytes, lastLoadDuration, lastLoadUsedSavedIndex);
+    }
+
+    // Журнал применён при загрузке
+    SnapshotStats withReplay(long records, Duration replay) {
+        return new SnapshotStats(snapshotCount, lastSnapshotBytes, lastCaptureDuration, lastSnapshotDuration,
+                records, replay, lastLoadTasks, lastLoadBytes, lastLoadDuration, lastLoadUsedSavedIndex);
+    }
+
+    // Снимок прочитан при загрузке
+    SnapshotStats withLoad(long tasks, long bytes, Duration load, boolean usedSavedIndex) {
+        return new SnapshotStats(snapshotCount, lastSnapshotBytes, lastCaptureDuration, lastSnapshotDuration,
+                lastReplayRecords, lastReplayDuration, tasks, bytes, load, usedSavedIndex);
+    }
+
+    public long getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    public long getLastSnapshotBytes() {
+        return lastSnapshotBytes;
+    }
+
+    public Duration getLastCaptureDuration() {
+        return lastCaptureDuration;
+    }
+
+    public Duration getLastSnapshotDuration() {
+        return lastSnapshotDuration;
+    }
+
+    public long getLastReplayRecords() {
+        return lastReplayRecords;
+    }
+
+    public Duration getLastReplayDuration() {
+        return lastReplayDuration;
+    }
+
+    public long getLastLoadTasks() {
+        return lastLoadTasks;
+    }
+
+    public long getLastLoadBytes() {
+        return lastLoadBytes;
+    }
+
+    public Duration getLastLoadDuration() {
+        return lastLoadDuration;
+    }
+
+    public boolean isLastLoadUsedSavedIndex() {
+        return lastLoadUsedSavedIndex;
+    }
+
+    /**
+     * Скорость чтения снимка при последней загрузке, байт в секунду.
+     */
+    public double getLoadBytesPerSecond() {
+        long nanos = lastLoadDuration.toNanos();
+        return nanos == 0 ? 0 : lastLoadBytes * 1e9 / nanos;
+    }
+
+    /**
+     * Скорость чтения снимка при последней загрузке, задач в секунду.
+     */
+    public double getLoadTasksPerSecond() {
+        long nanos = lastLoadDuration.toNanos();
+        return nanos == 0 ? 0 : lastLoadTasks * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotStats{" +
+                "snapshotCount=" + snapshotCount +
+                ", lastSnapshotBytes=" + lastSnapshotBytes +
+                ", lastCaptureDuration=" + lastCaptureDuration +
+                ", lastSnapshotDuration=" + lastSnapshotDuration +
+                ", lastReplayRecords=" + lastReplayRecords +
+                ", lastReplayDuration=" + lastReplayDuration +
+                ", lastLoadTasks=" + lastLoadTasks +
+                ", lastLoadBytes=" + lastLoadBytes +
+                ", lastLoadDuration=" + lastLoadDuration +
+                ", lastLoadUsedSavedIndex=" + lastLoadUsedSavedIndex +
+                '}';
+    }
+}
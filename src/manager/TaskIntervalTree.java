@@ -0,0 +1,396 @@
+package manager;
+
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Индекс задач по времени выполнения: список приоритетов и проверка пересечений.
+ * Сбалансированное (AVL) дерево, упорядоченное по паре (время начала, id),
+ * где каждый узел хранит максимальное время окончания в своём поддереве.
+ * Задачи с одинаковым временем начала не схлопываются, а различаются по id.
+ * Поиск пересечений выполняется за O(log n + k), где k — число найденных задач;
+ * добавление, удаление и перестановка задачи по id — за O(log n).
+ * <p>
+ * Границы интервала фиксируются в момент вставки, поэтому изменение полей
+ * задачи после добавления не ломает структуру дерева: перед изменением задачу
+ * нужно удалить из индекса, а после — добавить заново.
+ */
+class TaskIntervalTree {
+    private Node root;
+    private final Map<Integer, Node> nodesById = new HashMap<>(); // Быстрый доступ к узлу по id задачи
+    private int modCount; // Счётчик изменений для обнаружения модификации во время обхода
+    private final Set<Task> view = new PrioritizedView();
+
+    private static class Node {
+        final LocalDateTime start;
+        final LocalDateTime end;
+        final int id;
+        final Task task;
+        LocalDateTime maxEnd; // Максимальное время окончания в поддереве
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(Task task, LocalDateTime start, LocalDateTime end) {
+            this.task = task;
+            this.id = task.getId();
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+
+    /**
+     * Добавляет задачу в индекс. Задачи без времени начала не индексируются.
+     * Если задача с таким id уже есть, она заменяется.
+     *
+     * @param task задача для добавления
+     */
+    void add(Task task) {
+        remove(task.getId());
+        LocalDateTime start = task.getStartTime();
+        if (start == null) {
+            return;
+        }
+        Node node = new Node(task, start, endOf(task));
+        root = insert(root, node);
+        nodesById.put(node.id, node);
+        modCount++;
+    }
+
+    /**
+     * Удаляет задачу из индекса по идентификатору.
+     *
+     * @param id идентификатор задачи
+     */
+    void remove(int id) {
+        Node node = nodesById.remove(id);
+        if (node != null) {
+            root = delete(root, node.start, node.id);
+            modCount++;
+        }
+    }
+
+    void clear() {
+        root = null;
+        nodesById.clear();
+        modCount++;
+    }
+
+    /**
+     * Заменяет содержимое индекса указанными задачами за один проход.
+     * Если задачи уже упорядочены по (время начала, id), сортировка пропускается и дерево
+     * строится снизу вверх за O(n); иначе задачи сортируются один раз — O(n log n)
+     * без поворотов и поиска места для каждой вставки. Задачи без времени начала пропускаются.
+     *
+     * @param tasks задачи для индекса; id не должны повторяться
+     * @return true, если порядок задач был уже отсортирован
+     */
+    boolean rebuild(List<? extends Task> tasks) {
+        List<Node> nodes = new ArrayList<>(tasks.size());
+        boolean sorted = true;
+        Node previous = null;
+        for (Task task : tasks) {
+            LocalDateTime start = task.getStartTime();
+            if (start == null) {
+                continue;
+            }
+            Node node = new Node(task, start, endOf(task));
+            if (previous != null && compare(previous.start, previous.id, node.start, node.id) >= 0) {
+                sorted = false;
+            }
+            nodes.add(node);
+            previous = node;
+        }
+        if (!sorted) {
+            nodes.sort((a, b) -> compare(a.start, a.id, b.start, b.id));
+        }
+
+        nodesById.clear();
+        for (Node node : nodes) {
+            nodesById.put(node.id, node);
+        }
+        root = build(nodes, 0, nodes.size() - 1);
+        modCount++;
+        return sorted;
+    }
+
+    // Строит идеально сбалансированное поддерево из отсортированного отрезка
+    private static Node build(List<Node> nodes, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node node = nodes.get(middle);
+        node.left = build(nodes, from, middle - 1);
+        node.right = build(nodes, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    /**
+     * Возвращает неизменяемое представление индекса в порядке (время начала, id).
+     * Представление отражает последующие изменения индекса.
+     *
+     * @return упорядоченный набор задач
+     */
+    Set<Task> asSet() {
+        return view;
+    }
+
+    int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * Проверяет, пересекается ли задача хотя бы с одной задачей из индекса.
+     *
+     * @param task      проверяемая задача
+     * @param excludeId id задачи, которую нужно игнорировать (например, при обновлении); 0 — не игнорировать
+     * @return true, если найдено пересечение
+     */
+    boolean hasOverlap(Task task, int excludeId) {
+        if (task.getStartTime() == null) {
+            return false;
+        }
+        return findFirst(root, task.getStartTime(), endOf(task), excludeId) != null;
+    }
+
+    /**
+     * Возвращает все задачи из индекса, пересекающиеся с указанной, в порядке времени начала.
+     *
+     * @param task      проверяемая задача
+     * @param excludeId id задачи, которую нужно игнорировать; 0 — не игнорировать
+     * @return список пересекающихся задач
+     */
+    List<Task> findOverlaps(Task task, int excludeId) {
+        List<Task> result = new ArrayList<>();
+        if (task.getStartTime() != null) {
+            collect(root, task.getStartTime(), endOf(task), excludeId, result);
+        }
+        return result;
+    }
+
+    /*
+        Время окончания задачи. Задача без продолжительности считается
+        мгновенной и занимает только момент начала.
+     */
+    private static LocalDateTime endOf(Task task) {
+        LocalDateTime end = task.getEndTime();
+        return end != null ? end : task.getStartTime();
+    }
+
+    // Границы включительные, как и в InMemoryTaskManager.isTasksOverlap
+    private static boolean overlaps(Node node, LocalDateTime start, LocalDateTime end) {
+        return !node.start.isAfter(end) && !node.end.isBefore(start);
+    }
+
+    private Node findFirst(Node node, LocalDateTime start, LocalDateTime end, int excludeId) {
+        while (node != null) {
+            if (node.maxEnd.isBefore(start)) {
+                return null; // В поддереве все интервалы заканчиваются раньше
+            }
+            if (node.left != null && !node.left.maxEnd.isBefore(start)) {
+                Node found = findFirst(node.left, start, end, excludeId);
+                if (found != null) {
+                    return found;
+                }
+            }
+            if (node.start.isAfter(end)) {
+                return null; // Правее начинаются только более поздние интервалы
+            }
+            if (node.id != excludeId && overlaps(node, start, end)) {
+                return node;
+            }
+            node = node.right;
+        }
+        return null;
+    }
+
+    private void collect(Node node, LocalDateTime start, LocalDateTime end, int excludeId, List<Task> result) {
+        if (node == null || node.maxEnd.isBefore(start)) {
+            return;
+        }
+        collect(node.left, start, end, excludeId, result);
+        if (node.start.isAfter(end)) {
+            return;
+        }
+        if (node.id != excludeId && overlaps(node, start, end)) {
+            result.add(node.task);
+        }
+        collect(node.right, start, end, excludeId, result);
+    }
+
+    // Набор задач только для чтения, обход дерева в симметричном порядке
+    private class PrioritizedView extends AbstractSet<Task> {
+        @Override
+        public Iterator<Task> iterator() {
+            return new InOrderIterator();
+        }
+
+        @Override
+        public int size() {
+            return nodesById.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Task)) {
+                return false;
+            }
+            Node node = nodesById.get(((Task) o).getId());
+            return node != null && node.task.equals(o);
+        }
+    }
+
+    private class InOrderIterator implements Iterator<Task> {
+        private final Deque<Node> stack = new ArrayDeque<>();
+        private final int expectedModCount = modCount;
+
+        InOrderIterator() {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Task next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = stack.pop();
+            pushLeft(node.right);
+            return node.task;
+        }
+    }
+
+    private static int compare(LocalDateTime start1, int id1, LocalDateTime start2, int id2) {
+        int cmp = start1.compareTo(start2);
+        return cmp != 0 ? cmp : Integer.compare(id1, id2);
+    }
+
+    private Node insert(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (compare(newNode.start, newNode.id, node.start, node.id) < 0) {
+            node.left = insert(node.left, newNode);
+        } else {
+            node.right = insert(node.right, newNode);
+        }
+        return rebalance(node);
+    }
+
+    private Node delete(Node node, LocalDateTime start, int id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node.start, node.id);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Заменяем узел минимальным из правого поддерева
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return rebalance(node);
+    }
+
+    private Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return rebalance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        LocalDateTime max = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(max)) {
+            max = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(max)) {
+            max = node.right.maxEnd;
+        }
+        node.maxEnd = max;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+}
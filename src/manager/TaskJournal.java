@@ -0,0 +1,274 @@
+package manager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Журнал изменений (write-ahead log) для FileBackedTaskManager.
+ * Каждое изменение дописывается в конец файла одной строкой, поэтому стоимость
+ * записи не зависит от размера доски. Файл открывается один раз и держится открытым.
+ * <p>
+ * Если задано поколение ({@link #setGeneration(long)}), перед записями нового поколения
+ * пишется строка "G,&lt;поколение&gt;". Каждая очистка и перенос журнала начинают следующее поколение,
+ * а снимок хранит поколение, записи которого в него уже вошли: при загрузке они пропускаются,
+ * даже если журнал не успели очистить после записи снимка.
+ */
+class TaskJournal implements Closeable {
+    private static final String GENERATION_PREFIX = "G,";
+
+    private final File file;
+    private FileOutputStream output; // Открывается при первой записи
+    private BufferedWriter writer;
+    private long recordCount; // Записей в журнале с момента последнего сброса
+    private long generation = -1; // Поколение новых записей; -1 — без поколений
+    private long fileGeneration = -1; // Поколение последних записей в файле
+
+    TaskJournal(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    // Поколение последних записей прочитанного файла; -1, если поколений в файле нет
+    long getFileGeneration() {
+        return fileGeneration;
+    }
+
+    /**
+     * Дописывает записи в конец журнала и сбрасывает буфер в файл.
+     *
+     * @param records строки записей (без перевода строки)
+     * @throws ManagerSaveException при ошибке записи
+     */
+    void append(List<String> records) {
+        try {
+            if (writer == null) {
+                dropTornTail(); // Иначе первая запись продолжила бы оборванную строку
+                output = new FileOutputStream(file, true);
+                writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            }
+            if (generation >= 0 && fileGeneration != generation) {
+                writer.write(GENERATION_PREFIX + generation);
+                writer.newLine();
+                fileGeneration = generation;
+            }
+            for (String record : records) {
+                writer.write(record);
+                writer.newLine();
+            }
+            writer.flush();
+            recordCount += records.size();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи в журнал " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Принудительно записывает дописанные данные на устройство (fsync).
+     *
+     * @throws ManagerSaveException при ошибке записи
+     */
+    void sync() {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.getFD().sync();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка синхронизации журнала " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Читает журнал и передаёт записи обработчику по порядку.
+     * Запись считается завершённой, только если за ней записан перевод строки:
+     * оборванный хвост файла (незавершённая запись при сбое) не применяется и отрезается,
+     * как и последняя строка, которую обработчик не смог разобрать.
+     * Повреждение в середине журнала считается ошибкой.
+     *
+     * @param handler обработчик записи; сообщает об ошибке разбора исключением
+     * @return количество применённых записей
+     */
+    long replay(Consumer<String> handler) {
+        return replay(handler, -1);
+    }
+
+    /**
+     * Читает журнал, пропуская записи поколений не новее covered — они уже есть в снимке.
+     * Записи без поколения (журнал прежней версии) применяются всегда.
+     *
+     * @param handler обработчик записи; сообщает об ошибке разбора исключением
+     * @param covered последнее поколение, вошедшее в снимок; -1 — применять всё
+     * @return количество применённых записей
+     */
+    long replay(Consumer<String> handler, long covered) {
+        if (!file.exists()) {
+            return 0;
+        }
+        long applied = 0;
+        boolean dropLast = false;
+        try {
+            dropTornTail();
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения журнала " + file.getPath(), e);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            long lineGeneration = -1;
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if (!line.isEmpty()) {
+                    try {
+                        if (line.startsWith(GENERATION_PREFIX)) {
+                            lineGeneration = Long.parseLong(line.substring(GENERATION_PREFIX.length()));
+                            fileGeneration = lineGeneration;
+                        } else if (lineGeneration < 0 || lineGeneration > covered) {
+                            handler.accept(line);
+                            applied++;
+                        }
+                    } catch (RuntimeException e) {
+                        if (next != null) {
+                            throw new FileBackedTaskManager.ManagerLoadException(
+                                    "Повреждённая запись журнала: " + line, e);
+                        }
+                        System.err.println("Пропущена незавершённая запись журнала: " + line);
+                        dropLast = true;
+                    }
+                }
+                line = next;
+            }
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения журнала " + file.getPath(), e);
+        }
+        if (dropLast) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(lineStart(file, channel.size() - 1));
+            } catch (IOException e) {
+                throw new FileBackedTaskManager.ManagerLoadException("Ошибка очистки журнала " + file.getPath(), e);
+            }
+        }
+        recordCount = applied;
+        return applied;
+    }
+
+    // Отрезает байты после последнего перевода строки — запись, оборванную сбоем
+    private void dropTornTail() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long length = file.length();
+        long complete = lineStart(file, length);
+        if (complete < length) {
+            System.err.println("Отрезан незавершённый хвост журнала " + file.getPath() + ": "
+                    + (length - complete) + " байт");
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+    }
+
+    // Позиция сразу после последнего '\n' перед limit; 0, если перевода строки нет
+    private static long lineStart(File file, long limit) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long end = limit;
+            while (end > 0) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+                end = start;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Очищает журнал после того, как его записи попали в снимок.
+     */
+    void truncate() {
+        try {
+            close();
+            Files.deleteIfExists(file.toPath());
+            recordCount = 0;
+            nextGeneration();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка очистки журнала " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Переносит текущие записи в указанный файл и начинает журнал заново.
+     * Если файл уже существует (прошлый снимок не был записан), записи дописываются в его конец.
+     *
+     * @param target файл, в который переносятся записи
+     */
+    void rotate(File target) {
+        try {
+            close();
+            if (file.exists()) {
+                if (target.exists()) {
+                    Files.write(target.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+                    Files.delete(file.toPath());
+                } else {
+                    Files.move(file.toPath(), target.toPath());
+                }
+            }
+            recordCount = 0;
+            nextGeneration();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка переноса журнала " + file.getPath(), e);
+        }
+    }
+
+    // Записи после очистки или переноса относятся к следующему поколению
+    private void nextGeneration() {
+        if (generation >= 0) {
+            generation++;
+        }
+        fileGeneration = -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            output = null;
+        }
+    }
+}
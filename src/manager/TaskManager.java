@@ -67,13 +67,51 @@ public interface TaskManager {
     // Получение списка подзадач определённого эпика
     List<Subtask> getSubtasksByEpicId(int epicId);
 
-    // Возвращает список последних 10 просмотренных задач, в порядке из просмотра (от старых к новым)
+    // Возвращает последние просмотренные задачи в порядке просмотра (от старых к новым), не больше ёмкости истории
     List<Task> getHistory();
 
+    /*
+        Получение задачи от имени клиента: просмотр попадает в историю этого клиента, а не в общую.
+        null вместо клиента — обычный просмотр. Реализации без историй клиентов пишут в общую историю.
+     */
+    default Task getTaskById(int id, String client) {
+        return getTaskById(id);
+    }
+
+    default Subtask getSubtaskById(int id, String client) {
+        return getSubtaskById(id);
+    }
+
+    default Epic getEpicById(int id, String client) {
+        return getEpicById(id);
+    }
+
+    // История просмотров клиента; null — общая история
+    default List<Task> getHistory(String client) {
+        return getHistory();
+    }
+
+    /*
+        Изменения истории после версии since (см. HistoryDelta): вместо копии всей истории
+        опрашивающий клиент получает только перенесённые, добавленные и удалённые задачи.
+        Реализации без версий истории всегда возвращают всю историю.
+     */
+    default HistoryDelta getHistorySince(long since) {
+        return HistoryDelta.full(0, getHistory());
+    }
+
+    // Изменения истории клиента после версии since; null — общая история
+    default HistoryDelta getHistorySince(long since, String client) {
+        return client == null ? getHistorySince(since) : HistoryDelta.full(0, getHistory(client));
+    }
+
     // Новые методы для работы со временем
     Set<Task> getPrioritizedTasks();
 
     boolean isTasksOverlap(Task task1, Task task2);
 
     boolean hasTaskOverlaps(Task newTask);
+
+    // Возвращает существующие задачи и подзадачи, пересекающиеся по времени с указанной
+    List<Task> getOverlappingTasks(Task task);
 }
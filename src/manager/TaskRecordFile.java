@@ -0,0 +1,648 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Файл записей со слотами фиксированного размера для FileBackedTaskManager.
+ * Каждая задача занимает цепочку слотов; изменение задачи переписывает только её слоты
+ * позиционной записью через FileChannel, поэтому стоимость сохранения — O(изменённых задач).
+ * <pre>
+ * заголовок файла (64 байта): "KREC", версия (int), размер слота (int)
+ * слот (128 байт): вид (1 байт: 0 — свободен, 1 — начало записи, 2 — продолжение),
+ *                  резерв (1), занято байт (short), следующий слот (int, -1 — нет),
+ *                  id (int), CRC32 всей записи (int), версия записи (long),
+ *                  номер просмотра (long, 0 — не просматривалась), данные
+ * </pre>
+ * Новая версия задачи пишется в свободные слоты, и только потом прежний первый слот помечается
+ * свободным. При сбое между этими шагами на диске остаются обе версии; при открытии выбирается
+ * версия с большим номером, запись с неверной контрольной суммой игнорируется.
+ * Список свободных слотов и индекс id → первый слот строятся при открытии и хранятся в памяти.
+ * <p>
+ * История просмотров хранится в заголовке первого слота: просмотр меняет 8 байт номера просмотра.
+ */
+class TaskRecordFile implements Closeable {
+    private static final byte[] MAGIC = {'K', 'R', 'E', 'C'};
+    private static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 128;
+    private static final int SLOT_HEADER_SIZE = 32;
+    private static final int PAYLOAD_SIZE = SLOT_SIZE - SLOT_HEADER_SIZE;
+    private static final int VIEW_OFFSET = 24; // Смещение номера просмотра в заголовке слота
+
+    private static final byte FREE = 0;
+    private static final byte HEAD = 1;
+    private static final byte CONTINUATION = 2;
+
+    private final File file;
+    private final boolean fsync;
+    private FileChannel channel;
+    private int slotCount;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Integer, Entry> entries = new HashMap<>(); // id → записанная версия
+    private final Map<Integer, Set<Integer>> subtasksByEpic = new HashMap<>();
+    private long nextVersion = 1;
+    private long nextViewSeq = 1;
+
+    private long writeCount; // Позиционных операций записи
+    private long recordsWritten; // Записанных версий задач
+    private Duration lastWriteLatency = Duration.ZERO;
+    private Duration maxWriteLatency = Duration.ZERO;
+    private Duration totalWriteLatency = Duration.ZERO;
+
+    // Размещение записанной задачи
+    private static final class Entry {
+        final int[] slots;
+        final int epicId; // Для подзадачи — её эпик, иначе 0
+        final boolean epic;
+        long viewSeq;
+
+        Entry(int[] slots, Task task, long viewSeq) {
+            this.slots = slots;
+            this.epicId = task instanceof Subtask ? ((Subtask) task).getEpicId() : 0;
+            this.epic = task instanceof Epic;
+            this.viewSeq = viewSeq;
+        }
+    }
+
+    /**
+     * Содержимое файла, прочитанное при открытии.
+     */
+    static final class Contents {
+        final List<Task> tasks; // Эпики раньше подзадач
+        final List<Integer> history; // Id в порядке просмотра
+
+        Contents(List<Task> tasks, List<Integer> history) {
+            this.tasks = tasks;
+            this.history = history;
+        }
+    }
+
+    private TaskRecordFile(File file, boolean fsync) {
+        this.file = file;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Создаёт пустой файл записей, заменяя существующий файл.
+     *
+     * @param file  файл записей
+     * @param fsync принудительно записывать изменения на устройство
+     * @return открытый файл записей
+     */
+    static TaskRecordFile create(File file, boolean fsync) {
+        TaskRecordFile records = new TaskRecordFile(file, fsync);
+        try {
+            records.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            records.writeFileHeader();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка создания файла записей " + file.getPath(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Проверяет, начинается ли файл с заголовка файла записей.
+     */
+    static boolean isRecordFile(File file) throws IOException {
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            return Arrays.equals(input.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Открывает существующий файл записей и читает все действительные записи.
+     * Слоты, не принадлежащие действительным записям, попадают в список свободных и помечаются
+     * свободными на диске: иначе устаревшая версия задачи, оставшаяся после сбоя, вернулась бы
+     * при следующем открытии после удаления задачи.
+     *
+     * @param file  файл записей
+     * @param fsync принудительно записывать изменения на устройство
+     * @param sink  получает прочитанное содержимое
+     * @return открытый файл записей
+     * @throws FileBackedTaskManager.ManagerLoadException если файл не является файлом записей
+     */
+    static TaskRecordFile open(File file, boolean fsync, Consumer<Contents> sink) {
+        return open(file, fsync, true, sink);
+    }
+
+    /**
+     * Открывает существующий файл записей.
+     *
+     * @param pruneOrphans true — подзадачи, эпика которых нет в файле, удаляются;
+     *                     false — они возвращаются как есть, если эпик может лежать в другом файле (шарды)
+     * @see #open(File, boolean, Consumer)
+     */
+    static TaskRecordFile open(File file, boolean fsync, boolean pruneOrphans, Consumer<Contents> sink) {
+        TaskRecordFile records = new TaskRecordFile(file, fsync);
+        try {
+            records.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            sink.accept(records.scan(pruneOrphans));
+        } catch (IOException | RuntimeException e) {
+            records.closeQuietly();
+            if (e instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new FileBackedTaskManager.ManagerLoadException("Ошибка чтения файла записей " + file.getPath(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Записывает новую версию задачи и освобождает слоты прежней.
+     *
+     * @param task задача, эпик или подзадача
+     */
+    void put(Task task) {
+        long start = System.nanoTime();
+        Entry previous = entries.get(task.getId());
+        byte[] payload = BinarySnapshotFormat.encodeTask(task);
+        long viewSeq = previous == null ? 0 : previous.viewSeq;
+        int[] slots = allocate(Math.max(1, (payload.length + PAYLOAD_SIZE - 1) / PAYLOAD_SIZE));
+        try {
+            writeChain(slots, task.getId(), payload, nextVersion++, viewSeq);
+            if (previous != null) {
+                markFree(previous);
+            }
+            force();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи задачи " + task.getId() + " в " + file.getPath(), e);
+        }
+        if (previous != null) {
+            unlink(task.getId(), previous);
+        }
+        Entry entry = new Entry(slots, task, viewSeq);
+        entries.put(task.getId(), entry);
+        if (entry.epicId != 0) {
+            subtasksByEpic.computeIfAbsent(entry.epicId, id -> new HashSet<>()).add(task.getId());
+        }
+        recordsWritten++;
+        recordLatency(start);
+    }
+
+    /**
+     * Удаляет задачу; для эпика удаляются и его подзадачи.
+     *
+     * @param id идентификатор задачи
+     */
+    void delete(int id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Integer> removed = new ArrayList<>();
+        removed.add(id);
+        if (entry.epic) {
+            removed.addAll(subtasksByEpic.getOrDefault(id, Set.of()));
+        }
+        freeAll(removed);
+        recordLatency(start);
+    }
+
+    /**
+     * Удаляет все задачи указанного вида.
+     *
+     * @param type "TASK", "SUBTASK" или "EPIC" (эпики удаляются вместе с подзадачами)
+     */
+    void clear(String type) {
+        long start = System.nanoTime();
+        List<Integer> removed = new ArrayList<>();
+        for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            boolean subtask = entry.epicId != 0;
+            boolean matches = switch (type) {
+                case "TASK" -> !entry.epic && !subtask;
+                case "SUBTASK" -> subtask;
+                case "EPIC" -> entry.epic || subtask;
+                default -> throw new IllegalArgumentException("Неизвестный тип записей: " + type);
+            };
+            if (matches) {
+                removed.add(e.getKey());
+            }
+        }
+        freeAll(removed);
+        recordLatency(start);
+    }
+
+    /**
+     * Отмечает просмотр задачи: переписывается только номер просмотра в её первом слоте.
+     *
+     * @param id идентификатор просмотренной задачи
+     */
+    void markViewed(int id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        entry.viewSeq = nextViewSeq++;
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(0, entry.viewSeq);
+        try {
+            writeFully(buffer, slotOffset(entry.slots[0]) + VIEW_OFFSET);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи просмотра задачи " + id, e);
+        }
+        recordLatency(start);
+    }
+
+    /**
+     * Принудительно записывает изменения на устройство, если это требуется политикой.
+     */
+    void sync() {
+        try {
+            force();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка синхронизации файла записей " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Переписывает файл целиком без свободных слотов: задачи подряд, просмотры по порядку истории.
+     * Новый файл пишется рядом и атомарно заменяет прежний.
+     *
+     * @param tasks   все задачи; эпики раньше подзадач
+     * @param history id просмотренных задач в порядке просмотра
+     */
+    void compact(List<Task> tasks, List<Integer> history) {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        TaskRecordFile fresh = null;
+        try {
+            fresh = create(temp.toFile(), false);
+            Map<Integer, Long> views = new HashMap<>();
+            for (int i = 0; i < history.size(); i++) {
+                views.put(history.get(i), (long) i + 1);
+            }
+            for (Task task : tasks) {
+                fresh.put(task);
+                Long view = views.get(task.getId());
+                if (view != null) {
+                    fresh.entries.get(task.getId()).viewSeq = view;
+                    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+                    buffer.putLong(0, view);
+                    fresh.writeFully(buffer, fresh.slotOffset(fresh.entries.get(task.getId()).slots[0]) + VIEW_OFFSET);
+                }
+            }
+            fresh.channel.force(true);
+            fresh.channel.close();
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Прежний файл не тронут и остаётся открытым: менеджер продолжает писать в него
+            if (fresh != null) {
+                fresh.closeQuietly();
+            }
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new ManagerSaveException("Ошибка сжатия файла записей " + file.getPath(), e);
+        }
+
+        // Канал прежнего файла закрывается только после того, как новый файл его заменил
+        try {
+            channel.close();
+            channel = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            slotCount = fresh.slotCount;
+            freeSlots.clear();
+            entries.clear();
+            entries.putAll(fresh.entries);
+            subtasksByEpic.clear();
+            subtasksByEpic.putAll(fresh.subtasksByEpic);
+            nextViewSeq = history.size() + 1L;
+            nextVersion = fresh.nextVersion;
+            writeCount++;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка открытия сжатого файла записей " + file.getPath(), e);
+        }
+    }
+
+    int getFreeSlotCount() {
+        return freeSlots.size();
+    }
+
+    PersistenceStats getStats() {
+        return new PersistenceStats(0, writeCount, recordsWritten,
+                lastWriteLatency, maxWriteLatency, totalWriteLatency);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Исходная ошибка важнее ошибки закрытия
+        }
+    }
+
+    private void writeFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.put(MAGIC).putInt(VERSION).putInt(SLOT_SIZE);
+        header.clear();
+        writeFully(header, 0);
+    }
+
+    // Свободные слоты берутся из списка, недостающие добавляются в конец файла
+    private int[] allocate(int count) {
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            Integer free = freeSlots.pollFirst();
+            slots[i] = free != null ? free : slotCount++;
+        }
+        return slots;
+    }
+
+    private void writeChain(int[] slots, int id, byte[] payload, long version, long viewSeq) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int checksum = (int) crc.getValue();
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+        // Продолжения пишутся раньше первого слота: первый слот делает запись видимой
+        for (int i = slots.length - 1; i >= 0; i--) {
+            int from = i * PAYLOAD_SIZE;
+            int length = Math.min(PAYLOAD_SIZE, payload.length - from);
+            slot.clear();
+            slot.put(i == 0 ? HEAD : CONTINUATION)
+                    .put((byte) 0)
+                    .putShort((short) length)
+                    .putInt(i + 1 < slots.length ? slots[i + 1] : -1)
+                    .putInt(id)
+                    .putInt(checksum)
+                    .putLong(version)
+                    .putLong(viewSeq)
+                    .put(payload, from, length);
+            slot.clear();
+            writeFully(slot, slotOffset(slots[i]));
+        }
+    }
+
+    // Помечает первый слот свободным; слоты продолжения без первого слота при открытии считаются свободными
+    private void markFree(Entry entry) throws IOException {
+        writeFully(ByteBuffer.wrap(new byte[]{FREE}), slotOffset(entry.slots[0]));
+    }
+
+    private void freeAll(List<Integer> ids) {
+        try {
+            for (int id : ids) {
+                Entry entry = entries.get(id);
+                if (entry != null) {
+                    markFree(entry);
+                }
+            }
+            force();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка удаления записей из " + file.getPath(), e);
+        }
+        for (int id : ids) {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                unlink(id, entry);
+                if (entry.epic) {
+                    subtasksByEpic.remove(id);
+                }
+            }
+        }
+    }
+
+    // Возвращает слоты записи в список свободных и убирает её из индекса подзадач
+    private void unlink(int id, Entry entry) {
+        for (int slot : entry.slots) {
+            freeSlots.addLast(slot);
+        }
+        if (entry.epicId != 0) {
+            Set<Integer> siblings = subtasksByEpic.get(entry.epicId);
+            if (siblings != null) {
+                siblings.remove(id);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        writeCount++;
+    }
+
+    private void force() throws IOException {
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    private long slotOffset(int slot) {
+        return FILE_HEADER_SIZE + (long) slot * SLOT_SIZE;
+    }
+
+    private void recordLatency(long start) {
+        Duration latency = Duration.ofNanos(System.nanoTime() - start);
+        lastWriteLatency = latency;
+        totalWriteLatency = totalWriteLatency.plus(latency);
+        if (latency.compareTo(maxWriteLatency) > 0) {
+            maxWriteLatency = latency;
+        }
+    }
+
+    // Читает все слоты последовательно и собирает действительные записи
+    private Contents scan(boolean pruneOrphans) throws IOException {
+        long length = file.length();
+        if (length < FILE_HEADER_SIZE) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл записей слишком короткий: " + file.getPath());
+        }
+        slotCount = (int) ((length - FILE_HEADER_SIZE) / SLOT_SIZE); // Недописанный последний слот отбрасывается
+        byte[] kinds = new byte[slotCount];
+        int[] used = new int[slotCount];
+        int[] next = new int[slotCount];
+        int[] ids = new int[slotCount];
+        int[] checksums = new int[slotCount];
+        long[] versions = new long[slotCount];
+        long[] views = new long[slotCount];
+        byte[][] payloads = new byte[slotCount][];
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath()), 1 << 16))) {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            int version = in.readInt();
+            int slotSize = in.readInt();
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION || slotSize != SLOT_SIZE) {
+                throw new FileBackedTaskManager.ManagerLoadException("Неподдерживаемый файл записей: " + file.getPath());
+            }
+            in.skipNBytes(FILE_HEADER_SIZE - MAGIC.length - 8);
+            for (int i = 0; i < slotCount; i++) {
+                kinds[i] = in.readByte();
+                in.readByte();
+                used[i] = Short.toUnsignedInt(in.readShort());
+                next[i] = in.readInt();
+                ids[i] = in.readInt();
+                checksums[i] = in.readInt();
+                versions[i] = in.readLong();
+                views[i] = in.readLong();
+                byte[] data = new byte[PAYLOAD_SIZE];
+                in.readFully(data);
+                if (kinds[i] != FREE) {
+                    payloads[i] = data;
+                }
+            }
+        } catch (EOFException e) {
+            throw new FileBackedTaskManager.ManagerLoadException("Файл записей обрезан: " + file.getPath(), e);
+        }
+
+        // Для каждого id выбирается действительная запись с наибольшей версией
+        Map<Integer, Integer> bestHead = new HashMap<>();
+        Map<Integer, int[]> chains = new HashMap<>();
+        Map<Integer, Task> decoded = new HashMap<>();
+        for (int head = 0; head < slotCount; head++) {
+            if (kinds[head] != HEAD) {
+                continue;
+            }
+            int[] chain = readChain(head, kinds, used, next, ids, versions);
+            if (chain == null) {
+                System.err.println("Пропущена повреждённая запись в слоте " + head + " файла " + file.getPath());
+                continue;
+            }
+            Integer current = bestHead.get(ids[head]);
+            if (current != null && versions[current] >= versions[head]) {
+                continue;
+            }
+            byte[] payload = concat(chain, used, payloads);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksums[head]) {
+                System.err.println("Пропущена запись с неверной контрольной суммой в слоте " + head);
+                continue;
+            }
+            Task task;
+            try {
+                task = BinarySnapshotFormat.decodeTask(payload);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Пропущена нечитаемая запись в слоте " + head + ": " + e.getMessage());
+                continue;
+            }
+            bestHead.put(ids[head], head);
+            chains.put(ids[head], chain);
+            decoded.put(ids[head], task);
+        }
+
+        // Подзадачи без эпика (сбой посреди удаления эпика) не восстанавливаются
+        if (pruneOrphans) {
+            decoded.values().removeIf(task -> task instanceof Subtask
+                    && !(decoded.get(((Subtask) task).getEpicId()) instanceof Epic));
+        }
+
+        boolean[] taken = new boolean[slotCount];
+        List<Task> epicsFirst = new ArrayList<>(decoded.size());
+        List<Task> rest = new ArrayList<>();
+        List<Integer> viewed = new ArrayList<>();
+        for (Task task : decoded.values()) {
+            int id = task.getId();
+            int[] chain = chains.get(id);
+            for (int slot : chain) {
+                taken[slot] = true;
+            }
+            long viewSeq = views[chain[0]];
+            Entry entry = new Entry(chain, task, viewSeq);
+            entries.put(id, entry);
+            if (entry.epicId != 0) {
+                subtasksByEpic.computeIfAbsent(entry.epicId, key -> new HashSet<>()).add(id);
+            }
+            nextVersion = Math.max(nextVersion, versions[chain[0]] + 1);
+            if (viewSeq > 0) {
+                viewed.add(id);
+                nextViewSeq = Math.max(nextViewSeq, viewSeq + 1);
+            }
+            (task instanceof Epic ? epicsFirst : rest).add(task);
+        }
+        rest.sort(Comparator.comparing(task -> task instanceof Subtask)); // Задачи, затем подзадачи
+        epicsFirst.addAll(rest);
+        boolean released = false;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!taken[slot]) {
+                freeSlots.addLast(slot);
+                if (kinds[slot] != FREE) { // Проигравшая версия, оборванная цепочка или подзадача без эпика
+                    writeFully(ByteBuffer.wrap(new byte[]{FREE}), slotOffset(slot));
+                    released = true;
+                }
+            }
+        }
+        if (released) {
+            channel.force(false);
+        }
+        viewed.sort(Comparator.comparingLong(id -> entries.get(id).viewSeq));
+        return new Contents(epicsFirst, viewed);
+    }
+
+    // Цепочка слотов записи или null, если она оборвана
+    private int[] readChain(int head, byte[] kinds, int[] used, int[] next, int[] ids, long[] versions) {
+        List<Integer> chain = new ArrayList<>();
+        int slot = head;
+        while (slot != -1) {
+            if (slot < 0 || slot >= slotCount || chain.size() > slotCount || used[slot] > PAYLOAD_SIZE
+                    || (slot != head && (kinds[slot] != CONTINUATION || ids[slot] != ids[head]
+                    || versions[slot] != versions[head]))) {
+                return null;
+            }
+            chain.add(slot);
+            slot = next[slot];
+        }
+        return chain.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static byte[] concat(int[] chain, int[] used, byte[][] payloads) {
+        int length = 0;
+        for (int slot : chain) {
+            length += used[slot];
+        }
+        byte[] data = new byte[length];
+        int position = 0;
+        for (int slot : chain) {
+            System.arraycopy(payloads[slot], 0, data, position, used[slot]);
+            position += used[slot];
+        }
+        return data;
+    }
+}
@@ -0,0 +1,161 @@
+package manager;
+
+import model.Task;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Хранилище задач под InMemoryTaskManager.
+ * Менеджер держит все задачи и индексы в памяти, а хранилищу передаёт результат каждого
+ * изменения одной пачкой ({@link Batch}): изменённые записи, удалённые id и просмотры.
+ * Производные поля эпиков (статус, время) хранилищу не нужны — менеджер вычисляет их при загрузке.
+ * <p>
+ * Реализация должна проходить TaskStoreConformanceTest и набор TaskManagerTest.
+ */
+public interface TaskStore extends AutoCloseable {
+
+    /**
+     * Доступные реализации хранилища.
+     */
+    enum Engine {
+        MEMORY, // Без сохранения
+        CSV, // Файл снимка CSV, перезаписывается после каждой пачки
+        RECORDS // Файл записей со слотами, перезаписываются только изменённые задачи
+    }
+
+    /**
+     * Правило распределения записей по шардам.
+     */
+    enum Sharding {
+        ID_RANGE, // Диапазоны по ShardedTaskStore.ID_RANGE id распределяются по шардам по кругу
+        EPIC // Задачи и эпики — по id, подзадачи — в шард своего эпика
+    }
+
+    /**
+     * Открывает хранилище указанного вида.
+     *
+     * @param engine вид хранилища
+     * @param file   файл хранилища; для MEMORY не используется
+     * @return открытое хранилище
+     */
+    static TaskStore open(Engine engine, File file) {
+        switch (engine) {
+            case MEMORY:
+                return MemoryTaskStore.INSTANCE;
+            case CSV:
+                return new CsvTaskStore(file);
+            case RECORDS:
+                return new RecordTaskStore(file);
+            default:
+                throw new IllegalArgumentException("Неизвестное хранилище: " + engine);
+        }
+    }
+
+    /**
+     * Открывает хранилище, разделённое на несколько файлов: изменение переписывает только шарды
+     * затронутых задач, а шарды загружаются и сбрасываются параллельно.
+     *
+     * @param engine   вид хранилища каждого шарда: CSV или RECORDS
+     * @param file     файл манифеста с историей; шарды лежат рядом с суффиксами .0, .1, …
+     * @param shards   количество шардов; при повторном открытии должно совпадать с сохранённым
+     * @param sharding правило выбора шарда
+     * @return открытое хранилище
+     */
+    static TaskStore sharded(Engine engine, File file, int shards, Sharding sharding) {
+        return new ShardedTaskStore(engine, file, shards, sharding);
+    }
+
+    /**
+     * Читает сохранённое состояние. Вызывается один раз, до первой записи.
+     *
+     * @param sink получает задачи: эпики раньше своих подзадач
+     * @return id просмотренных задач в порядке просмотра
+     * @throws FileBackedTaskManager.ManagerLoadException при ошибке чтения
+     */
+    List<Integer> scan(Consumer<Task> sink);
+
+    /**
+     * Сохраняет результат одного изменения.
+     *
+     * @param batch изменённые и удалённые записи
+     * @throws ManagerSaveException при ошибке записи
+     */
+    void write(Batch batch);
+
+    /**
+     * Дожидается записи на диск всего, что было передано в {@link #write(Batch)}.
+     */
+    void flush();
+
+    /**
+     * Сохраняет ли хранилище данные. Менеджер не собирает пачки для хранилища без сохранения.
+     */
+    default boolean isDurable() {
+        return true;
+    }
+
+    /**
+     * Нужно ли передавать просмотры сразу отдельной пачкой. По умолчанию просмотры копятся
+     * до следующего изменения или {@link #flush()}, чтобы чтение не вызывало записи.
+     */
+    default boolean wantsImmediateViews() {
+        return false;
+    }
+
+    @Override
+    void close();
+
+    /**
+     * Результат одного изменения менеджера.
+     * Просмотры применяются раньше изменений: они накопились до них.
+     */
+    final class Batch {
+        private final List<Integer> views;
+        private final List<? extends Task> puts;
+        private final List<Integer> removes;
+        private final Supplier<List<Integer>> history;
+        private final int historyCapacity;
+
+        Batch(List<Integer> views, List<? extends Task> puts, List<Integer> removes,
+              Supplier<List<Integer>> history) {
+            this(views, puts, removes, history, InMemoryHistoryManager.UNBOUNDED);
+        }
+
+        Batch(List<Integer> views, List<? extends Task> puts, List<Integer> removes,
+              Supplier<List<Integer>> history, int historyCapacity) {
+            this.views = views;
+            this.puts = puts;
+            this.removes = removes;
+            this.history = history;
+            this.historyCapacity = historyCapacity;
+        }
+
+        // Id задач, просмотренных с прошлой пачки, в порядке просмотра
+        public List<Integer> getViews() {
+            return views;
+        }
+
+        // Созданные или изменённые задачи, эпики и подзадачи
+        public List<? extends Task> getPuts() {
+            return puts;
+        }
+
+        // Удалённые id; подзадачи удалённого эпика перечислены отдельно и раньше него
+        public List<Integer> getRemoves() {
+            return removes;
+        }
+
+        // Полная история после изменения; вычисляется при обращении
+        public List<Integer> getHistory() {
+            return history.get();
+        }
+
+        // Ёмкость истории менеджера, 0 — без ограничения
+        public int getHistoryCapacity() {
+            return historyCapacity;
+        }
+    }
+}
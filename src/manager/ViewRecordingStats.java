@@ -0,0 +1,58 @@
+package manager;
+
+/**
+ * Снимок показателей асинхронной записи просмотров в историю.
+ */
+public class ViewRecordingStats {
+    private final long recorded; // Просмотров, положенных в буфер
+    private final long dropped; // Просмотров, отброшенных при заполненном буфере
+    private final long coalesced; // Повторных просмотров одной задачи, слитых внутри пачки
+    private final long applied; // Просмотров, применённых к истории
+    private final long batches; // Применённых пачек
+    private final int pending; // Просмотров в буфере
+
+    public ViewRecordingStats(long recorded, long dropped, long coalesced, long applied, long batches, int pending) {
+        this.recorded = recorded;
+        this.dropped = dropped;
+        this.coalesced = coalesced;
+        this.applied = applied;
+        this.batches = batches;
+        this.pending = pending;
+    }
+
+    public long getRecorded() {
+        return recorded;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    @Override
+    public String toString() {
+        return "ViewRecordingStats{" +
+                "recorded=" + recorded +
+                ", dropped=" + dropped +
+                ", coalesced=" + coalesced +
+                ", applied=" + applied +
+                ", batches=" + batches +
+                ", pending=" + pending +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package manager;
+
+import model.Task;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    Ограниченный кольцевой буфер просмотров без блокировок: много производителей, один потребитель.
+    У каждой ячейки есть номер: производитель захватывает позицию сдвигом хвоста (CAS), кладёт задачу
+    и публикует ячейку номером позиция + 1; потребитель забирает опубликованные ячейки по порядку
+    и освобождает их номером позиция + ёмкость. Потребитель должен быть один в каждый момент:
+    вызовы drain сериализует владелец буфера.
+ */
+final class ViewRingBuffer {
+    private final Task[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // Следующая позиция для производителя
+    private volatile long head; // Следующая позиция для потребителя
+
+    // capacity округляется вверх до степени двойки
+    ViewRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ёмкость буфера просмотров должна быть положительной: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new Task[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    // Просмотров в буфере, включая захваченные, но ещё не опубликованные ячейки
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    /**
+     * Кладёт просмотр в буфер.
+     *
+     * @return false, если буфер заполнен
+     */
+    boolean offer(Task task) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = task;
+                    sequences.set(index, position + 1); // Публикует задачу для потребителя
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // Ячейка ещё не освобождена потребителем
+            } else {
+                position = tail.get(); // Позицию занял другой производитель
+            }
+        }
+    }
+
+    /**
+     * Забирает опубликованные просмотры по порядку.
+     *
+     * @param sink     список, в который добавляются задачи
+     * @param complete true — забрать всё, что было захвачено до вызова, дождавшись публикации
+     *                 ячеек, захваченных другими производителями; false — только готовое
+     * @return количество забранных просмотров
+     */
+    int drain(List<Task> sink, boolean complete) {
+        long target = complete ? tail.get() : Long.MIN_VALUE;
+        long position = head;
+        long start = position;
+        while (true) {
+            int index = (int) position & mask;
+            if (sequences.get(index) == position + 1) {
+                sink.add(slots[index]);
+                slots[index] = null;
+                sequences.set(index, position + slots.length); // Освобождает ячейку для следующего круга
+                position++;
+            } else if (position < target) {
+                Thread.onSpinWait(); // Производитель захватил ячейку и вот-вот её опубликует
+            } else {
+                break;
+            }
+        }
+        head = position;
+        return (int) (position - start);
+    }
+}
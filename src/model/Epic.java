@@ -6,8 +6,6 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
-import manager.TaskManager;
-
 // Класс для эпиков, наследуем от model.Task
 public class Epic extends Task {
     private final List<Integer> subtaskIds; // Список ids для подзадач входящих в эпик
@@ -43,38 +41,16 @@ public class Epic extends Task {
     }
 
     /**
-     * Обновляет временные параметры эпика на основе подзадач
+     * Обновляет временные параметры эпика рассчитанными по подзадачам значениями
      *
-     * @param taskManager менеджер задач для доступа к подзадачам
+     * @param startTime время начала самой ранней подзадачи
+     * @param duration  суммарная продолжительность подзадач
+     * @param endTime   время окончания самой поздней подзадачи
      */
-    public void updateEpicFields(TaskManager taskManager) {
-        if (subtaskIds.isEmpty()) {
-            this.startTime = null;
-            this.duration = Duration.ZERO;
-            this.endTime = null;
-        }
-
-        List<Subtask> subtasks = taskManager.getSubtasksByEpicId(this.getId());
-
-        // Обновление времени начала (самая ранняя подзадача)
-        this.startTime = subtasks.stream()
-                .map(Subtask::getStartTime)
-                .filter(Objects::nonNull)
-                .min(LocalDateTime::compareTo)
-                .orElse(null);
-
-        // Обновление продолжительности (сумма подзадач)
-        this.duration = subtasks.stream()
-                .map(Subtask::getDuration)
-                .filter(Objects::nonNull)
-                .reduce(Duration.ZERO, Duration::plus);
-
-        // Обновление времени окончания (самая поздняя подзадача)
-        this.endTime = subtasks.stream()
-                .map(Subtask::getEndTime)
-                .filter(Objects::nonNull)
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
+    public void updateEpicFields(LocalDateTime startTime, Duration duration, LocalDateTime endTime) {
+        this.startTime = startTime;
+        this.duration = duration;
+        this.endTime = endTime;
     }
 
     @Override
@@ -89,7 +65,7 @@ public class Epic extends Task {
         return "Epic{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", description='" + description + '\'' +
+                ", description='" + getDescription() + '\'' +
                 ", status=" + status +
                 ", subtaskIds=" + subtaskIds +
                 ", duration=" + duration +
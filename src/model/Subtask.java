@@ -37,7 +37,7 @@ public class Subtask extends Task {
         return "Subtask{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", description='" + description + '\'' +
+                ", description='" + getDescription() + '\'' +
                 ", status=" + status +
                 ", epicId=" + epicId +
                 ", duration=" + duration +
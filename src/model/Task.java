@@ -5,6 +5,7 @@ import com.google.gson.annotations.Expose;
 import java.util.Objects;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.function.Supplier;
 
 // Создаем базовый класс для задач
 public class Task {
@@ -19,6 +20,7 @@ public class Task {
     protected Status status; // Текущий статус задачи
     protected Duration duration; // Продолжительность задачи в минутах
     protected LocalDateTime startTime; // Дата и время начала выполнения задачи
+    private transient Supplier<String> descriptionLoader; // Читает описание, которое не хранится в памяти
 
     // Конструкторы для новых задач
     public Task(String name, String description, Status status) {
@@ -66,9 +68,33 @@ public class Task {
     }
 
     public String getDescription() {
+        if (description == null && descriptionLoader != null) {
+            return descriptionLoader.get();
+        }
         return description;
     }
 
+    /**
+     * Освобождает описание в памяти: дальше оно читается загрузчиком при каждом обращении.
+     * Используется менеджером, который хранит описания в файле.
+     *
+     * @param loader источник описания
+     */
+    public void setDescriptionLoader(Supplier<String> loader) {
+        this.descriptionLoader = Objects.requireNonNull(loader, "Загрузчик описания не может быть null");
+        this.description = null;
+    }
+
+    // Описание хранится в памяти, а не читается загрузчиком
+    public boolean isDescriptionLoaded() {
+        return description != null || descriptionLoader == null;
+    }
+
+    // Загрузчик описания, которое не хранится в памяти; null, если описание в памяти
+    public Supplier<String> getDescriptionLoader() {
+        return isDescriptionLoaded() ? null : descriptionLoader;
+    }
+
     public Status getStatus() {
         return status;
     }
@@ -116,7 +142,7 @@ public class Task {
         return "Task{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", description='" + description + '\'' +
+                ", description='" + getDescription() + '\'' +
                 ", status=" + status +
                 ", duration=" + duration +
                 ", startTime=" + startTime +
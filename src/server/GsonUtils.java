@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import handler.DurationAdapter;
 import handler.LocalDateTimeAdapter;
+import handler.TaskDescriptionAdapterFactory;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -12,6 +13,7 @@ public class GsonUtils {
     private static final Gson GSON = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
             .registerTypeAdapter(Duration.class, new DurationAdapter())
+            .registerTypeAdapterFactory(new TaskDescriptionAdapterFactory())
             .create();
 
     public static Gson getGson() {
@@ -1,21 +1,44 @@
 package server;
 
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
 import handler.*;
+import manager.ConcurrentTaskManager;
 import manager.Managers;
+import manager.ReplicaTaskManager;
+import manager.ReplicationLeader;
 import manager.TaskManager;
+import manager.TaskStore;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HTTP-сервер для управления задачами.
- * Слушает порт 8080 и обрабатывает запросы.
+ * Слушает порт 8080 (или переданный в конструктор) и обрабатывает запросы.
+ * Способ многопоточной обработки задаётся через {@link ServerConfig};
+ * режимы с несколькими потоками принимают только потокобезопасный {@link ConcurrentTaskManager}.
+ * <p>
+ * Поверх {@link ReplicaTaskManager} сервер работает как ведомый узел репликации:
+ * принимает только GET-запросы и показывает отставание от ведущего на /replication.
  */
 public class HttpTaskServer {
     private static final int PORT = 8080; // Порт сервера
     private final HttpServer server; // Встроенный HTTP-сервер
     private final TaskManager taskManager; // Менеджер задач
+    private final ServerConfig config; // Настройки многопоточности
+    private final ExecutorService executor; // Пул обработчиков, null — обработка в потоке-диспетчере
 
     /**
      * Конструктор сервера.
@@ -26,15 +49,53 @@ public class HttpTaskServer {
     }
 
     public HttpTaskServer(TaskManager taskManager) throws IOException {
+        this(taskManager, ServerConfig.defaults());
+    }
+
+    public HttpTaskServer(TaskManager taskManager, ServerConfig config) throws IOException {
+        this(taskManager, config, PORT);
+    }
+
+    /**
+     * Конструктор сервера на указанном порту: так на одной машине запускаются
+     * ведущий и ведомые узлы репликации.
+     *
+     * @param port порт сервера; 0 — любой свободный
+     * @throws IllegalArgumentException если режим с несколькими потоками выбран для менеджера,
+     *                                  который не является {@link ConcurrentTaskManager}
+     */
+    public HttpTaskServer(TaskManager taskManager, ServerConfig config, int port) throws IOException {
+        // Обработчики из разных потоков гонялись бы за HashMap и индексами обычного менеджера
+        if (config.getMode() != ServerConfig.ExecutorMode.DISPATCHER
+                && !(taskManager instanceof ConcurrentTaskManager)) {
+            throw new IllegalArgumentException("Режим " + config.getMode()
+                    + " требует потокобезопасного менеджера ConcurrentTaskManager, передан "
+                    + taskManager.getClass().getSimpleName());
+        }
         this.taskManager = taskManager; // Инициализируем переданным менеджером
-        this.server = HttpServer.create(new InetSocketAddress(PORT), 0); // Создаём сервер
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress(port), config.getBacklog()); // Создаём сервер
+        this.executor = createExecutor(config);
+        if (executor != null) {
+            server.setExecutor(config.getMode() == ServerConfig.ExecutorMode.VIRTUAL_THREADS
+                    ? new BoundedExecutor(executor, config.getQueueCapacity())
+                    : executor);
+        }
 
         // Регистрируем обработчики для каждого типа запросов
-        server.createContext("/tasks", new TasksHandler(taskManager)); // Обычные задачи
-        server.createContext("/subtasks", new SubtasksHandler(taskManager)); // Подзадачи
-        server.createContext("/epics", new EpicsHandler(taskManager)); // Эпики
-        server.createContext("/history", new HistoryHandler(taskManager)); // История
-        server.createContext("/prioritized", new PrioritizedHandler(taskManager)); // Приоритетные задачи
+        List<HttpContext> contexts = List.of(
+                server.createContext("/tasks", new TasksHandler(taskManager)), // Обычные задачи
+                server.createContext("/subtasks", new SubtasksHandler(taskManager)), // Подзадачи
+                server.createContext("/epics", new EpicsHandler(taskManager)), // Эпики
+                server.createContext("/history", new HistoryHandler(taskManager)), // История
+                server.createContext("/prioritized", new PrioritizedHandler(taskManager))); // Приоритетные задачи
+
+        // Ведомый узел репликации только читает; изменения принимает ведущий
+        if (taskManager instanceof ReplicaTaskManager) {
+            ReadOnlyFilter readOnly = new ReadOnlyFilter();
+            contexts.forEach(context -> context.getFilters().add(readOnly));
+            server.createContext("/replication", new ReplicationHandler((ReplicaTaskManager) taskManager));
+        }
     }
 
     /**
@@ -42,7 +103,12 @@ public class HttpTaskServer {
      */
     public void start() {
         server.start();
-        System.out.println("HTTP-сервер запущен на порту " + PORT);
+        System.out.println("HTTP-сервер запущен на порту " + getPort() + ", " + config);
+    }
+
+    // Порт, на котором слушает сервер
+    public int getPort() {
+        return server.getAddress().getPort();
     }
 
     /**
@@ -50,13 +116,132 @@ public class HttpTaskServer {
      */
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
         System.out.println("HTTP-сервер остановлен");
     }
 
+    /**
+     * Создаёт пул обработчиков по настройкам.
+     * Пул фиксированного размера ограничен очередью: при её переполнении запрос выполняется
+     * в потоке-диспетчере, и приём новых подключений притормаживает.
+     */
+    private static ExecutorService createExecutor(ServerConfig config) {
+        switch (config.getMode()) {
+            case FIXED_POOL:
+                return newFixedPool(config);
+            case VIRTUAL_THREADS:
+                ExecutorService virtualThreads = newVirtualThreadExecutor();
+                if (virtualThreads == null) {
+                    System.err.println("Виртуальные потоки недоступны в этой версии Java, используется пул потоков");
+                    return newFixedPool(config);
+                }
+                return virtualThreads;
+            default:
+                return null;
+        }
+    }
+
+    private static ExecutorService newFixedPool(ServerConfig config) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(config.getThreads(), config.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "http-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /*
+        Executors.newVirtualThreadPerTaskExecutor появился в Java 21, а проект собирается
+        и под более ранние версии, поэтому метод ищется через рефлексию.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ограничивает число одновременно обрабатываемых запросов для исполнителя без очереди
+     * (виртуальные потоки создаются без ограничений). При исчерпании лимита поток-диспетчер
+     * ждёт освобождения места.
+     */
+    private static class BoundedExecutor implements Executor {
+        private final Executor delegate;
+        private final Semaphore permits;
+
+        BoundedExecutor(Executor delegate, int limit) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(limit);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            permits.acquireUninterruptibly();
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
     /**
      * Точка входа в программу.
+     * Настройки многопоточности читаются из системных свойств (см. {@link ServerConfig}).
+     * Порт сервера задаётся свойством kanban.port. Для репликации:
+     * kanban.replication.port — узел ведущий и принимает ведомых на этом порту локального интерфейса;
+     * kanban.replication.bind — адрес для приёма ведомых вместо локального (ведомые не проверяются,
+     * поэтому задавайте его только для доверенной сети);
+     * kanban.replication.leader=host:port — узел ведомый и только читает.
+     * Свойство kanban.views.buffer включает асинхронную запись просмотров с буфером такой ёмкости
+     * (см. {@link ConcurrentTaskManager#enableAsyncViews(int)}).
      */
     public static void main(String[] args) throws IOException {
-        new HttpTaskServer().start();
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        int port = Integer.getInteger("kanban.port", PORT);
+        String leader = System.getProperty("kanban.replication.leader");
+        Integer replicationPort = Integer.getInteger("kanban.replication.port");
+        TaskManager manager;
+        if (leader != null) {
+            int colon = leader.lastIndexOf(':');
+            manager = new ReplicaTaskManager(leader.substring(0, colon), Integer.parseInt(leader.substring(colon + 1)));
+        } else if (replicationPort != null) {
+            String bind = System.getProperty("kanban.replication.bind");
+            InetAddress bindAddress = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+            manager = new ConcurrentTaskManager(new ReplicationLeader(
+                    TaskStore.open(TaskStore.Engine.MEMORY, null), bindAddress, replicationPort));
+        } else {
+            manager = config.getMode() == ServerConfig.ExecutorMode.DISPATCHER
+                    ? Managers.getDefault()
+                    : Managers.getConcurrent();
+        }
+        Integer viewBuffer = Integer.getInteger("kanban.views.buffer");
+        if (viewBuffer != null && manager instanceof ConcurrentTaskManager) {
+            ((ConcurrentTaskManager) manager).enableAsyncViews(viewBuffer);
+        }
+        new HttpTaskServer(manager, config, port).start();
     }
 }
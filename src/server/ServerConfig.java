@@ -0,0 +1,89 @@
+package server;
+
+/**
+ * Настройки многопоточности HTTP-сервера.
+ * Значения по умолчанию сохраняют прежнее поведение: все запросы обрабатываются
+ * в потоке-диспетчере HttpServer, очередь подключений определяется системой.
+ */
+public class ServerConfig {
+    /**
+     * Способ выполнения обработчиков запросов.
+     */
+    public enum ExecutorMode {
+        DISPATCHER, // Без пула: обработка в потоке-диспетчере HttpServer
+        FIXED_POOL, // Пул потоков фиксированного размера с ограниченной очередью
+        VIRTUAL_THREADS // Отдельный виртуальный поток на запрос (Java 21+)
+    }
+
+    private final ExecutorMode mode;
+    private final int threads; // Количество потоков пула
+    private final int queueCapacity; // Максимум запросов, ожидающих обработки
+    private final int backlog; // Очередь входящих подключений сокета, 0 — по умолчанию системы
+
+    public ServerConfig(ExecutorMode mode, int threads, int queueCapacity, int backlog) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Режим выполнения не может быть null");
+        }
+        if (threads <= 0 || queueCapacity <= 0 || backlog < 0) {
+            throw new IllegalArgumentException("Некорректные параметры сервера: threads=" + threads
+                    + ", queueCapacity=" + queueCapacity + ", backlog=" + backlog);
+        }
+        this.mode = mode;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.backlog = backlog;
+    }
+
+    // Настройки по умолчанию (однопоточная обработка)
+    public static ServerConfig defaults() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new ServerConfig(ExecutorMode.DISPATCHER, cores, cores * 64, 0);
+    }
+
+    // Пул по числу ядер процессора
+    public static ServerConfig fixedPool() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new ServerConfig(ExecutorMode.FIXED_POOL, cores, cores * 64, 0);
+    }
+
+    /**
+     * Читает настройки из системных свойств:
+     * kanban.executor (dispatcher, fixed_pool, virtual_threads), kanban.threads,
+     * kanban.queue и kanban.backlog. Отсутствующие значения берутся по умолчанию.
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig defaults = defaults();
+        String mode = System.getProperty("kanban.executor");
+        return new ServerConfig(
+                mode == null ? defaults.mode : ExecutorMode.valueOf(mode.trim().toUpperCase()),
+                Integer.getInteger("kanban.threads", defaults.threads),
+                Integer.getInteger("kanban.queue", defaults.queueCapacity),
+                Integer.getInteger("kanban.backlog", defaults.backlog));
+    }
+
+    public ExecutorMode getMode() {
+        return mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConfig{" +
+                "mode=" + mode +
+                ", threads=" + threads +
+                ", queueCapacity=" + queueCapacity +
+                ", backlog=" + backlog +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package handler;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -7,6 +9,7 @@ import server.HttpTaskServerTest;
 
 import java.io.IOException;
 import java.net.http.HttpResponse;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,4 +49,60 @@ class HistoryHandlerTest extends HttpTaskServerTest {
         assertResponseStatus(response, 200);
         assertEquals("[]", response.body().trim());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getHistory_shouldBeSeparatePerClient() throws IOException, InterruptedException {
+        Task task1 = new Task("Task 1", "Description", Status.NEW);
+        Task task2 = new Task("Task 2", "Description", Status.NEW);
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+
+        sendRequest(requestBuilder("/tasks/" + task1.getId()).header(BaseHttpHandler.CLIENT_HEADER, "alice").GET().build());
+        sendRequest(requestBuilder("/tasks/" + task2.getId()).header(BaseHttpHandler.CLIENT_HEADER, "bob").GET().build());
+        sendRequest(requestBuilder("/tasks/" + task1.getId()).header(BaseHttpHandler.CLIENT_HEADER, "bob").GET().build());
+
+        HttpResponse<String> alice = sendRequest(
+                requestBuilder("/history").header(BaseHttpHandler.CLIENT_HEADER, "alice").GET().build());
+        HttpResponse<String> bob = sendRequest(
+                requestBuilder("/history").header(BaseHttpHandler.CLIENT_HEADER, "bob").GET().build());
+
+        assertEquals(List.of(task1.getId()), ids(alice));
+        assertEquals(List.of(task2.getId(), task1.getId()), ids(bob));
+        assertEquals("[]", sendRequest(buildGetRequest("/history")).body().trim(),
+                "Просмотры клиентов не попадают в общую историю");
+    }
+
+    @Test
+    void getHistorySince_shouldReturnOnlyChanges() throws IOException, InterruptedException {
+        Task task1 = new Task("Task 1", "Description", Status.NEW);
+        Task task2 = new Task("Task 2", "Description", Status.NEW);
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+        taskManager.getTaskById(task1.getId());
+        taskManager.getTaskById(task2.getId());
+
+        HttpResponse<String> first = sendRequest(buildGetRequest("/history?since=0"));
+        assertResponseStatus(first, 200);
+        JsonObject full = JsonParser.parseString(first.body()).getAsJsonObject();
+        assertTrue(full.get("full").getAsBoolean());
+        assertEquals(2, full.getAsJsonArray("changed").size());
+
+        taskManager.getTaskById(task1.getId());
+        taskManager.deleteTaskById(task2.getId());
+        HttpResponse<String> next = sendRequest(buildGetRequest("/history?since=" + full.get("version").getAsLong()));
+        JsonObject delta = JsonParser.parseString(next.body()).getAsJsonObject();
+
+        assertFalse(delta.get("full").getAsBoolean());
+        assertEquals(1, delta.getAsJsonArray("changed").size());
+        assertEquals(task1.getId(), delta.getAsJsonArray("changed").get(0).getAsJsonObject().get("id").getAsInt());
+        assertEquals(task2.getId(), delta.getAsJsonArray("removed").get(0).getAsInt());
+        assertResponseStatus(sendRequest(buildGetRequest("/history?since=abc")), 400);
+    }
+
+    private List<Integer> ids(HttpResponse<String> response) {
+        assertResponseStatus(response, 200);
+        return JsonParser.parseString(response.body()).getAsJsonArray().asList().stream()
+                .map(element -> element.getAsJsonObject().get("id").getAsInt())
+                .toList();
+    }
+}
@@ -0,0 +1,122 @@
+package manager;
+
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayHistoryManagerTest {
+
+    private static Task task(int id) {
+        return new Task(id, "Task " + id, "Description", Status.NEW);
+    }
+
+    @Test
+    @DisplayName("Повторный просмотр переносит задачу в конец, удаление освобождает слот")
+    void shouldMoveViewedTaskToTail() {
+        HistoryManager history = new ArrayHistoryManager();
+        Task task1 = task(1);
+        Task task2 = task(2);
+        Task task3 = task(3);
+
+        history.add(task1);
+        history.add(task2);
+        history.add(task3);
+        history.add(task1);
+        history.remove(2);
+        history.remove(999);
+        history.add(task2);
+
+        assertEquals(List.of(task3, task1, task2), history.getHistory());
+    }
+
+    @Test
+    @DisplayName("При заполнении вытесняется самая давно просмотренная задача")
+    void shouldEvictLeastRecentlyViewedTask() {
+        HistoryManager history = new ArrayHistoryManager(3);
+        for (int id = 1; id <= 4; id++) {
+            history.add(task(id));
+        }
+        history.add(task(2));
+        history.add(task(5));
+
+        assertEquals(List.of(4, 2, 5), history.getHistory().stream().map(Task::getId).toList());
+        history.setCapacity(1);
+        assertEquals(List.of(5), history.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Случайные операции дают ту же историю, что и связный список")
+    void shouldMatchLinkedHistory() {
+        Random random = new Random(7);
+        for (int capacity : new int[]{InMemoryHistoryManager.UNBOUNDED, 5, 100}) {
+            HistoryManager expected = new InMemoryHistoryManager(capacity);
+            HistoryManager actual = new ArrayHistoryManager(capacity);
+            for (int i = 0; i < 20_000; i++) {
+                int id = random.nextInt(300) - 10; // В том числе отрицательные id и рост массивов
+                if (random.nextInt(4) == 0) {
+                    expected.remove(id);
+                    actual.remove(id);
+                } else {
+                    Task task = task(id);
+                    expected.add(task);
+                    actual.add(task);
+                }
+            }
+            assertEquals(expected.getHistory(), actual.getHistory(), "Ёмкость " + capacity);
+        }
+    }
+
+    @Test
+    @DisplayName("Менеджер задач использует историю на массивах по системному свойству")
+    void shouldBeSelectedBySystemProperty() {
+        System.setProperty("kanban.history", "array");
+        try {
+            assertInstanceOf(ArrayHistoryManager.class, Managers.getDefaultHistory());
+        } finally {
+            System.clearProperty("kanban.history");
+        }
+        assertInstanceOf(InMemoryHistoryManager.class, Managers.getDefaultHistory());
+    }
+
+    @Test
+    @DisplayName("Изменения после курсора воспроизводят историю у опрашивающего клиента")
+    void shouldReplayChangesSinceCursor() {
+        Random random = new Random(11);
+        for (HistoryManager history : List.of(new InMemoryHistoryManager(50), new ArrayHistoryManager(50))) {
+            List<Task> replica = new ArrayList<>();
+            long cursor = 0;
+            for (int i = 0; i < 20_000; i++) {
+                int id = random.nextInt(120);
+                if (random.nextInt(3) == 0) {
+                    history.remove(id);
+                } else {
+                    history.add(task(id));
+                }
+                if (random.nextInt(i % 2_000 < 1_000 ? 5 : 3_000) == 0) { // Редкие опросы теряют журнал удалений
+                    cursor = apply(history.getChangesSince(cursor), replica);
+                    assertEquals(history.getHistory(), replica, history.getClass().getSimpleName());
+                }
+            }
+        }
+    }
+
+    private static long apply(HistoryDelta delta, List<Task> replica) {
+        if (delta.isFull()) {
+            replica.clear();
+        }
+        Set<Integer> gone = new HashSet<>(delta.getRemoved());
+        delta.getChanged().forEach(task -> gone.add(task.getId()));
+        replica.removeIf(task -> gone.contains(task.getId()));
+        replica.addAll(delta.getChanged());
+        return delta.getVersion();
+    }
+}
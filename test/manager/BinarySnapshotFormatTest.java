@@ -0,0 +1,158 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotFormatTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private File csvFile;
+    private File binaryFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csvFile = File.createTempFile("test_tasks", ".csv");
+        binaryFile = File.createTempFile("test_tasks", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(csvFile.toPath());
+        Files.deleteIfExists(binaryFile.toPath());
+    }
+
+    @Test
+    @DisplayName("Кодирование и декодирование сохраняют все поля")
+    void shouldRoundTripAllFields() {
+        Task task = new Task(1, "Имя, с запятой\nи переводом строки", "", Status.IN_PROGRESS,
+                Duration.ofMinutes(90), START);
+        Task bare = new Task(2, "Без времени", "Описание", Status.NEW);
+        Epic epic = new Epic(3, "Epic", "Description");
+        epic.addSubtaskId(4);
+        Subtask subtask = new Subtask(4, "Subtask", "Description", Status.DONE, 3,
+                Duration.ofMinutes(5), LocalDateTime.of(1960, 5, 1, 23, 59));
+
+        BinarySnapshotFormat.Snapshot snapshot = BinarySnapshotFormat.decode(
+                BinarySnapshotFormat.encode(List.of(task, bare, epic, subtask), List.of(4, 1)));
+
+        assertEquals(4, snapshot.tasks.size());
+        Task restored = snapshot.tasks.get(0);
+        Subtask restoredSubtask = (Subtask) snapshot.tasks.get(3);
+        assertAll(
+                () -> assertEquals(task.getName(), restored.getName()),
+                () -> assertEquals(Status.IN_PROGRESS, restored.getStatus()),
+                () -> assertEquals(Duration.ofMinutes(90), restored.getDuration()),
+                () -> assertEquals(START, restored.getStartTime()),
+                () -> assertNull(snapshot.tasks.get(1).getStartTime()),
+                () -> assertNull(snapshot.tasks.get(1).getDuration()),
+                () -> assertEquals(List.of(4), ((Epic) snapshot.tasks.get(2)).getSubtaskIds()),
+                () -> assertEquals(3, restoredSubtask.getEpicId()),
+                () -> assertEquals(subtask.getStartTime(), restoredSubtask.getStartTime(), "Дата до эпохи"),
+                () -> assertEquals(List.of(4, 1), snapshot.history)
+        );
+    }
+
+    @Test
+    @DisplayName("Поколение журнала хранится в снимке версии 2, снимок без журнала остаётся версии 1")
+    void shouldStoreJournalGeneration() {
+        List<Task> tasks = List.of(new Task(1, "Task", "Description", Status.NEW));
+        byte[] withJournal = BinarySnapshotFormat.encode(tasks, List.of(1), 300);
+        byte[] withoutJournal = BinarySnapshotFormat.encode(tasks, List.of(1));
+
+        assertEquals(BinarySnapshotFormat.VERSION_WITH_JOURNAL, withJournal[BinarySnapshotFormat.MAGIC.length]);
+        assertEquals(300, BinarySnapshotFormat.decode(withJournal).journalGeneration);
+        assertEquals(1, BinarySnapshotFormat.decode(withJournal).tasks.size());
+        assertEquals(BinarySnapshotFormat.VERSION, withoutJournal[BinarySnapshotFormat.MAGIC.length]);
+        assertEquals(-1, BinarySnapshotFormat.decode(withoutJournal).journalGeneration);
+    }
+
+    @Test
+    @DisplayName("Повреждённый снимок не загружается")
+    void shouldRejectCorruptedSnapshot() {
+        byte[] data = BinarySnapshotFormat.encode(List.of(new Task(1, "Task", "Description", Status.NEW)), List.of());
+        data[data.length / 2] ^= 1;
+        assertThrows(FileBackedTaskManager.ManagerLoadException.class, () -> BinarySnapshotFormat.decode(data));
+
+        byte[] wrongVersion = BinarySnapshotFormat.encode(List.of(), List.of());
+        wrongVersion[BinarySnapshotFormat.MAGIC.length] = 99;
+        assertThrows(FileBackedTaskManager.ManagerLoadException.class, () -> BinarySnapshotFormat.decode(wrongVersion));
+    }
+
+    @Test
+    @DisplayName("Менеджер сохраняет и загружает двоичный снимок, формат определяется по файлу")
+    void shouldSaveAndLoadBinarySnapshot() throws IOException {
+        FileBackedTaskManager manager = new FileBackedTaskManager(binaryFile);
+        manager.setSnapshotFormat(FileBackedTaskManager.SnapshotFormat.BINARY);
+        int taskId = manager.createTask(new Task("Купить хлеб, молоко", "Описание", Status.NEW,
+                Duration.ofMinutes(30), START));
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Subtask", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(15), START.plusHours(1)));
+        manager.getSubtaskById(subtaskId);
+        manager.getTaskById(taskId);
+        manager.createTask(new Task("Last", "Description", Status.NEW));
+
+        assertTrue(BinarySnapshotFormat.isBinary(binaryFile));
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(binaryFile);
+
+        assertAll(
+                () -> assertEquals(FileBackedTaskManager.SnapshotFormat.BINARY, loaded.getSnapshotFormat()),
+                () -> assertEquals("Купить хлеб, молоко", loaded.getTask(taskId).getName()),
+                () -> assertEquals(List.of(subtaskId), loaded.getEpic(epicId).getSubtaskIds()),
+                () -> assertEquals(Status.DONE, loaded.getEpic(epicId).getStatus()),
+                () -> assertEquals(START.plusHours(1), loaded.getEpic(epicId).getStartTime()),
+                () -> assertEquals(List.of(subtaskId, taskId),
+                        loaded.getHistory().stream().map(Task::getId).toList())
+        );
+    }
+
+    @Test
+    @DisplayName("Изменение эпика сохраняется в двоичный снимок")
+    void shouldUpdateEpicInBinarySnapshot() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(binaryFile);
+        manager.setSnapshotFormat(FileBackedTaskManager.SnapshotFormat.BINARY);
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = manager.createSubtask(new Subtask("Subtask", "Description", Status.DONE, epicId));
+
+        manager.updateEpic(new Epic(epicId, "Renamed", "New description"));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(binaryFile);
+        assertAll(
+                () -> assertEquals("Renamed", loaded.getEpic(epicId).getName()),
+                () -> assertEquals("New description", loaded.getEpic(epicId).getDescription()),
+                () -> assertEquals(List.of(subtaskId), loaded.getEpic(epicId).getSubtaskIds()),
+                () -> assertEquals(Status.DONE, loaded.getEpic(epicId).getStatus())
+        );
+    }
+
+    @Test
+    @DisplayName("Преобразование CSV в двоичный формат сохраняет содержимое")
+    void shouldConvertCsvToBinary() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(csvFile);
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        manager.createSubtask(new Subtask("Subtask", "Description", Status.IN_PROGRESS, epicId));
+        int taskId = manager.createTask(new Task("Task", "Description", Status.NEW, Duration.ofMinutes(10), START));
+        manager.getTaskById(taskId);
+        manager.createTask(new Task("Other", "Description", Status.DONE));
+
+        BinarySnapshotFormat.convertFromCsv(csvFile, binaryFile);
+
+        FileBackedTaskManager fromCsv = FileBackedTaskManager.loadFromFile(csvFile);
+        FileBackedTaskManager fromBinary = FileBackedTaskManager.loadFromFile(binaryFile);
+        assertAll(
+                () -> assertEquals(fromCsv.getAllTasks(), fromBinary.getAllTasks()),
+                () -> assertEquals(fromCsv.getAllEpics(), fromBinary.getAllEpics()),
+                () -> assertEquals(fromCsv.getAllSubtasks(), fromBinary.getAllSubtasks()),
+                () -> assertEquals(fromCsv.getHistory(), fromBinary.getHistory()),
+                () -> assertTrue(binaryFile.length() < csvFile.length())
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package manager;
+
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientHistoriesTest {
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final ClientHistories histories = new ClientHistories(4, 2, 3, Duration.ofMillis(100), now::get);
+
+    private static Task task(int id) {
+        return new Task(id, "Task " + id, "Description", Status.NEW);
+    }
+
+    private List<Integer> ids(String client) {
+        return histories.history(client).stream().map(Task::getId).toList();
+    }
+
+    @Test
+    @DisplayName("Истории клиентов независимы и ограничены ёмкостью")
+    void shouldKeepBoundedHistoryPerClient() {
+        for (int id = 1; id <= 5; id++) {
+            histories.record("alice", task(id));
+        }
+        histories.record("bob", task(2));
+
+        assertEquals(List.of(3, 4, 5), ids("alice"));
+        assertEquals(List.of(2), ids("bob"));
+        histories.removeAll(Set.of(2, 4));
+        histories.remove(5);
+        assertEquals(List.of(3), ids("alice"));
+        assertEquals(List.of(), ids("bob"));
+        histories.setLimits(1, Duration.ofMillis(100));
+        histories.record("alice", task(6));
+        assertEquals(List.of(6), ids("alice"));
+    }
+
+    @Test
+    @DisplayName("История клиента без обращений дольше времени простоя удаляется")
+    void shouldEvictIdleClients() {
+        histories.record("alice", task(1));
+        histories.record("bob", task(2));
+        now.addAndGet(60);
+        assertEquals(List.of(2), ids("bob")); // Обращение продлевает историю bob
+        now.addAndGet(60);
+
+        assertEquals(List.of(), ids("alice"));
+        assertEquals(List.of(2), ids("bob"));
+        assertEquals(1, histories.size());
+        assertEquals(List.of("bob"), List.copyOf(histories.snapshot().keySet()));
+    }
+
+    @Test
+    @DisplayName("Новый клиент в заполненном сегменте вытесняет самого давнего")
+    void shouldEvictLeastRecentClientWhenShardIsFull() {
+        ClientHistories single = new ClientHistories(1, 2, 3, Duration.ofMillis(100), now::get);
+        single.record("alice", task(1));
+        single.record("bob", task(2));
+        single.history("alice"); // Обращение делает bob самым давним
+        single.record("carol", task(3));
+
+        assertEquals(2, single.size());
+        assertEquals(List.of("alice", "carol"), List.copyOf(single.snapshot().keySet()));
+        assertEquals(List.of(), single.history("bob"));
+        for (int i = 0; i < 1000; i++) {
+            single.record("client-" + i, task(i));
+        }
+        assertEquals(2, single.size());
+    }
+}
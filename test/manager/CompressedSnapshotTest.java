@@ -0,0 +1,162 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedSnapshotTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = File.createTempFile("test_tasks", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(DerivedIndexFile.of(file).toPath());
+        Files.deleteIfExists(new File(file.getPath() + ".log").toPath());
+    }
+
+    @Test
+    @DisplayName("Данные из многих блоков распаковываются без потерь обоими кодеками")
+    void shouldRoundTripManyBlocks() throws IOException {
+        byte[] data = new byte[100_000];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 7 == 0 ? random.nextInt() : 'a' + i % 3); // Частично несжимаемые данные
+        }
+        for (FileBackedTaskManager.SnapshotCodec codec : List.of(FileBackedTaskManager.SnapshotCodec.DEFLATE,
+                FileBackedTaskManager.SnapshotCodec.GZIP)) {
+            Files.write(file.toPath(), CompressedSnapshot.compress(data, codec, 4096));
+
+            assertTrue(CompressedSnapshot.isCompressed(file));
+            assertEquals(codec, CompressedSnapshot.codecOf(file));
+            try (InputStream in = CompressedSnapshot.open(file.toPath())) {
+                assertArrayEquals(data, in.readAllBytes(), "Кодек " + codec);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Обрезанный сжатый снимок не загружается")
+    void shouldRejectTruncatedSnapshot() throws IOException {
+        byte[] data = "x".repeat(50_000).getBytes();
+        byte[] compressed = CompressedSnapshot.compress(data, FileBackedTaskManager.SnapshotCodec.DEFLATE, 1024);
+        Files.write(file.toPath(), Arrays.copyOf(compressed, compressed.length - 6));
+
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = CompressedSnapshot.open(file.toPath())) {
+                in.readAllBytes();
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Блок длиннее размера блока из заголовка отклоняется до выделения памяти")
+    void shouldRejectBlockLongerThanBlockSize() throws IOException {
+        byte[] compressed = CompressedSnapshot.compress("x".repeat(100).getBytes(),
+                FileBackedTaskManager.SnapshotCodec.DEFLATE, 1024);
+        ByteBuffer.wrap(compressed).putInt(14, Integer.MAX_VALUE - 8); // Длина исходных данных первого блока
+        Files.write(file.toPath(), compressed);
+
+        assertThrows(FileBackedTaskManager.ManagerLoadException.class, () -> {
+            try (InputStream in = CompressedSnapshot.open(file.toPath())) {
+                in.readAllBytes();
+            }
+        });
+
+        ByteBuffer.wrap(compressed).putInt(6, Integer.MAX_VALUE); // Размер блока
+        Files.write(file.toPath(), compressed);
+        assertThrows(FileBackedTaskManager.ManagerLoadException.class,
+                () -> CompressedSnapshot.open(file.toPath()).close());
+    }
+
+    @Test
+    @DisplayName("Менеджер сохраняет и загружает сжатые снимки обоих форматов")
+    void shouldSaveAndLoadCompressedSnapshots() throws IOException {
+        for (FileBackedTaskManager.SnapshotFormat format : FileBackedTaskManager.SnapshotFormat.values()) {
+            for (FileBackedTaskManager.SnapshotCodec codec : List.of(FileBackedTaskManager.SnapshotCodec.DEFLATE,
+                    FileBackedTaskManager.SnapshotCodec.GZIP)) {
+                FileBackedTaskManager manager = new FileBackedTaskManager(file);
+                manager.setSnapshotFormat(format);
+                manager.setSnapshotCodec(codec);
+                int taskId = manager.createTask(new Task("Задача", "Описание", Status.IN_PROGRESS,
+                        Duration.ofMinutes(30), START));
+                int epicId = manager.createEpic(new Epic("Эпик", "Описание эпика"));
+                int subtaskId = manager.createSubtask(new Subtask(0, "Подзадача", "Описание подзадачи",
+                        Status.DONE, epicId, Duration.ofMinutes(15), START.plusHours(1)));
+                manager.getSubtaskById(subtaskId);
+                manager.save(); // Просмотр попадает в снимок
+
+                assertTrue(CompressedSnapshot.isCompressed(file), format + "/" + codec);
+                FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+                List<Integer> history = loaded.getHistory().stream().map(Task::getId).toList();
+                assertAll(format + "/" + codec,
+                        () -> assertEquals(codec, loaded.getSnapshotCodec(), "Сжатие определяется по файлу"),
+                        () -> assertEquals(format, loaded.getSnapshotFormat()),
+                        () -> assertEquals("Описание", loaded.getTaskById(taskId).getDescription()),
+                        () -> assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus()),
+                        () -> assertEquals(List.of(subtaskId), history),
+                        () -> assertEquals(2, loaded.getPrioritizedTasks().size()));
+                manager.close();
+                Files.delete(file.toPath());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Изменение эпика сохраняется в сжатый снимок обоими кодеками")
+    void shouldUpdateEpicInCompressedSnapshot() throws IOException {
+        for (FileBackedTaskManager.SnapshotCodec codec : List.of(FileBackedTaskManager.SnapshotCodec.DEFLATE,
+                FileBackedTaskManager.SnapshotCodec.GZIP)) {
+            FileBackedTaskManager manager = new FileBackedTaskManager(file);
+            manager.setSnapshotCodec(codec);
+            int epicId = manager.createEpic(new Epic("Эпик", "Описание эпика"));
+            int subtaskId = manager.createSubtask(new Subtask("Подзадача", "Описание", Status.DONE, epicId));
+
+            manager.updateEpic(new Epic(epicId, "Новый эпик", "Новое описание"));
+
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+            assertAll(codec.toString(),
+                    () -> assertEquals("Новый эпик", loaded.getEpicById(epicId).getName()),
+                    () -> assertEquals("Новое описание", loaded.getEpicById(epicId).getDescription()),
+                    () -> assertEquals(List.of(subtaskId), loaded.getEpicById(epicId).getSubtaskIds()),
+                    () -> assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus()));
+            manager.close();
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    @DisplayName("Повторяющиеся строки снимка сжимаются в несколько раз")
+    void shouldCompressRepetitiveBoard() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, FileBackedTaskManager.PersistenceMode.JOURNAL);
+        for (int i = 0; i < 2_000; i++) {
+            manager.createTask(new Task("Задача " + i, "Описание задачи " + i, Status.NEW,
+                    Duration.ofMinutes(15), START.plusMinutes(30L * i)));
+        }
+        manager.save();
+        long plain = file.length();
+        manager.setSnapshotCodec(FileBackedTaskManager.SnapshotCodec.GZIP);
+        manager.save();
+        manager.close();
+
+        assertTrue(file.length() * 4 < plain, "Ожидалось сжатие хотя бы в 4 раза: " + plain + " -> " + file.length());
+        assertEquals(2_000, FileBackedTaskManager.loadFromFile(file).getAllTasks().size());
+    }
+}
@@ -0,0 +1,306 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+    private static final int THREADS = 8;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Override
+    protected ConcurrentTaskManager createTaskManager() {
+        return new ConcurrentTaskManager();
+    }
+
+    // Запускает задачу одновременно в нескольких потоках и пробрасывает первую ошибку
+    private void runConcurrently(int threads, ThrowingTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(worker);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @FunctionalInterface
+    private interface ThrowingTask {
+        void run(int worker) throws Exception;
+    }
+
+    // Общий набор проверок менеджера с асинхронной записью просмотров
+    @Nested
+    class AsyncViewSuite extends TaskManagerTest<ConcurrentTaskManager> {
+        @Override
+        protected ConcurrentTaskManager createTaskManager() {
+            ConcurrentTaskManager manager = new ConcurrentTaskManager();
+            manager.enableAsyncViews(1_024);
+            return manager;
+        }
+
+        @AfterEach
+        void closeManager() {
+            taskManager.close();
+        }
+    }
+
+    @Test
+    void shouldNeverScheduleOverlappingTasksUnderParallelWriters() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+
+        runConcurrently(THREADS, worker -> {
+            Random random = new Random(worker);
+            for (int i = 0; i < 500; i++) {
+                Task task = new Task("Task", "Description", Status.NEW,
+                        Duration.ofMinutes(1 + random.nextInt(60)), BASE.plusMinutes(random.nextInt(20_000)));
+                try {
+                    taskManager.createTask(task);
+                    created.incrementAndGet();
+                } catch (ManagerSaveException e) {
+                    // Пересечение — ожидаемый отказ
+                }
+            }
+        });
+
+        List<Task> prioritized = new ArrayList<>(taskManager.getPrioritizedTasks());
+        assertEquals(created.get(), prioritized.size(), "Каждая созданная задача должна попасть в список приоритетов");
+        assertEquals(created.get(), taskManager.getAllTasks().size());
+        for (int i = 1; i < prioritized.size(); i++) {
+            assertTrue(prioritized.get(i - 1).getEndTime().isBefore(prioritized.get(i).getStartTime()),
+                    "Задачи в списке приоритетов не должны пересекаться");
+        }
+    }
+
+    @Test
+    void shouldGenerateUniqueIdsUnderParallelCreates() throws Exception {
+        ConcurrentLinkedQueue<Integer> ids = new ConcurrentLinkedQueue<>();
+
+        runConcurrently(THREADS, worker -> {
+            for (int i = 0; i < 1_000; i++) {
+                ids.add(taskManager.createTask(new Task("Task", "Description", Status.NEW)));
+            }
+        });
+
+        assertEquals(THREADS * 1_000, new HashSet<>(ids).size(), "Идентификаторы не должны повторяться");
+        assertEquals(THREADS * 1_000, taskManager.getAllTasks().size());
+    }
+
+    @Test
+    void shouldKeepEpicAggregatesConsistentUnderParallelWriters() throws Exception {
+        int epicId = taskManager.createEpic(new Epic("Epic", "Description"));
+        Status[] statuses = Status.values();
+
+        runConcurrently(THREADS, worker -> {
+            Random random = new Random(worker);
+            List<Integer> own = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                int action = random.nextInt(3);
+                if (action == 0 || own.isEmpty()) {
+                    // У каждого потока свой непересекающийся диапазон времени
+                    Subtask subtask = new Subtask(0, "Subtask", "Description",
+                            statuses[random.nextInt(statuses.length)], epicId,
+                            Duration.ofMinutes(10), BASE.plusDays(worker * 10L).plusMinutes(i * 20L));
+                    own.add(taskManager.createSubtask(subtask));
+                } else if (action == 1) {
+                    int id = own.get(random.nextInt(own.size()));
+                    Subtask current = taskManager.getSubtaskById(id);
+                    Subtask updated = new Subtask(id, current.getName(), current.getDescription(),
+                            statuses[random.nextInt(statuses.length)], epicId,
+                            current.getDuration(), current.getStartTime());
+                    taskManager.updateSubtask(updated);
+                } else {
+                    taskManager.deleteSubtaskById(own.remove(random.nextInt(own.size())));
+                }
+            }
+        });
+
+        Epic epic = taskManager.getEpicById(epicId);
+        List<Subtask> subtasks = taskManager.getSubtasksByEpicId(epicId);
+        assertEquals(epic.getSubtaskIds().size(), subtasks.size());
+
+        Status expectedStatus;
+        if (subtasks.stream().allMatch(s -> s.getStatus() == Status.NEW)) {
+            expectedStatus = Status.NEW;
+        } else if (subtasks.stream().allMatch(s -> s.getStatus() == Status.DONE)) {
+            expectedStatus = Status.DONE;
+        } else {
+            expectedStatus = Status.IN_PROGRESS;
+        }
+        assertEquals(expectedStatus, epic.getStatus(), "Статус эпика должен соответствовать подзадачам");
+        assertEquals(subtasks.stream().map(Subtask::getStartTime).filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo).orElse(null), epic.getStartTime());
+        assertEquals(subtasks.stream().map(Subtask::getEndTime).filter(Objects::nonNull)
+                .max(LocalDateTime::compareTo).orElse(null), epic.getEndTime());
+        assertEquals(subtasks.stream().map(Subtask::getDuration).reduce(Duration.ZERO, Duration::plus),
+                epic.getDuration());
+    }
+
+    @Test
+    void shouldServeReadersWhileWritersRun() throws Exception {
+        Set<Integer> taskIds = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            taskIds.add(taskManager.createTask(new Task("Task " + i, "Description", Status.NEW)));
+        }
+        List<Integer> ids = new ArrayList<>(taskIds);
+
+        runConcurrently(THREADS, worker -> {
+            Random random = new Random(worker);
+            for (int i = 0; i < 2_000; i++) {
+                if (worker % 2 == 0) {
+                    assertNotNull(taskManager.getTaskById(ids.get(random.nextInt(ids.size()))));
+                    taskManager.getHistory();
+                    taskManager.getPrioritizedTasks();
+                } else {
+                    Task task = new Task("Timed", "Description", Status.NEW, Duration.ofMinutes(1),
+                            BASE.plusMinutes(random.nextInt(100_000)));
+                    try {
+                        int id = taskManager.createTask(task);
+                        taskManager.deleteTaskById(id);
+                    } catch (ManagerSaveException e) {
+                        // Пересечение — ожидаемый отказ
+                    }
+                }
+            }
+        });
+
+        List<Task> history = taskManager.getHistory();
+        assertEquals(new HashSet<>(history).size(), history.size(), "История не должна содержать дубликатов");
+        assertTrue(taskIds.containsAll(history.stream().map(Task::getId).toList()));
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty(), "Все временные задачи были удалены");
+    }
+
+    @Test
+    @DisplayName("Задачи по id, в списках, истории и приоритетах возвращаются копиями, которые писатели не меняют")
+    void shouldReturnCopiesFromReads() {
+        int taskId = taskManager.createTask(new Task("Task", "Description", Status.NEW,
+                Duration.ofMinutes(30), BASE));
+        int epicId = taskManager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = taskManager.createSubtask(new Subtask(0, "Subtask", "Description", Status.NEW, epicId,
+                Duration.ofMinutes(15), BASE.plusHours(1)));
+
+        Task task = taskManager.getTaskById(taskId);
+        Epic epic = taskManager.getEpicById(epicId, "client");
+        Subtask subtask = taskManager.getSubtaskById(subtaskId);
+        List<Task> reads = new ArrayList<>();
+        reads.addAll(taskManager.getAllTasks());
+        reads.addAll(taskManager.getAllSubtasks());
+        reads.addAll(taskManager.getAllEpics());
+        reads.addAll(taskManager.getHistory());
+        reads.addAll(taskManager.getHistory("client"));
+        reads.addAll(taskManager.getHistorySince(0).getChanged());
+        reads.addAll(taskManager.getSubtasksByEpicId(epicId));
+        reads.addAll(taskManager.getPrioritizedTasks());
+        reads.addAll(taskManager.getOverlappingTasks(new Task("Probe", "Description", Status.NEW,
+                Duration.ofHours(3), BASE)));
+        taskManager.updateTask(new Task(taskId, "Task", "Description", Status.DONE, Duration.ofMinutes(30), BASE));
+        taskManager.updateSubtask(new Subtask(subtaskId, "Subtask", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(15), BASE.plusHours(1)));
+
+        assertEquals(Status.NEW, task.getStatus());
+        assertEquals(Status.NEW, epic.getStatus());
+        assertEquals(Status.NEW, subtask.getStatus());
+        assertEquals(List.of(subtaskId), epic.getSubtaskIds());
+        assertEquals(13, reads.size());
+        for (Task read : reads) {
+            assertEquals(Status.NEW, read.getStatus(), "Копия " + read.getId());
+        }
+        assertEquals(Status.DONE, taskManager.getEpicById(epicId).getStatus());
+        task.setStatus(Status.IN_PROGRESS);
+        reads.forEach(read -> read.setStatus(Status.IN_PROGRESS));
+        assertEquals(Status.DONE, taskManager.getTaskById(taskId).getStatus());
+        assertEquals(Status.DONE, taskManager.getSubtaskById(subtaskId).getStatus());
+    }
+
+    @Test
+    @DisplayName("Асинхронные просмотры: поток видит свои просмотры, удалённые задачи не возвращаются")
+    void shouldSeeOwnViewsWithAsyncRecording() throws Exception {
+        taskManager.enableAsyncViews(64);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(taskManager.createTask(new Task("Task " + i, "Description", Status.NEW)));
+        }
+
+        runConcurrently(THREADS, worker -> {
+            Random random = new Random(worker);
+            for (int i = 0; i < 2_000; i++) {
+                int id = ids.get(random.nextInt(ids.size()));
+                boolean kept = ids.indexOf(id) >= 20; // Первые 20 задач удаляет поток 0
+                if (taskManager.getTaskById(id) != null && kept && i % 50 == 0) {
+                    List<Integer> history = taskManager.getHistory().stream().map(Task::getId).toList();
+                    // Если просмотр не отброшен при заполненном буфере, он уже в истории
+                    assertTrue(history.contains(id) || taskManager.getViewRecordingStats().getDropped() > 0,
+                            "Просмотр задачи " + id + " не попал в историю");
+                }
+                if (worker == 0 && i % 100 == 0) {
+                    taskManager.deleteTaskById(ids.get(i / 100));
+                }
+            }
+        });
+
+        List<Integer> history = taskManager.getHistory().stream().map(Task::getId).toList();
+        assertEquals(new HashSet<>(history).size(), history.size(), "История не должна содержать дубликатов");
+        Set<Integer> existing = new HashSet<>();
+        taskManager.getAllTasks().forEach(task -> existing.add(task.getId()));
+        assertTrue(existing.containsAll(history), "Удалённая задача вернулась в историю");
+        ViewRecordingStats stats = taskManager.getViewRecordingStats();
+        assertEquals(0, stats.getPending());
+        assertEquals(stats.getRecorded(), stats.getApplied() + stats.getCoalesced());
+        taskManager.close();
+    }
+
+    @Test
+    @DisplayName("Асинхронные просмотры: повторы сливаются, при заполненном буфере просмотры отбрасываются")
+    void shouldCountCoalescedAndDroppedViews() {
+        taskManager.enableAsyncViews(4);
+        int first = taskManager.createTask(new Task("First", "Description", Status.NEW));
+        int second = taskManager.createTask(new Task("Second", "Description", Status.NEW));
+        int third = taskManager.createTask(new Task("Third", "Description", Status.NEW));
+
+        synchronized (taskManager.historyManager) { // Фоновый поток не применит просмотры раньше времени
+            taskManager.getTaskById(first);
+            taskManager.getTaskById(second);
+            taskManager.getTaskById(first);
+            taskManager.getTaskById(first);
+            taskManager.getTaskById(third); // Буфер на 4 просмотра уже заполнен
+        }
+
+        assertEquals(List.of(second, first), taskManager.getHistory().stream().map(Task::getId).toList());
+        ViewRecordingStats stats = taskManager.getViewRecordingStats();
+        assertEquals(4, stats.getRecorded());
+        assertEquals(1, stats.getDropped());
+        assertEquals(2, stats.getCoalesced());
+        assertEquals(2, stats.getApplied());
+        taskManager.close();
+    }
+}
@@ -0,0 +1,130 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvSnapshotReaderTest {
+    private File testFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testFile = File.createTempFile("test_tasks", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(testFile.toPath());
+    }
+
+    @Test
+    @DisplayName("Строки разбираются в задачи всех типов")
+    void shouldParseAllTaskTypes() throws IOException {
+        Files.writeString(testFile.toPath(), "header\r\n"
+                + "1, TASK ,Task,IN_PROGRESS,Description,,90,01.02.2024 10:30\r\n"
+                + "2,EPIC,Epic,NEW,Description,3;4,,\n"
+                + "3,SUBTASK,Subtask,DONE,Description,2,15,29.02.2024 23:45");
+
+        try (CsvSnapshotReader reader = new CsvSnapshotReader(testFile.toPath())) {
+            assertTrue(reader.nextLine());
+            assertTrue(reader.nextLine());
+            Task task = reader.parseTask();
+            assertTrue(reader.nextLine());
+            Epic epic = (Epic) reader.parseTask();
+            assertTrue(reader.nextLine());
+            Subtask subtask = (Subtask) reader.parseTask();
+            assertFalse(reader.nextLine(), "Последняя строка без перевода строки тоже читается");
+
+            assertAll(
+                    () -> assertEquals(1, task.getId()),
+                    () -> assertEquals(Status.IN_PROGRESS, task.getStatus()),
+                    () -> assertEquals(Duration.ofMinutes(90), task.getDuration()),
+                    () -> assertEquals(LocalDateTime.of(2024, 2, 1, 10, 30), task.getStartTime()),
+                    () -> assertEquals(List.of(3, 4), epic.getSubtaskIds()),
+                    () -> assertNull(epic.getStartTime()),
+                    () -> assertEquals(2, subtask.getEpicId()),
+                    () -> assertEquals(LocalDateTime.of(2024, 2, 29, 23, 45), subtask.getStartTime())
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Строка длиннее буфера чтения собирается целиком")
+    void shouldReadLinesLongerThanBuffer() throws IOException {
+        String description = "x".repeat(200_000);
+        Files.writeString(testFile.toPath(), "header\n1,TASK,Task,NEW," + description + ",,,\n");
+
+        try (CsvSnapshotReader reader = new CsvSnapshotReader(testFile.toPath())) {
+            reader.nextLine();
+            reader.nextLine();
+            assertEquals(description, reader.parseTask().getDescription());
+        }
+    }
+
+    @Test
+    @DisplayName("Некорректная строка — ошибка с номером строки")
+    void shouldReportLineNumberOnError() throws IOException {
+        Files.writeString(testFile.toPath(), "header\n1,TASK,Task,NEW,Description,,,\n2,TASK,Task,UNKNOWN,D,,,\n");
+
+        try (CsvSnapshotReader reader = new CsvSnapshotReader(testFile.toPath())) {
+            reader.nextLine();
+            reader.nextLine();
+            reader.parseTask();
+            reader.nextLine();
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, reader::parseTask);
+            assertTrue(e.getMessage().contains("строки 3"), e.getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("Загрузка снимка сообщает количество задач и скорость чтения")
+    void shouldReportLoadStats() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(testFile);
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        for (int i = 0; i < 50; i++) {
+            manager.createSubtask(new Subtask("Subtask " + i, "Description", Status.NEW, epicId));
+        }
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile);
+        SnapshotStats stats = loaded.getSnapshotStats();
+        assertAll(
+                () -> assertEquals(51, stats.getLastLoadTasks()),
+                () -> assertEquals(testFile.length(), stats.getLastLoadBytes()),
+                () -> assertTrue(stats.getLoadTasksPerSecond() > 0),
+                () -> assertEquals(50, loaded.getSubtasksByEpicId(epicId).size())
+        );
+    }
+
+    @Test
+    @DisplayName("Смещение описания считается в байтах UTF-8 с учётом переводов строк")
+    void shouldLocateDescriptionBytes() throws IOException {
+        String content = "заголовок\r\n"
+                + "1,TASK,Задача,NEW, Описание 😀 ,,,\n"
+                + "2,TASK,Task,DONE,Plain,,,";
+        Files.writeString(testFile.toPath(), content);
+        byte[] bytes = Files.readAllBytes(testFile.toPath());
+
+        try (CsvSnapshotReader reader = new CsvSnapshotReader(testFile.toPath())) {
+            reader.trackByteOffsets();
+            assertTrue(reader.nextLine());
+            assertTrue(reader.nextLine());
+            Task first = reader.parseTask(false);
+            assertEquals("", first.getDescription(), "Описание не читается");
+            assertEquals("Описание 😀", new String(bytes, (int) reader.descriptionOffset(),
+                    reader.descriptionLength(), StandardCharsets.UTF_8));
+            assertTrue(reader.nextLine());
+            assertEquals(2, reader.parseId());
+            assertEquals("Plain", new String(bytes, (int) reader.descriptionOffset(),
+                    reader.descriptionLength(), StandardCharsets.UTF_8));
+        }
+    }
+}
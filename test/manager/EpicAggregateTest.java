@@ -0,0 +1,89 @@
+package manager;
+
+import model.Status;
+import model.Subtask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpicAggregateTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 9, 0);
+    private EpicAggregate aggregate;
+
+    @BeforeEach
+    void setUp() {
+        aggregate = new EpicAggregate();
+    }
+
+    private Subtask subtask(int id, Status status, int startMinute, int durationMinutes) {
+        return new Subtask(id, "Subtask " + id, "Description", status, 100,
+                Duration.ofMinutes(durationMinutes), BASE.plusMinutes(startMinute));
+    }
+
+    @Test
+    void shouldBeNewWhenEmpty() {
+        assertEquals(Status.NEW, aggregate.getStatus());
+        assertEquals(Duration.ZERO, aggregate.getDuration());
+        assertNull(aggregate.getStartTime());
+        assertNull(aggregate.getEndTime());
+    }
+
+    @Test
+    void shouldCalculateStatusFromCounts() {
+        aggregate.put(subtask(1, Status.NEW, 0, 10));
+        assertEquals(Status.NEW, aggregate.getStatus());
+
+        aggregate.put(subtask(2, Status.DONE, 20, 10));
+        assertEquals(Status.IN_PROGRESS, aggregate.getStatus());
+
+        aggregate.put(subtask(1, Status.DONE, 0, 10));
+        assertEquals(Status.DONE, aggregate.getStatus(), "Повторное добавление должно заменить вклад подзадачи");
+    }
+
+    @Test
+    void shouldTrackTimeBoundsAndDuration() {
+        aggregate.put(subtask(1, Status.NEW, 60, 30));
+        aggregate.put(subtask(2, Status.NEW, 0, 15));
+        aggregate.put(subtask(3, Status.NEW, 200, 40));
+
+        assertEquals(BASE, aggregate.getStartTime());
+        assertEquals(BASE.plusMinutes(240), aggregate.getEndTime());
+        assertEquals(Duration.ofMinutes(85), aggregate.getDuration());
+
+        aggregate.remove(2);
+        aggregate.remove(3);
+
+        assertEquals(BASE.plusMinutes(60), aggregate.getStartTime());
+        assertEquals(BASE.plusMinutes(90), aggregate.getEndTime());
+        assertEquals(Duration.ofMinutes(30), aggregate.getDuration());
+    }
+
+    @Test
+    void shouldRemoveRecordedContributionEvenIfSubtaskWasMutated() {
+        Subtask subtask = subtask(1, Status.NEW, 0, 30);
+        aggregate.put(subtask);
+
+        subtask.setStatus(Status.DONE);
+        subtask.setStartTime(BASE.plusDays(1));
+        aggregate.remove(1);
+
+        assertEquals(0, aggregate.size());
+        assertNull(aggregate.getStartTime(), "Должно удаляться исходное время начала");
+        assertEquals(Duration.ZERO, aggregate.getDuration());
+    }
+
+    @Test
+    void shouldKeepDuplicateStartTimes() {
+        aggregate.put(subtask(1, Status.NEW, 0, 10));
+        aggregate.put(subtask(2, Status.NEW, 0, 20));
+
+        aggregate.remove(1);
+
+        assertEquals(BASE, aggregate.getStartTime(), "Вторая подзадача с тем же началом должна остаться");
+        assertEquals(BASE.plusMinutes(20), aggregate.getEndTime());
+    }
+}
@@ -0,0 +1,156 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileBackedTaskManagerArchiveTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private File file;
+    private File restored;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = File.createTempFile("test_tasks", ".csv");
+        restored = File.createTempFile("test_restored", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        File[] related = file.getAbsoluteFile().getParentFile()
+                .listFiles((dir, name) -> name.startsWith(file.getName()) || name.startsWith(restored.getName()));
+        if (related != null) {
+            for (File f : related) {
+                Files.deleteIfExists(f.toPath());
+            }
+        }
+    }
+
+    private FileBackedTaskManager open(FileBackedTaskManager.PersistenceMode mode, int interval) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, mode);
+        manager.enableMutationArchive(interval);
+        return manager;
+    }
+
+    private static List<Integer> ids(Collection<? extends Task> tasks) {
+        return tasks.stream().map(Task::getId).sorted().toList();
+    }
+
+    @Test
+    @DisplayName("Просмотры клиента в состоянии из архива не записываются рядом с контрольным снимком")
+    void shouldNotRecordClientViewsInPointInTimeView() {
+        FileBackedTaskManager manager = open(FileBackedTaskManager.PersistenceMode.SNAPSHOT, 1);
+        int taskId = manager.createTask(new Task("Задача", "Описание", Status.NEW));
+        long sequence = manager.getArchiveSequence();
+
+        for (int i = 0; i < 2; i++) {
+            FileBackedTaskManager past = (FileBackedTaskManager) manager.openAsOf(sequence);
+            past.getTaskById(taskId, "alice");
+            assertTrue(past.getHistory("alice").isEmpty(), "Открытие " + (i + 1));
+            past.flush();
+            past.close();
+        }
+        File[] clientFiles = file.getAbsoluteFile().getParentFile()
+                .listFiles((dir, name) -> name.startsWith(file.getName()) && name.endsWith(".clients"));
+        assertEquals(0, clientFiles.length);
+        manager.close();
+    }
+
+    @Test
+    @DisplayName("Доска восстанавливается на момент до массового удаления, текущий менеджер не меняется")
+    void shouldOpenBoardBeforeBulkDelete() {
+        FileBackedTaskManager manager = open(FileBackedTaskManager.PersistenceMode.SNAPSHOT, 100);
+        int epicId = manager.createEpic(new Epic("Эпик", "Описание эпика"));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Подзадача", "Описание", Status.DONE, epicId,
+                Duration.ofMinutes(15), START));
+        int taskId = manager.createTask(new Task("Задача", "Описание", Status.NEW));
+        manager.getTaskById(taskId);
+        long beforeDelete = manager.getArchiveSequence();
+        manager.deleteAllEpics();
+        manager.deleteAllTasks();
+
+        TaskManager past = manager.openAsOf(beforeDelete);
+
+        assertEquals(List.of(taskId), ids(past.getAllTasks()));
+        assertEquals(List.of(subtaskId), ids(past.getAllSubtasks()));
+        assertEquals(Status.DONE, past.getEpicById(epicId).getStatus());
+        assertEquals(List.of(taskId), ids(past.getHistory()), "Просмотры восстанавливаются вместе с изменениями");
+        assertThrows(UnsupportedOperationException.class, () -> past.deleteTaskById(taskId));
+        assertTrue(manager.getAllTasks().isEmpty());
+        assertTrue(manager.getAllEpics().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> manager.openAsOf(manager.getArchiveSequence() + 1));
+        manager.close();
+    }
+
+    @Test
+    @DisplayName("Доска открывается на момент времени")
+    void shouldOpenBoardAtInstant() throws InterruptedException {
+        FileBackedTaskManager manager = open(FileBackedTaskManager.PersistenceMode.SNAPSHOT, 100);
+        int first = manager.createTask(new Task("Первая", "Описание", Status.NEW));
+        Thread.sleep(20);
+        Instant moment = Instant.now();
+        Thread.sleep(20);
+        manager.createTask(new Task("Вторая", "Описание", Status.NEW));
+        manager.updateTask(new Task(first, "Первая", "Описание", Status.DONE));
+
+        TaskManager past = manager.openAsOf(moment);
+
+        assertEquals(List.of(first), ids(past.getAllTasks()));
+        assertEquals(Status.NEW, past.getTaskById(first).getStatus());
+        assertThrows(IllegalArgumentException.class, () -> manager.openAsOf(Instant.EPOCH),
+                "Архив начинается позже");
+        manager.close();
+    }
+
+    @Test
+    @DisplayName("Восстановление начинается с ближайшего контрольного снимка")
+    void shouldReplayFromNearestCheckpoint() throws IOException {
+        FileBackedTaskManager manager = open(FileBackedTaskManager.PersistenceMode.JOURNAL, 10);
+        for (int i = 0; i < 30; i++) {
+            manager.createTask(new Task(0, "Задача " + i, "Описание", Status.NEW));
+        }
+        long sequence = manager.getArchiveSequence();
+        assertEquals(30, sequence);
+        // Первый контрольный снимок больше не нужен для поздних состояний
+        Files.delete(new File(file.getPath() + ".archive.0").toPath());
+
+        assertEquals(25, manager.openAsOf(25).getAllTasks().size());
+        assertEquals(30, manager.openAsOf(sequence).getAllTasks().size());
+        assertThrows(ManagerSaveException.class, () -> manager.openAsOf(5));
+        manager.close();
+    }
+
+    @Test
+    @DisplayName("Архив переживает перезапуск, восстановленный снимок загружается как обычный")
+    void shouldRestoreSnapshotAfterReopen() {
+        FileBackedTaskManager manager = open(FileBackedTaskManager.PersistenceMode.JOURNAL, 4);
+        int taskId = manager.createTask(new Task("Задача", "Описание", Status.IN_PROGRESS,
+                Duration.ofMinutes(30), START));
+        manager.getTaskById(taskId);
+        manager.close();
+
+        FileBackedTaskManager reopened = FileBackedTaskManager.loadFromFile(file);
+        reopened.enableMutationArchive(4);
+        long beforeDelete = reopened.getArchiveSequence();
+        assertEquals(2, beforeDelete, "Просмотр записан в архив при закрытии");
+        reopened.deleteTaskById(taskId);
+        reopened.restoreAsOf(beforeDelete, restored);
+        reopened.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(restored);
+        assertEquals(Status.IN_PROGRESS, loaded.getTaskById(taskId).getStatus());
+        assertEquals(List.of(taskId), ids(loaded.getHistory()));
+        assertThrows(IllegalArgumentException.class, () -> loaded.enableMutationArchive(0));
+        assertThrows(IllegalStateException.class, () -> loaded.openAsOf(0));
+    }
+}
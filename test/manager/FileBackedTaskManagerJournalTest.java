@@ -0,0 +1,306 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileBackedTaskManagerJournalTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private File testFile;
+    private File journalFile;
+    private FileBackedTaskManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testFile = File.createTempFile("test_tasks", ".csv");
+        Files.delete(testFile.toPath());
+        journalFile = new File(testFile.getPath() + ".log");
+        manager = new FileBackedTaskManager(testFile, FileBackedTaskManager.PersistenceMode.JOURNAL);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        manager.close();
+        Files.deleteIfExists(testFile.toPath());
+        Files.deleteIfExists(journalFile.toPath());
+        Files.deleteIfExists(previousJournalFile().toPath());
+    }
+
+    private File previousJournalFile() {
+        return new File(testFile.getPath() + ".log.prev");
+    }
+
+    // Записи журнала без строк поколения
+    private List<String> journalRecords() throws IOException {
+        return Files.readAllLines(journalFile.toPath()).stream().filter(line -> !line.startsWith("G,")).toList();
+    }
+
+    private FileBackedTaskManager reload() {
+        manager.close();
+        return FileBackedTaskManager.loadFromFile(testFile, FileBackedTaskManager.PersistenceMode.JOURNAL);
+    }
+
+    @Test
+    @DisplayName("Изменения пишутся в журнал по одной записи, без полного снимка")
+    void shouldAppendOneRecordPerMutation() throws IOException {
+        manager.createTask(new Task("Task", "Description", Status.NEW));
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        manager.createSubtask(new Subtask("Subtask", "Description", Status.NEW, epicId));
+
+        assertFalse(testFile.exists(), "Снимок не должен записываться при каждом изменении");
+        List<String> records = journalRecords();
+        assertEquals(3, records.size(), "На каждое изменение — одна запись");
+    }
+
+    @Test
+    @DisplayName("Загрузка восстанавливает состояние по журналу")
+    void shouldRestoreStateFromJournal() {
+        int taskId = manager.createTask(new Task("Task", "Description", Status.NEW, Duration.ofHours(1), START));
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Subtask", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(30), START.plusHours(2)));
+        int removedId = manager.createTask(new Task("Removed", "Description", Status.NEW));
+        manager.deleteTaskById(removedId);
+        manager.updateTask(new Task(taskId, "Renamed", "Description", Status.IN_PROGRESS,
+                Duration.ofHours(1), START));
+        manager.getSubtaskById(subtaskId);
+        manager.getTaskById(taskId);
+        manager.updateEpic(new Epic(epicId, "Epic renamed", "Description"));
+
+        FileBackedTaskManager loaded = reload();
+
+        assertAll(
+                () -> assertEquals(1, loaded.getAllTasks().size()),
+                () -> assertNull(loaded.getTask(removedId), "Удалённая задача не должна восстанавливаться"),
+                () -> assertEquals("Renamed", loaded.getTask(taskId).getName()),
+                () -> assertEquals("Epic renamed", loaded.getEpic(epicId).getName()),
+                () -> assertEquals(Status.DONE, loaded.getEpic(epicId).getStatus(), "Статус эпика по подзадачам"),
+                () -> assertEquals(List.of(subtaskId), loaded.getEpic(epicId).getSubtaskIds()),
+                () -> assertEquals(START.plusHours(2), loaded.getEpic(epicId).getStartTime()),
+                () -> assertEquals(2, loaded.getPrioritizedTasks().size()),
+                () -> assertEquals(List.of(subtaskId, taskId),
+                        loaded.getHistory().stream().map(Task::getId).toList(), "Порядок просмотров")
+        );
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Просмотры сеанса без изменений сохраняются при flush и закрытии")
+    void shouldPersistViewsOfReadOnlySession() throws IOException {
+        int firstId = manager.createTask(new Task("First", "Description", Status.NEW));
+        int secondId = manager.createTask(new Task("Second", "Description", Status.NEW));
+
+        FileBackedTaskManager readOnly = reload();
+        readOnly.getTaskById(secondId);
+        readOnly.flush();
+        assertEquals("V," + secondId, journalRecords().get(journalRecords().size() - 1), "Просмотр записан при flush");
+        readOnly.getTaskById(firstId);
+        readOnly.close();
+
+        manager = FileBackedTaskManager.loadFromFile(testFile, FileBackedTaskManager.PersistenceMode.JOURNAL);
+        assertEquals(List.of(secondId, firstId), manager.getHistory().stream().map(Task::getId).toList());
+
+        int before = journalRecords().size();
+        for (int i = 0; i < InMemoryTaskManager.UNSAVED_VIEWS_LIMIT; i++) {
+            manager.getTaskById(i % 2 == 0 ? firstId : secondId);
+        }
+        assertTrue(journalRecords().size() >= before + InMemoryTaskManager.UNSAVED_VIEWS_LIMIT,
+                "Просмотры без изменений записываются пачкой");
+    }
+
+    @Test
+    @DisplayName("Снимок очищает журнал, последующие изменения применяются поверх снимка")
+    void shouldReplayJournalOnTopOfSnapshot() throws IOException {
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        manager.createSubtask(new Subtask("Subtask 1", "Description", Status.NEW, epicId));
+        manager.save();
+
+        assertTrue(testFile.exists());
+        assertFalse(journalFile.exists(), "После снимка журнал должен быть очищен");
+
+        manager.createSubtask(new Subtask("Subtask 2", "Description", Status.DONE, epicId));
+        manager.deleteAllTasks();
+
+        FileBackedTaskManager loaded = reload();
+        assertEquals(2, loaded.getSubtasksByEpicId(epicId).size());
+        assertEquals(Status.IN_PROGRESS, loaded.getEpic(epicId).getStatus());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Сбой между записью снимка и очисткой журнала: записи из снимка не применяются повторно")
+    void shouldSkipJournalRecordsCoveredBySnapshot() throws IOException {
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        manager.save();
+        manager.createSubtask(new Subtask("Subtask", "Description", Status.NEW, epicId));
+        manager.deleteEpicById(epicId);
+        byte[] staleJournal = Files.readAllBytes(journalFile.toPath());
+        manager.save();
+        Files.write(journalFile.toPath(), staleJournal); // Журнал не успели очистить
+
+        manager = FileBackedTaskManager.loadFromFile(testFile, FileBackedTaskManager.PersistenceMode.JOURNAL);
+        assertTrue(manager.getAllEpics().isEmpty());
+        assertTrue(manager.getAllSubtasks().isEmpty());
+        int taskId = manager.createTask(new Task("After", "Description", Status.NEW));
+
+        FileBackedTaskManager loaded = reload();
+        assertEquals(List.of(taskId), loaded.getAllTasks().stream().map(Task::getId).toList());
+        assertTrue(loaded.getAllSubtasks().isEmpty());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Сбой после фонового снимка до удаления .log.prev: перенесённые записи пропускаются")
+    void shouldSkipPreviousJournalCoveredByBackgroundSnapshot() throws IOException {
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        manager.save();
+        manager.createSubtask(new Subtask("Subtask", "Description", Status.NEW, epicId));
+        manager.deleteEpicById(epicId);
+        byte[] rotated = Files.readAllBytes(journalFile.toPath());
+        manager.snapshotAsync().join();
+        int taskId = manager.createTask(new Task("After snapshot", "Description", Status.NEW));
+        manager.close();
+        Files.write(previousJournalFile().toPath(), rotated); // Файл .log.prev не успели удалить
+
+        FileBackedTaskManager loaded = reload();
+        assertTrue(loaded.getAllEpics().isEmpty());
+        assertNotNull(loaded.getTask(taskId), "Записи после снимка применяются");
+        assertFalse(previousJournalFile().exists());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Незавершённая последняя запись журнала пропускается")
+    void shouldIgnoreTornLastRecord() throws IOException {
+        int taskId = manager.createTask(new Task("Task", "Description", Status.NEW));
+        manager.close();
+        Files.writeString(journalFile.toPath(), "U,99,TA", StandardOpenOption.APPEND);
+
+        FileBackedTaskManager loaded = reload();
+        assertNotNull(loaded.getTask(taskId));
+        assertEquals(1, loaded.getAllTasks().size());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Оборванная запись отрезается при загрузке, следующая запись не теряется")
+    void shouldTruncateTornRecordBeforeAppending() throws IOException {
+        int firstId = manager.createTask(new Task("First", "Description", Status.NEW));
+        int tornId = manager.createTask(new Task("Torn", "Description", Status.NEW));
+        manager.close();
+        byte[] journal = Files.readAllBytes(journalFile.toPath());
+        Files.write(journalFile.toPath(), Arrays.copyOf(journal, journal.length - 6));
+
+        manager = FileBackedTaskManager.loadFromFile(testFile, FileBackedTaskManager.PersistenceMode.JOURNAL);
+        assertNull(manager.getTask(tornId), "Оборванная запись не применяется");
+        int afterId = manager.createTask(new Task("After", "Description", Status.NEW));
+        manager.createTask(new Task("Next", "Description", Status.NEW));
+
+        FileBackedTaskManager loaded = reload();
+        assertNotNull(loaded.getTask(firstId));
+        assertNotNull(loaded.getTask(afterId), "Первая запись после сбоя должна сохраниться");
+        assertEquals(3, loaded.getAllTasks().size());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Запятые и переводы строк в тексте задачи не создают лишних записей журнала")
+    void shouldNotInjectRecordsThroughTaskText() {
+        int victimId = manager.createTask(new Task("Victim", "Description", Status.NEW));
+        String description = "a,b\\c\r\nD," + victimId + "\nU,99,TASK,Injected,NEW,x,,,";
+        int taskId = manager.createTask(new Task("Name, with comma", description, Status.NEW));
+
+        FileBackedTaskManager loaded = reload();
+        assertNotNull(loaded.getTask(victimId), "Описание не должно удалять другую задачу");
+        assertNull(loaded.getTask(99));
+        assertEquals(description, loaded.getTask(taskId).getDescription());
+        assertEquals("Name, with comma", loaded.getTask(taskId).getName());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Повреждение в середине журнала — ошибка загрузки")
+    void shouldFailOnCorruptedRecordInTheMiddle() throws IOException {
+        manager.close();
+        Files.write(journalFile.toPath(), List.of("X,1", "D,1"));
+
+        assertThrows(FileBackedTaskManager.ManagerLoadException.class, this::reload);
+    }
+
+    @Test
+    @DisplayName("Фоновый снимок не теряет изменения, сделанные во время записи")
+    void shouldKeepMutationsMadeDuringBackgroundSnapshot() throws IOException {
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        for (int i = 0; i < 100; i++) {
+            manager.createSubtask(new Subtask("Subtask " + i, "Description", Status.NEW, epicId));
+        }
+        CompletableFuture<SnapshotStats> snapshot = manager.snapshotAsync();
+        int taskId = manager.createTask(new Task("After snapshot", "Description", Status.NEW));
+        SnapshotStats stats = snapshot.join();
+
+        assertAll(
+                () -> assertEquals(1, stats.getSnapshotCount()),
+                () -> assertEquals(testFile.length(), stats.getLastSnapshotBytes()),
+                () -> assertFalse(previousJournalFile().exists(), "Перенесённый журнал удаляется после снимка"),
+                () -> assertEquals(1, journalRecords().size(),
+                        "В журнале остаются только изменения после захвата")
+        );
+
+        FileBackedTaskManager loaded = reload();
+        assertEquals(100, loaded.getSubtasksByEpicId(epicId).size());
+        assertNotNull(loaded.getTask(taskId));
+        assertEquals(1, loaded.getSnapshotStats().getLastReplayRecords());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Незавершённый фоновый снимок: загрузка применяет оба журнала")
+    void shouldRecoverFromInterruptedBackgroundSnapshot() throws IOException {
+        int firstId = manager.createTask(new Task("First", "Description", Status.NEW));
+        manager.close();
+        Files.move(journalFile.toPath(), previousJournalFile().toPath());
+        manager = FileBackedTaskManager.loadFromFile(testFile, FileBackedTaskManager.PersistenceMode.JOURNAL);
+        int secondId = manager.createTask(new Task("Second", "Description", Status.NEW));
+
+        FileBackedTaskManager loaded = reload();
+        assertNotNull(loaded.getTask(firstId));
+        assertNotNull(loaded.getTask(secondId));
+        assertFalse(previousJournalFile().exists());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Журнал сжимается автоматически по достижении порога")
+    void shouldCompactJournalByThreshold() throws IOException {
+        manager.setCompactionThreshold(10);
+        for (int i = 0; i < 25; i++) {
+            manager.createTask(new Task("Task " + i, "Description", Status.NEW));
+        }
+        manager.close();
+
+        assertTrue(manager.getSnapshotStats().getSnapshotCount() >= 1, "Снимок должен быть записан в фоне");
+        assertTrue(testFile.exists());
+        assertTrue(journalRecords().size() <= 15, "Журнал не должен расти без предела");
+        FileBackedTaskManager loaded = reload();
+        assertEquals(25, loaded.getAllTasks().size());
+        loaded.close();
+    }
+
+    @Test
+    @DisplayName("Фоновый снимок недоступен в режиме снимка")
+    void shouldRejectBackgroundSnapshotInSnapshotMode() {
+        FileBackedTaskManager snapshotManager = new FileBackedTaskManager(testFile);
+        assertThrows(IllegalStateException.class, snapshotManager::snapshotAsync);
+    }
+}
@@ -2,6 +2,7 @@ package manager;
 
 import model.*;
 import org.junit.jupiter.api.*;
+import server.GsonUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -9,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,6 +27,9 @@ class FileBackedTaskManagerTest {
     @AfterEach
     void tearDown() throws IOException {
         Files.deleteIfExists(testFile.toPath());
+        Files.deleteIfExists(DerivedIndexFile.of(testFile).toPath());
+        Files.deleteIfExists(Path.of(testFile.getPath() + ".history"));
+        Files.deleteIfExists(Path.of(testFile.getPath() + ".clients"));
     }
 
     @Test
@@ -102,6 +107,27 @@ class FileBackedTaskManagerTest {
 
     }
 
+    @Test
+    @DisplayName("Снимок менеджера совпадает с файлом хранилища CSV после тех же изменений")
+    void shouldWriteSameSnapshotAsCsvStore() throws IOException {
+        File storeFile = File.createTempFile("test_store", ".csv");
+        try (InMemoryTaskManager stored = new InMemoryTaskManager(TaskStore.open(TaskStore.Engine.CSV, storeFile))) {
+            for (InMemoryTaskManager target : List.of(manager, stored)) {
+                int taskId = target.createTask(new Task("Задача, с запятой", "Описание\nв две строки", Status.NEW,
+                        Duration.ofMinutes(30), LocalDateTime.of(2024, 1, 1, 10, 0)));
+                int epicId = target.createEpic(new Epic("Эпик", "Описание эпика"));
+                int subtaskId = target.createSubtask(new Subtask("Подзадача", "Описание", Status.DONE, epicId));
+                target.getSubtaskById(subtaskId);
+                target.getTaskById(taskId);
+                target.updateTask(new Task(taskId, "Новая задача", "Новое описание", Status.DONE));
+                target.deleteSubtaskById(target.createSubtask(new Subtask("Удалить", "", Status.NEW, epicId)));
+            }
+            assertEquals(Files.readString(storeFile.toPath()), Files.readString(testFile.toPath()));
+        } finally {
+            Files.deleteIfExists(storeFile.toPath());
+        }
+    }
+
     @Test
     @DisplayName("Обработка пустого файла")
     void shouldHandleEmptyFile() throws IOException {
@@ -109,4 +135,201 @@ class FileBackedTaskManagerTest {
         assertDoesNotThrow(() -> FileBackedTaskManager.loadFromFile(testFile),
                 "Должен создаваться пустой менеджер при загрузке пустого файла");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("После перезапуска список приоритетов и время эпиков восстанавливаются")
+    void shouldRestorePrioritizedOrderAndEpicTimes() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        int late = manager.createTask(new Task("Late", "Description", Status.NEW, Duration.ofMinutes(30),
+                start.plusHours(5)));
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        int first = manager.createSubtask(new Subtask(0, "First", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(15), start));
+        int second = manager.createSubtask(new Subtask(0, "Second", "Description", Status.NEW, epicId,
+                Duration.ofMinutes(45), start.plusHours(1)));
+        manager.createTask(new Task("Unscheduled", "Description", Status.NEW));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile);
+        Epic epic = loaded.getEpic(epicId);
+        assertAll(
+                () -> assertEquals(List.of(first, second, late),
+                        loaded.getPrioritizedTasks().stream().map(Task::getId).toList()),
+                () -> assertEquals(start, epic.getStartTime()),
+                () -> assertEquals(start.plusHours(1).plusMinutes(45), epic.getEndTime()),
+                () -> assertEquals(Duration.ofMinutes(60), epic.getDuration()),
+                () -> assertEquals(Status.IN_PROGRESS, epic.getStatus()),
+                () -> assertTrue(loaded.hasTaskOverlaps(new Task("Probe", "Description", Status.NEW,
+                        Duration.ofMinutes(10), start.plusMinutes(5))))
+        );
+    }
+
+    @Test
+    @DisplayName("Сохранённый порядок приоритетов используется, пока снимок не изменился")
+    void shouldUseSavedIndexOnlyForMatchingSnapshot() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        manager.setPersistDerivedIndexes(true);
+        for (int i = 0; i < 20; i++) {
+            manager.createTask(new Task("Task " + i, "Description", Status.NEW, Duration.ofMinutes(10),
+                    start.minusHours(i)));
+        }
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile);
+        assertTrue(loaded.getSnapshotStats().isLastLoadUsedSavedIndex());
+        assertEquals(List.copyOf(manager.getPrioritizedTasks()),
+                List.copyOf(loaded.getPrioritizedTasks()));
+
+        Files.writeString(testFile.toPath(), Files.readString(testFile.toPath()).replace("Task 1,", "Task 1a,"));
+        FileBackedTaskManager changed = FileBackedTaskManager.loadFromFile(testFile);
+        assertFalse(changed.getSnapshotStats().isLastLoadUsedSavedIndex(), "Устаревший индекс игнорируется");
+        assertEquals(20, changed.getPrioritizedTasks().size());
+
+        manager.setPersistDerivedIndexes(false);
+        manager.save();
+        assertFalse(DerivedIndexFile.of(testFile).exists(), "Без индекса старый файл не остаётся");
+    }
+
+    @Test
+    @DisplayName("Ленивые описания читаются из снимка по требованию")
+    void shouldLoadDescriptionsLazily() {
+        int taskId = manager.createTask(new Task("Task", "Длинное описание задачи", Status.NEW));
+        int epicId = manager.createEpic(new Epic("Epic", "Описание эпика"));
+        int subtaskId = manager.createSubtask(new Subtask("Subtask", "Описание подзадачи", Status.DONE, epicId));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadWithLazyDescriptions(testFile,
+                FileBackedTaskManager.PersistenceMode.SNAPSHOT, 2);
+        try {
+            Task task = loaded.getTaskById(taskId);
+            assertFalse(task.isDescriptionLoaded(), "Описание не хранится в задаче");
+            assertEquals("Task", task.getName(), "Остальные поля хранятся в памяти");
+            assertEquals(0, loaded.getDescriptionFile().getReads());
+
+            assertEquals("Длинное описание задачи", task.getDescription());
+            assertEquals("Длинное описание задачи", task.getDescription());
+            assertEquals(1, loaded.getDescriptionFile().getReads(), "Повторное чтение идёт из кэша");
+            assertTrue(GsonUtils.getGson().toJson(task).contains("\"description\":\"Длинное описание задачи\""),
+                    "В JSON попадает описание из снимка");
+            assertEquals("Описание эпика", loaded.getEpicById(epicId).getDescription());
+            assertEquals("Описание подзадачи", loaded.getSubtaskById(subtaskId).getDescription());
+            assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus());
+        } finally {
+            loaded.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Снимок переносит ленивые описания из прежнего снимка, не читая их по одному")
+    void shouldCopyLazyDescriptionsOnSave() {
+        int epicId = manager.createEpic(new Epic("Epic", "Описание, эпика"));
+        int subtaskId = manager.createSubtask(new Subtask("Subtask", "Описание\nподзадачи", Status.NEW, epicId));
+        for (int i = 0; i < 20; i++) {
+            manager.createTask(new Task("Task " + i, "Описание " + i, Status.NEW));
+        }
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadWithLazyDescriptions(testFile,
+                FileBackedTaskManager.PersistenceMode.SNAPSHOT, 1);
+        try {
+            for (int i = 0; i < 5; i++) {
+                LazyDescriptionFile previous = loaded.getDescriptionFile();
+                long previousLength = testFile.length();
+                loaded.createTask(new Task("New " + i, "Новое " + i, Status.NEW));
+                assertEquals(0, previous.getReads(), "Сохранение не читает описания из прежнего снимка");
+                assertTrue(previous.getCopiedBytes() > 0 && previous.getCopiedBytes() * 2 < previousLength,
+                        "Из прежнего снимка переносятся только описания: " + previous.getCopiedBytes()
+                                + " из " + previousLength + " байт");
+            }
+
+            Subtask subtask = loaded.getSubtaskById(subtaskId);
+            assertFalse(subtask.isDescriptionLoaded());
+            assertTrue(subtask.toString().contains("description='Описание\nподзадачи'"),
+                    "toString подзадачи читает ленивое описание");
+            assertEquals("Описание, эпика", loaded.getEpicById(epicId).getDescription());
+            assertEquals("Описание 19", FileBackedTaskManager.loadFromFile(testFile).getTaskById(epicId + 21)
+                    .getDescription());
+        } finally {
+            loaded.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Запятые и переводы строк в тексте задачи сохраняются в снимке CSV")
+    void shouldEscapeTaskTextInCsvSnapshot() {
+        String description = "Первая строка,\nвторая строка\r\n3,TASK,Injected,NEW,x,,,\\";
+        int taskId = manager.createTask(new Task("Задача, с запятой", description, Status.NEW));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile);
+        FileBackedTaskManager lazy = FileBackedTaskManager.loadWithLazyDescriptions(testFile,
+                FileBackedTaskManager.PersistenceMode.SNAPSHOT, 1);
+        try {
+            assertEquals(1, loaded.getAllTasks().size(), "Описание не должно добавлять задачу");
+            assertEquals(description, loaded.getTask(taskId).getDescription());
+            assertEquals("Задача, с запятой", loaded.getTask(taskId).getName());
+            assertEquals(description, lazy.getTask(taskId).getDescription(), "Ленивое описание тоже разбирается");
+        } finally {
+            lazy.close();
+        }
+    }
+
+    @Test
+    @DisplayName("После записи снимка ленивые описания указывают на новый файл")
+    void shouldRebindDescriptionsAfterSave() {
+        int first = manager.createTask(new Task("First", "Первое", Status.NEW));
+        int second = manager.createTask(new Task("Second", "Второе", Status.NEW));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadWithLazyDescriptions(testFile,
+                FileBackedTaskManager.PersistenceMode.SNAPSHOT, 1);
+        try {
+            Task kept = loaded.getTaskById(second);
+            loaded.deleteTaskById(first); // Строки сдвигаются, прежние смещения неверны
+            int added = loaded.createTask(new Task("Third", "Третье", Status.NEW));
+
+            assertEquals("Второе", kept.getDescription());
+            assertFalse(loaded.getTaskById(added).isDescriptionLoaded(), "Новая задача тоже читается из снимка");
+            assertEquals("Третье", loaded.getTaskById(added).getDescription());
+            assertEquals("Third", FileBackedTaskManager.loadFromFile(testFile).getTaskById(added).getName());
+        } finally {
+            loaded.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Ёмкость истории сохраняется и применяется при загрузке")
+    void shouldPersistHistoryCapacity() {
+        int[] ids = new int[4];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = manager.createTask(new Task("Задача " + i, "Описание", Status.NEW));
+            manager.getTaskById(ids[i]);
+        }
+        manager.save(); // Снимок хранит все четыре просмотра
+
+        manager.setHistoryCapacity(2);
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile);
+
+        assertEquals(2, loaded.getHistoryCapacity());
+        assertEquals(List.of(ids[2], ids[3]), loaded.getHistory().stream().map(Task::getId).toList());
+        loaded.getTaskById(ids[0]);
+        assertEquals(List.of(ids[3], ids[0]), loaded.getHistory().stream().map(Task::getId).toList());
+
+        loaded.setHistoryCapacity(0);
+        assertEquals(0, FileBackedTaskManager.loadFromFile(testFile).getHistoryCapacity());
+    }
+
+    @Test
+    @DisplayName("Истории клиентов сохраняются рядом со снимком")
+    void shouldPersistClientHistories() {
+        int first = manager.createTask(new Task("Первая", "Описание", Status.NEW));
+        int second = manager.createTask(new Task("Вторая", "Описание", Status.NEW));
+        manager.getTaskById(first, "alice");
+        manager.getTaskById(second, "bob, с запятой");
+        manager.getTaskById(first, "bob, с запятой");
+        manager.deleteTaskById(first); // Удалённая задача уходит и из историй клиентов
+        manager.getTaskById(second, "alice");
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile);
+
+        assertEquals(List.of(second), loaded.getHistory("alice").stream().map(Task::getId).toList());
+        assertEquals(List.of(second), loaded.getHistory("bob, с запятой").stream().map(Task::getId).toList());
+        assertTrue(loaded.getHistory().isEmpty(), "Общая история не меняется");
+        assertTrue(loaded.getHistory("carol").isEmpty());
+    }
+}
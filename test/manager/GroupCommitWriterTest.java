@@ -0,0 +1,129 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitWriterTest {
+    private File testFile;
+    private File journalFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testFile = File.createTempFile("test_tasks", ".csv");
+        Files.delete(testFile.toPath());
+        journalFile = new File(testFile.getPath() + ".log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(testFile.toPath());
+        Files.deleteIfExists(journalFile.toPath());
+    }
+
+    // Записи журнала без строк поколения
+    private List<String> journalRecords() throws IOException {
+        return Files.readAllLines(journalFile.toPath()).stream().filter(line -> !line.startsWith("G,")).toList();
+    }
+
+    private FileBackedTaskManager open(PersistencePolicy policy) {
+        return new FileBackedTaskManager(testFile, FileBackedTaskManager.PersistenceMode.JOURNAL, policy);
+    }
+
+    @Test
+    @DisplayName("Синхронная политика записывает каждое изменение до возврата")
+    void shouldWriteEveryOperationSynchronously() throws IOException {
+        try (FileBackedTaskManager manager = open(PersistencePolicy.everyOperationDurable())) {
+            manager.createTask(new Task("Task 1", "Description", Status.NEW));
+            manager.createTask(new Task("Task 2", "Description", Status.NEW));
+
+            assertEquals(2, journalRecords().size());
+            PersistenceStats stats = manager.getPersistenceStats();
+            assertEquals(2, stats.getFlushCount());
+            assertEquals(2, stats.getRecordsWritten());
+            assertEquals(0, stats.getQueueDepth());
+        }
+    }
+
+    @Test
+    @DisplayName("Пачка по количеству: изменения копятся, пока не наберётся N записей")
+    void shouldBatchByOperationCount() throws IOException {
+        try (FileBackedTaskManager manager = open(PersistencePolicy.everyOperations(1000, false))) {
+            for (int i = 0; i < 10; i++) {
+                manager.createTask(new Task("Task " + i, "Description", Status.NEW));
+            }
+            PersistenceStats stats = manager.getPersistenceStats();
+            assertEquals(10, stats.getQueueDepth(), "Порог не достигнут — записи ждут в очереди");
+            assertEquals(0, stats.getFlushCount());
+            assertFalse(journalFile.exists());
+
+            manager.flush();
+            stats = manager.getPersistenceStats();
+            assertEquals(0, stats.getQueueDepth());
+            assertEquals(1, stats.getFlushCount(), "Вся очередь сбрасывается одной записью");
+            assertEquals(10, journalRecords().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Пачка по времени сбрасывается фоновым потоком без явного flush")
+    void shouldFlushByInterval() throws Exception {
+        try (FileBackedTaskManager manager = open(PersistencePolicy.everyMillis(20, false))) {
+            manager.createTask(new Task("Task", "Description", Status.NEW));
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (manager.getPersistenceStats().getRecordsWritten() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, manager.getPersistenceStats().getRecordsWritten());
+            assertEquals(1, journalRecords().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Закрытие сбрасывает очередь, состояние восстанавливается после перезапуска")
+    void shouldDrainQueueOnClose() {
+        FileBackedTaskManager manager = open(PersistencePolicy.everyOperations(1000, true));
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        for (int i = 0; i < 50; i++) {
+            manager.createSubtask(new Subtask("Subtask " + i, "Description", Status.DONE, epicId));
+        }
+        manager.close();
+
+        try (FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile,
+                FileBackedTaskManager.PersistenceMode.JOURNAL)) {
+            assertEquals(50, loaded.getSubtasksByEpicId(epicId).size());
+            assertEquals(Status.DONE, loaded.getEpic(epicId).getStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Снимок дожидается очереди и очищает журнал")
+    void shouldFlushQueueBeforeSnapshot() {
+        try (FileBackedTaskManager manager = open(PersistencePolicy.everyOperations(1000, false))) {
+            manager.createTask(new Task("Task", "Description", Status.NEW));
+            manager.save();
+
+            assertEquals(0, manager.getPersistenceStats().getQueueDepth());
+            assertFalse(journalFile.exists());
+        }
+        try (FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile,
+                FileBackedTaskManager.PersistenceMode.JOURNAL)) {
+            assertEquals(List.of("Task"), loaded.getAllTasks().stream().map(Task::getName).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Отложенная запись в режиме снимка запрещена")
+    void shouldRejectWriteBehindInSnapshotMode() {
+        assertThrows(IllegalArgumentException.class, () -> new FileBackedTaskManager(testFile,
+                FileBackedTaskManager.PersistenceMode.SNAPSHOT, PersistencePolicy.everyMillis(100, false)));
+        assertThrows(IllegalArgumentException.class, () -> PersistencePolicy.everyOperations(0, false));
+    }
+}
@@ -0,0 +1,98 @@
+package manager;
+
+import model.Status;
+import model.Task;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.function.IntFunction;
+
+/**
+ * Сравнение реализаций истории: память и время getHistory после просмотра всех задач доски,
+ * время getChangesSince при опросе после одного нового просмотра, а также время и выделенная память на просмотр при повторных просмотрах уже известных задач.
+ * Запуск: java manager.HistoryBenchmark [количество задач] [ёмкость] [вызовов getHistory] [просмотров]
+ */
+public class HistoryBenchmark {
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int reads = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        int views = args.length > 3 ? Integer.parseInt(args[3]) : 5_000_000;
+
+        Task[] board = new Task[size];
+        for (int i = 0; i < size; i++) {
+            board[i] = new Task(i + 1, "Задача " + i, "Описание", Status.NEW);
+        }
+        System.out.printf("Задач: %d, вызовов getHistory: %d, повторных просмотров: %d%n", size, reads, views);
+        run("связный список", InMemoryHistoryManager::new, board, capacity, reads, views);
+        run("массивы", ArrayHistoryManager::new, board, capacity, reads, views);
+    }
+
+    private static void run(String name, IntFunction<HistoryManager> factory, Task[] board, int capacity,
+                            int reads, int views) {
+        measureFill(name + ", без ограничения", factory.apply(InMemoryHistoryManager.UNBOUNDED), board, reads);
+        measureFill(name + ", ёмкость " + capacity, factory.apply(capacity), board, reads);
+        measureViews(name + ", без ограничения", factory.apply(InMemoryHistoryManager.UNBOUNDED), board, views);
+        measureViews(name + ", ёмкость " + capacity, factory.apply(capacity), board, views);
+    }
+
+    private static void measureFill(String name, HistoryManager history, Task[] board, int reads) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        for (Task task : board) {
+            history.add(task);
+        }
+        long addNanos = System.nanoTime() - start;
+        long retained = usedMemory() - before;
+
+        start = System.nanoTime();
+        long returned = 0;
+        for (int i = 0; i < reads; i++) {
+            returned += history.getHistory().size();
+        }
+        long readNanos = System.nanoTime() - start;
+
+        long cursor = history.getVersion();
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            history.add(board[i % board.length]);
+            cursor = history.getChangesSince(cursor).getVersion();
+        }
+        long pollNanos = System.nanoTime() - start;
+        System.out.printf("%-32s: в истории %7d, память %,12d байт, добавление %5d мс, getHistory %8.1f мкс,"
+                        + " getChangesSince %6.1f мкс%n",
+                name, returned / reads, retained, Duration.ofNanos(addNanos).toMillis(),
+                readNanos / 1_000.0 / reads, pollNanos / 1_000.0 / reads);
+    }
+
+    // Все задачи уже просмотрены хотя бы раз, дальше просмотры идут вразброс по доске
+    private static void measureViews(String name, HistoryManager history, Task[] board, int views) {
+        for (Task task : board) {
+            history.add(task);
+        }
+        int index = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < views; i++) {
+            index = (index + 7_919) % board.length;
+            history.add(board[index]);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%-32s: просмотр %6.1f нс, выделено %6.2f байт на просмотр%n",
+                name, (double) nanos / views, (double) allocated / views);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
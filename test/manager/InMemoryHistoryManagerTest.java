@@ -150,4 +150,100 @@ class InMemoryHistoryManagerTest {
                 () -> assertEquals(task2, history.get(2), "Третья задача не совпадает")
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldEvictLeastRecentlyViewedTaskWhenFull() {
+        historyManager = new InMemoryHistoryManager(2);
+        Task task1 = new Task(1, "Task 1", "Description", Status.NEW);
+        Task task2 = new Task(2, "Task 2", "Description", Status.NEW);
+        Task task3 = new Task(3, "Task 3", "Description", Status.NEW);
+
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task1); // Повторный просмотр делает задачу 1 самой свежей
+        historyManager.add(task3);
+
+        assertEquals(List.of(task1, task3), historyManager.getHistory(), "Вытеснена не самая давняя задача");
+        historyManager.remove(1);
+        historyManager.add(task2);
+        assertEquals(List.of(task3, task2), historyManager.getHistory(), "После удаления место освобождается");
+    }
+
+    @Test
+    void shouldShrinkHistoryWhenCapacityReduced() {
+        for (int id = 1; id <= 5; id++) {
+            historyManager.add(new Task(id, "Task " + id, "Description", Status.NEW));
+        }
+
+        historyManager.setCapacity(2);
+
+        assertEquals(List.of(4, 5), historyManager.getHistory().stream().map(Task::getId).toList());
+        assertEquals(2, historyManager.getCapacity());
+        historyManager.setCapacity(InMemoryHistoryManager.UNBOUNDED);
+        historyManager.add(new Task(6, "Task 6", "Description", Status.NEW));
+        assertEquals(3, historyManager.getHistory().size(), "Без ограничения задачи не вытесняются");
+        assertThrows(IllegalArgumentException.class, () -> historyManager.setCapacity(-1));
+    }
+
+    @Test
+    void shouldReturnOnlyChangesSinceVersion() {
+        Task task1 = new Task(1, "Task 1", "Description", Status.NEW);
+        Task task2 = new Task(2, "Task 2", "Description", Status.NEW);
+        Task task3 = new Task(3, "Task 3", "Description", Status.NEW);
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task3);
+        long version = historyManager.getVersion();
+
+        historyManager.add(task1); // Перенос в конец
+        historyManager.remove(2);
+        HistoryDelta delta = historyManager.getChangesSince(version);
+
+        assertFalse(delta.isFull());
+        assertEquals(List.of(task1), delta.getChanged());
+        assertEquals(List.of(2), delta.getRemoved());
+        assertEquals(historyManager.getVersion(), delta.getVersion());
+        HistoryDelta unchanged = historyManager.getChangesSince(delta.getVersion());
+        assertTrue(unchanged.getChanged().isEmpty() && unchanged.getRemoved().isEmpty());
+    }
+
+    @Test
+    void shouldReturnFullHistoryForUnknownCursor() {
+        Task task = new Task(1, "Task", "Description", Status.NEW);
+        historyManager.add(task);
+
+        HistoryDelta first = historyManager.getChangesSince(0);
+        HistoryDelta foreign = historyManager.getChangesSince(new InMemoryHistoryManager().getVersion());
+
+        assertTrue(first.isFull(), "Курсор 0 получает всю историю");
+        assertEquals(List.of(task), first.getChanged());
+        assertTrue(foreign.isFull(), "Курсор другой истории получает всю историю");
+    }
+
+    @Test
+    void shouldKeepVersionsExactInJavaScriptNumbers() {
+        historyManager.add(new Task(1, "Task", "Description", Status.NEW));
+        long version = historyManager.getVersion();
+
+        assertTrue(version < 1L << 53, "Версия точно представима числом double: " + version);
+        assertEquals(version, (long) (double) version);
+    }
+
+    @Test
+    void shouldKeepRemovalsWhileRemovalLogGrows() {
+        for (int id = 1; id <= 100; id++) {
+            historyManager.add(new Task(id, "Task " + id, "Description", Status.NEW));
+        }
+        long version = historyManager.getVersion();
+        historyManager.remove(1);
+        long middle = historyManager.getVersion();
+        for (int id = 2; id <= 60; id++) {
+            historyManager.remove(id);
+        }
+
+        HistoryDelta delta = historyManager.getChangesSince(version);
+        assertFalse(delta.isFull());
+        assertEquals(60, delta.getRemoved().size());
+        assertEquals(59, historyManager.getChangesSince(middle).getRemoved().size());
+    }
+}
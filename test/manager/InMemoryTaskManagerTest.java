@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,6 +60,26 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
         assertEquals(now.plusHours(1), prioritized.iterator().next().getStartTime());
     }
 
+    @Test
+    void shouldReorderSubtaskInPrioritizedListWhenRescheduled() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        int epicId = taskManager.createEpic(new Epic("Epic", "Description"));
+        Subtask subtask = new Subtask(0, "Subtask", "Description", Status.NEW, epicId,
+                Duration.ofMinutes(30), start);
+        int subtaskId = taskManager.createSubtask(subtask);
+        int taskId = taskManager.createTask(new Task("Task", "Description",
+                Status.NEW, Duration.ofMinutes(30), start.plusHours(1)));
+
+        Subtask moved = new Subtask(subtaskId, "Subtask", "Description", Status.NEW, epicId,
+                Duration.ofMinutes(30), start.plusHours(2));
+        taskManager.updateSubtask(moved);
+
+        Iterator<Task> prioritized = taskManager.getPrioritizedTasks().iterator();
+        assertEquals(taskId, prioritized.next().getId());
+        assertEquals(subtaskId, prioritized.next().getId());
+        assertFalse(prioritized.hasNext(), "Подзадача не должна дублироваться в списке приоритетов");
+    }
+
     @Test
     void shouldHandleEmptyEpicTime() {
         Epic epic = new Epic("Epic", "Description");
@@ -1,7 +1,13 @@
 package manager;
 
+import model.Status;
+import model.Task;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ManagersTest {
@@ -14,6 +20,29 @@ class ManagersTest {
         assertTrue(manager instanceof TaskManager, "Должен возвращаться объект, реализующий TaskManager");
     }
 
+    @Test
+    void getConcurrentShouldReturnThreadSafeTaskManager() {
+        TaskManager manager = Managers.getConcurrent();
+        assertNotNull(manager, "Менеджер не должен быть null");
+        assertInstanceOf(ConcurrentTaskManager.class, manager, "Должен возвращаться потокобезопасный менеджер");
+    }
+
+    @Test
+    void getStoredShouldRestoreTasksFromSelectedStore() throws IOException {
+        File file = File.createTempFile("managers", ".csv");
+        try {
+            int id;
+            try (InMemoryTaskManager manager = Managers.getStored(TaskStore.Engine.CSV, file)) {
+                id = manager.createTask(new Task("Task", "Description", Status.NEW));
+            }
+            try (InMemoryTaskManager manager = Managers.getStored(TaskStore.Engine.CSV, file)) {
+                assertEquals("Task", manager.getTaskById(id).getName(), "Задача должна восстановиться из хранилища");
+            }
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
     @Test
     void getDefaultHistoryShouldReturnInitializedInMemoryHistoryManager() {
         // Проверяем, что getDefaultHistory() возвращает проинициализированный InMemoryHistoryManager
@@ -0,0 +1,109 @@
+package manager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagedBPlusTreeTest {
+    private File file;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        file = File.createTempFile("bplus", ".pages");
+        Files.delete(file.toPath());
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    @DisplayName("Случайные вставки и удаления совпадают с TreeMap при вытеснении страниц")
+    void shouldMatchTreeMapUnderEviction() throws IOException {
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random random = new Random(7);
+        try (PageCache cache = new PageCache(file, 8)) {
+            PagedBPlusTree tree = new PagedBPlusTree(cache, -1);
+            for (int i = 0; i < 50_000; i++) {
+                long key = random.nextInt(20_000);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key) != null, tree.remove(key));
+                } else {
+                    assertEquals(!expected.containsKey(key), tree.put(key, i));
+                    expected.put(key, (long) i);
+                }
+                assertTrue(cache.getCachedPages() <= cache.getCapacity(), "Кэш не должен расти сверх ёмкости");
+            }
+
+            for (long key = 0; key < 20_000; key++) {
+                assertEquals(expected.getOrDefault(key, PagedBPlusTree.NONE), tree.get(key));
+            }
+            assertTrue(cache.getEvictions() > 0, "Дерево больше кэша, страницы должны вытесняться");
+        }
+    }
+
+    @Test
+    @DisplayName("Курсоры обходят ключи в обе стороны от заданного")
+    void shouldIterateInBothDirections() throws IOException {
+        try (PageCache cache = new PageCache(file, 16)) {
+            PagedBPlusTree tree = new PagedBPlusTree(cache, -1);
+            for (long key = 0; key < 2_000; key += 2) {
+                tree.put(key, key * 10);
+            }
+
+            List<Long> ascending = new ArrayList<>();
+            PagedBPlusTree.Cursor cursor = tree.ascending(1_001);
+            while (cursor.next()) {
+                assertEquals(cursor.key() * 10, cursor.value());
+                ascending.add(cursor.key());
+            }
+            assertEquals(1_002L, ascending.get(0), "Обход начинается с первого ключа не меньше заданного");
+            assertEquals(499, ascending.size());
+
+            List<Long> descending = new ArrayList<>();
+            cursor = tree.descending(1_001);
+            while (cursor.next()) {
+                descending.add(cursor.key());
+            }
+            assertEquals(1_000L, descending.get(0), "Обратный обход начинается с последнего ключа не больше заданного");
+            assertEquals(0L, descending.get(descending.size() - 1));
+            assertEquals(501, descending.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Дерево читается из файла после сброса кэша")
+    void shouldReopenFromFile() throws IOException {
+        Map<Long, Long> expected = new TreeMap<>();
+        int root;
+        try (PageCache cache = new PageCache(file, 4)) {
+            PagedBPlusTree tree = new PagedBPlusTree(cache, -1);
+            for (long key = 10_000; key > 0; key--) {
+                tree.put(key, -key);
+                expected.put(key, -key);
+            }
+            root = tree.getRoot();
+        }
+
+        try (PageCache cache = new PageCache(file, 4)) {
+            PagedBPlusTree tree = new PagedBPlusTree(cache, root);
+            for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), tree.get(entry.getKey()));
+            }
+            assertEquals(PagedBPlusTree.NONE, tree.get(0));
+        }
+    }
+}
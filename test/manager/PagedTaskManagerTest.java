@@ -0,0 +1,208 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagedTaskManagerTest extends TaskManagerTest<PagedTaskManager> {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private File file;
+
+    @Override
+    protected PagedTaskManager createTaskManager() {
+        try {
+            file = File.createTempFile("paged", ".pages");
+            Files.delete(file.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new PagedTaskManager(file, 16);
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        taskManager.close();
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(new File(file.getPath() + ".data").toPath());
+        Files.deleteIfExists(new File(file.getPath() + ".data.1").toPath());
+    }
+
+    private PagedTaskManager reopen() {
+        taskManager.close();
+        taskManager = new PagedTaskManager(file, 16);
+        return taskManager;
+    }
+
+    @Test
+    @DisplayName("Задачи, эпики и подзадачи читаются после переоткрытия")
+    void shouldRestoreAfterReopen() {
+        int taskId = taskManager.createTask(new Task("Task", "Description", Status.IN_PROGRESS,
+                Duration.ofMinutes(30), START));
+        int epicId = taskManager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = taskManager.createSubtask(new Subtask(0, "Subtask", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(15), START.plusHours(2)));
+
+        PagedTaskManager loaded = reopen();
+
+        assertEquals("Task", loaded.getTaskById(taskId).getName());
+        Epic epic = loaded.getEpicById(epicId);
+        assertEquals(Status.DONE, epic.getStatus());
+        assertEquals(START.plusHours(2), epic.getStartTime());
+        assertEquals(START.plusHours(2).plusMinutes(15), epic.getEndTime());
+        assertEquals(List.of(subtaskId), epic.getSubtaskIds());
+        assertEquals(List.of(taskId, subtaskId), ids(loaded.getPrioritizedTasks()));
+        assertEquals(4, loaded.createTask(new Task("Next", "Description", Status.NEW)),
+                "Счётчик id продолжается после переоткрытия");
+    }
+
+    @Test
+    @DisplayName("Память ограничена кэшем, а поиск по id читает несколько страниц")
+    void shouldKeepMemoryFlatOnLargeBoard() {
+        int count = 20_000;
+        for (int i = 0; i < count; i++) {
+            taskManager.createTask(new Task("Task " + i, "Description", Status.NEW,
+                    Duration.ofMinutes(1), START.plusMinutes(2L * i)));
+        }
+        PageCache cache = taskManager.getPageCache();
+        assertTrue(cache.getCachedPages() <= 16, "В памяти не больше страниц, чем вмещает кэш");
+        assertEquals(count, taskManager.getAllTasks().size());
+        assertEquals(count, taskManager.getPrioritizedTasks().size());
+
+        long reads = cache.getPageReads();
+        assertEquals("Task 12345", taskManager.getTaskById(12_346).getName());
+        assertTrue(cache.getPageReads() - reads <= 3, "Поиск по id читает не больше страниц, чем уровней дерева");
+
+        assertTrue(taskManager.hasTaskOverlaps(new Task("Probe", "Description", Status.NEW,
+                Duration.ofMinutes(1), START.plusMinutes(1))));
+        assertFalse(taskManager.hasTaskOverlaps(new Task("Gap", "Description", Status.NEW,
+                Duration.ofSeconds(30), START.plusMinutes(2L * count + 1))));
+    }
+
+    @Test
+    @DisplayName("Список приоритетов обходится по времени начала с диска")
+    void shouldIteratePrioritizedInStartOrder() {
+        int late = taskManager.createTask(new Task("Late", "Description", Status.NEW,
+                Duration.ofMinutes(10), START.plusHours(5)));
+        int early = taskManager.createTask(new Task("Early", "Description", Status.NEW,
+                Duration.ofMinutes(10), START));
+        taskManager.createTask(new Task("Unscheduled", "Description", Status.NEW));
+        int epicId = taskManager.createEpic(new Epic("Epic", "Description"));
+        int middle = taskManager.createSubtask(new Subtask(0, "Middle", "Description", Status.NEW, epicId,
+                Duration.ofMinutes(10), START.plusHours(2)));
+
+        assertEquals(List.of(early, middle, late), ids(taskManager.getPrioritizedTasks()));
+
+        taskManager.updateTask(new Task(late, "Late", "Description", Status.NEW,
+                Duration.ofMinutes(10), START.plusHours(1)));
+        assertEquals(List.of(early, late, middle), ids(taskManager.getPrioritizedTasks()),
+                "Перенос задачи меняет её место в списке");
+
+        taskManager.deleteEpicById(epicId);
+        assertEquals(List.of(early, late), ids(taskManager.getPrioritizedTasks()));
+    }
+
+    @Test
+    @DisplayName("Изменение подзадачи не читает остальные подзадачи эпика, файл данных растёт линейно")
+    void shouldUpdateEpicWithoutReadingAllSubtasks() {
+        int epicId = taskManager.createEpic(new Epic("Epic", "Description"));
+        int count = 2_000;
+        int last = 0;
+        for (int i = 0; i < count; i++) {
+            last = taskManager.createSubtask(new Subtask(0, "Subtask " + i, "Description", Status.NEW, epicId,
+                    Duration.ofMinutes(10), START.plusMinutes(20L * i)));
+        }
+        assertTrue(taskManager.getDataLength() < count * 200L,
+                "Запись эпика не содержит список подзадач: " + taskManager.getDataLength() + " байт");
+
+        long reads = taskManager.getRecordReads();
+        taskManager.updateSubtask(new Subtask(last, "Subtask", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(5), START.minusHours(1)));
+        assertTrue(taskManager.getRecordReads() - reads <= 3, "Читаются только подзадача и эпик");
+
+        Epic epic = taskManager.getEpicById(epicId);
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals(START.minusHours(1), epic.getStartTime());
+        assertEquals(START.plusMinutes(20L * (count - 2) + 10), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(10L * (count - 1) + 5), epic.getDuration());
+        assertEquals(count, epic.getSubtaskIds().size());
+
+        taskManager.deleteSubtaskById(last);
+        epic = reopen().getEpicById(epicId);
+        assertEquals(Status.NEW, epic.getStatus());
+        assertEquals(START, epic.getStartTime());
+        assertEquals(count - 1, taskManager.getSubtasksByEpicId(epicId).size());
+    }
+
+    @Test
+    @DisplayName("Файл данных сжимается, когда мёртвых записей больше, чем живых")
+    void shouldCompactDataFile() {
+        int taskId = taskManager.createTask(new Task("Task", "Description", Status.NEW));
+        int epicId = taskManager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = taskManager.createSubtask(new Subtask("Subtask", "Description", Status.DONE, epicId));
+        String description = "x".repeat(200);
+        for (int i = 0; i < 10_000; i++) {
+            taskManager.updateTask(new Task(taskId, "Task " + i, description, Status.IN_PROGRESS));
+        }
+        assertTrue(taskManager.getDataLength() < 1 << 20, "Файл данных сжат: " + taskManager.getDataLength());
+
+        PagedTaskManager loaded = reopen();
+        assertFalse(new File(file.getPath() + ".data").exists() && new File(file.getPath() + ".data.1").exists(),
+                "Прежний файл данных удалён после сброса");
+        assertEquals("Task 9999", loaded.getTaskById(taskId).getName());
+        assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus());
+        assertEquals(List.of(subtaskId), loaded.getEpicById(epicId).getSubtaskIds());
+    }
+
+    @Test
+    @DisplayName("История просмотров ограничена, ёмкость сохраняется в заголовке")
+    void shouldBoundHistory() {
+        for (int i = 0; i < 50; i++) {
+            taskManager.getTaskById(taskManager.createTask(new Task("Task " + i, "Description", Status.NEW)));
+        }
+        assertEquals(PagedTaskManager.DEFAULT_HISTORY_CAPACITY, taskManager.getHistory().size());
+        assertEquals(50, taskManager.getHistory().get(PagedTaskManager.DEFAULT_HISTORY_CAPACITY - 1).getId());
+
+        taskManager.setHistoryCapacity(3);
+        PagedTaskManager loaded = reopen();
+        assertEquals(3, loaded.getHistoryCapacity());
+        for (int id = 1; id <= 5; id++) {
+            loaded.getTaskById(id);
+        }
+        assertEquals(List.of(3, 4, 5), ids(loaded.getHistory()));
+    }
+
+    @Test
+    @DisplayName("Файл другого формата не открывается")
+    void shouldRejectForeignFile() throws IOException {
+        File foreign = File.createTempFile("paged_foreign", ".pages");
+        try {
+            Files.write(foreign.toPath(), new byte[PageCache.PAGE_SIZE]);
+            assertThrows(FileBackedTaskManager.ManagerLoadException.class, () -> new PagedTaskManager(foreign, 16));
+        } finally {
+            Files.deleteIfExists(foreign.toPath());
+            Files.deleteIfExists(new File(foreign.getPath() + ".data").toPath());
+        }
+    }
+
+    private static List<Integer> ids(Iterable<? extends Task> tasks) {
+        List<Integer> ids = new ArrayList<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,93 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelCsvLoaderTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private File testFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testFile = File.createTempFile("test_tasks", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(testFile.toPath());
+    }
+
+    private FileBackedTaskManager createBoard(int size) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(testFile);
+        int epicId = 0;
+        for (int i = 0; i < size; i++) {
+            if (i % 3 == 0) {
+                manager.createTask(new Task("Task " + i, "Description", Status.NEW,
+                        Duration.ofMinutes(10), START.plusMinutes(i * 30L)));
+            } else {
+                if (epicId == 0 || i % 10 == 1) {
+                    epicId = manager.createEpic(new Epic("Epic " + i, "Description"));
+                }
+                manager.createSubtask(new Subtask(0, "Subtask " + i, "Description",
+                        i % 2 == 0 ? Status.DONE : Status.NEW, epicId, Duration.ofMinutes(10), START.plusMinutes(i * 30L)));
+            }
+        }
+        return manager;
+    }
+
+    @Test
+    @DisplayName("Фрагменты применяются в порядке файла при любом размере фрагмента")
+    void shouldKeepFileOrderForAnyChunkSize() throws IOException {
+        FileBackedTaskManager manager = createBoard(60);
+        manager.getTaskById(manager.getAllTasks().iterator().next().getId());
+
+        List<Integer> expected = new ArrayList<>();
+        String expectedHistory = ParallelCsvLoader.load(testFile.toPath(), 1, Long.MAX_VALUE,
+                task -> expected.add(task.getId()));
+        for (long chunkSize : new long[]{1, 7, 64, 300, 1024}) {
+            List<Integer> actual = new ArrayList<>();
+            String history = ParallelCsvLoader.load(testFile.toPath(), 4, chunkSize, task -> actual.add(task.getId()));
+            assertEquals(expected, actual, "Размер фрагмента " + chunkSize);
+            assertEquals(expectedHistory, history, "Размер фрагмента " + chunkSize);
+        }
+    }
+
+    @Test
+    @DisplayName("Параллельная загрузка даёт то же состояние, что и последовательная")
+    void shouldMatchSequentialLoad() {
+        FileBackedTaskManager manager = createBoard(500);
+        manager.getSubtaskById(manager.getAllSubtasks().stream().skip(3).findFirst().orElseThrow().getId());
+        manager.getTaskById(manager.getAllTasks().stream().skip(5).findFirst().orElseThrow().getId());
+
+        FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(testFile);
+        FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(testFile,
+                FileBackedTaskManager.PersistenceMode.SNAPSHOT, PersistencePolicy.everyOperation(), 8);
+        assertAll(
+                () -> assertEquals(sequential.getAllTasks(), parallel.getAllTasks()),
+                () -> assertEquals(sequential.getAllEpics(), parallel.getAllEpics()),
+                () -> assertEquals(sequential.getAllSubtasks(), parallel.getAllSubtasks()),
+                () -> assertEquals(List.copyOf(sequential.getPrioritizedTasks()),
+                        List.copyOf(parallel.getPrioritizedTasks())),
+                () -> assertEquals(sequential.getHistory(), parallel.getHistory()),
+                () -> assertEquals(500, parallel.getSnapshotStats().getLastLoadTasks() - parallel.getAllEpics().size())
+        );
+    }
+
+    @Test
+    @DisplayName("Ошибка разбора до разделителя истории прерывает загрузку")
+    void shouldFailOnCorruptedLine() throws IOException {
+        Files.writeString(testFile.toPath(), "header\n1,TASK,Task,NEW,D,,,\n2,TASK,Task,BROKEN,D,,,\n\n1\n");
+        assertThrows(IllegalArgumentException.class, () -> ParallelCsvLoader.load(testFile.toPath(), 2, 8, task -> {
+        }));
+    }
+}
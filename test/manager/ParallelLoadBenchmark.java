@@ -0,0 +1,50 @@
+package manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+
+/**
+ * Сравнение последовательной и параллельной загрузки снимка CSV.
+ * Запуск: java manager.ParallelLoadBenchmark [количество задач] [повторы] [максимум потоков]
+ */
+public class ParallelLoadBenchmark {
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int cores = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        File csv = File.createTempFile("benchmark", ".csv");
+        try {
+            FileBackedTaskManager manager = new FileBackedTaskManager(csv, FileBackedTaskManager.PersistenceMode.JOURNAL,
+                    PersistencePolicy.everyOperations(Integer.MAX_VALUE, false));
+            SnapshotFormatBenchmark.fill(manager, size);
+            manager.save();
+            manager.close();
+
+            System.out.printf("Задач: %d, файл: %,d байт, потоков до: %d%n", size, csv.length(), cores);
+            long sequential = measure(csv, 1, rounds);
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                long nanos = threads == 1 ? sequential : measure(csv, threads, rounds);
+                System.out.printf("потоков %2d: %6d мс, ускорение %.2f%n",
+                        threads, Duration.ofNanos(nanos).toMillis(), (double) sequential / nanos);
+            }
+        } finally {
+            Files.deleteIfExists(csv.toPath());
+            Files.deleteIfExists(new File(csv.getPath() + ".log").toPath());
+        }
+    }
+
+    // Лучшее время из нескольких повторов
+    private static long measure(File csv, int threads, int rounds) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            FileBackedTaskManager.loadFromFile(csv, FileBackedTaskManager.PersistenceMode.SNAPSHOT,
+                    PersistencePolicy.everyOperation(), threads).close();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
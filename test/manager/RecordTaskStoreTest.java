@@ -0,0 +1,39 @@
+package manager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+class RecordTaskStoreTest extends TaskStoreConformanceTest {
+
+    @Override
+    protected TaskStore openStore(File file) {
+        return TaskStore.open(TaskStore.Engine.RECORDS, file);
+    }
+
+    // Общий набор проверок менеджера поверх этого хранилища
+    @Nested
+    class ManagerSuite extends TaskManagerTest<InMemoryTaskManager> {
+        private File file;
+
+        @Override
+        protected InMemoryTaskManager createTaskManager() {
+            try {
+                file = File.createTempFile("task_store_suite", ".dat");
+                Files.delete(file.toPath());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return Managers.getStored(TaskStore.Engine.RECORDS, file);
+        }
+
+        @AfterEach
+        void closeManager() throws IOException {
+            taskManager.close();
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
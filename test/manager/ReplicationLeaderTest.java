@@ -0,0 +1,64 @@
+package manager;
+
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationLeaderTest {
+    // История менеджера не должна читаться: ведущий ведёт свою копию
+    private static final Supplier<List<Integer>> NO_HISTORY = () -> {
+        throw new AssertionError("Ведущий скопировал историю менеджера");
+    };
+
+    private final ReplicationLeader leader = new ReplicationLeader(TaskStore.open(TaskStore.Engine.MEMORY, null), 0);
+
+    @AfterEach
+    void closeLeader() {
+        leader.close();
+    }
+
+    private static TaskStore.Batch views(int capacity, Integer... ids) {
+        return new TaskStore.Batch(List.of(ids), List.of(), List.of(), NO_HISTORY, capacity);
+    }
+
+    @Test
+    @DisplayName("Ведущий ведёт историю по просмотрам, ёмкости и удалениям, не копируя историю менеджера")
+    void shouldTrackHistoryWithoutCopyingIt() throws IOException {
+        leader.scan(task -> {
+        });
+        List<Task> tasks = new ArrayList<>();
+        for (int id = 1; id <= 4; id++) {
+            tasks.add(new Task(id, "Task " + id, "Description", Status.NEW));
+        }
+        leader.write(new TaskStore.Batch(List.of(), tasks, List.of(), NO_HISTORY, 0));
+        leader.write(views(0, 1, 2, 3, 4));
+        leader.write(views(3));
+        leader.write(views(3, 2));
+        leader.write(new TaskStore.Batch(List.of(), List.of(), List.of(3), NO_HISTORY, 3));
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), leader.getPort())) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            List<String> snapshot = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("E")) {
+                snapshot.add(line);
+            }
+            assertEquals(List.of("C,3", "H,4,2"), snapshot.subList(snapshot.size() - 2, snapshot.size()));
+        }
+    }
+}
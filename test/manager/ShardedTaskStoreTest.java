@@ -0,0 +1,183 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedTaskStoreTest extends TaskStoreConformanceTest {
+    private static final int SHARDS = 4;
+
+    @Override
+    protected TaskStore openStore(File file) {
+        return TaskStore.sharded(TaskStore.Engine.CSV, file, SHARDS, TaskStore.Sharding.EPIC);
+    }
+
+    @AfterEach
+    void deleteShardFiles() throws IOException {
+        deleteShards(storeFile);
+    }
+
+    private static void deleteShards(File file) throws IOException {
+        for (int i = 0; i < SHARDS; i++) {
+            Files.deleteIfExists(new File(file.getPath() + "." + i).toPath());
+            Files.deleteIfExists(new File(file.getPath() + "." + i + ".tmp").toPath());
+        }
+    }
+
+    @Test
+    @DisplayName("Подзадачи лежат в шарде своего эпика, изменение переписывает только его")
+    void shouldCoLocateEpicAndRewriteOnlyItsShard() {
+        ShardedTaskStore store = new ShardedTaskStore(TaskStore.Engine.CSV, storeFile, SHARDS,
+                TaskStore.Sharding.EPIC);
+        try (InMemoryTaskManager manager = new InMemoryTaskManager(store)) {
+            int epicId = manager.createEpic(new Epic("Epic", "Description"));
+            int subtaskId = manager.createSubtask(new Subtask("Subtask", "Description", Status.NEW, epicId));
+            int epicShard = store.shardOf(manager.getEpicById(epicId));
+            assertEquals(epicShard, store.shardOf(manager.getSubtaskById(subtaskId)));
+
+            long[] before = store.getShardWrites();
+            manager.updateSubtask(new Subtask(subtaskId, "Subtask", "Description", Status.DONE, epicId));
+            long[] after = store.getShardWrites();
+            for (int i = 0; i < SHARDS; i++) {
+                assertEquals(before[i] + (i == epicShard ? 1 : 0), after[i], "Шард " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Подзадача переезжает в шард нового эпика и не дублируется при загрузке")
+    void shouldMoveSubtaskBetweenShards() {
+        int first;
+        int second;
+        int subtaskId;
+        try (InMemoryTaskManager manager = new InMemoryTaskManager(openStore(storeFile))) {
+            first = manager.createEpic(new Epic("First", "Description"));
+            second = manager.createEpic(new Epic("Second", "Description"));
+            subtaskId = manager.createSubtask(new Subtask("Subtask", "Description", Status.DONE, first));
+            manager.updateSubtask(new Subtask(subtaskId, "Subtask", "Description", Status.DONE, second));
+        }
+
+        try (InMemoryTaskManager loaded = new InMemoryTaskManager(openStore(storeFile))) {
+            assertEquals(1, loaded.getAllSubtasks().size());
+            assertEquals(second, loaded.getSubtaskById(subtaskId).getEpicId());
+            assertEquals(Status.DONE, loaded.getEpicById(second).getStatus());
+            assertEquals(Status.NEW, loaded.getEpicById(first).getStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Шарды на файлах записей по диапазонам id загружаются параллельно")
+    void shouldLoadRecordShardsByIdRange() throws IOException {
+        File file = File.createTempFile("sharded_records", ".dat");
+        Files.delete(file.toPath());
+        try {
+            int count = ShardedTaskStore.ID_RANGE * 2 + 10;
+            try (InMemoryTaskManager manager = new InMemoryTaskManager(
+                    TaskStore.sharded(TaskStore.Engine.RECORDS, file, SHARDS, TaskStore.Sharding.ID_RANGE))) {
+                for (int i = 0; i < count; i++) {
+                    manager.createTask(new Task("Task " + i, "Description", Status.NEW));
+                }
+                manager.getTaskById(count);
+                manager.getTaskById(1);
+            }
+            for (int i = 0; i < 3; i++) {
+                assertTrue(new File(file.getPath() + "." + i).length() > 0, "Шард " + i + " заполнен");
+            }
+            assertFalse(new File(file.getPath() + ".3").exists(), "В четвёртый диапазон задачи не попали");
+
+            try (InMemoryTaskManager loaded = new InMemoryTaskManager(
+                    TaskStore.sharded(TaskStore.Engine.RECORDS, file, SHARDS, TaskStore.Sharding.ID_RANGE))) {
+                assertEquals(count, loaded.getAllTasks().size());
+                assertEquals(List.of(count, 1), loaded.getHistory().stream().map(Task::getId).toList());
+            }
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            deleteShards(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Эпик и подзадача из разных шардов записей переживают повторное открытие")
+    void shouldKeepSubtaskWhoseEpicIsInAnotherShard() throws IOException {
+        File file = File.createTempFile("sharded_records", ".dat");
+        Files.delete(file.toPath());
+        try {
+            int epicId;
+            int subtaskId;
+            try (InMemoryTaskManager manager = new InMemoryTaskManager(
+                    TaskStore.sharded(TaskStore.Engine.RECORDS, file, SHARDS, TaskStore.Sharding.ID_RANGE))) {
+                for (int i = 1; i < ShardedTaskStore.ID_RANGE - 3; i++) {
+                    manager.createTask(new Task("Task " + i, "Description", Status.NEW));
+                }
+                epicId = manager.createEpic(new Epic("Epic", "Description"));
+                for (int i = 0; i < 5; i++) {
+                    manager.createTask(new Task("Filler " + i, "Description", Status.NEW));
+                }
+                subtaskId = manager.createSubtask(new Subtask("Subtask", "Description", Status.DONE, epicId));
+            }
+            assertNotEquals(epicId / ShardedTaskStore.ID_RANGE, subtaskId / ShardedTaskStore.ID_RANGE,
+                    "Эпик и подзадача в разных диапазонах");
+
+            for (int reopen = 0; reopen < 2; reopen++) {
+                try (InMemoryTaskManager loaded = new InMemoryTaskManager(
+                        TaskStore.sharded(TaskStore.Engine.RECORDS, file, SHARDS, TaskStore.Sharding.ID_RANGE))) {
+                    assertEquals(List.of(subtaskId),
+                            loaded.getSubtasksByEpicId(epicId).stream().map(Task::getId).toList(),
+                            "Открытие " + (reopen + 1));
+                    assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            deleteShards(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Хранилище с другим числом шардов не открывается")
+    void shouldRejectDifferentShardCount() {
+        try (InMemoryTaskManager manager = new InMemoryTaskManager(openStore(storeFile))) {
+            manager.createTask(new Task("Task", "Description", Status.NEW));
+        }
+
+        assertThrows(FileBackedTaskManager.ManagerLoadException.class, () -> new InMemoryTaskManager(
+                TaskStore.sharded(TaskStore.Engine.CSV, storeFile, SHARDS - 1, TaskStore.Sharding.EPIC)));
+    }
+
+    // Общий набор проверок менеджера поверх этого хранилища
+    @Nested
+    class ManagerSuite extends TaskManagerTest<InMemoryTaskManager> {
+        private File file;
+
+        @Override
+        protected InMemoryTaskManager createTaskManager() {
+            try {
+                file = File.createTempFile("task_store_suite", ".dat");
+                Files.delete(file.toPath());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return new InMemoryTaskManager(TaskStore.sharded(TaskStore.Engine.CSV, file, SHARDS,
+                    TaskStore.Sharding.ID_RANGE));
+        }
+
+        @AfterEach
+        void closeManager() throws IOException {
+            taskManager.close();
+            Files.deleteIfExists(file.toPath());
+            deleteShards(file);
+        }
+    }
+}
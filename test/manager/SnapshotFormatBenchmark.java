@@ -0,0 +1,98 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Сравнение форматов и сжатия снимка: скорость сохранения и загрузки, размер файла
+ * и степень сжатия относительно несжатого снимка того же формата.
+ * Запуск: java manager.SnapshotFormatBenchmark [количество задач] [повторы]
+ */
+public class SnapshotFormatBenchmark {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File csv = File.createTempFile("benchmark", ".csv");
+        File binary = File.createTempFile("benchmark", ".bin");
+        try {
+            System.out.printf("Задач: %d, повторов: %d%n", size, rounds);
+            for (FileBackedTaskManager.SnapshotFormat format : FileBackedTaskManager.SnapshotFormat.values()) {
+                File target = format == FileBackedTaskManager.SnapshotFormat.CSV ? csv : binary;
+                long plainSize = 0;
+                for (FileBackedTaskManager.SnapshotCodec codec : FileBackedTaskManager.SnapshotCodec.values()) {
+                    long stored = run(format, codec, target, size, rounds, plainSize);
+                    if (codec == FileBackedTaskManager.SnapshotCodec.NONE) {
+                        plainSize = stored;
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(csv.toPath());
+            Files.deleteIfExists(binary.toPath());
+            Files.deleteIfExists(new File(csv.getPath() + ".log").toPath());
+            Files.deleteIfExists(new File(binary.getPath() + ".log").toPath());
+        }
+    }
+
+    // Возвращает размер файла снимка; plainSize — размер несжатого снимка того же формата (0 — ещё неизвестен)
+    private static long run(FileBackedTaskManager.SnapshotFormat format, FileBackedTaskManager.SnapshotCodec codec,
+                            File target, int size, int rounds, long plainSize) {
+        // Журнал с отложенной записью, чтобы наполнение доски не перезаписывало снимок на каждом шаге
+        FileBackedTaskManager manager = new FileBackedTaskManager(target, FileBackedTaskManager.PersistenceMode.JOURNAL,
+                PersistencePolicy.everyOperations(Integer.MAX_VALUE, false));
+        manager.setSnapshotFormat(format);
+        manager.setSnapshotCodec(codec);
+        fill(manager, size);
+
+        long saveNanos = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            manager.save();
+            saveNanos = Math.min(saveNanos, System.nanoTime() - start);
+        }
+        manager.close();
+
+        long loadNanos = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            FileBackedTaskManager.loadFromFile(target).close();
+            loadNanos = Math.min(loadNanos, System.nanoTime() - start);
+        }
+
+        System.out.printf("%-6s %-7s размер %,10d байт (сжатие %5.2fx) | сохранение %6d мс (%,9.0f задач/с)"
+                        + " | загрузка %6d мс (%,9.0f задач/с)%n",
+                format, codec, target.length(), plainSize == 0 ? 1.0 : (double) plainSize / target.length(),
+                Duration.ofNanos(saveNanos).toMillis(), size * 1e9 / saveNanos,
+                Duration.ofNanos(loadNanos).toMillis(), size * 1e9 / loadNanos);
+        return target.length();
+    }
+
+    // Треть задач — обычные, остальные — подзадачи эпиков по 10 штук; интервалы не пересекаются
+    static void fill(FileBackedTaskManager manager, int size) {
+        int epicId = 0;
+        for (int i = 0; i < size; i++) {
+            LocalDateTime start = START.plusMinutes(i * 30L);
+            if (i % 3 == 0) {
+                manager.createTask(new Task("Задача №" + i, "Описание задачи " + i, Status.NEW,
+                        Duration.ofMinutes(15), start));
+                continue;
+            }
+            if (epicId == 0 || i % 10 == 1) {
+                epicId = manager.createEpic(new Epic("Эпик " + i, "Описание эпика " + i));
+            }
+            manager.createSubtask(new Subtask(0, "Подзадача " + i, "Описание подзадачи " + i,
+                    i % 2 == 0 ? Status.DONE : Status.IN_PROGRESS, epicId, Duration.ofMinutes(15), start));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package manager;
+
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskIntervalTreeTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private TaskIntervalTree tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new TaskIntervalTree();
+    }
+
+    private Task task(int id, int startMinute, int durationMinutes) {
+        return new Task(id, "Task " + id, "Description", Status.NEW,
+                Duration.ofMinutes(durationMinutes), BASE.plusMinutes(startMinute));
+    }
+
+    @Test
+    void shouldFindOverlappingTasks() {
+        tree.add(task(1, 0, 60));
+        tree.add(task(2, 120, 30));
+        tree.add(task(3, 200, 10));
+
+        List<Task> overlaps = tree.findOverlaps(task(10, 30, 100), 0);
+
+        assertEquals(List.of(1, 2), overlaps.stream().map(Task::getId).collect(Collectors.toList()),
+                "Должны найтись задачи 1 и 2");
+        assertFalse(tree.hasOverlap(task(11, 61, 58), 0), "Между задачами есть свободное окно");
+    }
+
+    @Test
+    void shouldTreatTouchingIntervalsAsOverlapping() {
+        tree.add(task(1, 0, 60));
+
+        assertTrue(tree.hasOverlap(task(2, 60, 30), 0), "Границы интервалов включительные");
+    }
+
+    @Test
+    void shouldIgnoreExcludedTask() {
+        tree.add(task(1, 0, 60));
+
+        assertFalse(tree.hasOverlap(task(1, 10, 10), 1), "Задача не должна пересекаться сама с собой");
+        assertTrue(tree.hasOverlap(task(1, 10, 10), 0));
+    }
+
+    @Test
+    void shouldNotIndexTasksWithoutStartTime() {
+        tree.add(new Task(1, "Task", "Description", Status.NEW));
+
+        assertEquals(0, tree.size());
+        assertFalse(tree.hasOverlap(new Task(2, "Task", "Description", Status.NEW), 0));
+    }
+
+    @Test
+    void shouldReplaceTaskWithSameId() {
+        tree.add(task(1, 0, 60));
+        tree.add(task(1, 500, 60));
+
+        assertEquals(1, tree.size());
+        assertFalse(tree.hasOverlap(task(2, 0, 60), 0), "Старый интервал должен быть удалён");
+        assertTrue(tree.hasOverlap(task(2, 530, 5), 0));
+    }
+
+    @Test
+    void shouldKeepTasksWithSameStartTimeOrderedById() {
+        tree.add(task(5, 0, 10));
+        tree.add(task(2, 0, 20));
+        tree.add(task(9, -30, 5));
+
+        List<Integer> order = tree.asSet().stream().map(Task::getId).collect(Collectors.toList());
+
+        assertEquals(List.of(9, 2, 5), order, "Задачи с одинаковым началом должны различаться по id");
+        assertTrue(tree.asSet().contains(task(5, 0, 10)));
+    }
+
+    @Test
+    void shouldReorderTaskWhenStartTimeChanges() {
+        tree.add(task(1, 0, 10));
+        tree.add(task(2, 100, 10));
+
+        tree.add(task(1, 200, 10));
+
+        List<Integer> order = tree.asSet().stream().map(Task::getId).collect(Collectors.toList());
+        assertEquals(List.of(2, 1), order);
+        assertEquals(2, tree.asSet().size());
+    }
+
+    @Test
+    void shouldMatchBruteForceAfterRandomOperations() {
+        Random random = new Random(42);
+        Map<Integer, Task> expected = new HashMap<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            int id = random.nextInt(500) + 1;
+            if (random.nextInt(4) == 0) {
+                tree.remove(id);
+                expected.remove(id);
+            } else {
+                Task task = task(id, random.nextInt(10_000), random.nextInt(120));
+                tree.add(task);
+                expected.put(id, task);
+            }
+
+            if (i % 50 == 0) {
+                Task query = task(1000, random.nextInt(10_000), random.nextInt(200));
+                List<Integer> bruteForce = new ArrayList<>();
+                for (Task t : expected.values()) {
+                    if (!t.getStartTime().isAfter(query.getEndTime())
+                            && !t.getEndTime().isBefore(query.getStartTime())) {
+                        bruteForce.add(t.getId());
+                    }
+                }
+                List<Integer> found = tree.findOverlaps(query, 0).stream()
+                        .map(Task::getId)
+                        .sorted()
+                        .collect(Collectors.toList());
+                bruteForce.sort(Integer::compare);
+                assertEquals(bruteForce, found, "Результат дерева должен совпадать с полным перебором");
+                assertEquals(!bruteForce.isEmpty(), tree.hasOverlap(query, 0));
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+
+        List<Integer> expectedOrder = expected.values().stream()
+                .sorted(Comparator.comparing(Task::getStartTime).thenComparing(Task::getId))
+                .map(Task::getId)
+                .collect(Collectors.toList());
+        List<Integer> actualOrder = tree.asSet().stream().map(Task::getId).collect(Collectors.toList());
+        assertEquals(expectedOrder, actualOrder, "Обход должен идти по (время начала, id)");
+    }
+
+    @Test
+    void shouldRebuildFromUnsortedAndSortedLists() {
+        Random random = new Random(7);
+        List<Task> tasks = new ArrayList<>();
+        for (int id = 1; id <= 200; id++) {
+            tasks.add(random.nextInt(10) == 0
+                    ? new Task(id, "Task " + id, "Description", Status.NEW)
+                    : task(id, random.nextInt(2000), random.nextInt(50)));
+        }
+        TaskIntervalTree incremental = new TaskIntervalTree();
+        tasks.forEach(incremental::add);
+
+        assertFalse(tree.rebuild(tasks), "Случайный порядок требует сортировки");
+        List<Task> expected = new ArrayList<>(incremental.asSet());
+        assertEquals(expected, new ArrayList<>(tree.asSet()));
+        assertEquals(incremental.size(), tree.size());
+
+        TaskIntervalTree fromSorted = new TaskIntervalTree();
+        assertTrue(fromSorted.rebuild(expected), "Отсортированный список строится без сортировки");
+        assertEquals(expected, new ArrayList<>(fromSorted.asSet()));
+
+        Task probe = task(1000, 500, 100);
+        assertEquals(incremental.findOverlaps(probe, 0), fromSorted.findOverlaps(probe, 0));
+        fromSorted.remove(expected.get(0).getId());
+        fromSorted.add(task(1001, 3000, 10));
+        assertEquals(expected.size(), fromSorted.size());
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -133,6 +134,61 @@ public abstract class TaskManagerTest<T extends TaskManager> {
                 "Должно быть исключение при пересечении времени задач");
     }
 
+    @Test
+    void shouldReportOverlappingTasks() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Task task1 = new Task("Task 1", "Description", Status.NEW, Duration.ofHours(1), start);
+        Task task2 = new Task("Task 2", "Description", Status.NEW, Duration.ofHours(1), start.plusHours(3));
+        int taskId1 = taskManager.createTask(task1);
+        taskManager.createTask(task2);
+
+        Task candidate = new Task("Task 3", "Description", Status.NEW, Duration.ofMinutes(30), start.plusMinutes(45));
+        List<Task> conflicts = taskManager.getOverlappingTasks(candidate);
+
+        assertEquals(1, conflicts.size(), "Должна найтись одна пересекающаяся задача");
+        assertEquals(taskId1, conflicts.get(0).getId());
+    }
+
+    @Test
+    void shouldAllowRescheduleTaskOverItsOwnSlot() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Task task = new Task("Task", "Description", Status.NEW, Duration.ofHours(1), start);
+        int taskId = taskManager.createTask(task);
+
+        Task moved = new Task(taskId, "Task", "Description", Status.NEW, Duration.ofHours(1), start.plusMinutes(30));
+        assertDoesNotThrow(() -> taskManager.updateTask(moved), "Задача не должна пересекаться сама с собой");
+        assertFalse(taskManager.hasTaskOverlaps(
+                new Task("Other", "Description", Status.NEW, Duration.ofMinutes(10), start)),
+                "Старый интервал задачи должен освободиться");
+    }
+
+    @Test
+    void shouldRecalculateEpicTimeWhenSubtasksChange() {
+        Epic epic = new Epic("Test epic", "Test description");
+        int epicId = taskManager.createEpic(epic);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+        Subtask subtask1 = new Subtask(0, "Subtask 1", "Description", Status.NEW, epicId,
+                Duration.ofMinutes(30), start);
+        Subtask subtask2 = new Subtask(0, "Subtask 2", "Description", Status.IN_PROGRESS, epicId,
+                Duration.ofMinutes(60), start.plusHours(2));
+        taskManager.createSubtask(subtask1);
+        int subtaskId2 = taskManager.createSubtask(subtask2);
+
+        Epic saved = taskManager.getEpicById(epicId);
+        assertEquals(start, saved.getStartTime(), "Начало эпика — начало самой ранней подзадачи");
+        assertEquals(start.plusHours(3), saved.getEndTime(), "Окончание эпика — окончание самой поздней подзадачи");
+        assertEquals(Duration.ofMinutes(90), saved.getDuration(), "Продолжительность эпика — сумма подзадач");
+        assertEquals(Status.IN_PROGRESS, saved.getStatus());
+
+        taskManager.deleteSubtaskById(subtaskId2);
+
+        saved = taskManager.getEpicById(epicId);
+        assertEquals(start.plusMinutes(30), saved.getEndTime());
+        assertEquals(Duration.ofMinutes(30), saved.getDuration());
+        assertEquals(Status.NEW, saved.getStatus());
+    }
+
     @Test
     void shouldCalculateEpicStatus() {
         Epic epic = new Epic("Test epic", "Test description");
@@ -0,0 +1,249 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskRecordFileTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private File testFile;
+    private FileBackedTaskManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testFile = File.createTempFile("test_records", ".rec");
+        Files.delete(testFile.toPath());
+        manager = new FileBackedTaskManager(testFile, FileBackedTaskManager.PersistenceMode.RECORDS);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        manager.close();
+        Files.deleteIfExists(testFile.toPath());
+        Files.deleteIfExists(new File(testFile.getPath() + ".tmp").toPath());
+    }
+
+    private FileBackedTaskManager reload() {
+        manager.close();
+        manager = FileBackedTaskManager.loadFromFile(testFile, FileBackedTaskManager.PersistenceMode.RECORDS);
+        return manager;
+    }
+
+    @Test
+    @DisplayName("Задачи, подзадачи и история восстанавливаются из файла записей")
+    void shouldRestoreTasksAndHistory() {
+        int taskId = manager.createTask(new Task("Task", "Description", Status.NEW,
+                Duration.ofMinutes(30), START));
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Subtask", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(15), START.plusHours(1)));
+        manager.getSubtaskById(subtaskId);
+        manager.getTaskById(taskId);
+        manager.getEpicById(epicId);
+        manager.getTaskById(taskId);
+
+        FileBackedTaskManager loaded = reload();
+
+        assertEquals("Task", loaded.getTaskById(taskId).getName());
+        assertEquals(Status.DONE, loaded.getEpic(epicId).getStatus(), "Статус эпика вычисляется заново");
+        assertEquals(START.plusHours(1), loaded.getEpic(epicId).getStartTime());
+        assertEquals(List.of(subtaskId), loaded.getEpic(epicId).getSubtaskIds());
+        assertEquals(2, loaded.getPrioritizedTasks().size());
+    }
+
+    @Test
+    @DisplayName("Порядок истории сохраняется, включая повторные просмотры")
+    void shouldPreserveHistoryOrder() {
+        int first = manager.createTask(new Task("First", "Description", Status.NEW));
+        int second = manager.createTask(new Task("Second", "Description", Status.NEW));
+        manager.getTaskById(first);
+        manager.getTaskById(second);
+        manager.getTaskById(first);
+        manager.flush();
+
+        List<Integer> history = new ArrayList<>();
+        for (Task task : reload().getHistory()) {
+            history.add(task.getId());
+        }
+        assertEquals(List.of(second, first), history);
+    }
+
+    @Test
+    @DisplayName("Изменение задачи переписывает только её слоты")
+    void shouldWriteOnlyChangedRecords() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(manager.createTask(new Task("Task " + i, "Description", Status.NEW)));
+        }
+        long before = manager.getPersistenceStats().getRecordsWritten();
+        long sizeBefore = testFile.length();
+
+        Task task = manager.getTask(ids.get(100));
+        manager.updateTask(new Task(task.getId(), "Updated", task.getDescription(), Status.DONE));
+
+        assertEquals(before + 1, manager.getPersistenceStats().getRecordsWritten(),
+                "Записывается одна задача, а не все 200");
+        assertTrue(testFile.length() <= sizeBefore + TaskRecordFile.SLOT_SIZE,
+                "Файл растёт не больше чем на один слот");
+        assertEquals("Updated", reload().getTask(ids.get(100)).getName());
+    }
+
+    @Test
+    @DisplayName("Освобождённые слоты используются повторно, save() убирает свободные слоты")
+    void shouldReuseFreeSlots() {
+        int taskId = manager.createTask(new Task("Task", "Description", Status.NEW));
+        for (int i = 0; i < 50; i++) {
+            manager.updateTask(new Task(taskId, "Task " + i, "Description", Status.IN_PROGRESS));
+        }
+        long expected = TaskRecordFile.FILE_HEADER_SIZE + 2L * TaskRecordFile.SLOT_SIZE;
+        assertEquals(expected, testFile.length(), "Новая версия пишется в слот, освобождённый предыдущей");
+
+        int removed = manager.createTask(new Task("Removed", "Description", Status.NEW));
+        manager.deleteTaskById(removed);
+        manager.save();
+
+        assertEquals(TaskRecordFile.FILE_HEADER_SIZE + TaskRecordFile.SLOT_SIZE, testFile.length());
+        assertEquals("Task 49", reload().getTask(taskId).getName());
+        assertNull(manager.getTask(removed));
+    }
+
+    @Test
+    @DisplayName("Длинное описание занимает цепочку слотов")
+    void shouldSplitLargeRecordsAcrossSlots() {
+        String description = "Описание ".repeat(200);
+        int taskId = manager.createTask(new Task("Task", description, Status.NEW));
+
+        assertTrue(testFile.length() > TaskRecordFile.FILE_HEADER_SIZE + 10L * TaskRecordFile.SLOT_SIZE);
+        assertEquals(description, reload().getTask(taskId).getDescription());
+    }
+
+    @Test
+    @DisplayName("Удаление эпика удаляет его подзадачи из файла записей")
+    void shouldCascadeEpicDelete() {
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        manager.createSubtask(new Subtask("Subtask 1", "Description", Status.NEW, epicId));
+        manager.createSubtask(new Subtask("Subtask 2", "Description", Status.NEW, epicId));
+        int taskId = manager.createTask(new Task("Task", "Description", Status.NEW));
+        manager.deleteEpicById(epicId);
+
+        FileBackedTaskManager loaded = reload();
+        assertTrue(loaded.getAllEpics().isEmpty());
+        assertTrue(loaded.getAllSubtasks().isEmpty());
+        assertNotNull(loaded.getTask(taskId));
+
+        loaded.deleteAllTasks();
+        assertTrue(reload().getAllTasks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("После сбоя между записью новой версии и освобождением старой выбирается новая")
+    void shouldPreferNewestVersionAfterCrash() throws IOException {
+        File file = testFile;
+        writeTwoVersionsAfterCrash(file);
+
+        List<Task> restored = new ArrayList<>();
+        try (TaskRecordFile records = TaskRecordFile.open(file, false, contents -> restored.addAll(contents.tasks))) {
+            assertEquals(1, restored.size());
+            assertEquals("New", restored.get(0).getName());
+            assertEquals(1, records.getFreeSlotCount(), "Слот старой версии становится свободным");
+        }
+        assertEquals(0, readSlot(file, 0)[0], "Слот старой версии освобождён и на диске");
+
+        // Повреждённая новая версия отбрасывается, остаётся старая
+        writeTwoVersionsAfterCrash(file);
+        byte[] newHead = readSlot(file, 1);
+        newHead[40] ^= 0x7F; // Байт данных после заголовка слота
+        writeSlot(file, 1, newHead);
+        restored.clear();
+        TaskRecordFile.open(file, false, contents -> restored.addAll(contents.tasks)).close();
+        assertEquals("Old", restored.get(0).getName());
+    }
+
+    @Test
+    @DisplayName("Удалённая задача не возвращается из версии, оставшейся после сбоя")
+    void shouldNotResurrectDeletedTaskAfterCrash() throws IOException {
+        writeTwoVersionsAfterCrash(testFile);
+
+        List<Task> restored = new ArrayList<>();
+        try (TaskRecordFile records = TaskRecordFile.open(testFile, false, contents -> restored.addAll(contents.tasks))) {
+            assertEquals("New", restored.get(0).getName());
+            records.delete(1);
+        }
+        for (int i = 0; i < 2; i++) {
+            restored.clear();
+            TaskRecordFile.open(testFile, false, contents -> restored.addAll(contents.tasks)).close();
+            assertTrue(restored.isEmpty(), "Открытие " + (i + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Неудачное сжатие оставляет файл записей открытым и удаляет временный файл")
+    void shouldKeepWritingAfterFailedCompaction() throws IOException {
+        int taskId = manager.createTask(new Task("Task", "Description", Status.NEW));
+        File temp = new File(testFile.getPath() + ".tmp");
+        assertTrue(temp.mkdir()); // Временный файл нельзя создать на месте каталога
+
+        assertThrows(ManagerSaveException.class, manager::save);
+        assertFalse(temp.exists(), "Временный файл удалён");
+        int laterId = manager.createTask(new Task("Later", "Description", Status.NEW));
+
+        FileBackedTaskManager loaded = reload();
+        assertNotNull(loaded.getTask(taskId));
+        assertEquals("Later", loaded.getTask(laterId).getName());
+    }
+
+    // Две версии задачи 1, обе с первым слотом: сбой до освобождения старой версии
+    private static void writeTwoVersionsAfterCrash(File file) throws IOException {
+        try (TaskRecordFile records = TaskRecordFile.create(file, false)) {
+            records.put(new Task(1, "Old", "Description", Status.NEW));
+            byte[] oldHead = readSlot(file, 0);
+            records.put(new Task(1, "New", "Description", Status.DONE));
+            writeSlot(file, 0, oldHead); // Прежний первый слот так и не был освобождён
+        }
+    }
+
+    @Test
+    @DisplayName("Снимок CSV переводится в файл записей при загрузке")
+    void shouldMigrateCsvSnapshot() throws IOException {
+        manager.close();
+        FileBackedTaskManager snapshot = new FileBackedTaskManager(testFile);
+        int taskId = snapshot.createTask(new Task("Task", "Description", Status.NEW));
+
+        FileBackedTaskManager loaded = reload();
+        assertEquals("Task", loaded.getTask(taskId).getName());
+        assertTrue(TaskRecordFile.isRecordFile(testFile));
+    }
+
+    @Test
+    @DisplayName("Отложенная запись в режиме записей не поддерживается")
+    void shouldRejectWriteBehindPolicy() {
+        assertThrows(IllegalArgumentException.class, () -> new FileBackedTaskManager(testFile,
+                FileBackedTaskManager.PersistenceMode.RECORDS, PersistencePolicy.everyMillis(10, false)));
+    }
+
+    private static byte[] readSlot(File file, int slot) throws IOException {
+        byte[] data = new byte[TaskRecordFile.SLOT_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(TaskRecordFile.FILE_HEADER_SIZE + (long) slot * TaskRecordFile.SLOT_SIZE);
+            raf.readFully(data);
+        }
+        return data;
+    }
+
+    private static void writeSlot(File file, int slot, byte[] data) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(TaskRecordFile.FILE_HEADER_SIZE + (long) slot * TaskRecordFile.SLOT_SIZE);
+            raf.write(data);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пропускная способность хранилищ TaskStore на одной и той же нагрузке:
+ * создание задач, изменение части из них с просмотрами и открытие заново.
+ * Запуск: java manager.TaskStoreBenchmark [количество задач] [изменений]
+ */
+public class TaskStoreBenchmark {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        System.out.printf("Задач: %d, изменений: %d%n", size, updates);
+        for (TaskStore.Engine engine : TaskStore.Engine.values()) {
+            File file = File.createTempFile("benchmark", ".store");
+            Files.delete(file.toPath());
+            try {
+                run(engine, file, size, updates);
+            } finally {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private static void run(TaskStore.Engine engine, File file, int size, int updates) {
+        long start = System.nanoTime();
+        List<Integer> ids = new ArrayList<>(size);
+        try (InMemoryTaskManager manager = Managers.getStored(engine, file)) {
+            int epicId = 0;
+            for (int i = 0; i < size; i++) {
+                LocalDateTime slot = START.plusMinutes(i * 30L);
+                if (i % 3 == 0) {
+                    ids.add(manager.createTask(new Task("Задача " + i, "Описание задачи " + i, Status.NEW,
+                            Duration.ofMinutes(15), slot)));
+                    continue;
+                }
+                if (epicId == 0 || i % 10 == 1) {
+                    epicId = manager.createEpic(new Epic("Эпик " + i, "Описание эпика " + i));
+                }
+                manager.createSubtask(new Subtask(0, "Подзадача " + i, "Описание подзадачи " + i,
+                        Status.IN_PROGRESS, epicId, Duration.ofMinutes(15), slot));
+            }
+        }
+        long create = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        try (InMemoryTaskManager manager = Managers.getStored(engine, file)) {
+            for (int i = 0; i < updates; i++) {
+                Task task = manager.getTaskById(ids.get(i % ids.size()));
+                if (task != null) {
+                    manager.updateTask(new Task(task.getId(), task.getName(), "Изменено " + i, Status.DONE,
+                            task.getDuration(), task.getStartTime()));
+                }
+            }
+        }
+        long update = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int loaded;
+        try (InMemoryTaskManager manager = Managers.getStored(engine, file)) {
+            loaded = manager.getAllTasks().size() + manager.getAllEpics().size() + manager.getAllSubtasks().size();
+        }
+        long open = System.nanoTime() - start;
+
+        System.out.printf("%-7s создание %,10.0f оп/с | изменение %,10.0f оп/с | открытие %5d мс (%d записей) | "
+                        + "файл %,d байт%n",
+                engine, size * 1e9 / create, updates * 1e9 / update, Duration.ofNanos(open).toMillis(), loaded,
+                file.length());
+    }
+}
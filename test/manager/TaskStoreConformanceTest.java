@@ -0,0 +1,221 @@
+package manager;
+
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Набор проверок, который должна проходить каждая реализация TaskStore:
+ * состояние менеджера после переоткрытия хранилища совпадает с состоянием до закрытия.
+ * Наследник также подключает общий набор TaskManagerTest через вложенный класс.
+ */
+public abstract class TaskStoreConformanceTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    protected File storeFile;
+    private InMemoryTaskManager manager;
+
+    protected abstract TaskStore openStore(File file);
+
+    @BeforeEach
+    void createStoreFile() throws IOException {
+        storeFile = File.createTempFile("task_store", ".dat");
+        Files.delete(storeFile.toPath());
+        manager = new InMemoryTaskManager(openStore(storeFile));
+    }
+
+    @AfterEach
+    void deleteStoreFile() throws IOException {
+        manager.close();
+        Files.deleteIfExists(storeFile.toPath());
+        Files.deleteIfExists(new File(storeFile.getPath() + ".tmp").toPath());
+    }
+
+    private InMemoryTaskManager reopen() {
+        manager.close();
+        manager = new InMemoryTaskManager(openStore(storeFile));
+        return manager;
+    }
+
+    @Test
+    @DisplayName("Пустое хранилище открывается без задач")
+    void shouldOpenEmptyStore() {
+        InMemoryTaskManager loaded = reopen();
+        assertTrue(loaded.getAllTasks().isEmpty());
+        assertTrue(loaded.getHistory().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Задачи, эпики, подзадачи и история переживают переоткрытие")
+    void shouldRestoreStateAfterReopen() {
+        int taskId = manager.createTask(new Task("Task", "Description", Status.IN_PROGRESS,
+                Duration.ofMinutes(30), START));
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Subtask", "Description", Status.DONE, epicId,
+                Duration.ofMinutes(15), START.plusHours(2)));
+        manager.getEpicById(epicId);
+        manager.getTaskById(taskId);
+        manager.getSubtaskById(subtaskId); // Просмотр после последнего изменения пишется при закрытии
+
+        InMemoryTaskManager loaded = reopen();
+
+        assertEquals(Status.IN_PROGRESS, loaded.getTaskById(taskId).getStatus());
+        assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus(), "Статус эпика вычисляется при загрузке");
+        assertEquals(START.plusHours(2), loaded.getEpicById(epicId).getStartTime());
+        assertEquals(List.of(taskId, subtaskId), ids(loaded.getPrioritizedTasks()));
+        assertEquals(4, loaded.createTask(new Task("Next", "Description", Status.NEW)),
+                "Счётчик id продолжается после загрузки");
+    }
+
+    @Test
+    @DisplayName("История сохраняет порядок просмотров")
+    void shouldRestoreHistoryOrder() {
+        int first = manager.createTask(new Task("First", "Description", Status.NEW));
+        int second = manager.createTask(new Task("Second", "Description", Status.NEW));
+        manager.getTaskById(first);
+        manager.getTaskById(second);
+        manager.getTaskById(first);
+        manager.flush();
+
+        assertEquals(List.of(second, first), ids(reopen().getHistory()));
+    }
+
+    @Test
+    @DisplayName("Удаление эпика удаляет подзадачи и в хранилище")
+    void shouldRemoveEpicWithSubtasks() {
+        int epicId = manager.createEpic(new Epic("Epic", "Description"));
+        manager.createSubtask(new Subtask("Subtask 1", "Description", Status.NEW, epicId));
+        manager.createSubtask(new Subtask("Subtask 2", "Description", Status.NEW, epicId));
+        int otherEpic = manager.createEpic(new Epic("Other", "Description"));
+        int kept = manager.createSubtask(new Subtask("Kept", "Description", Status.DONE, otherEpic));
+        manager.deleteEpicById(epicId);
+
+        InMemoryTaskManager loaded = reopen();
+        assertEquals(List.of(otherEpic), sortedIds(loaded.getAllEpics()));
+        assertEquals(List.of(kept), sortedIds(loaded.getAllSubtasks()));
+
+        loaded.deleteAllEpics();
+        assertTrue(reopen().getAllSubtasks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Случайная последовательность операций даёт то же состояние, что и менеджер в памяти")
+    void shouldMatchInMemoryManagerAfterRandomWorkload() {
+        InMemoryTaskManager reference = new InMemoryTaskManager();
+        Random random = new Random(42);
+        int slot = 0;
+        for (int step = 0; step < 400; step++) {
+            List<Integer> taskIds = sortedIds(reference.getAllTasks());
+            List<Integer> epicIds = sortedIds(reference.getAllEpics());
+            List<Integer> subtaskIds = sortedIds(reference.getAllSubtasks());
+            int op = random.nextInt(12);
+            LocalDateTime start = random.nextBoolean() ? START.plusHours(slot++) : null;
+            Duration duration = start == null ? null : Duration.ofMinutes(30);
+            Status status = Status.values()[random.nextInt(Status.values().length)];
+            if (op < 3 || (op < 6 && epicIds.isEmpty())) {
+                for (InMemoryTaskManager m : List.of(reference, manager)) {
+                    m.createTask(new Task("Task " + step, "Description " + step, status, duration, start));
+                }
+            } else if (op < 4) {
+                for (InMemoryTaskManager m : List.of(reference, manager)) {
+                    m.createEpic(new Epic("Epic " + step, "Description " + step));
+                }
+            } else if (op < 6) {
+                int epicId = pick(random, epicIds);
+                for (InMemoryTaskManager m : List.of(reference, manager)) {
+                    m.createSubtask(new Subtask(0, "Subtask " + step, "Description", status, epicId, duration, start));
+                }
+            } else if (op < 7 && !taskIds.isEmpty()) {
+                int id = pick(random, taskIds);
+                for (InMemoryTaskManager m : List.of(reference, manager)) {
+                    m.updateTask(new Task(id, "Updated " + step, "Description", status, duration, start));
+                }
+            } else if (op < 8 && !subtaskIds.isEmpty()) {
+                int id = pick(random, subtaskIds);
+                int epicId = pick(random, epicIds);
+                for (InMemoryTaskManager m : List.of(reference, manager)) {
+                    m.updateSubtask(new Subtask(id, "Moved " + step, "Description", status, epicId, duration, start));
+                }
+            } else if (op < 9 && !taskIds.isEmpty()) {
+                int id = pick(random, taskIds);
+                reference.deleteTaskById(id);
+                manager.deleteTaskById(id);
+            } else if (op < 10 && !subtaskIds.isEmpty()) {
+                int id = pick(random, subtaskIds);
+                reference.deleteSubtaskById(id);
+                manager.deleteSubtaskById(id);
+            } else if (op < 11 && !epicIds.isEmpty() && random.nextInt(4) == 0) {
+                int id = pick(random, epicIds);
+                reference.deleteEpicById(id);
+                manager.deleteEpicById(id);
+            } else {
+                List<Integer> all = new ArrayList<>(taskIds);
+                all.addAll(subtaskIds);
+                if (!all.isEmpty()) {
+                    int id = pick(random, all);
+                    if (taskIds.contains(id)) {
+                        reference.getTaskById(id);
+                        manager.getTaskById(id);
+                    } else {
+                        reference.getSubtaskById(id);
+                        manager.getSubtaskById(id);
+                    }
+                }
+            }
+        }
+
+        InMemoryTaskManager loaded = reopen();
+        assertEquals(describe(reference), describe(loaded));
+        assertEquals(ids(reference.getHistory()), ids(loaded.getHistory()));
+        assertEquals(ids(reference.getPrioritizedTasks()), ids(loaded.getPrioritizedTasks()));
+    }
+
+    private static int pick(Random random, List<Integer> ids) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private static List<Integer> ids(Iterable<? extends Task> tasks) {
+        List<Integer> ids = new ArrayList<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
+    // Порядок getAll* зависит от хранилища менеджера, поэтому id сортируются
+    private static List<Integer> sortedIds(Iterable<? extends Task> tasks) {
+        List<Integer> ids = ids(tasks);
+        ids.sort(null);
+        return ids;
+    }
+
+    // Состояние менеджера в виде, не зависящем от порядка обхода хранилища
+    private static TreeMap<Integer, String> describe(TaskManager manager) {
+        TreeMap<Integer, String> state = new TreeMap<>();
+        List<Task> all = new ArrayList<>(manager.getAllTasks());
+        all.addAll(manager.getAllEpics());
+        all.addAll(manager.getAllSubtasks());
+        for (Task task : all) {
+            String line = task.getClass().getSimpleName() + "," + task.getName() + "," + task.getDescription()
+                    + "," + task.getStatus() + "," + task.getDuration() + "," + task.getStartTime();
+            if (task instanceof Epic) {
+                line += "," + ((Epic) task).getSubtaskIds().stream().sorted().collect(Collectors.toList());
+            } else if (task instanceof Subtask) {
+                line += "," + ((Subtask) task).getEpicId();
+            }
+            state.put(task.getId(), line);
+        }
+        return state;
+    }
+}
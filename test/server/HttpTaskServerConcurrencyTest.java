@@ -0,0 +1,92 @@
+package server;
+
+import manager.ConcurrentTaskManager;
+import manager.InMemoryTaskManager;
+import manager.TaskManager;
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTaskServerConcurrencyTest {
+    private static final int REQUESTS = 200;
+    private HttpTaskServer server;
+    private TaskManager taskManager;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void startServer(ServerConfig config) throws IOException {
+        taskManager = new ConcurrentTaskManager();
+        server = new HttpTaskServer(taskManager, config);
+        server.start();
+    }
+
+    private void assertParallelCreatesSucceed() {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            Task task = new Task("Task " + i, "Description", Status.NEW);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks"))
+                    .POST(HttpRequest.BodyPublishers.ofString(GsonUtils.getGson().toJson(task)))
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(201, response.join().statusCode(), "Каждый запрос должен создать задачу");
+        }
+        assertEquals(REQUESTS, taskManager.getAllTasks().size(), "Все задачи должны быть созданы");
+    }
+
+    @Test
+    void shouldHandleParallelRequestsWithFixedPool() throws IOException {
+        startServer(new ServerConfig(ServerConfig.ExecutorMode.FIXED_POOL, 4, 8, 128));
+        assertParallelCreatesSucceed();
+    }
+
+    @Test
+    void shouldHandleParallelRequestsWithVirtualThreads() throws IOException {
+        // На Java до 21 сервер переключается на пул потоков
+        startServer(new ServerConfig(ServerConfig.ExecutorMode.VIRTUAL_THREADS, 4, 16, 128));
+        assertParallelCreatesSucceed();
+    }
+
+    @Test
+    void shouldRejectManagerThatIsNotThreadSafe() {
+        for (ServerConfig.ExecutorMode mode : List.of(ServerConfig.ExecutorMode.FIXED_POOL,
+                ServerConfig.ExecutorMode.VIRTUAL_THREADS)) {
+            assertThrows(IllegalArgumentException.class, () -> new HttpTaskServer(new InMemoryTaskManager(),
+                    new ServerConfig(mode, 4, 16, 0), 0), "Режим " + mode);
+        }
+    }
+
+    @Test
+    void shouldAcceptAnyManagerOnDispatcherThread() throws IOException {
+        server = new HttpTaskServer(new InMemoryTaskManager(), ServerConfig.defaults(), 0);
+    }
+
+    @Test
+    void shouldRejectInvalidConfig() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ServerConfig(ServerConfig.ExecutorMode.FIXED_POOL, 0, 10, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ServerConfig(null, 1, 10, 0));
+    }
+}
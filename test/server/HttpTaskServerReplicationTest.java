@@ -0,0 +1,210 @@
+package server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import manager.ConcurrentTaskManager;
+import manager.ReplicaTaskManager;
+import manager.ReplicationLeader;
+import manager.TaskStore;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTaskServerReplicationTest {
+    private static final int LEADER_PORT = 8080;
+    private static final int FOLLOWER_PORT = 8081;
+    private static final int REPLICATION_PORT = 8090;
+    private static final long TIMEOUT_MILLIS = 5_000;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final Gson gson = GsonUtils.getGson();
+    private ReplicationLeader log;
+    private ConcurrentTaskManager leaderManager;
+    private HttpTaskServer leader;
+    private ReplicaTaskManager followerManager;
+    private HttpTaskServer follower;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        log = new ReplicationLeader(TaskStore.open(TaskStore.Engine.MEMORY, null), REPLICATION_PORT);
+        leaderManager = new ConcurrentTaskManager(log);
+        leader = new HttpTaskServer(leaderManager, ServerConfig.defaults(), LEADER_PORT);
+        leader.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (follower != null) {
+            follower.stop();
+            followerManager.close();
+        }
+        leader.stop();
+        leaderManager.close();
+    }
+
+    private void startFollower() throws IOException {
+        followerManager = new ReplicaTaskManager("localhost", REPLICATION_PORT);
+        follower = new HttpTaskServer(followerManager, ServerConfig.defaults(), FOLLOWER_PORT);
+        follower.start();
+    }
+
+    private void awaitFollower() throws InterruptedException {
+        assertTrue(followerManager.awaitSequence(log.getSequence(), TIMEOUT_MILLIS), "Ведомый не догнал ведущего");
+    }
+
+    private HttpResponse<String> send(int port, String method, String path, Object body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:" + port + path));
+        request.method(method, body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(gson.toJson(body)));
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String get(int port, String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(port, "GET", path, null);
+        assertEquals(200, response.statusCode(), path + ": " + response.body());
+        return response.body();
+    }
+
+    @Test
+    @DisplayName("Ведомый получает снимок при подключении и затем изменения ведущего")
+    void shouldReplicateSnapshotAndChanges() throws IOException, InterruptedException {
+        assertEquals(201, send(LEADER_PORT, "POST", "/epics", new Epic(0, "Эпик", "Описание эпика")).statusCode());
+        assertEquals(201, send(LEADER_PORT, "POST", "/tasks", new Task(0, "Задача", "Описание", Status.NEW,
+                Duration.ofMinutes(30), START)).statusCode());
+        int epicId = leaderManager.getAllEpics().iterator().next().getId();
+        startFollower();
+        awaitFollower();
+
+        assertEquals(201, send(LEADER_PORT, "POST", "/subtasks", new Subtask(0, "Подзадача", "Описание",
+                Status.DONE, epicId, Duration.ofMinutes(15), START.plusHours(1))).statusCode());
+        get(LEADER_PORT, "/epics/" + epicId); // Просмотр на ведущем попадает в историю ведомого
+        get(LEADER_PORT, "/tasks/2");
+        awaitFollower();
+
+        for (String path : List.of("/tasks", "/subtasks", "/epics", "/prioritized", "/history")) {
+            assertEquals(get(LEADER_PORT, path), get(FOLLOWER_PORT, path), path);
+        }
+        assertEquals(Status.DONE, followerManager.getEpicById(epicId).getStatus());
+
+        get(FOLLOWER_PORT, "/tasks/2"); // Чтение на ведомом не меняет историю
+        assertEquals(get(LEADER_PORT, "/history"), get(FOLLOWER_PORT, "/history"));
+
+        send(LEADER_PORT, "DELETE", "/epics/" + epicId, null);
+        awaitFollower();
+        assertEquals("[]", get(FOLLOWER_PORT, "/epics"));
+        assertEquals("[]", get(FOLLOWER_PORT, "/subtasks"));
+        assertEquals(get(LEADER_PORT, "/history"), get(FOLLOWER_PORT, "/history"));
+    }
+
+    @Test
+    @DisplayName("Ведомый вытесняет из истории те же задачи, что и ведущий с ограниченной историей")
+    void shouldReplicateHistoryCapacity() throws IOException, InterruptedException {
+        for (int i = 1; i <= 3; i++) {
+            send(LEADER_PORT, "POST", "/tasks", new Task(0, "Задача " + i, "Описание", Status.NEW));
+            get(LEADER_PORT, "/tasks/" + i);
+        }
+        leaderManager.setHistoryCapacity(2);
+        startFollower();
+        awaitFollower();
+        assertEquals(get(LEADER_PORT, "/history"), get(FOLLOWER_PORT, "/history"), "Снимок");
+
+        get(LEADER_PORT, "/tasks/1"); // Вытесняет задачу 2
+        awaitFollower();
+        assertEquals(get(LEADER_PORT, "/history"), get(FOLLOWER_PORT, "/history"), "Вытеснение");
+        assertEquals(2, followerManager.getHistory().size());
+
+        leaderManager.setHistoryCapacity(3);
+        get(LEADER_PORT, "/tasks/2");
+        awaitFollower();
+        assertEquals(get(LEADER_PORT, "/history"), get(FOLLOWER_PORT, "/history"), "Увеличенная ёмкость");
+        assertEquals(3, followerManager.getHistory().size());
+    }
+
+    @Test
+    @DisplayName("По умолчанию ведущий принимает ведомых только на локальном интерфейсе")
+    void shouldListenOnLoopbackByDefault() {
+        assertTrue(log.getAddress().isLoopbackAddress());
+    }
+
+    @Test
+    @DisplayName("Ведомый отвечает 405 на изменения и не меняет состояние")
+    void shouldRejectWritesOnFollower() throws IOException, InterruptedException {
+        startFollower();
+
+        HttpResponse<String> response = send(FOLLOWER_PORT, "POST", "/tasks", new Task(0, "Задача", "Описание",
+                Status.NEW));
+
+        assertEquals(405, response.statusCode());
+        assertEquals("GET", response.headers().firstValue("Allow").orElse(null));
+        assertEquals(405, send(FOLLOWER_PORT, "DELETE", "/tasks", null).statusCode());
+        assertTrue(followerManager.getAllTasks().isEmpty());
+        assertTrue(leaderManager.getAllTasks().isEmpty());
+        assertThrows(UnsupportedOperationException.class,
+                () -> followerManager.createTask(new Task("Задача", "Описание", Status.NEW)));
+    }
+
+    @Test
+    @DisplayName("Отставание видно на ведомом и на ведущем и обнуляется после применения")
+    void shouldReportLag() throws IOException, InterruptedException {
+        startFollower();
+        for (int i = 0; i < 20; i++) {
+            send(LEADER_PORT, "POST", "/tasks", new Task(0, "Задача " + i, "Описание", Status.NEW));
+        }
+        awaitFollower();
+
+        JsonObject status = gson.fromJson(get(FOLLOWER_PORT, "/replication"), JsonObject.class);
+        assertTrue(status.get("connected").getAsBoolean());
+        assertEquals(log.getSequence(), status.get("appliedSequence").getAsLong());
+        assertEquals(0, status.get("behind").getAsLong());
+        assertTrue(status.get("applyDelayMillis").getAsLong() >= 0);
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!log.getFollowerLag().values().equals(List.of(0L)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10); // Подтверждение приходит после применения
+        }
+        assertEquals(List.of(0L), List.copyOf(log.getFollowerLag().values()));
+        assertEquals(404, send(LEADER_PORT, "GET", "/replication", null).statusCode(),
+                "Состояние репликации есть только у ведомого");
+    }
+
+    @Test
+    @DisplayName("После перезапуска ведущего ведомый переподключается и загружает снимок заново")
+    void shouldResyncAfterLeaderRestart() throws IOException, InterruptedException {
+        startFollower();
+        send(LEADER_PORT, "POST", "/tasks", new Task(0, "Старая", "Описание", Status.NEW));
+        awaitFollower();
+
+        leader.stop();
+        leaderManager.close();
+        log = new ReplicationLeader(TaskStore.open(TaskStore.Engine.MEMORY, null), REPLICATION_PORT);
+        leaderManager = new ConcurrentTaskManager(log);
+        leader = new HttpTaskServer(leaderManager, ServerConfig.defaults(), LEADER_PORT);
+        leader.start();
+        send(LEADER_PORT, "POST", "/tasks", new Task(0, "Новая", "Описание", Status.NEW));
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!get(FOLLOWER_PORT, "/tasks").contains("Новая") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(get(LEADER_PORT, "/tasks"), get(FOLLOWER_PORT, "/tasks"), "Старое состояние сброшено");
+    }
+}